@@ -9,10 +9,12 @@ package nz.ac.auckland.lablet;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.FragmentActivity;
@@ -685,22 +687,46 @@ public class ExperimentActivity extends FragmentActivity {
     static public String PATH = "experiment_path";
     static public String START_ANALYSIS = "start_analysis";
 
-    private void finishExperiment(boolean startAnalysis) {
+    private void finishExperiment(final boolean startAnalysis) {
+        final File storageDir = new File(experimentBaseDir, experiment.generateNewUid());
         try {
-            File storageDir = new File(experimentBaseDir, experiment.generateNewUid());
-
             experiment.finishExperiment(true, storageDir);
-
-            Intent data = new Intent();
-            data.putExtra(PATH, storageDir.getPath());
-            data.putExtra(START_ANALYSIS, startAnalysis);
-            setResult(RESULT_OK, data);
         } catch (IOException e) {
             e.printStackTrace();
             setResult(RESULT_CANCELED);
+            finish();
+            return;
         }
 
-        finish();
+        // the sensor data is written in the background, wait for it without blocking the UI thread
+        final ProgressDialog progressDialog = ProgressDialog.show(this, null, "Saving experiment data...", true,
+                false);
+        new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... voids) {
+                try {
+                    experiment.waitForSavedData(storageDir);
+                    return true;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(Boolean saved) {
+                progressDialog.dismiss();
+                if (saved) {
+                    Intent data = new Intent();
+                    data.putExtra(PATH, storageDir.getPath());
+                    data.putExtra(START_ANALYSIS, startAnalysis);
+                    setResult(RESULT_OK, data);
+                } else
+                    setResult(RESULT_CANCELED);
+
+                finish();
+            }
+        }.execute();
     }
 
     abstract class AbstractViewState {
@@ -11,6 +11,7 @@ import android.os.Bundle;
 import android.support.v4.app.FragmentStatePagerAdapter;
 import android.support.v4.view.ViewPager;
 import nz.ac.auckland.lablet.experiment.*;
+import nz.ac.auckland.lablet.misc.BackgroundSaver;
 
 import java.io.*;
 import java.util.List;
@@ -73,6 +74,15 @@ public class ExperimentAnalysisActivity extends ExperimentAnalysisBaseActivity {
         super.onBackPressed();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (experimentAnalysis == null || level < TRIM_MEMORY_RUNNING_LOW)
+            return;
+        experimentAnalysis.getExperimentData().evictUnusedRuns();
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -83,20 +93,25 @@ public class ExperimentAnalysisActivity extends ExperimentAnalysisBaseActivity {
         final ExperimentData experimentData = experimentAnalysis.getExperimentData();
         List<ExperimentAnalysis.AnalysisRunEntry> analysisRuns = experimentAnalysis.getAnalysisRuns();
         for (ExperimentAnalysis.AnalysisRunEntry analysisRun : analysisRuns) {
-            for (ExperimentAnalysis.AnalysisEntry analysisEntry : analysisRun.analysisList) {
+            // runs that have not been opened have nothing to save
+            if (!analysisRun.isLoaded())
+                continue;
+            for (ExperimentAnalysis.AnalysisEntry analysisEntry : analysisRun.getAnalysisList()) {
                 try {
                     IDataAnalysis analysis = analysisEntry.analysis;
                     File storageDir = analysisEntry.storageDir;
                     storageDir.mkdirs();
 
-                    ExperimentHelper.saveAnalysisData(analysisEntry, analysis, storageDir,
-                            experimentData.getRunDataList().get(analysisRuns.indexOf(analysisRun)).sensorDataList);
+                    ExperimentHelper.saveAnalysisDataInBackground(analysisEntry, analysis, storageDir,
+                            experimentData.getRunDataList().get(analysisRuns.indexOf(analysisRun)).getSensorDataList());
                     exportTagMarkerCSVData(analysis, storageDir);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             }
         }
+        // don't wait for the save delay, the activity may not come back
+        BackgroundSaver.get().flush();
     }
 
     private File getTagMarkerCSVFile(IDataAnalysis sensorAnalysis, File storageDir) {
@@ -104,28 +119,10 @@ public class ExperimentAnalysisActivity extends ExperimentAnalysisBaseActivity {
     }
 
     private void exportTagMarkerCSVData(IDataAnalysis sensorAnalysis, File storageDir) throws IOException {
-        File csvFile = getTagMarkerCSVFile(sensorAnalysis, storageDir);
-        if (!csvFile.exists()) {
-            try {
-                if (!csvFile.createNewFile())
-                    return;
-            } catch (IOException e) {
-                e.printStackTrace();
-                return;
-            }
-        }
-
-        Writer writer = null;
-        try {
-            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile)));
-            sensorAnalysis.exportTagMarkerCSVData(writer);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return;
-        } finally {
-            if (writer != null)
-                writer.close();
-        }
+        // the markers are only accessed on the ui thread, the file is written in the background
+        StringWriter writer = new StringWriter();
+        sensorAnalysis.exportTagMarkerCSVData(writer);
+        BackgroundSaver.get().save(getTagMarkerCSVFile(sensorAnalysis, storageDir), writer.toString());
     }
 
     private class ScreenSlidePagerAdapter extends FragmentStatePagerAdapter {
@@ -137,7 +134,7 @@ public class ExperimentAnalysisActivity extends ExperimentAnalysisBaseActivity {
         public android.support.v4.app.Fragment getItem(int analysis) {
             int run = experimentAnalysis.getCurrentAnalysisRunIndex();
             ExperimentAnalysis.AnalysisEntry analysisEntry
-                    = experimentAnalysis.getCurrentAnalysisRun().analysisList.get(analysis);
+                    = experimentAnalysis.getCurrentAnalysisRun().getAnalysisList().get(analysis);
 
             ExperimentAnalysis.AnalysisRef analysisRef = new ExperimentAnalysis.AnalysisRef(run, analysisEntry.analysisUid);
             return analysisEntry.plugin.createSensorAnalysisFragment(analysisRef);
@@ -150,7 +147,7 @@ public class ExperimentAnalysisActivity extends ExperimentAnalysisBaseActivity {
             ExperimentAnalysis.AnalysisRunEntry currentAnalysisRun = experimentAnalysis.getCurrentAnalysisRun();
             if (currentAnalysisRun == null)
                 return 0;
-            return currentAnalysisRun.analysisList.size();
+            return currentAnalysisRun.getAnalysisList().size();
         }
     }
 }
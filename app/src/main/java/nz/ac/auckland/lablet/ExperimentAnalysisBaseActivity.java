@@ -12,7 +12,9 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.FragmentActivity;
+import android.util.Log;
 import nz.ac.auckland.lablet.experiment.*;
 
 import java.io.*;
@@ -22,6 +24,8 @@ import java.io.*;
  * Abstract base class for activities that analyze an experiment.
  */
 abstract public class ExperimentAnalysisBaseActivity extends FragmentActivity {
+    final static private String TAG = "ExperimentAnalysis";
+
     protected ExperimentAnalysis experimentAnalysis;
 
     @Override
@@ -48,6 +52,7 @@ abstract public class ExperimentAnalysisBaseActivity extends FragmentActivity {
         int runId = intent.getIntExtra(ExperimentAnalysis.AnalysisRef.RUN_ID_KEY, 0);
         String analysisId = intent.getStringExtra(ExperimentAnalysis.AnalysisRef.ANALYSIS_UID_KEY);
 
+        long startTime = SystemClock.elapsedRealtime();
         ExperimentData experimentData = ExperimentHelper.loadExperimentData(experimentPath);
         if (!experimentData.getLoadError().equals("")) {
             showErrorAndFinish(experimentData.getLoadError());
@@ -56,14 +61,17 @@ abstract public class ExperimentAnalysisBaseActivity extends FragmentActivity {
         experimentAnalysis = new ExperimentAnalysis();
         experimentAnalysis.setExperimentData(experimentData);
 
-        if (experimentAnalysis.getNumberOfRuns() == 0
-                || experimentAnalysis.getAnalysisRunAt(0).analysisList.size() == 0) {
-            showErrorAndFinish("No experiment found.");
+        // only the requested run is loaded, sensor data errors show up when it is selected
+        if (!experimentAnalysis.setCurrentAnalysisRun(runId)) {
+            String runError = "";
+            if (runId >= 0 && runId < experimentData.getRunDataList().size())
+                runError = experimentData.getRunDataList().get(runId).getLoadError();
+            showErrorAndFinish(runError.equals("") ? "No experiment found." : runError);
             return false;
         }
-
-        experimentAnalysis.setCurrentAnalysisRun(runId);
         experimentAnalysis.setCurrentAnalysis(analysisId);
+        Log.i(TAG, "time to first analysis: " + (SystemClock.elapsedRealtime() - startTime) + "ms ("
+                + experimentAnalysis.getNumberOfRuns() + " runs)");
         return true;
     }
 
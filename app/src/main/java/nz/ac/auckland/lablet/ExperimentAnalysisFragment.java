@@ -93,7 +93,7 @@ public class ExperimentAnalysisFragment extends android.support.v4.app.Fragment
             }
         });
         // hide item if there is no more than one data
-        if (experimentAnalysis.getAnalysisRunAt(analysisRef.runId).analysisList.size() == 1)
+        if (experimentAnalysis.getAnalysisRunAt(analysisRef.runId).getAnalysisList().size() == 1)
             dataItem.setVisible(false);
     }
 
@@ -103,7 +103,7 @@ public class ExperimentAnalysisFragment extends android.support.v4.app.Fragment
         final ViewPager pager = ((ExperimentAnalysisActivity) getActivity()).getViewPager();
 
         final List<ExperimentAnalysis.AnalysisEntry> analysisList = experimentAnalysis.getAnalysisRunAt(
-                analysisRef.runId).analysisList;
+                analysisRef.runId).getAnalysisList();
         int i = 0;
         for (ExperimentAnalysis.AnalysisEntry analysisEntry : analysisList) {
             MenuItem item = popup.getMenu().add(1, i, Menu.NONE, analysisEntry.analysis.getDisplayName());
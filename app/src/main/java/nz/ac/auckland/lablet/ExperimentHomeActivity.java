@@ -15,8 +15,10 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.FileObserver;
+import android.text.format.Formatter;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -30,7 +32,12 @@ import android.widget.Toast;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import nz.ac.auckland.lablet.experiment.ExperimentCatalog;
 import nz.ac.auckland.lablet.experiment.ExperimentHelper;
 import nz.ac.auckland.lablet.experiment.ExperimentPluginFactory;
 import nz.ac.auckland.lablet.experiment.IImportPlugin;
@@ -103,6 +110,8 @@ class InfoHelper {
 public class ExperimentHomeActivity extends Activity {
     static final int PERFORM_EXPERIMENT = 0;
     static final int ANALYSE_EXPERIMENT = 1;
+    // shared by all instances, the in memory catalog survives recreating the activity
+    static private ExperimentCatalog experimentCatalog = null;
     private List<ISensorPlugin> sensorPlugins = null;
     private ArrayList<CheckBoxListEntry> experimentList = null;
     private CheckBoxListEntry.OnCheckBoxListEntryListener checkBoxListEntryListener;
@@ -113,6 +122,9 @@ public class ExperimentHomeActivity extends Activity {
     private AlertDialog infoAlertBox = null;
     private AlertDialog deleteExperimentAlertBox = null;
     private ExperimentDirObserver experimentDirObserver = null;
+    private CatalogUpdateTask catalogUpdateTask = null;
+    private boolean catalogUpdatePending = false;
+    private String analyzedExperimentId = null;
 
     public ExperimentHomeActivity() {
 
@@ -332,7 +344,6 @@ public class ExperimentHomeActivity extends Activity {
 
         File experimentDir = ExperimentAnalysisBaseActivity.getDefaultExperimentBaseDir(this);
         if (experimentDir.exists()) {
-            // TODO: Events are never received, check why. Manually call updateExperimentList in onResume for now.
             experimentDirObserver = new ExperimentDirObserver(experimentDir.getPath());
             experimentDirObserver.startWatching();
         }
@@ -343,6 +354,7 @@ public class ExperimentHomeActivity extends Activity {
     }
 
     private void startAnalyzeActivityById(String id) {
+        analyzedExperimentId = id;
         File experimentDir = ExperimentAnalysisBaseActivity.getDefaultExperimentBaseDir(this);
         File experimentPath = new File(experimentDir, id);
         startAnalyzeActivity(experimentPath.getPath());
@@ -369,12 +381,20 @@ public class ExperimentHomeActivity extends Activity {
     public void onDestroy() {
         if (experimentDirObserver != null)
             experimentDirObserver.stopWatching();
+        if (catalogUpdateTask != null)
+            catalogUpdateTask.cancel(false);
 
         super.onDestroy();
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        // the analysis may have added files to the experiment, rescan it
+        if (requestCode == ANALYSE_EXPERIMENT && analyzedExperimentId != null) {
+            getExperimentCatalog(this).invalidate(analyzedExperimentId);
+            analyzedExperimentId = null;
+        }
+
         if (resultCode != Activity.RESULT_OK)
             return;
 
@@ -407,37 +427,108 @@ public class ExperimentHomeActivity extends Activity {
         startActivity(intent);
     }
 
+    static private ExperimentCatalog getExperimentCatalog(Context context) {
+        if (experimentCatalog == null) {
+            File experimentDir = ExperimentAnalysisBaseActivity.getDefaultExperimentBaseDir(context);
+            File catalogFile = new File(context.getFilesDir(), "experiment_catalog");
+            experimentCatalog = new ExperimentCatalog(experimentDir, catalogFile);
+        }
+        return experimentCatalog;
+    }
+
+    /**
+     * Shows the experiments from the catalog and updates the catalog in the background.
+     */
     private void updateExperimentList() {
+        ExperimentCatalog catalog = getExperimentCatalog(this);
+        catalog.load();
+        showExperimentList(catalog.getEntries());
+
+        if (catalogUpdateTask != null) {
+            catalogUpdatePending = true;
+            return;
+        }
+        catalogUpdateTask = new CatalogUpdateTask();
+        catalogUpdateTask.execute(catalog);
+    }
+
+    private void showExperimentList(List<ExperimentCatalog.Entry> entries) {
+        Set<String> selected = new HashSet<>();
+        for (CheckBoxListEntry entry : experimentList) {
+            if (entry.getSelected())
+                selected.add(entry.getName());
+        }
+
         experimentList.clear();
-        File experimentDir = ExperimentAnalysisBaseActivity.getDefaultExperimentBaseDir(this);
-        if (experimentDir.isDirectory()) {
-            List<String> children = new ArrayList<>();
-            for (File file : experimentDir.listFiles()) {
-                children.add(file.getName());
-            }
-            Collections.sort(children, Collections.reverseOrder(new NaturalOrderComparator()));
-            //noinspection Convert2streamapi
-            for (String child : children) {
-                experimentList.add(new CheckBoxListEntry(child, checkBoxListEntryListener));
-            }
+        Map<String, ExperimentCatalog.Entry> catalogEntries = new HashMap<>();
+        for (ExperimentCatalog.Entry entry : entries)
+            catalogEntries.put(entry.getId(), entry);
+        List<String> children = new ArrayList<>(catalogEntries.keySet());
+        Collections.sort(children, Collections.reverseOrder(new NaturalOrderComparator()));
+        for (String child : children) {
+            CheckBoxListEntry entry = new CheckBoxListEntry(child, checkBoxListEntryListener);
+            entry.setSummary(getSummary(catalogEntries.get(child)));
+            if (selected.contains(child))
+                entry.setSelected(true);
+            experimentList.add(entry);
         }
 
         experimentListAdaptor.notifyDataSetChanged();
     }
 
+    /**
+     * @return a line like "2 runs, Video, 12 MB: description" or an empty string if the experiment has not been
+     * scanned yet
+     */
+    private String getSummary(ExperimentCatalog.Entry entry) {
+        if (!entry.isScanned())
+            return "";
+        StringBuilder summary = new StringBuilder();
+        summary.append(entry.getRunCount()).append(entry.getRunCount() == 1 ? " run" : " runs");
+        for (String sensorType : entry.getSensorTypes())
+            summary.append(", ").append(sensorType);
+        summary.append(", ").append(Formatter.formatShortFileSize(this, entry.getSize()));
+        if (!entry.getDescription().isEmpty())
+            summary.append(": ").append(entry.getDescription());
+        return summary.toString();
+    }
+
+    private class CatalogUpdateTask extends AsyncTask<ExperimentCatalog, Void, Boolean> {
+        @Override
+        protected Boolean doInBackground(ExperimentCatalog... catalogs) {
+            return catalogs[0].update();
+        }
+
+        @Override
+        protected void onPostExecute(Boolean changed) {
+            catalogUpdateTask = null;
+            if (changed)
+                showExperimentList(getExperimentCatalog(ExperimentHomeActivity.this).getEntries());
+            if (catalogUpdatePending) {
+                catalogUpdatePending = false;
+                updateExperimentList();
+            }
+        }
+    }
+
     private class ExperimentDirObserver extends FileObserver {
         ExperimentDirObserver(String path) {
-            super(path);
+            super(path, FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM
+                    | FileObserver.MOVED_TO);
         }
 
         @Override
         public void onEvent(int event, String path) {
-            switch (event) {
+            // the event contains flags, e.g., for directories
+            switch (event & FileObserver.ALL_EVENTS) {
                 case FileObserver.CREATE:
                 case FileObserver.DELETE:
                 case FileObserver.MOVED_FROM:
                 case FileObserver.MOVED_TO:
-                    updateExperimentList();
+                    if (path != null)
+                        getExperimentCatalog(ExperimentHomeActivity.this).invalidate(path);
+                    // events arrive on the observer thread
+                    runOnUiThread(() -> updateExperimentList());
                     break;
             }
         }
@@ -4,6 +4,12 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Application;
 import android.content.Intent;
+import android.os.SystemClock;
+import nz.ac.auckland.lablet.accelerometer.AccelerometerDataCache;
+import nz.ac.auckland.lablet.script.LuaScriptCache;
+import nz.ac.auckland.lablet.script.LuaScriptLoader;
+
+import java.io.File;
 
 /**
  * Lablet application class. This subclassing was performed to assure privacy policy is displayed in
@@ -12,6 +18,7 @@ import android.content.Intent;
 public class Lablet extends Application {
     public static boolean privacyPolicyApproved = false;
     private static AlertDialog privacyDialog;
+    private static long startTime = 0;
 
     /**
      * On creation of the application, privacy policy must be approved. One time approval is not
@@ -20,8 +27,20 @@ public class Lablet extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        startTime = SystemClock.elapsedRealtime();
         privacyDialog = null;
         privacyPolicyApproved = false;
+
+        LuaScriptLoader.setScriptCache(new LuaScriptCache(new File(getCacheDir(), "lua_scripts"),
+                BuildConfig.VERSION_CODE, BuildConfig.LUAJ_VERSION));
+        AccelerometerDataCache.setCacheDir(new File(getCacheDir(), "accelerometer"));
+    }
+
+    /**
+     * @return the time the application has been created, see {@link SystemClock#elapsedRealtime()}
+     */
+    public static long getStartTime() {
+        return startTime;
     }
 
     /**
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import nz.ac.auckland.lablet.misc.Hash;
+import nz.ac.auckland.lablet.misc.StreamHelper;
+import nz.ac.auckland.lablet.script.LuaScriptCache;
+import nz.ac.auckland.lablet.script.LuaScriptLoader;
+import nz.ac.auckland.lablet.script.ScriptMetaData;
+import nz.ac.auckland.lablet.utility.FileHelper;
+
+
+/**
+ * Helper class to manage Lab Activities (scripts).
+ */
+class ScriptDirs {
+
+    @NonNull
+    final static private String SCRIPTS_HASH_KEY = "bundled_scripts_hash";
+    @NonNull
+    final static private String SCRIPTS_APP_UPDATE_KEY = "bundled_scripts_app_update_time";
+    @NonNull
+    final static private String PREFERENCES_NAME = "lablet_preferences";
+
+    @Nullable
+    static File getResourceScriptDir(@Nullable Context context) {
+        if (context == null) {
+            return null;
+        }
+        return new File(FileHelper.getScriptDirectory(context), "demo");
+    }
+
+    @Nullable
+    static File getRemoteScriptDir(@Nullable Context context) {
+        if (context == null) {
+            return null;
+        }
+        return new File(FileHelper.getScriptDirectory(context), "remotes");
+    }
+
+    /**
+     * Copies the default Lab Activities from the app resources.
+     * <p>
+     * The copy is skipped if the app has not been updated since the last copy or if the content hashes of the bundled
+     * Lab Activities didn't change.
+     * </p>
+     *
+     * @param context the current context
+     * @param forceCopy overwrite existing Lab Activities
+     */
+    static void copyResourceScripts(@Nullable Context context, boolean forceCopy) {
+        if (context == null) {
+            return;
+        }
+        SharedPreferences settings = context.getSharedPreferences(PREFERENCES_NAME, 0);
+        long appUpdateTime = getAppUpdateTime(context);
+        if (!forceCopy && appUpdateTime != 0 && settings.getLong(SCRIPTS_APP_UPDATE_KEY, 0) == appUpdateTime) {
+            return;
+        }
+
+        File scriptDir = getResourceScriptDir(context);
+        if (!scriptDir.exists()) {
+            if (!scriptDir.mkdir()) {
+                return;
+            }
+        }
+        try {
+            // hash the bundled scripts to find out if they changed
+            List<String> scriptNames = new ArrayList<>();
+            List<byte[]> scriptContents = new ArrayList<>();
+            StringBuilder bundleHashes = new StringBuilder();
+            for (String file : context.getAssets().list("")) {
+                if (!FileHelper.isLuaFile(file)) {
+                    continue;
+                }
+                byte[] content = readAsset(context, file);
+                scriptNames.add(file);
+                scriptContents.add(content);
+                bundleHashes.append(file).append(':').append(Hash.sha1Hex(content)).append(';');
+            }
+            String bundleHash = Hash.sha1Hex(bundleHashes.toString());
+
+            if (forceCopy || !bundleHash.equals(settings.getString(SCRIPTS_HASH_KEY, ""))) {
+                for (int i = 0; i < scriptNames.size(); i++) {
+                    File scriptOutFile = new File(scriptDir, scriptNames.get(i));
+                    byte[] content = scriptContents.get(i);
+                    if (scriptOutFile.exists() && (!forceCopy || isSameContent(scriptOutFile, content))) {
+                        continue;
+                    }
+
+                    OutputStream outputStream = new BufferedOutputStream(
+                        new FileOutputStream(scriptOutFile, false));
+                    outputStream.write(content);
+                    outputStream.flush();
+                    outputStream.close();
+                }
+            }
+            settings.edit()
+                .putString(SCRIPTS_HASH_KEY, bundleHash)
+                .putLong(SCRIPTS_APP_UPDATE_KEY, appUpdateTime)
+                .apply();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static private long getAppUpdateTime(@NonNull Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    @NonNull
+    static private byte[] readAsset(@NonNull Context context, @NonNull String name) throws IOException {
+        InputStream inputStream = context.getAssets().open(name);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            StreamHelper.copy(inputStream, outputStream);
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    static private boolean isSameContent(@NonNull File file, @NonNull byte[] content) throws IOException {
+        if (file.length() != content.length) {
+            return false;
+        }
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length);
+            StreamHelper.copy(inputStream, outputStream);
+            return Arrays.equals(outputStream.toByteArray(), content);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Read available Lab Activities.
+     *
+     * @param scriptList found Lab Activities are places here
+     * @param context current context
+     */
+    static void readScriptList(@NonNull List<ScriptMetaData> scriptList, Context context) {
+        File[] scriptDirs = {
+            FileHelper.getScriptDirectory(context),
+            getResourceScriptDir(context),
+            getRemoteScriptDir(context)
+        };
+
+        for (File scriptDir : scriptDirs) {
+            if (scriptDir.isDirectory()) {
+                readScriptsFromDir(scriptDir, scriptList);
+            }
+        }
+
+        LuaScriptCache scriptCache = LuaScriptLoader.getScriptCache();
+        if (scriptCache != null) {
+            scriptCache.save();
+        }
+    }
+
+    /**
+     * Read available script from a certain directory.
+     *
+     * @param scriptDir the directory that should be searched
+     * @param scripts found Lab Activities are places here
+     */
+    static void readScriptsFromDir(@NonNull File scriptDir, @NonNull List<ScriptMetaData> scripts) {
+        File[] children = scriptDir.listFiles();
+        for (File child : children != null ? children : new File[0]) {
+            if (FileHelper.isLuaFile(child.getName())) {
+                ScriptMetaData metaData = LuaScriptLoader.getScriptMetaData(child);
+                if (metaData != null) {
+                    scripts.add(metaData);
+                }
+            }
+        }
+    }
+}
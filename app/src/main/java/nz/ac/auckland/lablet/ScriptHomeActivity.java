@@ -9,13 +9,13 @@ package nz.ac.auckland.lablet;
 
 import android.app.Activity;
 import android.app.AlertDialog;
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -24,18 +24,12 @@ import android.widget.ArrayAdapter;
 import android.widget.CheckBox;
 import android.widget.ListView;
 import android.widget.PopupMenu;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import nz.ac.auckland.lablet.misc.NaturalOrderComparator;
 import nz.ac.auckland.lablet.misc.StorageLib;
-import nz.ac.auckland.lablet.script.LuaScriptLoader;
 import nz.ac.auckland.lablet.script.Script;
 import nz.ac.auckland.lablet.script.ScriptMetaData;
 import nz.ac.auckland.lablet.script.ScriptRunnerActivity;
@@ -47,127 +41,6 @@ import nz.ac.auckland.lablet.views.InfoBarBackgroundDrawable;
 import nz.ac.auckland.lablet.views.InfoSideBar;
 
 
-/**
- * Helper class to manage Lab Activities (scripts).
- */
-class ScriptDirs {
-
-    @NonNull
-    final static private String SCRIPTS_COPIED_KEY = "scripts_copied_v1";
-    @NonNull
-    final static private String PREFERENCES_NAME = "lablet_preferences";
-
-    @Nullable
-    static private File getResourceScriptDir(@Nullable Context context) {
-        if (context == null) {
-            return null;
-        }
-        return new File(FileHelper.getScriptDirectory(context), "demo");
-    }
-
-    @Nullable
-    static File getRemoteScriptDir(@Nullable Context context) {
-        if (context == null) {
-            return null;
-        }
-        return new File(FileHelper.getScriptDirectory(context), "remotes");
-    }
-
-    /**
-     * Copies the default Lab Activities from the app resources.
-     *
-     * @param activity the current activity
-     * @param forceCopy overwrite existing Lab Activities
-     */
-    static void copyResourceScripts(@Nullable Activity activity, boolean forceCopy) {
-        if (activity == null) {
-            return;
-        }
-        SharedPreferences settings = activity.getSharedPreferences(PREFERENCES_NAME, 0);
-        if (!forceCopy && settings.getBoolean(SCRIPTS_COPIED_KEY, false)) {
-            return;
-        }
-
-        File scriptDir = getResourceScriptDir(activity);
-        if (!scriptDir.exists()) {
-            if (!scriptDir.mkdir()) {
-                return;
-            }
-        }
-        try {
-            String[] files = activity.getAssets().list("");
-            for (String file : files) {
-                if (!FileHelper.isLuaFile(file)) {
-                    continue;
-                }
-                InputStream inputStream = activity.getAssets().open(file);
-                File scriptOutFile = new File(scriptDir, file);
-                if (!forceCopy && scriptOutFile.exists()) {
-                    continue;
-                }
-
-                OutputStream outputStream = new BufferedOutputStream(
-                    new FileOutputStream(scriptOutFile, false));
-                byte[] buffer = new byte[16384];
-                while (true) {
-                    int n = inputStream.read(buffer);
-                    if (n <= -1) {
-                        break;
-                    }
-                    outputStream.write(buffer, 0, n);
-                }
-
-                inputStream.close();
-                outputStream.flush();
-                outputStream.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        settings.edit().putBoolean(SCRIPTS_COPIED_KEY, true).apply();
-    }
-
-
-    /**
-     * Read available Lab Activities.
-     *
-     * @param scriptList found Lab Activities are places here
-     * @param context current context
-     */
-    static void readScriptList(@NonNull List<ScriptMetaData> scriptList, Context context) {
-        File[] scriptDirs = {
-            FileHelper.getScriptDirectory(context),
-            getResourceScriptDir(context),
-            getRemoteScriptDir(context)
-        };
-
-        for (File scriptDir : scriptDirs) {
-            if (scriptDir.isDirectory()) {
-                readScriptsFromDir(scriptDir, scriptList);
-            }
-        }
-    }
-
-    /**
-     * Read available script from a certain directory.
-     *
-     * @param scriptDir the directory that should be searched
-     * @param scripts found Lab Activities are places here
-     */
-    static void readScriptsFromDir(@NonNull File scriptDir, @NonNull List<ScriptMetaData> scripts) {
-        File[] children = scriptDir.listFiles();
-        for (File child : children != null ? children : new File[0]) {
-            if (FileHelper.isLuaFile(child.getName())) {
-                ScriptMetaData metaData = LuaScriptLoader.getScriptMetaData(child);
-                if (metaData != null) {
-                    scripts.add(metaData);
-                }
-            }
-        }
-    }
-}
-
 /**
  * Main or home activity to manage scripts (lab activities).
  *
@@ -177,6 +50,9 @@ public class ScriptHomeActivity extends Activity {
 
     final static public String REMOTE_TYPE = "remote";
     final static private int START_SCRIPT = 1;
+    final static private String TAG = "ScriptHomeActivity";
+    // the cold start time is only reported for the first script list of the process
+    static private boolean coldStartReported = false;
 
     @NonNull
     private List<ScriptMetaData> scriptList = new ArrayList<>();
@@ -197,6 +73,10 @@ public class ScriptHomeActivity extends Activity {
     private AlertDialog infoAlertBox = null;
     @Nullable
     private CheckBox selectAllCheckBox = null;
+    @Nullable
+    private ScriptRepository scriptRepository = null;
+    // true once a scan finished, i.e., the script list is complete
+    private boolean scriptListScanned = false;
 
     @Override
     public boolean onCreateOptionsMenu(@NonNull Menu menu) {
@@ -371,7 +251,40 @@ public class ScriptHomeActivity extends Activity {
 
         checkBoxListEntryListener = entry -> updateSelectedMenuItem();
 
-        ScriptDirs.copyResourceScripts(this, false);
+        // also copies the bundled Lab Activities
+        scriptRepository = new ScriptRepository(new ScriptRepository.IListener() {
+            @Override
+            public void onScriptsFound(@NonNull List<ScriptMetaData> scripts) {
+                // only fill the list progressively on the first scan; rescans swap in the complete list when done
+                if (scriptListScanned) {
+                    return;
+                }
+                scriptList.addAll(scripts);
+                refreshScriptListView();
+            }
+
+            @Override
+            public void onScanFinished(@NonNull List<ScriptMetaData> scripts, long duration) {
+                scriptListScanned = true;
+                scriptList.clear();
+                scriptList.addAll(scripts);
+                refreshScriptListView();
+                Log.i(TAG, "script list scanned in " + duration + "ms");
+                if (!coldStartReported) {
+                    coldStartReported = true;
+                    Log.i(TAG, "cold start to script list: "
+                        + (SystemClock.elapsedRealtime() - Lablet.getStartTime()) + "ms");
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        if (scriptRepository != null) {
+            scriptRepository.release();
+        }
+        super.onDestroy();
     }
 
     private void showScriptMenu() {
@@ -465,9 +378,17 @@ public class ScriptHomeActivity extends Activity {
     }
 
     private void updateScriptList() {
-        scriptList.clear();
-        ScriptDirs.readScriptList(scriptList, this);
+        // drop the partial result of a cancelled first scan; a complete list stays until the new one is ready
+        if (!scriptListScanned) {
+            scriptList.clear();
+            refreshScriptListView();
+        }
+        if (scriptRepository != null) {
+            scriptRepository.scan(this);
+        }
+    }
 
+    private void refreshScriptListView() {
         Collections.sort(scriptList,
             (metaData, metaData2) -> metaData.getTitle().compareTo(metaData2.getTitle()));
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import nz.ac.auckland.lablet.script.LuaScriptCache;
+import nz.ac.auckland.lablet.script.LuaScriptLoader;
+import nz.ac.auckland.lablet.script.ScriptMetaData;
+import nz.ac.auckland.lablet.utility.FileHelper;
+
+
+/**
+ * Scans the Lab Activity (script) directories in the background.
+ * <p>
+ * The user, demo and remote directories are scanned one after another on a single background thread; the meta data
+ * comes from the synchronized {@link LuaScriptCache}, so more scan threads would only wait for each other. Found
+ * scripts are reported to the listener on the UI thread while the scan is still running. The complete list is built
+ * on the scan thread and handed over when the scan finishes, so that a rescan can replace the old list in one go.
+ * The bundled Lab Activities are copied before the demo directory is scanned, see
+ * {@link ScriptDirs#copyResourceScripts(Context, boolean)}. Starting a new scan cancels the running one, i.e., the
+ * listener only receives results of the latest scan.
+ * </p>
+ */
+class ScriptRepository {
+    interface IListener {
+        /**
+         * @param scripts newly found scripts
+         */
+        void onScriptsFound(@NonNull List<ScriptMetaData> scripts);
+
+        /**
+         * @param scripts all scripts found by the scan
+         * @param duration time of the scan in milli seconds
+         */
+        void onScanFinished(@NonNull List<ScriptMetaData> scripts, long duration);
+    }
+
+    final private ExecutorService executor = Executors.newSingleThreadExecutor();
+    final private Handler uiHandler = new Handler(Looper.getMainLooper());
+    final private IListener listener;
+    // incremented for every scan; results of older scans are dropped
+    final private AtomicInteger scanId = new AtomicInteger(0);
+
+    ScriptRepository(@NonNull IListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts a new scan and cancels the running one.
+     *
+     * @param context the current context
+     */
+    void scan(@NonNull Context context) {
+        final Context appContext = context.getApplicationContext();
+        final int id = scanId.incrementAndGet();
+        final long startTime = SystemClock.elapsedRealtime();
+
+        executor.execute(() -> {
+            if (scanId.get() != id) {
+                return;
+            }
+            final List<ScriptMetaData> scripts = new ArrayList<>();
+            scanDir(id, FileHelper.getScriptDirectory(appContext), scripts);
+            ScriptDirs.copyResourceScripts(appContext, false);
+            scanDir(id, ScriptDirs.getResourceScriptDir(appContext), scripts);
+            scanDir(id, ScriptDirs.getRemoteScriptDir(appContext), scripts);
+            if (scanId.get() != id) {
+                return;
+            }
+
+            LuaScriptCache scriptCache = LuaScriptLoader.getScriptCache();
+            if (scriptCache != null) {
+                scriptCache.save();
+            }
+            final long duration = SystemClock.elapsedRealtime() - startTime;
+            uiHandler.post(() -> {
+                if (scanId.get() == id) {
+                    listener.onScanFinished(scripts, duration);
+                }
+            });
+        });
+    }
+
+    /**
+     * Cancels the running scan and stops the scan thread.
+     */
+    void release() {
+        scanId.incrementAndGet();
+        executor.shutdown();
+    }
+
+    private void scanDir(int id, @NonNull File scriptDir, @NonNull List<ScriptMetaData> scripts) {
+        if (scanId.get() != id || !scriptDir.isDirectory()) {
+            return;
+        }
+        File[] children = scriptDir.listFiles();
+        for (File child : children != null ? children : new File[0]) {
+            if (scanId.get() != id) {
+                return;
+            }
+            if (!FileHelper.isLuaFile(child.getName())) {
+                continue;
+            }
+            ScriptMetaData metaData = LuaScriptLoader.getScriptMetaData(child);
+            if (metaData != null) {
+                scripts.add(metaData);
+                publish(id, metaData);
+            }
+        }
+    }
+
+    private void publish(final int id, @NonNull ScriptMetaData metaData) {
+        final List<ScriptMetaData> scripts = new ArrayList<>();
+        scripts.add(metaData);
+        uiHandler.post(() -> {
+            if (scanId.get() == id) {
+                listener.onScriptsFound(scripts);
+            }
+        });
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.accelerometer;
+
+import nz.ac.auckland.lablet.misc.BackgroundSaver;
+import nz.ac.auckland.lablet.misc.FloatArrayList;
+import nz.ac.auckland.lablet.misc.Hash;
+import nz.ac.auckland.lablet.misc.LongArrayList;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+
+/**
+ * Binary cache of the accelerometer csv file.
+ * <p>
+ * The cache stores the parsed columns in binary form. The cache files are kept in the app cache directory, not in the
+ * experiment directory, so they are not exported or copied with the experiment. The file name is derived from the path
+ * of the csv file and the cache is only valid for the size and the modification time of the csv file, i.e., it is
+ * ignored as soon as the csv file changes.
+ * </p>
+ */
+public class AccelerometerDataCache {
+    final static private int MAGIC = 0x4c41434d;
+    final static private int VERSION = 1;
+    // magic, version, csv size, csv modification time, row count
+    final static private int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+    // time as long plus three floats
+    final static private int ROW_SIZE = 8 + 3 * 4;
+
+    static private File cacheDir = null;
+
+    /**
+     * @param dir directory for the cache files, e.g., in the app cache directory, or null to disable the cache
+     */
+    static public void setCacheDir(File dir) {
+        synchronized (AccelerometerDataCache.class) {
+            if (dir != null && !dir.exists())
+                dir.mkdirs();
+            cacheDir = dir;
+        }
+    }
+
+    /**
+     * @return the cache file or null if the cache is disabled
+     */
+    static private File getCacheFile(File csvFile) {
+        synchronized (AccelerometerDataCache.class) {
+            if (cacheDir == null)
+                return null;
+            return new File(cacheDir, Hash.sha1Hex(csvFile.getAbsolutePath()) + ".cache");
+        }
+    }
+
+    /**
+     * Loads the columns from the cache.
+     *
+     * @return false if there is no valid cache for the csv file
+     */
+    static public boolean load(File csvFile, LongArrayList time, FloatArrayList x, FloatArrayList y,
+                               FloatArrayList z) {
+        File cacheFile = getCacheFile(csvFile);
+        if (cacheFile == null || !cacheFile.exists() || !csvFile.exists())
+            return false;
+
+        try {
+            FileInputStream inputStream = new FileInputStream(cacheFile);
+            try {
+                FileChannel channel = inputStream.getChannel();
+                long fileSize = channel.size();
+                if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE)
+                    return false;
+                ByteBuffer buffer = ByteBuffer.allocate((int)fileSize);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0)
+                        return false;
+                }
+                buffer.flip();
+
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                    return false;
+                if (buffer.getLong() != csvFile.length() || buffer.getLong() != csvFile.lastModified())
+                    return false;
+                int rowCount = buffer.getInt();
+                if (rowCount < 0 || buffer.remaining() != (long)rowCount * ROW_SIZE)
+                    return false;
+
+                long[] timeArray = new long[rowCount];
+                buffer.asLongBuffer().get(timeArray);
+                buffer.position(buffer.position() + rowCount * 8);
+                float[][] floatArrays = new float[3][rowCount];
+                for (float[] array : floatArrays) {
+                    buffer.asFloatBuffer().get(array);
+                    buffer.position(buffer.position() + rowCount * 4);
+                }
+
+                time.setArray(timeArray, rowCount);
+                x.setArray(floatArrays[0], rowCount);
+                y.setArray(floatArrays[1], rowCount);
+                z.setArray(floatArrays[2], rowCount);
+                return true;
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the cache for the current state of the csv file.
+     */
+    static public void save(File csvFile, LongArrayList time, FloatArrayList x, FloatArrayList y,
+                            FloatArrayList z) {
+        File cacheFile = getCacheFile(csvFile);
+        if (cacheFile == null)
+            return;
+        try {
+            BackgroundSaver.writeAtomically(cacheFile, createContent(csvFile, time, x, y, z));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the cache on the {@link BackgroundSaver} thread after the csv file has been saved. The cache is keyed by
+     * the csv file as it is when the cache is written. If the csv file could not be saved no cache is written.
+     *
+     * @param csvSave the background save of the csv file, must have been scheduled with no delay
+     * @return future that is done when the cache has been written or null if the cache is disabled
+     */
+    static public Future<Void> saveInBackground(File csvFile, final Future<Void> csvSave, LongArrayList time,
+                                                FloatArrayList x, FloatArrayList y, FloatArrayList z) {
+        File cacheFile = getCacheFile(csvFile);
+        if (cacheFile == null)
+            return null;
+        final BackgroundSaver.IContent content = createContent(csvFile, time, x, y, z);
+        return BackgroundSaver.get().save(cacheFile, new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                // the saver thread runs the csv save first
+                if (!csvSave.isDone())
+                    throw new IOException("csv file has not been saved yet");
+                try {
+                    csvSave.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IOException("csv file has not been saved", e);
+                }
+                content.write(outputStream);
+            }
+        }, 0);
+    }
+
+    /**
+     * Waits till a background save of the cache is finished.
+     */
+    static public void waitForSave(File csvFile, long timeout) {
+        File cacheFile = getCacheFile(csvFile);
+        if (cacheFile != null)
+            BackgroundSaver.get().waitFor(cacheFile, timeout);
+    }
+
+    static private BackgroundSaver.IContent createContent(final File csvFile, final LongArrayList time,
+                                                          final FloatArrayList x, final FloatArrayList y,
+                                                          final FloatArrayList z) {
+        return new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                int rowCount = time.size();
+                ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + rowCount * ROW_SIZE);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(csvFile.length());
+                buffer.putLong(csvFile.lastModified());
+                buffer.putInt(rowCount);
+                buffer.asLongBuffer().put(time.getArray(), 0, rowCount);
+                buffer.position(buffer.position() + rowCount * 8);
+                for (FloatArrayList list : new FloatArrayList[]{x, y, z}) {
+                    buffer.asFloatBuffer().put(list.getArray(), 0, rowCount);
+                    buffer.position(buffer.position() + rowCount * 4);
+                }
+                outputStream.write(buffer.array(), 0, buffer.position());
+            }
+        };
+    }
+}
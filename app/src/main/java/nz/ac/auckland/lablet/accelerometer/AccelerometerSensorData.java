@@ -8,28 +8,33 @@
 package nz.ac.auckland.lablet.accelerometer;
 
 import android.os.Bundle;
-import au.com.bytecode.opencsv.CSV;
-import au.com.bytecode.opencsv.CSVReadProc;
 import nz.ac.auckland.lablet.experiment.AbstractSensorData;
+import nz.ac.auckland.lablet.experiment.ExperimentHelper;
 import nz.ac.auckland.lablet.experiment.IExperimentSensor;
+import nz.ac.auckland.lablet.misc.BackgroundSaver;
+import nz.ac.auckland.lablet.misc.FloatArrayList;
+import nz.ac.auckland.lablet.misc.LongArrayList;
+import nz.ac.auckland.lablet.misc.NumericCSVReader;
 import nz.ac.auckland.lablet.misc.WeakListenable;
+import nz.ac.auckland.lablet.views.table.CSVStreamWriter;
 import nz.ac.auckland.lablet.views.table.CSVWriter;
 import nz.ac.auckland.lablet.views.table.ColumnDataTableAdapter;
 import nz.ac.auckland.lablet.views.table.DataTableColumn;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Future;
 
 
 /**
  * Accelerometer sensor data.
  */
 public class AccelerometerSensorData extends AbstractSensorData {
-    private List<Number> timeValues = new ArrayList<>();
-    private List<Number> xValues = new ArrayList<>();
-    private List<Number> yValues = new ArrayList<>();
-    private List<Number> zValues = new ArrayList<>();
+    private LongArrayList timeValues = new LongArrayList();
+    private FloatArrayList xValues = new FloatArrayList();
+    private FloatArrayList yValues = new FloatArrayList();
+    private FloatArrayList zValues = new FloatArrayList();
     private WeakListenable<IListener> weakListenable = new WeakListenable<>();
 
     /**
@@ -41,6 +46,7 @@ public class AccelerometerSensorData extends AbstractSensorData {
     }
 
     static final public String DATA_TYPE = "Vector4D/Accelerometer";
+    static final private String DATA_FILE_NAME = "data.csv";
 
     @Override
     public String getDataType() {
@@ -89,54 +95,97 @@ public class AccelerometerSensorData extends AbstractSensorData {
         public String getStringValue(int index) {
             return Long.toString(getValue(index).longValue());
         }
+
+        @Override
+        public void appendValue(CSVStreamWriter writer, int index) {
+            writer.append(getValue(index).longValue());
+        }
     }
 
     @Override
     public void saveExperimentData(File storageDir) throws IOException {
         super.saveExperimentData(storageDir);
 
-        ColumnDataTableAdapter dataTableAdapter = new ColumnDataTableAdapter();
-        dataTableAdapter.addColumn(new LongDataColumn(timeValues, "time [ms]"));
-        dataTableAdapter.addColumn(new DataColumn(xValues, "x-acceleration [m/s^2]"));
-        dataTableAdapter.addColumn(new DataColumn(yValues, "y-acceleration [m/s^2]"));
-        dataTableAdapter.addColumn(new DataColumn(zValues, "z-acceleration [m/s^2]"));
-        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
-                new File(storageDir, "data.csv"))));
-        CSVWriter.writeTable(dataTableAdapter, writer, ',');
-        writer.close();
+        // the files are written in the background, take a snapshot of the data
+        final LongArrayList time = copy(timeValues);
+        final FloatArrayList x = copy(xValues);
+        final FloatArrayList y = copy(yValues);
+        final FloatArrayList z = copy(zValues);
+
+        final ColumnDataTableAdapter dataTableAdapter = new ColumnDataTableAdapter();
+        dataTableAdapter.addColumn(new LongDataColumn(time, "time [ms]"));
+        dataTableAdapter.addColumn(new DataColumn(x, "x-acceleration [m/s^2]"));
+        dataTableAdapter.addColumn(new DataColumn(y, "y-acceleration [m/s^2]"));
+        dataTableAdapter.addColumn(new DataColumn(z, "z-acceleration [m/s^2]"));
+        File dataFile = new File(storageDir, DATA_FILE_NAME);
+        Future<Void> csvSave = BackgroundSaver.get().save(dataFile, new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream), CSVStreamWriter.BUFFER_SIZE);
+                CSVWriter.writeTable(dataTableAdapter, writer, ',');
+                writer.flush();
+            }
+        }, 0);
+        // the cache is written after the csv file and only if the csv file has been saved
+        AccelerometerDataCache.saveInBackground(dataFile, csvSave, time, x, y, z);
+    }
+
+    static private LongArrayList copy(LongArrayList list) {
+        LongArrayList copy = new LongArrayList(0);
+        copy.setArray(Arrays.copyOf(list.getArray(), list.size()), list.size());
+        return copy;
+    }
+
+    static private FloatArrayList copy(FloatArrayList list) {
+        FloatArrayList copy = new FloatArrayList(0);
+        copy.setArray(Arrays.copyOf(list.getArray(), list.size()), list.size());
+        return copy;
     }
 
     @Override
     public boolean loadExperimentData(Bundle bundle, File storageDir) {
         clear();
-        final float[] dataBuffer = new float[3];
-        InputStream inputStream;
+        File dataFile = new File(storageDir, DATA_FILE_NAME);
+        // the data may just have been recorded and is still being saved
+        BackgroundSaver.get().waitFor(dataFile, ExperimentHelper.SAVE_TIMEOUT);
+        AccelerometerDataCache.waitForSave(dataFile, ExperimentHelper.SAVE_TIMEOUT);
+        if (!AccelerometerDataCache.load(dataFile, timeValues, xValues, yValues, zValues)) {
+            try {
+                loadCSV(dataFile);
+                AccelerometerDataCache.save(dataFile, timeValues, xValues, yValues, zValues);
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return super.loadExperimentData(bundle, storageDir);
+    }
+
+    private void loadCSV(File dataFile) throws IOException {
+        InputStream inputStream = new FileInputStream(dataFile);
         try {
-            inputStream = new BufferedInputStream(new FileInputStream(new File(storageDir, "data.csv")));
-            CSV csv = CSV.separator(',').quote('"').create();
-            csv.read(inputStream, new CSVReadProc() {
+            NumericCSVReader reader = new NumericCSVReader(',');
+            // ignore header
+            reader.read(inputStream, 1, new NumericCSVReader.IRowProcessor() {
                 @Override
-                public void procRow(int rowIndex, String... strings) {
-                    // ignore header
-                    if (rowIndex ==  0)
+                public void onRow(double[] values, int count) {
+                    if (count != 4)
                         return;
-                    if (strings.length != 4)
+                    // the time is written in integer ms, skip rows with another time instead of truncating it
+                    long time = (long)values[0];
+                    if (time != values[0])
                         return;
-                    long time = Long.parseLong(strings[0]);
-                    dataBuffer[0] = Float.parseFloat(strings[1]);
-                    dataBuffer[1] = Float.parseFloat(strings[2]);
-                    dataBuffer[2] = Float.parseFloat(strings[3]);
-                    addData(time, dataBuffer);
+                    timeValues.addLong(time);
+                    xValues.addFloat((float)values[1]);
+                    yValues.addFloat((float)values[2]);
+                    zValues.addFloat((float)values[3]);
                 }
             });
+        } finally {
             inputStream.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-
-        return super.loadExperimentData(bundle, storageDir);
     }
 
     public void addListener(IListener listener) {
@@ -148,13 +197,12 @@ public class AccelerometerSensorData extends AbstractSensorData {
     }
 
     private void notifyDataAdded(long time, float[] data) {
-        for (IListener listener : weakListenable.getListeners())
-            listener.onDataAdded(time, data);
+        // called for every sample, pass the sample to a non-capturing lambda so that no visitor is allocated
+        weakListenable.forEachListener(time, data, (listener, t, d) -> listener.onDataAdded(t, d));
     }
 
     private void notifyDataCleared() {
-        for (IListener listener : weakListenable.getListeners())
-            listener.onDataCleared();
+        weakListenable.forEachListener(listener -> listener.onDataCleared());
     }
 
     public int size() {
@@ -165,10 +213,10 @@ public class AccelerometerSensorData extends AbstractSensorData {
         if (data.length != 3)
             throw new IllegalArgumentException();
 
-        timeValues.add(time);
-        xValues.add(data[0]);
-        yValues.add(data[1]);
-        zValues.add(data[2]);
+        timeValues.addLong(time);
+        xValues.addFloat(data[0]);
+        yValues.addFloat(data[1]);
+        zValues.addFloat(data[2]);
         notifyDataAdded(time, data);
     }
 
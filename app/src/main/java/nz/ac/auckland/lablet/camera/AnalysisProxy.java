@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera;
+
+import android.util.Log;
+import nz.ac.auckland.lablet.camera.recorder.VideoTranscoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * All-intra copy of a video that is used for the frame by frame analysis.
+ * <p>
+ * Recorded (MediaRecorder) and imported videos usually have long GOPs, i.e., a seek has to decode all frames from the
+ * previous key frame on. In the proxy every frame is a key frame, thus every seek only decodes a single frame.
+ * </p>
+ * <p>
+ * The proxy is stored next to the video in the experiment directory, e.g., video.mp4 gets a video_analysis_10fps.mp4
+ * or a video_analysis_allfps.mp4 if all frames are kept. The proxy only keeps the frames of the default analysis frame
+ * rate (see {@link #chooseProxyFrameRate(int)}); if the analysis frame rate is changed to one that is not on the frame
+ * grid of the proxy the original video is used. The proxy is written to a temporary file and only renamed when
+ * complete.
+ * </p>
+ * <p>
+ * Creating a proxy needs a decoder and an encoder. To not compete with the decoders of a running analysis (view,
+ * thumbnails and tracking) proxies are only created while no analysis is running, see
+ * {@link #onAnalysisStarted()}. A proxy that is being created when an analysis starts is canceled and created again
+ * later.
+ * </p>
+ * <p>
+ * The proxy can always be recreated from the video, thus it is not exported with the experiment (see
+ * {@link #isProxyFile(File)}).
+ * </p>
+ */
+public class AnalysisProxy {
+    final static private String TAG = "AnalysisProxy";
+    final static private String PROXY_INFIX = "_analysis_";
+    final static private String PROXY_SUFFIX = "fps.mp4";
+    final static private String ALL_FRAMES = "all";
+    final static private String TEMP_SUFFIX = ".part";
+    // tolerance when checking if the analysis frames are on the frame grid of the proxy, in frames
+    final static private float GRID_TOLERANCE = 0.01f;
+
+    final static private ExecutorService executor = Executors.newSingleThreadExecutor();
+    // videos that wait for a proxy and their proxy frame rate; guarded by the class lock
+    final static private Map<File, Integer> pendingVideos = new LinkedHashMap<>();
+    static private VideoTranscoder runningTranscoder = null;
+    static private boolean transcoding = false;
+    static private int runningAnalyses = 0;
+
+    /**
+     * Must be called when an analysis opens the video decoders. Proxies are not created while an analysis is running.
+     */
+    static synchronized public void onAnalysisStarted() {
+        runningAnalyses++;
+        if (runningTranscoder != null)
+            runningTranscoder.cancel();
+    }
+
+    /**
+     * Must be called when an analysis has released its video decoders.
+     */
+    static synchronized public void onAnalysisStopped() {
+        if (runningAnalyses > 0)
+            runningAnalyses--;
+        startNext();
+    }
+
+    static private String getBaseName(File videoFile) {
+        String name = videoFile.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0)
+            name = name.substring(0, dot);
+        return name;
+    }
+
+    /**
+     * @param videoFile the original video
+     * @param frameRate the proxy frame rate or 0 if all frames are kept
+     * @return the proxy file
+     */
+    static public File getProxyFile(File videoFile, int frameRate) {
+        String rate = frameRate > 0 ? String.valueOf(frameRate) : ALL_FRAMES;
+        return new File(videoFile.getParentFile(), getBaseName(videoFile) + PROXY_INFIX + rate + PROXY_SUFFIX);
+    }
+
+    /**
+     * Finds a complete proxy of a video.
+     *
+     * @param videoFile the original video
+     * @return the proxy or null if there is none
+     */
+    static public File findProxy(File videoFile) {
+        File dir = videoFile.getParentFile();
+        if (dir == null)
+            return null;
+        String prefix = getBaseName(videoFile) + PROXY_INFIX;
+        File[] files = dir.listFiles();
+        if (files == null)
+            return null;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(PROXY_SUFFIX) && getProxyFrameRate(file) >= 0)
+                return file;
+        }
+        return null;
+    }
+
+    /**
+     * @param proxyFile the proxy
+     * @return the frame rate of the proxy, 0 if all frames are kept or -1 if the file is not a proxy
+     */
+    static public int getProxyFrameRate(File proxyFile) {
+        String name = proxyFile.getName();
+        int start = name.lastIndexOf(PROXY_INFIX);
+        if (start < 0 || !name.endsWith(PROXY_SUFFIX))
+            return -1;
+        String rate = name.substring(start + PROXY_INFIX.length(), name.length() - PROXY_SUFFIX.length());
+        if (rate.equals(ALL_FRAMES))
+            return 0;
+        try {
+            return Integer.parseInt(rate);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param file a file in an experiment directory
+     * @return true if the file is a (complete or incomplete) proxy
+     */
+    static public boolean isProxyFile(File file) {
+        String name = file.getName();
+        if (name.endsWith(TEMP_SUFFIX))
+            name = name.substring(0, name.length() - TEMP_SUFFIX.length());
+        return getProxyFrameRate(new File(name)) >= 0;
+    }
+
+    /**
+     * Checks if the proxy shows the same frames as the original video for all analysis frames.
+     * <p>
+     * A proxy that keeps all frames can always be used. Otherwise, the analysis frame rate must divide the proxy frame
+     * rate and the analysis start must lie on the frame grid of the proxy.
+     * </p>
+     *
+     * @param proxyFile the proxy
+     * @param timeData the analysis times or null to only accept proxies that work for all analysis settings
+     * @return true if the proxy can be used
+     */
+    static public boolean isUsable(File proxyFile, CalibrationVideoTimeData timeData) {
+        int proxyFrameRate = getProxyFrameRate(proxyFile);
+        if (proxyFrameRate == 0)
+            return true;
+        if (proxyFrameRate < 0 || timeData == null)
+            return false;
+        float frameRatio = proxyFrameRate / timeData.getAnalysisFrameRate();
+        if (Math.abs(frameRatio - Math.round(frameRatio)) > GRID_TOLERANCE)
+            return false;
+        float startFrame = timeData.getAnalysisVideoStart() * proxyFrameRate / 1000;
+        return Math.abs(startFrame - Math.round(startFrame)) <= GRID_TOLERANCE;
+    }
+
+    /**
+     * @param videoFrameRate the frame rate of the video
+     * @return the frame rate of a new proxy, i.e., the default analysis frame rate of the video, or 0 if all frames
+     * are kept
+     */
+    static int chooseProxyFrameRate(int videoFrameRate) {
+        float analysisFrameRate = FrameRateHelper.getBestPossibleAnalysisFrameRate(videoFrameRate,
+                FrameRateHelper.DEFAULT_ANALYSIS_FRAME_RATE);
+        return analysisFrameRate >= videoFrameRate ? 0 : Math.round(analysisFrameRate);
+    }
+
+    /**
+     * Creates a proxy for the video on a background thread if there is none yet.
+     * <p>
+     * The proxy is created once no analysis is running.
+     * </p>
+     *
+     * @param videoFile the original video
+     * @param videoFrameRate the frame rate of the video
+     */
+    static synchronized public void createInBackground(File videoFile, int videoFrameRate) {
+        if (findProxy(videoFile) != null)
+            return;
+
+        pendingVideos.put(videoFile, chooseProxyFrameRate(videoFrameRate));
+        startNext();
+    }
+
+    /**
+     * Starts the next pending proxy if no analysis and no other proxy is running. Must be called with the class lock.
+     */
+    static private void startNext() {
+        if (runningAnalyses > 0 || transcoding || pendingVideos.isEmpty())
+            return;
+        Map.Entry<File, Integer> next = pendingVideos.entrySet().iterator().next();
+        final File videoFile = next.getKey();
+        final int proxyFrameRate = next.getValue();
+        pendingVideos.remove(videoFile);
+        transcoding = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean canceled = !create(videoFile, proxyFrameRate);
+                synchronized (AnalysisProxy.class) {
+                    transcoding = false;
+                    // try again when the analysis is done
+                    if (canceled && !pendingVideos.containsKey(videoFile))
+                        pendingVideos.put(videoFile, proxyFrameRate);
+                    startNext();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return false if the transcoding has been canceled by an analysis
+     */
+    static private boolean create(File videoFile, int proxyFrameRate) {
+        if (findProxy(videoFile) != null || !videoFile.exists())
+            return true;
+        File target = getProxyFile(videoFile, proxyFrameRate);
+        File tempFile = new File(target.getPath() + TEMP_SUFFIX);
+        boolean done = false;
+        boolean canceled = false;
+        try {
+            VideoTranscoder transcoder = new VideoTranscoder(videoFile, tempFile, proxyFrameRate);
+            synchronized (AnalysisProxy.class) {
+                // an analysis may have been started in the meantime
+                if (runningAnalyses > 0)
+                    return false;
+                runningTranscoder = transcoder;
+            }
+            long startTime = System.currentTimeMillis();
+            canceled = !transcoder.transcode();
+            done = !canceled && tempFile.renameTo(target);
+            if (done)
+                Log.i(TAG, "analysis proxy " + target.getName() + " created in "
+                        + (System.currentTimeMillis() - startTime) + "ms");
+        } catch (IOException e) {
+            Log.w(TAG, "failed to create analysis proxy: " + e.getMessage());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "failed to create analysis proxy: " + e.getMessage());
+        } finally {
+            synchronized (AnalysisProxy.class) {
+                runningTranscoder = null;
+            }
+            if (!done)
+                tempFile.delete();
+        }
+        return !canceled;
+    }
+}
@@ -7,11 +7,17 @@
  */
 package nz.ac.auckland.lablet.camera;
 
+import java.util.Arrays;
+
 
 /**
  * Provides frame times depending on the analysis range and analysis frame rate.
  *
  * The time at frame zero is always 0.
+ * <p>
+ * The frame times are kept in a table that is only rebuilt when the analysis frame rate or range changes. Times
+ * outside the analysis range are calculated on the fly.
+ * </p>
  */
 public class CalibrationVideoTimeData implements ITimeData {
     protected int numberOfFrames;
@@ -22,6 +28,11 @@ public class CalibrationVideoTimeData implements ITimeData {
     protected float analysisVideoStart;
     protected float analysisVideoEnd;
 
+    private float[] frameTimes = new float[0];
+    // settings the frame time table has been built for
+    private float tableFrameRate = -1;
+    private float tableVideoStart = -1;
+
     public CalibrationVideoTimeData(long videoDuration) {
         this.videoDuration = videoDuration;
 
@@ -41,14 +52,54 @@ public class CalibrationVideoTimeData implements ITimeData {
         return getFrameTime(Math.round(index));
     }
 
+    @Override
+    public void getTimes(int start, int count, float[] out, int outOffset) {
+        int end = start + count;
+        int tableStart = Math.min(Math.max(start, 0), end);
+        int tableEnd = Math.max(Math.min(end, frameTimes.length), tableStart);
+        for (int frame = start; frame < tableStart; frame++)
+            out[outOffset + frame - start] = calculateFrameTime(frame);
+        if (tableEnd > tableStart)
+            System.arraycopy(frameTimes, tableStart, out, outOffset + tableStart - start, tableEnd - tableStart);
+        for (int frame = tableEnd; frame < end; frame++)
+            out[outOffset + frame - start] = calculateFrameTime(frame);
+    }
+
     public int getNumberOfFrames() {
         return numberOfFrames;
     }
 
     protected float getFrameTime(int frame) {
+        if (frame >= 0 && frame < frameTimes.length)
+            return frameTimes[frame];
+        return calculateFrameTime(frame);
+    }
+
+    private float calculateFrameTime(int frame) {
         return analysisVideoStart + (float)1000 / analysisFrameRate * frame;
     }
 
+    private void updateFrameTimes() {
+        int size = Math.max(0, numberOfFrames);
+        if (tableFrameRate == analysisFrameRate && tableVideoStart == analysisVideoStart) {
+            // the times don't change, only the number of frames might
+            if (frameTimes.length == size)
+                return;
+            int oldSize = frameTimes.length;
+            frameTimes = Arrays.copyOf(frameTimes, size);
+            for (int i = oldSize; i < size; i++)
+                frameTimes[i] = calculateFrameTime(i);
+            return;
+        }
+
+        tableFrameRate = analysisFrameRate;
+        tableVideoStart = analysisVideoStart;
+        if (frameTimes.length != size)
+            frameTimes = new float[size];
+        for (int i = 0; i < size; i++)
+            frameTimes[i] = calculateFrameTime(i);
+    }
+
     public int getClosestFrame(float time) {
         return Math.round((time - analysisVideoStart) * analysisFrameRate / 1000);
     }
@@ -74,6 +125,7 @@ public class CalibrationVideoTimeData implements ITimeData {
 
         float runTime = analysisVideoEnd - analysisVideoStart;
         numberOfFrames = (int)(runTime * analysisFrameRate / 1000 + 1);
+        updateFrameTimes();
     }
 
     /**
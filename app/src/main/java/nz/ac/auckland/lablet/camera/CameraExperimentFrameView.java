@@ -22,6 +22,9 @@ class CameraExperimentFrameView extends VideoFrameView {
     final private MotionAnalysis motionAnalysis;
     final private VideoData sensorData;
     private int currentRun = -1;
+    // analysis settings the shown video file has been chosen for
+    private float videoFileFrameRate;
+    private float videoFileStart;
 
     public CameraExperimentFrameView(Context context, MotionAnalysis motionAnalysis) {
         super(context);
@@ -31,16 +34,23 @@ class CameraExperimentFrameView extends VideoFrameView {
         this.motionAnalysis = motionAnalysis;
         this.sensorData = motionAnalysis.getVideoData();
 
-        File storageDir = motionAnalysis.getVideoData().getStorageDir();
-        File videoFile = new File(storageDir, sensorData.getVideoFileName());
-        setVideoFilePath(videoFile.getPath(), motionAnalysis.getVideoRotation());
+        // use the proxy if it has all analysis frames; the file is chosen again when the analysis settings change
+        CalibrationVideoTimeData timeData = motionAnalysis.getCalibrationVideoTimeData();
+        setVideoFilePath(getVideoFile(timeData).getPath(), motionAnalysis.getVideoRotation());
+    }
+
+    private File getVideoFile(CalibrationVideoTimeData timeData) {
+        videoFileFrameRate = timeData.getAnalysisFrameRate();
+        videoFileStart = timeData.getAnalysisVideoStart();
+        return sensorData.getAnalysisVideoFile(timeData);
     }
 
     public void setCurrentFrame(int frame) {
         currentRun = frame;
         CalibrationVideoTimeData timeData = motionAnalysis.getCalibrationVideoTimeData();
-        long positionMicroSeconds = (long)timeData.getTimeAt(frame);
-        positionMicroSeconds *= 1000;
+        if (timeData.getAnalysisFrameRate() != videoFileFrameRate || timeData.getAnalysisVideoStart() != videoFileStart)
+            changeVideoFile(getVideoFile(timeData).getPath());
+        long positionMicroSeconds = (long)(timeData.getTimeAt(frame) * 1000);
 
         seekToFrame(positionMicroSeconds);
     }
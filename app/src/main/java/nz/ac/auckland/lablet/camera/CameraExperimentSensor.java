@@ -174,7 +174,11 @@ class CamcorderSettings {
 interface IRecorderStrategy {
     void release();
 
-    void start(int hintRotation, float recordingFrameRate, VideoSettings videoSettings, String path);
+    /**
+     * @param iFrameInterval interval between two I-frames in seconds, only used if the recorder supports it
+     */
+    void start(int hintRotation, float recordingFrameRate, int iFrameInterval, VideoSettings videoSettings,
+               String path);
     void stop();
 }
 
@@ -200,11 +204,12 @@ class VideoRecorderStrategy implements IRecorderStrategy {
     }
 
     @Override
-    public void start(int hintRotation, float recordingFrameRate, VideoSettings settings, String path) {
+    public void start(int hintRotation, float recordingFrameRate, int iFrameInterval, VideoSettings settings,
+                      String path) {
         videoRecorder.setRotation(hintRotation);
         videoRecorder.setRecordingFrameRate(recordingFrameRate);
         videoRecorder.startRecording(settings.previewWidth, settings.previewHeight, settings.camcorderSettings.bitRate,
-                path);
+                iFrameInterval, path);
     }
 
     @Override
@@ -228,7 +233,8 @@ class MediaRecorderStrategy implements IRecorderStrategy {
     }
 
     @Override
-    public void start(int hintRotation, float recordingFrameRate, VideoSettings settings, String path) {
+    public void start(int hintRotation, float recordingFrameRate, int iFrameInterval, VideoSettings settings,
+                      String path) {
         // init state
         camera.unlock();
         recorder.setCamera(camera);
@@ -289,6 +295,8 @@ public class CameraExperimentSensor extends AbstractExperimentSensor {
     private VideoSettings selectedVideoSettings = null;
     private int requestedVideoWidth = -1;
     private int requestedVideoHeight = -1;
+    // interval between two I-frames in seconds, the MediaRecorder uses the interval of the camcorder profile
+    private int iFrameInterval = VideoRecorder.DEFAULT_IFRAME_INTERVAL;
 
     private File videoFile = null;
 
@@ -418,6 +426,8 @@ public class CameraExperimentSensor extends AbstractExperimentSensor {
             }
             recordingFrameRate = bestFrameRate;
         }
+        if (intent.hasExtra("i_frame_interval"))
+            iFrameInterval = intent.getIntExtra("i_frame_interval", iFrameInterval);
 
         experimentData = new VideoData(this);
 
@@ -537,6 +547,9 @@ public class CameraExperimentSensor extends AbstractExperimentSensor {
             experimentData.setVideoFileName(storageDir, getVideoFileName());
             experimentData.setRecordingFrameRate(recordingFrameRate);
             experimentData.saveExperimentData(storageDir);
+            // low frame rate recordings are encoded with short GOPs already
+            if (!isLowRecordingFrameRate())
+                AnalysisProxy.createInBackground(experimentData.getVideoFile(), experimentData.getVideoFrameRate());
         }
         videoFile = null;
     }
@@ -618,7 +631,8 @@ public class CameraExperimentSensor extends AbstractExperimentSensor {
         else
             setRecorderStrategy(new MediaRecorderStrategy(camera));
 
-        recorderStrategy.start(getHintRotation(), recordingFrameRate, selectedVideoSettings, videoFile.getPath());
+        recorderStrategy.start(getHintRotation(), recordingFrameRate, iFrameInterval, selectedVideoSettings,
+                videoFile.getPath());
 
         super.startRecording();
     }
@@ -651,7 +665,8 @@ public class CameraExperimentSensor extends AbstractExperimentSensor {
                 return false;
         File target = new File(storageDir, getVideoFileName());
         try {
-            return StorageLib.moveFile(videoFile, target);
+            // the recording only exists once, verify the copy if the file can't be renamed
+            return StorageLib.moveFile(videoFile, target, true);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
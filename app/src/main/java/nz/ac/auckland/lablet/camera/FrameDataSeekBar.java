@@ -8,6 +8,7 @@
 package nz.ac.auckland.lablet.camera;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.os.Handler;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
@@ -16,6 +17,7 @@ import android.view.View;
 import android.widget.*;
 
 import nz.ac.auckland.lablet.R;
+import nz.ac.auckland.lablet.camera.decoder.ThumbnailCache;
 import nz.ac.auckland.lablet.experiment.FrameDataModel;
 
 import java.text.DecimalFormat;
@@ -23,6 +25,11 @@ import java.text.DecimalFormat;
 
 /**
  * Seek bar to work with the {@link nz.ac.auckland.lablet.experiment.FrameDataModel}.
+ * <p>
+ * If a {@link nz.ac.auckland.lablet.camera.decoder.ThumbnailCache} is set, the closest cached thumbnail is shown while
+ * scrubbing. In this way there is an instant preview while the exact frame is still being decoded. The thumbnail is
+ * shown in a popup above the seek bar thumb, i.e., it doesn't change the layout of the seek bar during a drag.
+ * </p>
  */
 public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.IListener {
 
@@ -43,6 +50,15 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
     private TextView progressLabel = null;
     private TextView timeLabel = null;
     private SeekBar seekBar = null;
+    private ImageView thumbnailView = null;
+    private PopupWindow thumbnailPopup = null;
+
+    // max distance of a preview thumbnail to the selected frame
+    final static private long THUMBNAIL_TOLERANCE = 1000000;
+    // height of the preview thumbnail in dp
+    final static private int THUMBNAIL_HEIGHT = 80;
+    private ThumbnailCache thumbnailCache = null;
+    private boolean scrubbing = false;
 
     private long lastTouchEvent = 0;
     private Action currentAction = null;
@@ -93,8 +109,10 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
         final Runnable runnable = new Runnable() {
             @Override
             public void run() {
-                if (!button.isPressed())
+                if (!button.isPressed()) {
+                    setScrubbing(false);
                     return;
+                }
 
                 float updatesPerSecond = 1000f / updateInterval;
                 float progress = 5f / updatesPerSecond;
@@ -110,6 +128,7 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
                 if (progress < 1)
                     progress = 1;
 
+                setScrubbing(true);
                 frameDataModel.setCurrentFrame(frameDataModel.getCurrentFrame() + direction * (int)progress);
 
                 handler.postDelayed(this, updateInterval);
@@ -137,6 +156,11 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
         progressLabel = (TextView)findViewById(R.id.progressLabel);
         timeLabel = (TextView)findViewById(R.id.timeLabel);
         seekBar = (SeekBar)findViewById(R.id.seekBar);
+        thumbnailView = new ImageView(context);
+        thumbnailView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        thumbnailPopup = new PopupWindow(thumbnailView);
+        // the drag is handled by the seek bar
+        thumbnailPopup.setTouchable(false);
 
         prevButton.setOnClickListener(new OnClickListener() {
             @Override
@@ -187,12 +211,12 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
 
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {
-
+                setScrubbing(true);
             }
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
-
+                setScrubbing(false);
             }
         });
 
@@ -211,6 +235,62 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
         updateViews();
     }
 
+    /**
+     * Sets the cache of video thumbnails that is used to preview frames while scrubbing.
+     *
+     * @param cache the thumbnail cache or null
+     */
+    public void setThumbnailCache(ThumbnailCache cache) {
+        this.thumbnailCache = cache;
+        if (cache == null)
+            setScrubbing(false);
+    }
+
+    private void setScrubbing(boolean scrubbing) {
+        this.scrubbing = scrubbing && thumbnailCache != null;
+        if (this.scrubbing) {
+            updateThumbnail();
+            return;
+        }
+        hideThumbnail();
+    }
+
+    private void hideThumbnail() {
+        thumbnailPopup.dismiss();
+        thumbnailView.setImageBitmap(null);
+    }
+
+    private void updateThumbnail() {
+        long positionMicroSeconds = (long)(timeData.getTimeAt(frameDataModel.getCurrentFrame()) * 1000);
+        Bitmap thumbnail = thumbnailCache.getNearest(positionMicroSeconds, THUMBNAIL_TOLERANCE);
+        if (thumbnail == null || getWindowToken() == null) {
+            hideThumbnail();
+            return;
+        }
+        thumbnailView.setImageBitmap(thumbnail);
+
+        int height = (int)(THUMBNAIL_HEIGHT * getResources().getDisplayMetrics().density);
+        int width = height * thumbnail.getWidth() / thumbnail.getHeight();
+        // centre the thumbnail above the seek bar thumb
+        int thumbCentre = seekBar.getPaddingLeft() - seekBar.getThumbOffset()
+                + seekBar.getThumb().getBounds().centerX();
+        int xOffset = thumbCentre - width / 2;
+        int yOffset = -(seekBar.getHeight() + height);
+        if (thumbnailPopup.isShowing()) {
+            thumbnailPopup.update(seekBar, xOffset, yOffset, width, height);
+            return;
+        }
+        thumbnailPopup.setWidth(width);
+        thumbnailPopup.setHeight(height);
+        thumbnailPopup.showAsDropDown(seekBar, xOffset, yOffset);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        hideThumbnail();
+        super.onDetachedFromWindow();
+    }
+
     private void updateViews() {
         int run = frameDataModel.getCurrentFrame();
         String labelText = String.valueOf(run);
@@ -229,6 +309,9 @@ public class FrameDataSeekBar extends LinearLayout implements FrameDataModel.ILi
 
         seekBar.setMax(frameDataModel.getNumberOfFrames() - 1);
         seekBar.setProgress(run);
+
+        if (scrubbing)
+            updateThumbnail();
     }
 
     public long getLastTouchEvent() {
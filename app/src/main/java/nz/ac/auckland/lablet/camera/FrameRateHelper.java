@@ -18,6 +18,8 @@ import java.util.List;
 class FrameRateHelper {
 
     private static final String TAG = "FrameRateHelper";
+    // analysis frame rate that is used if the video has not been recorded at a reduced frame rate
+    static final int DEFAULT_ANALYSIS_FRAME_RATE = 10;
 
     static List<Float> getPossibleAnalysisFrameRates(int maxFrameRate) {
         // sanitize the frame rate a bit
@@ -28,4 +28,14 @@ public interface ITimeData {
      * @return time in milli seconds
      */
     float getTimeAt(float index);
+
+    /**
+     * Gets the times of a range of frames in one call.
+     *
+     * @param start index of the first frame
+     * @param count number of frames
+     * @param out array the times are written to, in milli seconds
+     * @param outOffset index in out of the time of the first frame
+     */
+    void getTimes(int start, int count, float[] out, int outOffset);
 }
@@ -85,7 +85,7 @@ public class MotionAnalysis implements IDataAnalysis {
             calibrationVideoTimeData.setAnalysisFrameRate(sensorData.getRecordingFrameRate());
         else {
             calibrationVideoTimeData.setAnalysisFrameRate(FrameRateHelper.getBestPossibleAnalysisFrameRate(
-                    sensorData.getVideoFrameRate(), 10));
+                    sensorData.getVideoFrameRate(), FrameRateHelper.DEFAULT_ANALYSIS_FRAME_RATE));
         }
         timeData = calibrationVideoTimeData;
 
@@ -292,13 +292,17 @@ public class MotionAnalysis implements IDataAnalysis {
     }
 
     @Override
-    public void exportTagMarkerCSVData(Writer writer) {
+    public void exportTagMarkerCSVData(Writer writer) throws IOException {
         MarkerDataTableAdapter tableAdapter = new MarkerDataTableAdapter(tagMarkers);
         tableAdapter.addColumn(new RunIdDataTableColumn("frame"));
         tableAdapter.addColumn(new XPositionDataTableColumn(xUnit));
         tableAdapter.addColumn(new YPositionDataTableColumn(yUnit));
         tableAdapter.addColumn(new TimeDataTableColumn(tUnit, timeData));
-        CSVWriter.writeTable(tableAdapter, writer, ',');
+        try {
+            CSVWriter.writeTable(tableAdapter, writer, ',');
+        } finally {
+            tableAdapter.release();
+        }
     }
 
     private void notifyShowCoordinateSystem(boolean show) {
@@ -472,6 +472,8 @@ public class MotionAnalysisFragment extends ExperimentAnalysisFragment {
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        // the view opens the video decoders, don't create analysis proxies in the meantime
+        AnalysisProxy.onAnalysisStarted();
         view = new MotionAnalysisFragmentView(getActivity(), getSensorAnalysis());
         return view;
     }
@@ -480,6 +482,7 @@ public class MotionAnalysisFragment extends ExperimentAnalysisFragment {
     public void onDestroyView() {
         view.release();
         view = null;
+        AnalysisProxy.onAnalysisStopped();
         super.onDestroyView();
     }
 
@@ -22,9 +22,12 @@ import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.FrameLayout;
 import android.widget.Spinner;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import nz.ac.auckland.lablet.R;
+import nz.ac.auckland.lablet.camera.decoder.ThumbnailCache;
+import nz.ac.auckland.lablet.camera.decoder.ThumbnailExtractor;
 import nz.ac.auckland.lablet.misc.Unit;
 import nz.ac.auckland.lablet.misc.WeakListenable;
 import nz.ac.auckland.lablet.views.graph.GraphView2D;
@@ -153,6 +156,7 @@ class MotionAnalysisFragmentView extends FrameLayout {
     final private MotionAnalysisSideBar sideBar;
     final private FrameDataSeekBar frameDataSeekBar;
     final private VideoPlayer videoPlayer;
+    final private ThumbnailExtractor thumbnailExtractor;
     final private List<GraphSpinnerEntry> graphSpinnerEntryList = new ArrayList<>();
     final private MotionTrackingStatusView motionTrackingStatusView;
     final ObjectTrackerAnalysis.IListener trackingListener;
@@ -395,6 +399,8 @@ class MotionAnalysisFragmentView extends FrameLayout {
         frameDataSeekBar.setTo(sensorAnalysis.getFrameDataModel(), sensorAnalysis.getTimeData());
         runContainerView.setTo(sensorAnalysisView, frameDataSeekBar, sensorAnalysis);
 
+        thumbnailExtractor = startThumbnailExtractor(context, sensorAnalysis);
+
         final Unit xUnit = sensorAnalysis.getXUnit();
         final Unit yUnit = sensorAnalysis.getYUnit();
         final Unit tUnit = sensorAnalysis.getTUnit();
@@ -475,6 +481,37 @@ class MotionAnalysisFragmentView extends FrameLayout {
         sensorAnalysis.getObjectTrackerAnalysis().addListener(trackingListener);
     }
 
+    /**
+     * Fills the thumbnail cache of the seek bar in the background.
+     */
+    private ThumbnailExtractor startThumbnailExtractor(Context context, MotionAnalysis sensorAnalysis) {
+        final int THUMBNAIL_SIZE = 160;
+        final int MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+        final long MAX_DISK_BYTES = 32 * 1024 * 1024;
+
+        VideoData videoData = sensorAnalysis.getVideoData();
+        int rotation = sensorAnalysis.getVideoRotation();
+        File cacheRoot = new File(context.getCacheDir(), "thumbnails");
+        ThumbnailCache cache = new ThumbnailCache(cacheRoot, videoData.getVideoFile(), rotation, MAX_MEMORY_BYTES,
+                MAX_DISK_BYTES);
+        frameDataSeekBar.setThumbnailCache(cache);
+
+        float scale = (float)THUMBNAIL_SIZE / Math.max(videoData.getVideoWidth(), videoData.getVideoHeight());
+        int width = Math.max(1, Math.round(videoData.getVideoWidth() * scale));
+        int height = Math.max(1, Math.round(videoData.getVideoHeight() * scale));
+        ITimeData timeData = sensorAnalysis.getTimeData();
+        float[] times = new float[timeData.getSize()];
+        timeData.getTimes(0, times.length, times, 0);
+        long[] frameTimes = new long[times.length];
+        for (int i = 0; i < frameTimes.length; i++)
+            frameTimes[i] = (long)(times[i] * 1000);
+
+        ThumbnailExtractor extractor = new ThumbnailExtractor(videoData.getVideoFile(), cache, width, height,
+                rotation, frameTimes);
+        extractor.start();
+        return extractor;
+    }
+
     /**
      *
      * @return an icon id for the new state
@@ -512,6 +549,8 @@ class MotionAnalysisFragmentView extends FrameLayout {
     }
 
     public void release() {
+        thumbnailExtractor.release();
+        frameDataSeekBar.setThumbnailCache(null);
         markerDataTableAdapter.release();
         runContainerView.release();
         tableView.setAdapter((ITableAdapter)null);
@@ -14,6 +14,7 @@ import android.os.Bundle;
 import android.util.Log;
 import java.io.File;
 import java.io.IOException;
+import nz.ac.auckland.lablet.camera.decoder.VideoMetadata;
 import nz.ac.auckland.lablet.experiment.AbstractSensorData;
 import nz.ac.auckland.lablet.experiment.IExperimentSensor;
 
@@ -34,6 +35,8 @@ public class VideoData extends AbstractSensorData {
     private int videoHeight;
     private int videoFrameRate;
     private float recordingFrameRate;
+    // depends on the video size only, cached because it is needed for every point conversion
+    private float maxRawY;
 
     public VideoData(IExperimentSensor sourceSensor) {
         super(sourceSensor);
@@ -53,9 +56,13 @@ public class VideoData extends AbstractSensorData {
     }
 
     float getMaxRawY() {
+        return maxRawY;
+    }
+
+    private void updateMaxRawY() {
         float xToYRatio = (float)videoWidth / videoHeight;
         float xMax = getMaxRawX();
-        return xMax / xToYRatio;
+        maxRawY = xMax / xToYRatio;
     }
 
     /**
@@ -66,9 +73,9 @@ public class VideoData extends AbstractSensorData {
      */
     public PointF toVideoPoint(PointF markerPoint) {
         PointF videoPos = new PointF();
-        int videoX = (int) (markerPoint.x / getMaxRawX() * getVideoWidth());
-        float ySwappedDir = getMaxRawY() - markerPoint.y;
-        int videoY = (int) (ySwappedDir / getMaxRawY() * getVideoHeight());
+        int videoX = (int) (markerPoint.x / getMaxRawX() * videoWidth);
+        float ySwappedDir = maxRawY - markerPoint.y;
+        int videoY = (int) (ySwappedDir / maxRawY * videoHeight);
         videoPos.set(videoX, videoY);
         return videoPos;
     }
@@ -81,8 +88,8 @@ public class VideoData extends AbstractSensorData {
      */
     public PointF toMarkerPoint(PointF videoPoint) {
         PointF markerPos = new PointF();
-        float markerX = (videoPoint.x / (float)this.getVideoWidth()) * this.getMaxRawX();
-        float markerY = this.getMaxRawY() - ((videoPoint.y / (float)this.getVideoHeight()) * this.getMaxRawY());
+        float markerX = (videoPoint.x / (float)videoWidth) * getMaxRawX();
+        float markerY = maxRawY - ((videoPoint.y / (float)videoHeight) * maxRawY);
         markerPos.set(markerX, markerY);
         return markerPos;
     }
@@ -128,10 +135,35 @@ public class VideoData extends AbstractSensorData {
     void setVideoFileName(File storageDir, String fileName) {
         this.videoFileName = fileName;
 
-        String videoFilePath = new File(storageDir, fileName).getPath();
+        File videoFile = new File(storageDir, fileName);
+        try {
+            VideoMetadata metadata = VideoMetadata.get(videoFile);
+            videoDuration = metadata.getDurationUs() / 1000;
+            videoWidth = metadata.getWidth();
+            videoHeight = metadata.getHeight();
+            videoFrameRate = metadata.getFrameRate();
+        } catch (IOException e) {
+            e.printStackTrace();
+            readVideoFormat(videoFile);
+        }
+
+        if (videoFrameRate == 0)
+            videoFrameRate = 30;
+        updateMaxRawY();
+    }
+
+    /**
+     * Reads the video properties directly from the first video track that the extractor can find.
+     * <p>
+     * Fallback for files {@link VideoMetadata} can't read; properties that are missing in the file are left unchanged.
+     * </p>
+     *
+     * @param videoFile the video file
+     */
+    private void readVideoFormat(File videoFile) {
         MediaExtractor extractor = new MediaExtractor();
         try {
-            extractor.setDataSource(videoFilePath);
+            extractor.setDataSource(videoFile.getPath());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -141,18 +173,16 @@ public class VideoData extends AbstractSensorData {
             String mime = format.getString(MediaFormat.KEY_MIME);
 
             if (mime.startsWith("video/")) {
-                extractor.selectTrack(i);
-
-                videoDuration = format.getLong(MediaFormat.KEY_DURATION) / 1000;
+                if (format.containsKey(MediaFormat.KEY_DURATION))
+                    videoDuration = format.getLong(MediaFormat.KEY_DURATION) / 1000;
                 videoWidth = format.getInteger(MediaFormat.KEY_WIDTH);
                 videoHeight = format.getInteger(MediaFormat.KEY_HEIGHT);
                 if (format.containsKey(MediaFormat.KEY_FRAME_RATE))
                     videoFrameRate = format.getInteger(MediaFormat.KEY_FRAME_RATE);
-                if (videoFrameRate == 0)
-                    videoFrameRate = 30;
                 break;
             }
         }
+        extractor.release();
     }
 
     public String getVideoFileName() {
@@ -168,6 +198,24 @@ public class VideoData extends AbstractSensorData {
         return new File(getStorageDir(), getVideoFileName());
     }
 
+    /**
+     * Gets the video that should be used to extract the analysis frames.
+     * <p>
+     * This is the {@link AnalysisProxy} of the video if there is one that shows the same frames for the given analysis
+     * times, otherwise the original video.
+     * </p>
+     *
+     * @param timeData the analysis times or null if the analysis settings can change while the file is used
+     * @return the video to extract the analysis frames from
+     */
+    public File getAnalysisVideoFile(CalibrationVideoTimeData timeData) {
+        File videoFile = getVideoFile();
+        File proxy = AnalysisProxy.findProxy(videoFile);
+        if (proxy != null && AnalysisProxy.isUsable(proxy, timeData))
+            return proxy;
+        return videoFile;
+    }
+
     /**
      * The complete duration of the recorded video.
      *
@@ -60,6 +60,7 @@ public class VideoImportPlugin extends AbstractFileImportPlugin {
             e.printStackTrace();
             return false;
         }
+        AnalysisProxy.createInBackground(videoData.getVideoFile(), videoData.getVideoFrameRate());
 
         return true;
     }
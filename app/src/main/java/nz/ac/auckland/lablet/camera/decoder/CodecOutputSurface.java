@@ -58,6 +58,17 @@ public class CodecOutputSurface implements SurfaceTexture.OnFrameAvailableListen
 
     private ByteBuffer mPixelBuf;                       // used by saveFrame()
 
+    // Frames are read back asynchronously into two alternating slots: while the caller processes one slot the
+    // next frame can already be decoded and transferred into the other one.  With GLES 3 the slots are pixel
+    // buffer objects and glReadPixels returns without waiting for the GPU.  Otherwise, the slots are plain
+    // direct buffers that are filled synchronously.
+    private static final int READBACK_SLOTS = 2;
+    private boolean mGLES3;
+    private int[] mPixelBufferObjects;
+    private ByteBuffer[] mReadbackBuffers;
+    private int mFirstPendingSlot;
+    private int mPendingReadbacks;
+
     /**
      * Creates a CodecOutputSurface backed by a pbuffer with the specified dimensions.  The
      * new EGL context and surface will be made current.  Creates a Surface that can be passed
@@ -102,10 +113,22 @@ public class CodecOutputSurface implements SurfaceTexture.OnFrameAvailableListen
 
         mPixelBuf = ByteBuffer.allocateDirect(mWidth * mHeight * 4);
         mPixelBuf.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (mGLES3) {
+            mPixelBufferObjects = new int[READBACK_SLOTS];
+            GLES30.glGenBuffers(READBACK_SLOTS, mPixelBufferObjects, 0);
+            for (int buffer : mPixelBufferObjects) {
+                GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, buffer);
+                GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, getFrameSize(), null, GLES30.GL_STREAM_READ);
+            }
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            mTextureRender.checkGlError("pixel buffer setup");
+        }
     }
 
     /**
-     * Prepares EGL.  We want a GLES 2.0 context and a surface that supports pbuffer.
+     * Prepares EGL.  We want a GLES 3.0 context, to be able to use pixel buffer objects, or a GLES 2.0 context
+     * and a surface that supports pbuffer.
      */
     private void eglSetup() {
         mEGLDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
@@ -118,34 +141,35 @@ public class CodecOutputSurface implements SurfaceTexture.OnFrameAvailableListen
             throw new RuntimeException("unable to initialize EGL14");
         }
 
-        // Configure EGL for pbuffer and OpenGL ES 2.0, 24-bit RGB.
-        int[] attribList = {
-                EGL14.EGL_RED_SIZE, 8,
-                EGL14.EGL_GREEN_SIZE, 8,
-                EGL14.EGL_BLUE_SIZE, 8,
-                EGL14.EGL_ALPHA_SIZE, 8,
-                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
-                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
-                EGL14.EGL_NONE
-        };
         EGLConfig[] configs = new EGLConfig[1];
-        int[] numConfigs = new int[1];
-        if (!EGL14.eglChooseConfig(mEGLDisplay, attribList, 0, configs, 0, configs.length,
-                numConfigs, 0)) {
+        mGLES3 = chooseConfig(EGLExt.EGL_OPENGL_ES3_BIT_KHR, configs);
+        if (!mGLES3 && !chooseConfig(EGL14.EGL_OPENGL_ES2_BIT, configs)) {
             throw new RuntimeException("unable to find RGB888+recordable ES2 EGL config");
         }
 
-        // Configure context for OpenGL ES 2.0.
+        // Configure context for OpenGL ES 3.0 or 2.0.
         int[] attrib_list = {
-                EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
+                EGL14.EGL_CONTEXT_CLIENT_VERSION, mGLES3 ? 3 : 2,
                 EGL14.EGL_NONE
         };
         mEGLContext = EGL14.eglCreateContext(mEGLDisplay, configs[0], EGL14.EGL_NO_CONTEXT,
                 attrib_list, 0);
+        if (mGLES3 && (mEGLContext == null || mEGLContext == EGL14.EGL_NO_CONTEXT)) {
+            // the config claimed ES 3 support but the driver refused, fall back to ES 2
+            EGL14.eglGetError();
+            mGLES3 = false;
+            if (!chooseConfig(EGL14.EGL_OPENGL_ES2_BIT, configs)) {
+                throw new RuntimeException("unable to find RGB888+recordable ES2 EGL config");
+            }
+            attrib_list[1] = 2;
+            mEGLContext = EGL14.eglCreateContext(mEGLDisplay, configs[0], EGL14.EGL_NO_CONTEXT,
+                    attrib_list, 0);
+        }
         checkEglError("eglCreateContext");
         if (mEGLContext == null) {
             throw new RuntimeException("null context");
         }
+        Log.d(TAG, "pixel buffer object readback: " + mGLES3);
 
         // Create a pbuffer surface.
         int[] surfaceAttribs = {
@@ -160,10 +184,40 @@ public class CodecOutputSurface implements SurfaceTexture.OnFrameAvailableListen
         }
     }
 
+    /**
+     * Chooses a pbuffer config with 32-bit RGBA for the given renderable type.
+     */
+    private boolean chooseConfig(int renderableType, EGLConfig[] configs) {
+        int[] attribList = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, renderableType,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_NONE
+        };
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(mEGLDisplay, attribList, 0, configs, 0, configs.length,
+                numConfigs, 0)) {
+            EGL14.eglGetError();
+            return false;
+        }
+        return numConfigs[0] > 0 && configs[0] != null;
+    }
+
     /**
      * Discard all resources held by this class, notably the EGL context.
      */
     public void release() {
+        if (mPixelBufferObjects != null && mEGLDisplay != EGL14.EGL_NO_DISPLAY) {
+            makeCurrent();
+            GLES30.glDeleteBuffers(READBACK_SLOTS, mPixelBufferObjects, 0);
+        }
+        mPixelBufferObjects = null;
+        mReadbackBuffers = null;
+        mPendingReadbacks = 0;
+
         if (mEGLDisplay != EGL14.EGL_NO_DISPLAY) {
             EGL14.eglDestroySurface(mEGLDisplay, mEGLSurface);
             EGL14.eglDestroyContext(mEGLDisplay, mEGLContext);
@@ -255,9 +309,19 @@ public class CodecOutputSurface implements SurfaceTexture.OnFrameAvailableListen
     }
 
     /**
-     * Saves the current frame to disk as a PNG image.
+     * Reads the current frame synchronously into a new Bitmap.
      */
     public Bitmap getBitmap() {
+        return getBitmap(null);
+    }
+
+    /**
+     * Reads the current frame synchronously.
+     *
+     * @param reuse a bitmap that is overwritten with the frame if it has the size of the surface, may be null
+     * @return reuse or a new Bitmap if reuse could not be used
+     */
+    public Bitmap getBitmap(Bitmap reuse) {
         // glReadPixels gives us a ByteBuffer filled with what is essentially big-endian RGBA
         // data (i.e. a byte of red, followed by a byte of green...).  To use the Bitmap
         // constructor that takes an int[] array with pixel data, we need an int[] filled
@@ -294,13 +358,157 @@ public class CodecOutputSurface implements SurfaceTexture.OnFrameAvailableListen
         GLES20.glReadPixels(0, 0, mWidth, mHeight, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE,
                 mPixelBuf);
 
-        Bitmap bmp = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        Bitmap bmp = obtainBitmap(reuse);
         mPixelBuf.rewind();
         bmp.copyPixelsFromBuffer(mPixelBuf);
 
         return bmp;
     }
 
+    /**
+     * Returns true if frames are read back through pixel buffer objects, i.e., without stalling on the GPU.
+     */
+    public boolean isAsyncReadbackSupported() {
+        return mGLES3;
+    }
+
+    /**
+     * Returns the number of readbacks that have been started but not finished yet.
+     */
+    public int getPendingReadbacks() {
+        return mPendingReadbacks;
+    }
+
+    /**
+     * Returns true if another readback can be started.
+     */
+    public boolean canStartReadback() {
+        return mPendingReadbacks < READBACK_SLOTS;
+    }
+
+    /**
+     * Starts reading back the frame that has been drawn last.
+     * <p>
+     * On GLES 3 devices the transfer runs asynchronously into a pixel buffer object, so the next frame can be decoded
+     * while the transfer is in flight.  Otherwise, the pixels are read synchronously into a spare buffer.  The result
+     * is collected with {@link #finishReadback(Bitmap)} or {@link #finishReadback(ByteBuffer)}, in the order the
+     * readbacks have been started.
+     */
+    public void startReadback() {
+        if (!canStartReadback()) {
+            throw new IllegalStateException("all readback slots are in use");
+        }
+        int slot = (mFirstPendingSlot + mPendingReadbacks) % READBACK_SLOTS;
+        if (mPixelBufferObjects != null) {
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mPixelBufferObjects[slot]);
+            GLES30.glReadPixels(0, 0, mWidth, mHeight, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 0);
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            mTextureRender.checkGlError("glReadPixels into pixel buffer");
+        } else {
+            ByteBuffer buffer = getReadbackBuffer(slot);
+            buffer.rewind();
+            GLES20.glReadPixels(0, 0, mWidth, mHeight, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, buffer);
+        }
+        mPendingReadbacks++;
+    }
+
+    /**
+     * Finishes the oldest pending readback.
+     *
+     * @param reuse a bitmap that is overwritten with the frame if it has the size of the surface, may be null
+     * @return reuse or a new Bitmap if reuse could not be used
+     */
+    public Bitmap finishReadback(Bitmap reuse) {
+        Bitmap bmp = obtainBitmap(reuse);
+        ByteBuffer pixels = mapOldestReadback();
+        try {
+            bmp.copyPixelsFromBuffer(pixels);
+        } finally {
+            unmapOldestReadback();
+        }
+        return bmp;
+    }
+
+    /**
+     * Finishes the oldest pending readback and copies the raw RGBA pixels into a buffer.  The rows are in the same
+     * order as in the bitmap returned by {@link #finishReadback(Bitmap)}.
+     *
+     * @param destination receives width * height * 4 bytes at its current position
+     */
+    public void finishReadback(ByteBuffer destination) {
+        if (destination.remaining() < getFrameSize()) {
+            throw new IllegalArgumentException("destination buffer too small");
+        }
+        ByteBuffer pixels = mapOldestReadback();
+        try {
+            destination.put(pixels);
+        } finally {
+            unmapOldestReadback();
+        }
+    }
+
+    /**
+     * Drops all pending readbacks, e.g., after a seek made the queued frames obsolete.
+     */
+    public void discardReadbacks() {
+        mPendingReadbacks = 0;
+    }
+
+    private ByteBuffer mapOldestReadback() {
+        if (mPendingReadbacks == 0) {
+            throw new IllegalStateException("no pending readback");
+        }
+        if (mPixelBufferObjects == null) {
+            ByteBuffer buffer = getReadbackBuffer(mFirstPendingSlot);
+            buffer.rewind();
+            return buffer;
+        }
+
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mPixelBufferObjects[mFirstPendingSlot]);
+        ByteBuffer buffer = (ByteBuffer)GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0, getFrameSize(),
+                GLES30.GL_MAP_READ_BIT);
+        if (buffer == null) {
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            mPendingReadbacks--;
+            mFirstPendingSlot = (mFirstPendingSlot + 1) % READBACK_SLOTS;
+            throw new RuntimeException("glMapBufferRange failed: 0x" + Integer.toHexString(GLES20.glGetError()));
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private void unmapOldestReadback() {
+        if (mPixelBufferObjects != null) {
+            GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        }
+        mPendingReadbacks--;
+        mFirstPendingSlot = (mFirstPendingSlot + 1) % READBACK_SLOTS;
+    }
+
+    private ByteBuffer getReadbackBuffer(int slot) {
+        if (mReadbackBuffers == null) {
+            mReadbackBuffers = new ByteBuffer[READBACK_SLOTS];
+        }
+        if (mReadbackBuffers[slot] == null) {
+            mReadbackBuffers[slot] = ByteBuffer.allocateDirect(getFrameSize());
+            mReadbackBuffers[slot].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return mReadbackBuffers[slot];
+    }
+
+    private Bitmap obtainBitmap(Bitmap reuse) {
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable() && reuse.getWidth() == mWidth
+                && reuse.getHeight() == mHeight && reuse.getConfig() == Bitmap.Config.ARGB_8888) {
+            return reuse;
+        }
+        return Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    private int getFrameSize() {
+        return mWidth * mHeight * 4;
+    }
+
     /**
      * Checks for EGL errors.
      */
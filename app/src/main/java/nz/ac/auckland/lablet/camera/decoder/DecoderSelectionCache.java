@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.decoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Remembers the results of the decoder probing in {@link SeekToFrameExtractor}.
+ * <p>
+ * The codecs of a device don't change while the app is running. Thus, for every video format, the list of codecs whose
+ * capabilities support the format and the codec that could be configured last time only have to be found once. The
+ * format is identified by its mime type and its size.
+ * </p>
+ */
+class DecoderSelectionCache {
+    final private Map<String, List<String>> candidates = new HashMap<>();
+    final private Map<String, String> configuredCodecs = new HashMap<>();
+
+    static public String getKey(String mime, int width, int height) {
+        return mime + ":" + width + "x" + height;
+    }
+
+    /**
+     * @return the names of the codecs supporting the format or null if the format has not been probed
+     */
+    synchronized public List<String> getCandidates(String key) {
+        List<String> list = candidates.get(key);
+        if (list == null)
+            return null;
+        return new ArrayList<>(list);
+    }
+
+    synchronized public void setCandidates(String key, List<String> codecNames) {
+        candidates.put(key, new ArrayList<>(codecNames));
+    }
+
+    /**
+     * @return the name of the codec that has been configured successfully for the format, or null
+     */
+    synchronized public String getConfiguredCodec(String key) {
+        return configuredCodecs.get(key);
+    }
+
+    synchronized public void setConfiguredCodec(String key, String codecName) {
+        if (codecName == null)
+            configuredCodecs.remove(key);
+        else
+            configuredCodecs.put(key, codecName);
+    }
+}
@@ -21,6 +21,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.util.Log;
@@ -28,6 +29,8 @@ import android.view.Surface;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 import org.jetbrains.annotations.Contract;
 
@@ -38,6 +41,7 @@ import org.jetbrains.annotations.Contract;
 public class SeekToFrameExtractor {
 
     private static final boolean IS_LOLLIPOP = VERSION.SDK_INT == VERSION_CODES.LOLLIPOP;
+    private static final DecoderSelectionCache decoderSelectionCache = new DecoderSelectionCache();
 
     public interface IListener {
         /**
@@ -194,6 +198,11 @@ public class SeekToFrameExtractor {
          *     devices will have more than one codec for common formats, this can be
          *     trusted to work the majority of the time.
          * </p>
+         * <p>
+         *     The matching codecs and the codec that could be configured are cached per
+         *     format. When the same format is opened again, the previously working codec
+         *     is tried first and the codec list is only queried if it fails.
+         * </p>
          * @param format video format the codec must support
          * @param surface the surface to attach to the codec
          * @return the configured decoder, or null if an error occurred
@@ -207,8 +216,50 @@ public class SeekToFrameExtractor {
                 return null;
             }
 
-            MediaCodec codec;
+            long startTime = SystemClock.elapsedRealtime();
             String mime = format.getString(MediaFormat.KEY_MIME);
+            String key = DecoderSelectionCache.getKey(mime, format.getInteger(MediaFormat.KEY_WIDTH),
+                    format.getInteger(MediaFormat.KEY_HEIGHT));
+
+            String configuredCodec = decoderSelectionCache.getConfiguredCodec(key);
+            if (configuredCodec != null) {
+                MediaCodec codec = tryConfigure(configuredCodec, format, surface);
+                if (codec != null) {
+                    Log.d(TAG, "cached decoder configured in " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+                    return codec;
+                }
+                decoderSelectionCache.setConfiguredCodec(key, null);
+            }
+
+            List<String> candidates = decoderSelectionCache.getCandidates(key);
+            if (candidates == null) {
+                candidates = findSupportingCodecs(mime, format);
+                decoderSelectionCache.setCandidates(key, candidates);
+            }
+
+            for (String name : candidates) {
+                if (name.equals(configuredCodec))
+                    continue;
+                MediaCodec codec = tryConfigure(name, format, surface);
+                if (codec != null) {
+                    decoderSelectionCache.setConfiguredCodec(key, name);
+                    Log.d(TAG, "decoder configured in " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+                    return codec;
+                }
+            }
+
+            Log.e(TAG, "no decoder successfully configured.");
+            return null;
+        }
+
+        /**
+         * Queries all codecs of the device for the capability to decode the format.
+         *
+         * @return the names of the supporting codecs
+         */
+        @RequiresApi(api = VERSION_CODES.LOLLIPOP)
+        private List<String> findSupportingCodecs(String mime, MediaFormat format) {
+            List<String> supportingCodecs = new ArrayList<>();
             MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
             MediaCodecInfo[] infos = list.getCodecInfos();
 
@@ -236,39 +287,50 @@ public class SeekToFrameExtractor {
                     formatSupported = capabilities.isFormatSupported(format);
                 } catch (IllegalArgumentException ignored) {
                     continue;
+                } finally {
+                    // KEY_FRAME_RATE is restored
+                    if (IS_LOLLIPOP) {
+                        format.setInteger(MediaFormat.KEY_FRAME_RATE, saveFrameRate);
+                    }
                 }
 
-                // KEY_FRAME_RATE is restored
-                if (IS_LOLLIPOP) {
-                    format.setInteger(MediaFormat.KEY_FRAME_RATE, saveFrameRate);
-                }
-
-                // can we configure it successfully
                 if (formatSupported) {
-                    Log.i(TAG, "trying decoder: " + info.getName());
-                    try {
-                        codec = MediaCodec.createByCodecName(info.getName());
-                    } catch (IOException e) {
-                        continue;
-                    }
-                    try {
-                        codec.configure(format, surface, null, 0);
-                    } catch (IllegalArgumentException ignored) {
-                        Log.w(TAG, "decoder failed: " + info.getName());
-                        codec.release();
-                        continue;
-                    } catch (IllegalStateException ignored) {
-                        Log.w(TAG, "decoder failed: " + info.getName());
-                        codec.release();
-                        continue;
-                    }
-                    Log.d(TAG, "decoder success: " + info.getName());
-                    return codec;
+                    supportingCodecs.add(info.getName());
                 }
             } // end of for loop
 
-            Log.e(TAG, "no decoder successfully configured.");
-            return null;
+            return supportingCodecs;
+        }
+
+        /**
+         * Creates and configures a codec.
+         *
+         * @return the configured codec, or null if it can't be configured
+         */
+        @Nullable
+        private MediaCodec tryConfigure(String name, MediaFormat format, Surface surface) {
+            Log.i(TAG, "trying decoder: " + name);
+            MediaCodec codec;
+            try {
+                codec = MediaCodec.createByCodecName(name);
+            } catch (IOException e) {
+                return null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            try {
+                codec.configure(format, surface, null, 0);
+            } catch (IllegalArgumentException ignored) {
+                Log.w(TAG, "decoder failed: " + name);
+                codec.release();
+                return null;
+            } catch (IllegalStateException ignored) {
+                Log.w(TAG, "decoder failed: " + name);
+                codec.release();
+                return null;
+            }
+            Log.d(TAG, "decoder success: " + name);
+            return codec;
         }
 
         // thread safe
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.decoder;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+import nz.ac.auckland.lablet.misc.Hash;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * On-disk cache of downscaled video frames with a bounded in-memory cache of the recently used ones.
+ * <p>
+ * Thumbnails are keyed by the video file and the frame time in micro seconds. A decoded frame is shown for a range of
+ * frame times, e.g., when the video has fewer frames than frame times, and is stored once for the whole range. The
+ * video file is identified by a hash of its path, size and modification time, i.e., a re-recorded video gets a fresh
+ * cache. All thumbnails of a video are stored in their own directory below the cache root, i.e., a thumbnail that is
+ * evicted from memory is loaded from disk again. When a cache is opened, the directories of other videos are deleted,
+ * least recently used first, until they fit into half of the disk budget.
+ * </p>
+ * <p>
+ * The cache is thread safe; thumbnails are usually added by a {@link ThumbnailExtractor} thread while the UI thread
+ * looks them up. The cache is empty till {@link #open()} has loaded the index from disk.
+ * </p>
+ */
+public class ThumbnailCache {
+    final static private String TAG = "ThumbnailCache";
+    final static private String THUMBNAIL_SUFFIX = ".jpg";
+    final static private String COMPLETE_MARKER = "complete";
+    final static private int JPEG_QUALITY = 80;
+
+    /**
+     * A decoded frame that is shown for all frame times from firstTime to lastTime.
+     */
+    static private class Frame {
+        final long firstTime;
+        final long lastTime;
+        // size on disk, 0 if the thumbnail could not be written and is only in memory
+        final long fileSize;
+
+        Frame(long firstTime, long lastTime, long fileSize) {
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.fileSize = fileSize;
+        }
+    }
+
+    final private File cacheRoot;
+    final private File cacheDir;
+    final private long maxDiskBytes;
+    // keyed by the first time of the frame
+    final private LruCache<Long, Bitmap> memoryCache;
+    // all available frames (in memory or on disk) keyed by their first time
+    final private TreeMap<Long, Frame> index = new TreeMap<>();
+    // frames that could not be written to disk; they are extracted again when the cache is reopened
+    private int memoryOnlyCount = 0;
+    private boolean complete = false;
+
+    /**
+     * @param cacheRoot directory shared by the thumbnails of all videos, e.g., in the app's cache dir
+     * @param videoFile the video the thumbnails belong to
+     * @param rotation rotation of the thumbnails in degrees
+     * @param maxMemoryBytes size of the in-memory cache
+     * @param maxDiskBytes size of the on-disk cache, the thumbnails of other videos get half of it
+     */
+    public ThumbnailCache(File cacheRoot, File videoFile, int rotation, int maxMemoryBytes, long maxDiskBytes) {
+        this.cacheRoot = cacheRoot;
+        this.maxDiskBytes = maxDiskBytes;
+        this.cacheDir = new File(cacheRoot, getVideoKey(videoFile) + "_" + rotation);
+        this.memoryCache = new LruCache<Long, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted)
+                    onEvicted(key);
+            }
+        };
+    }
+
+    static public String getVideoKey(File videoFile) {
+        return Hash.sha1Hex(videoFile.getAbsolutePath() + ":" + videoFile.length() + ":" + videoFile.lastModified());
+    }
+
+    /**
+     * Trims the disk cache and loads the thumbnails of the video from disk.
+     * <p>
+     * Does disk I/O, i.e., call it from a background thread such as the {@link ThumbnailExtractor} thread.
+     * </p>
+     */
+    public void open() {
+        trimDiskCache();
+        loadIndex();
+    }
+
+    /**
+     * Deletes the thumbnail directories of other videos, least recently used first, till the budget is met.
+     */
+    private void trimDiskCache() {
+        File[] dirs = cacheRoot.listFiles();
+        if (dirs == null)
+            return;
+        Arrays.sort(dirs, new Comparator<File>() {
+            @Override
+            public int compare(File file, File file2) {
+                return Long.valueOf(file2.lastModified()).compareTo(file.lastModified());
+            }
+        });
+        // other videos share one half of the budget, the other half is reserved for this video
+        long usedBytes = 0;
+        for (File dir : dirs) {
+            if (dir.equals(cacheDir))
+                continue;
+            usedBytes += getDirSize(dir);
+            if (usedBytes > maxDiskBytes / 2)
+                deleteDir(dir);
+        }
+    }
+
+    static private long getDirSize(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return 0;
+        long size = 0;
+        for (File file : files)
+            size += file.length();
+        return size;
+    }
+
+    static private void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        dir.delete();
+    }
+
+    private void loadIndex() {
+        if (!cacheDir.exists()) {
+            if (!cacheDir.mkdirs())
+                Log.w(TAG, "can't create thumbnail dir: " + cacheDir.getPath());
+            return;
+        }
+        // mark as recently used
+        cacheDir.setLastModified(System.currentTimeMillis());
+
+        File[] files = cacheDir.listFiles();
+        if (files == null)
+            return;
+        synchronized (this) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.equals(COMPLETE_MARKER)) {
+                    complete = true;
+                    continue;
+                }
+                if (!name.endsWith(THUMBNAIL_SUFFIX))
+                    continue;
+                // file name: firstTime_lastTime.jpg
+                String[] times = name.substring(0, name.length() - THUMBNAIL_SUFFIX.length()).split("_");
+                try {
+                    long firstTime = Long.parseLong(times[0]);
+                    long lastTime = times.length > 1 ? Long.parseLong(times[1]) : firstTime;
+                    index.put(firstTime, new Frame(firstTime, lastTime, file.length()));
+                } catch (NumberFormatException e) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private File getThumbnailFile(long firstTime, long lastTime) {
+        return new File(cacheDir, firstTime + "_" + lastTime + THUMBNAIL_SUFFIX);
+    }
+
+    /**
+     * Thumbnails that could not be written to disk are not available anymore once they are evicted.
+     */
+    synchronized private void onEvicted(long firstTime) {
+        Frame frame = index.get(firstTime);
+        if (frame != null && frame.fileSize == 0)
+            index.remove(firstTime);
+    }
+
+    /**
+     * @return true if all thumbnails of the video have been extracted before
+     */
+    synchronized public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Marks the extraction as finished; the thumbnails are not extracted again when the video is reopened.
+     * <p>
+     * If some thumbnails could not be written to disk the finished state is not stored, so that the missing thumbnails
+     * are extracted again when the video is reopened.
+     * </p>
+     */
+    public void setComplete() {
+        synchronized (this) {
+            if (complete)
+                return;
+            complete = true;
+            if (memoryOnlyCount > 0)
+                return;
+        }
+        try {
+            new File(cacheDir, COMPLETE_MARKER).createNewFile();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     *
+     * @return the frame that is shown at the time or null
+     */
+    private Frame findFrame(long timeMicroSeconds) {
+        Map.Entry<Long, Frame> entry = index.floorEntry(timeMicroSeconds);
+        if (entry == null || entry.getValue().lastTime < timeMicroSeconds)
+            return null;
+        return entry.getValue();
+    }
+
+    synchronized public boolean contains(long timeMicroSeconds) {
+        return findFrame(timeMicroSeconds) != null;
+    }
+
+    /**
+     * @return the number of cached frames
+     */
+    synchronized public int getSize() {
+        return index.size();
+    }
+
+    /**
+     * Adds a thumbnail to the memory and the disk cache.
+     *
+     * @param firstTime the first frame time the thumbnail is shown for
+     * @param lastTime the last frame time the thumbnail is shown for
+     * @param thumbnail the downscaled frame, must not be modified afterwards
+     */
+    public void put(long firstTime, long lastTime, Bitmap thumbnail) {
+        long fileSize = writeThumbnail(getThumbnailFile(firstTime, lastTime), thumbnail);
+
+        synchronized (this) {
+            Frame oldFrame = index.put(firstTime, new Frame(firstTime, lastTime, fileSize));
+            if (oldFrame != null) {
+                if (oldFrame.fileSize == 0)
+                    memoryOnlyCount--;
+                // the old file is only overwritten if the new one has the same name
+                if (oldFrame.fileSize > 0 && (fileSize == 0 || oldFrame.lastTime != lastTime))
+                    getThumbnailFile(oldFrame.firstTime, oldFrame.lastTime).delete();
+            }
+            if (fileSize == 0)
+                memoryOnlyCount++;
+        }
+        // after the index has been updated, so that an eviction removes the new frame
+        memoryCache.put(firstTime, thumbnail);
+    }
+
+    /**
+     * @return the file size or 0 if the thumbnail could not be written
+     */
+    static private long writeThumbnail(File file, Bitmap thumbnail) {
+        boolean written = false;
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(file);
+            written = thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    written = false;
+                }
+            }
+        }
+        if (!written) {
+            // don't leave a broken thumbnail that would be loaded when the cache is reopened
+            file.delete();
+            return 0;
+        }
+        return file.length();
+    }
+
+    /**
+     * Gets the thumbnail that is shown at the given time.
+     *
+     * @param timeMicroSeconds time of the frame
+     * @return the thumbnail or null if not cached
+     */
+    public Bitmap get(long timeMicroSeconds) {
+        Frame frame;
+        synchronized (this) {
+            frame = findFrame(timeMicroSeconds);
+        }
+        if (frame == null)
+            return null;
+        Bitmap thumbnail = memoryCache.get(frame.firstTime);
+        if (thumbnail != null || frame.fileSize == 0)
+            return thumbnail;
+        thumbnail = BitmapFactory.decodeFile(getThumbnailFile(frame.firstTime, frame.lastTime).getPath());
+        if (thumbnail != null)
+            memoryCache.put(frame.firstTime, thumbnail);
+        return thumbnail;
+    }
+
+    /**
+     * Gets the cached time closest to the given time.
+     * <p>
+     * Frames at or after the time are preferred since a seek shows the first frame at or after the target time.
+     * </p>
+     *
+     * @param timeMicroSeconds target time
+     * @param tolerance max distance to the target time in micro seconds
+     * @return the closest time or -1 if there is no thumbnail within the tolerance
+     */
+    synchronized public long getNearestTime(long timeMicroSeconds, long tolerance) {
+        if (findFrame(timeMicroSeconds) != null)
+            return timeMicroSeconds;
+        Map.Entry<Long, Frame> ceiling = index.ceilingEntry(timeMicroSeconds);
+        Map.Entry<Long, Frame> floor = index.floorEntry(timeMicroSeconds);
+        long best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        if (ceiling != null) {
+            best = ceiling.getKey();
+            bestDistance = best - timeMicroSeconds;
+        }
+        // only take the previous frame if it is strictly closer
+        if (floor != null && timeMicroSeconds - floor.getValue().lastTime < bestDistance) {
+            best = floor.getValue().lastTime;
+            bestDistance = timeMicroSeconds - best;
+        }
+        if (bestDistance > tolerance)
+            return -1;
+        return best;
+    }
+
+    /**
+     * Gets the cached thumbnail closest to the given time without decoding the video.
+     * <p>
+     * This can be used to show a preview instantly while the exact frame is still being decoded.
+     * </p>
+     *
+     * @param timeMicroSeconds target time
+     * @param tolerance max distance to the target time in micro seconds
+     * @return the thumbnail or null if there is none within the tolerance
+     */
+    public Bitmap getNearest(long timeMicroSeconds, long tolerance) {
+        long time = getNearestTime(timeMicroSeconds, tolerance);
+        if (time < 0)
+            return null;
+        return get(time);
+    }
+
+    public void clearMemory() {
+        memoryCache.evictAll();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.decoder;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Fills a {@link ThumbnailCache} with downscaled frames in the background.
+ * <p>
+ * In contrast to the {@link SeekToFrameExtractor}, which decodes from the previous sync frame for every seek, the video
+ * is decoded once in sequence. Thus every GOP is only decoded once, no matter how many frames of it are wanted. The
+ * frames are scaled down on the GPU by rendering them into a thumbnail sized {@link CodecOutputSurface}.
+ * </p>
+ * <p>
+ * For every requested frame time the frame a seek to this time would show, i.e., the first frame at or after the time,
+ * is stored under the requested time. A frame that is shown for several requested times is stored once for the whole
+ * range. Thus a thumbnail can be looked up with the same time that is used for the seek.
+ * </p>
+ */
+public class ThumbnailExtractor {
+    final static private String TAG = "ThumbnailExtractor";
+    final static private int DEQUEUE_TIMEOUT = 10000;
+
+    public interface IListener {
+        /**
+         * Is called from the extractor thread.
+         */
+        void onThumbnailExtracted(long timeMicroSeconds);
+
+        /**
+         * Is called from the extractor thread when all thumbnails are in the cache.
+         */
+        void onFinished();
+    }
+
+    final private File videoFile;
+    final private ThumbnailCache cache;
+    final private int thumbnailWidth;
+    final private int thumbnailHeight;
+    final private int rotation;
+    final private long[] frameTimes;
+    private IListener listener = null;
+
+    private Thread thread = null;
+    private volatile boolean quit = false;
+
+    /**
+     * @param videoFile the video to extract the thumbnails from
+     * @param cache the cache to fill
+     * @param thumbnailWidth width of the thumbnails
+     * @param thumbnailHeight height of the thumbnails
+     * @param rotation rotation of the video in degrees, the thumbnails are stored upright
+     * @param frameTimes the frame times in micro seconds
+     */
+    public ThumbnailExtractor(File videoFile, ThumbnailCache cache, int thumbnailWidth, int thumbnailHeight,
+                              int rotation, long[] frameTimes) {
+        this.videoFile = videoFile;
+        this.cache = cache;
+        this.thumbnailWidth = thumbnailWidth;
+        this.thumbnailHeight = thumbnailHeight;
+        this.rotation = rotation;
+        this.frameTimes = Arrays.copyOf(frameTimes, frameTimes.length);
+        Arrays.sort(this.frameTimes);
+    }
+
+    public void setListener(IListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Opens the cache and extracts the missing thumbnails on the extractor thread.
+     */
+    public void start() {
+        if (thread != null)
+            return;
+        quit = false;
+        // The CodecOutputSurface has to be created on a thread without a Looper, so that the frame available
+        // callbacks are delivered on the main Looper.
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    cache.open();
+                    if (extract() && listener != null)
+                        listener.onFinished();
+                } catch (IOException e) {
+                    Log.w(TAG, "thumbnail extraction failed: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // waiting for a frame is interrupted on release
+                    if (!quit)
+                        Log.w(TAG, "thumbnail extraction failed: " + e.getMessage());
+                }
+            }
+        }, TAG);
+        thread.start();
+    }
+
+    /**
+     * Stops the extraction and waits till the extractor thread has released the decoder.
+     * <p>
+     * The thread may wait for a frame callback on the main Looper, i.e., it is interrupted so that joining it from the
+     * main thread doesn't have to wait for the frame timeout.
+     * </p>
+     */
+    public void release() {
+        if (thread == null)
+            return;
+        quit = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        thread = null;
+    }
+
+    /**
+     * @return index of the first frame time that is not cached yet or frameTimes.length if all are cached
+     */
+    private int findFirstMissing(int start) {
+        for (int i = start; i < frameTimes.length; i++) {
+            if (!cache.contains(frameTimes[i]))
+                return i;
+        }
+        return frameTimes.length;
+    }
+
+    private Bitmap rotate(Bitmap bitmap) {
+        if (rotation % 360 == 0)
+            return bitmap;
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, false);
+    }
+
+    /**
+     * @return true if all frames have been extracted
+     */
+    private boolean extract() throws IOException {
+        if (cache.isComplete())
+            return true;
+        int nextTarget = findFirstMissing(0);
+        if (nextTarget == frameTimes.length) {
+            cache.setComplete();
+            return true;
+        }
+
+        CodecOutputSurface outputSurface = null;
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        try {
+            extractor.setDataSource(videoFile.getPath());
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                if (trackFormat.getString(MediaFormat.KEY_MIME).startsWith("video/")) {
+                    extractor.selectTrack(i);
+                    format = trackFormat;
+                    break;
+                }
+            }
+            if (format == null)
+                throw new IOException("no video track");
+
+            outputSurface = new CodecOutputSurface(thumbnailWidth, thumbnailHeight);
+            decoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            decoder.configure(format, outputSurface.getSurface(), null, 0);
+            decoder.start();
+
+            // resume a previous, partial extraction
+            extractor.seekTo(frameTimes[nextTarget], MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+
+            ByteBuffer[] inputBuffers = decoder.getInputBuffers();
+            MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            while (!quit && nextTarget < frameTimes.length) {
+                if (!inputDone) {
+                    int inIndex = decoder.dequeueInputBuffer(DEQUEUE_TIMEOUT);
+                    if (inIndex >= 0) {
+                        int sampleSize = extractor.readSampleData(inputBuffers[inIndex], 0);
+                        if (sampleSize < 0) {
+                            decoder.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            decoder.queueInputBuffer(inIndex, 0, sampleSize, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outIndex = decoder.dequeueOutputBuffer(bufferInfo, DEQUEUE_TIMEOUT);
+                if (outIndex < 0)
+                    continue;
+
+                boolean endOfStream = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                long time = bufferInfo.presentationTimeUs;
+                // this frame is shown for all targets up to its presentation time
+                int firstTarget = nextTarget;
+                while (nextTarget < frameTimes.length && frameTimes[nextTarget] <= time)
+                    nextTarget++;
+                boolean wanted = false;
+                for (int i = firstTarget; i < nextTarget; i++) {
+                    if (!cache.contains(frameTimes[i]))
+                        wanted = true;
+                }
+                if (bufferInfo.size == 0)
+                    wanted = false;
+
+                decoder.releaseOutputBuffer(outIndex, wanted);
+                if (wanted) {
+                    outputSurface.awaitNewImage();
+                    outputSurface.drawImage(true);
+                    Bitmap thumbnail = rotate(outputSurface.getBitmap());
+                    // skip the targets that are cached already, e.g., by an interrupted extraction
+                    int firstMissing = firstTarget;
+                    while (cache.contains(frameTimes[firstMissing]))
+                        firstMissing++;
+                    cache.put(frameTimes[firstMissing], frameTimes[nextTarget - 1], thumbnail);
+                    if (listener != null) {
+                        for (int i = firstMissing; i < nextTarget; i++)
+                            listener.onThumbnailExtracted(frameTimes[i]);
+                    }
+                }
+                if (endOfStream)
+                    break;
+            }
+        } finally {
+            if (decoder != null) {
+                decoder.stop();
+                decoder.release();
+            }
+            extractor.release();
+            if (outputSurface != null)
+                outputSurface.release();
+        }
+
+        if (quit)
+            return false;
+        // frames after the last frame of the video can't be extracted, don't try it again
+        cache.setComplete();
+        return true;
+    }
+}
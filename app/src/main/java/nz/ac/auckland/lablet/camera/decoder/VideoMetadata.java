@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.decoder;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Properties of the video track of a video file.
+ * <p>
+ * Reading the properties requires to open the file with a {@link android.media.MediaExtractor}. Since the same video is
+ * usually opened by several classes (and every time an experiment is opened) the results are cached. A cache entry is
+ * keyed by the file path and is only valid as long as the size and the modification time of the file are unchanged.
+ * </p>
+ */
+public class VideoMetadata {
+    final static private int MAX_CACHE_ENTRIES = 32;
+    final static private Map<String, VideoMetadata> cache = new LinkedHashMap<String, VideoMetadata>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VideoMetadata> eldest) {
+            return size() > MAX_CACHE_ENTRIES;
+        }
+    };
+
+    final private long fileSize;
+    final private long lastModified;
+
+    private String mime;
+    private int width;
+    private int height;
+    private long durationUs;
+    private int frameRate;
+
+    private VideoMetadata(File videoFile) {
+        this.fileSize = videoFile.length();
+        this.lastModified = videoFile.lastModified();
+    }
+
+    /**
+     * Gets the properties of the first video track of a file.
+     *
+     * @param videoFile the video file
+     * @return the video properties
+     * @throws IOException if the file can't be read or has no video track
+     */
+    static public VideoMetadata get(File videoFile) throws IOException {
+        String key = videoFile.getAbsolutePath();
+        synchronized (cache) {
+            VideoMetadata metadata = cache.get(key);
+            if (metadata != null && metadata.fileSize == videoFile.length()
+                    && metadata.lastModified == videoFile.lastModified())
+                return metadata;
+        }
+
+        VideoMetadata metadata = read(videoFile);
+        synchronized (cache) {
+            cache.put(key, metadata);
+        }
+        return metadata;
+    }
+
+    static private VideoMetadata read(File videoFile) throws IOException {
+        VideoMetadata metadata = new VideoMetadata(videoFile);
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(videoFile.getPath());
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (!mime.startsWith("video/"))
+                    continue;
+
+                metadata.mime = mime;
+                metadata.width = format.getInteger(MediaFormat.KEY_WIDTH);
+                metadata.height = format.getInteger(MediaFormat.KEY_HEIGHT);
+                if (format.containsKey(MediaFormat.KEY_DURATION))
+                    metadata.durationUs = format.getLong(MediaFormat.KEY_DURATION);
+                if (format.containsKey(MediaFormat.KEY_FRAME_RATE))
+                    metadata.frameRate = format.getInteger(MediaFormat.KEY_FRAME_RATE);
+                return metadata;
+            }
+        } finally {
+            extractor.release();
+        }
+        throw new IOException("no video track in " + videoFile.getPath());
+    }
+
+    public String getMime() {
+        return mime;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the duration in micro seconds or 0 if unknown
+     */
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * @return the frame rate or 0 if unknown
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+}
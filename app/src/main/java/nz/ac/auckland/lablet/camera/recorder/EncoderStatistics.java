@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.recorder;
+
+import java.util.Locale;
+
+
+/**
+ * Counters of the {@link VideoRecorder} encoder pipeline.
+ * <p>
+ * Used to tune the recording at high frame rates: how many camera frames had to be dropped, how long the encoder needs
+ * for a frame and how much time is spent in the muxer. The encode latency is the time between submitting a frame to
+ * the encoder and receiving the encoded sample with the same presentation time. All methods are thread safe; frames
+ * are submitted on the GL thread and encoded samples arrive on the drain thread.
+ * </p>
+ */
+public class EncoderStatistics {
+    // frames that have been submitted but not encoded yet; more are not tracked for the latency
+    final static private int MAX_PENDING_FRAMES = 64;
+
+    final private long[] pendingPresentationTimes = new long[MAX_PENDING_FRAMES];
+    final private long[] pendingSubmitTimes = new long[MAX_PENDING_FRAMES];
+    private int pendingStart = 0;
+    private int pendingCount = 0;
+
+    private int receivedFrames = 0;
+    private int droppedFrames = 0;
+    private int submittedFrames = 0;
+
+    private int encodedFrames = 0;
+    private int latencySamples = 0;
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+
+    private int muxerWrites = 0;
+    private long muxerBytes = 0;
+    private long totalMuxerTime = 0;
+    private long maxMuxerTime = 0;
+
+    synchronized public void reset() {
+        pendingStart = 0;
+        pendingCount = 0;
+        receivedFrames = 0;
+        droppedFrames = 0;
+        submittedFrames = 0;
+        encodedFrames = 0;
+        latencySamples = 0;
+        totalLatency = 0;
+        maxLatency = 0;
+        muxerWrites = 0;
+        muxerBytes = 0;
+        totalMuxerTime = 0;
+        maxMuxerTime = 0;
+    }
+
+    /**
+     * A new frame arrived from the camera.
+     */
+    synchronized public void onFrameReceived() {
+        receivedFrames++;
+    }
+
+    /**
+     * Camera frames have been replaced by a newer frame before they could be recorded.
+     */
+    synchronized public void onFramesDropped(int count) {
+        droppedFrames += count;
+    }
+
+    /**
+     * @param presentationTimeUs presentation time of the frame in micro seconds
+     * @param submitTimeNs time of the submission in nano seconds, e.g., {@link System#nanoTime()}
+     */
+    synchronized public void onFrameSubmitted(long presentationTimeUs, long submitTimeNs) {
+        submittedFrames++;
+        if (pendingCount == MAX_PENDING_FRAMES)
+            return;
+        int index = (pendingStart + pendingCount) % MAX_PENDING_FRAMES;
+        pendingPresentationTimes[index] = presentationTimeUs;
+        pendingSubmitTimes[index] = submitTimeNs;
+        pendingCount++;
+    }
+
+    /**
+     * @param presentationTimeUs presentation time of the encoded sample in micro seconds
+     * @param encodedTimeNs time the sample has been received in nano seconds
+     */
+    synchronized public void onFrameEncoded(long presentationTimeUs, long encodedTimeNs) {
+        encodedFrames++;
+        // frames submitted before this one have been dropped by the encoder
+        while (pendingCount > 0 && pendingPresentationTimes[pendingStart] < presentationTimeUs)
+            popPending();
+        if (pendingCount == 0 || pendingPresentationTimes[pendingStart] != presentationTimeUs)
+            return;
+
+        long latency = encodedTimeNs - pendingSubmitTimes[pendingStart];
+        popPending();
+        latencySamples++;
+        totalLatency += latency;
+        if (latency > maxLatency)
+            maxLatency = latency;
+    }
+
+    private void popPending() {
+        pendingStart = (pendingStart + 1) % MAX_PENDING_FRAMES;
+        pendingCount--;
+    }
+
+    /**
+     * @param size number of bytes written
+     * @param durationNs time spent in the muxer in nano seconds
+     */
+    synchronized public void onSampleWritten(int size, long durationNs) {
+        muxerWrites++;
+        muxerBytes += size;
+        totalMuxerTime += durationNs;
+        if (durationNs > maxMuxerTime)
+            maxMuxerTime = durationNs;
+    }
+
+    synchronized public int getReceivedFrames() {
+        return receivedFrames;
+    }
+
+    synchronized public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    synchronized public int getSubmittedFrames() {
+        return submittedFrames;
+    }
+
+    synchronized public int getEncodedFrames() {
+        return encodedFrames;
+    }
+
+    /**
+     * @return the average encode latency in milli seconds
+     */
+    synchronized public float getAverageLatency() {
+        if (latencySamples == 0)
+            return 0;
+        return (float)totalLatency / latencySamples / 1000000f;
+    }
+
+    /**
+     * @return the max encode latency in milli seconds
+     */
+    synchronized public float getMaxLatency() {
+        return maxLatency / 1000000f;
+    }
+
+    synchronized public int getMuxerWrites() {
+        return muxerWrites;
+    }
+
+    synchronized public long getMuxerBytes() {
+        return muxerBytes;
+    }
+
+    /**
+     * @return the average time of a muxer write in milli seconds
+     */
+    synchronized public float getAverageMuxerTime() {
+        if (muxerWrites == 0)
+            return 0;
+        return (float)totalMuxerTime / muxerWrites / 1000000f;
+    }
+
+    /**
+     * @return the max time of a muxer write in milli seconds
+     */
+    synchronized public float getMaxMuxerTime() {
+        return maxMuxerTime / 1000000f;
+    }
+
+    @Override
+    synchronized public String toString() {
+        return String.format(Locale.US, "frames: %d received, %d dropped, %d submitted, %d encoded; "
+                        + "encode latency: %.2fms avg, %.2fms max; muxer: %d writes, %d bytes, %.2fms avg, %.2fms max",
+                receivedFrames, droppedFrames, submittedFrames, encodedFrames, getAverageLatency(), getMaxLatency(),
+                muxerWrites, muxerBytes, getAverageMuxerTime(), getMaxMuxerTime());
+    }
+}
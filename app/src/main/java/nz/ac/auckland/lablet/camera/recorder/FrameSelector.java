@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.recorder;
+
+
+/**
+ * Selects the frames a seek to the times k * 1000 / frameRate ms would show, i.e., the first frame at or after each of
+ * the times.
+ */
+class FrameSelector {
+    final private float frameRate;
+    private long nextFrameTime = 0;
+    private int selectedTimes = 0;
+
+    /**
+     * @param frameRate rate of the selected frames or 0 to select all frames
+     */
+    public FrameSelector(float frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Must be called for all frames in presentation order.
+     *
+     * @param time presentation time of the frame in us
+     * @return true if the frame is kept
+     */
+    public boolean select(long time) {
+        if (time < nextFrameTime)
+            return false;
+        if (frameRate > 0) {
+            // skip all times up to this frame
+            while (nextFrameTime <= time) {
+                selectedTimes++;
+                nextFrameTime = (long)(selectedTimes * 1000 / frameRate) * 1000;
+            }
+        }
+        return true;
+    }
+}
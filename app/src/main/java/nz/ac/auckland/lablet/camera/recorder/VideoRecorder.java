@@ -18,10 +18,14 @@
  */
 package nz.ac.auckland.lablet.camera.recorder;
 
+import android.annotation.TargetApi;
 import android.media.*;
 import android.opengl.*;
+import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 
@@ -29,141 +33,6 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 
-/**
- * Holds state associated with a Surface used for MediaCodec encoder input.
- * <p>
- * The constructor takes a Surface obtained from MediaCodec.createInputSurface(), and uses
- * that to create an EGL window surface.  Calls to eglSwapBuffers() cause a frame of data to
- * be sent to the video encoder.
- * <p>
- * This object owns the Surface -- releasing this will release the Surface too.
- */
-class CodecInputSurface {
-    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
-
-    private EGLDisplay mEGLDisplay = EGL14.EGL_NO_DISPLAY;
-    private EGLContext mEGLContext = EGL14.EGL_NO_CONTEXT;
-    private EGLSurface mEGLSurface = EGL14.EGL_NO_SURFACE;
-
-    private Surface mSurface;
-
-    /**
-     * Creates a CodecInputSurface from a Surface.
-     */
-    public CodecInputSurface(Surface surface, EGLContext sharedContext) {
-        if (surface == null) {
-            throw new NullPointerException();
-        }
-        mSurface = surface;
-
-        eglSetup(sharedContext);
-    }
-
-    /**
-     * Prepares EGL.  We want a GLES 2.0 context and a surface that supports recording.
-     */
-    private void eglSetup(EGLContext sharedContext) {
-        mEGLDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
-        if (mEGLDisplay == EGL14.EGL_NO_DISPLAY) {
-            throw new RuntimeException("unable to get EGL14 display");
-        }
-        int[] version = new int[2];
-        if (!EGL14.eglInitialize(mEGLDisplay, version, 0, version, 1)) {
-            throw new RuntimeException("unable to initialize EGL14");
-        }
-
-        // Configure EGL for recording and OpenGL ES 2.0.
-        int[] attribList = {
-                EGL14.EGL_RED_SIZE, 8,
-                EGL14.EGL_GREEN_SIZE, 8,
-                EGL14.EGL_BLUE_SIZE, 8,
-                EGL14.EGL_ALPHA_SIZE, 8,
-                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
-                EGL_RECORDABLE_ANDROID, 1,
-                EGL14.EGL_NONE
-        };
-        EGLConfig[] configs = new EGLConfig[1];
-        int[] numConfigs = new int[1];
-        EGL14.eglChooseConfig(mEGLDisplay, attribList, 0, configs, 0, configs.length,
-                numConfigs, 0);
-        checkEglError("eglCreateContext RGB888+recordable ES2");
-
-        // Configure context for OpenGL ES 2.0.
-        int[] attrib_list = {
-                EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
-                EGL14.EGL_NONE
-        };
-        mEGLContext = EGL14.eglCreateContext(mEGLDisplay, configs[0], sharedContext, attrib_list, 0);
-        checkEglError("eglCreateContext");
-
-        // Create a window surface, and attach it to the Surface we received.
-        int[] surfaceAttribs = {
-                EGL14.EGL_NONE
-        };
-        mEGLSurface = EGL14.eglCreateWindowSurface(mEGLDisplay, configs[0], mSurface,
-                surfaceAttribs, 0);
-        checkEglError("eglCreateWindowSurface");
-    }
-
-    /**
-     * Discards all resources held by this class, notably the EGL context.  Also releases the
-     * Surface that was passed to our constructor.
-     */
-    public void release() {
-        if (mEGLDisplay != EGL14.EGL_NO_DISPLAY) {
-            EGL14.eglMakeCurrent(mEGLDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
-                    EGL14.EGL_NO_CONTEXT);
-            EGL14.eglDestroySurface(mEGLDisplay, mEGLSurface);
-            EGL14.eglDestroyContext(mEGLDisplay, mEGLContext);
-            EGL14.eglReleaseThread();
-            EGL14.eglTerminate(mEGLDisplay);
-        }
-        mSurface.release();
-
-        mEGLDisplay = EGL14.EGL_NO_DISPLAY;
-        mEGLContext = EGL14.EGL_NO_CONTEXT;
-        mEGLSurface = EGL14.EGL_NO_SURFACE;
-
-        mSurface = null;
-    }
-
-    /**
-     * Makes our EGL context and surface current.
-     */
-    public void makeCurrent() {
-        EGL14.eglMakeCurrent(mEGLDisplay, mEGLSurface, mEGLSurface, mEGLContext);
-        checkEglError("eglMakeCurrent");
-    }
-
-    /**
-     * Calls eglSwapBuffers.  Use this to "publish" the current frame.
-     */
-    public boolean swapBuffers() {
-        boolean result = EGL14.eglSwapBuffers(mEGLDisplay, mEGLSurface);
-        checkEglError("eglSwapBuffers");
-        return result;
-    }
-
-    /**
-     * Sends the presentation time stamp to EGL.  Time is expressed in nanoseconds.
-     */
-    public void setPresentationTime(long nsecs) {
-        EGLExt.eglPresentationTimeANDROID(mEGLDisplay, mEGLSurface, nsecs);
-        checkEglError("eglPresentationTimeANDROID");
-    }
-
-    /**
-     * Checks for EGL errors.  Throws an exception if one is found.
-     */
-    private void checkEglError(String msg) {
-        int error;
-        if ((error = EGL14.eglGetError()) != EGL14.EGL_SUCCESS) {
-            throw new RuntimeException(msg + ": EGL error: 0x" + Integer.toHexString(error));
-        }
-    }
-}
-
-
 /**
  * Custom video recording class.
  *
@@ -175,12 +44,16 @@ class CodecInputSurface {
  * 4) The recorder listens for new frames on the preview SurfaceTexture and draws the SurfaceTexture to the encoder
  * input surface (EGLSurface).
  * 5) By calling eglSwapBuffers for the EGLSurface the frame is send to the encoder.
- * 6) Processed frames from the encoder are fed to a muxer to generate a mp4.
+ * 6) Processed frames from the encoder are fed to a muxer to generate a mp4. This happens on a dedicated drain thread
+ * so that the thread rendering the camera frames never waits for the encoder or the muxer.
  */
 public class VideoRecorder {
+    private static final String TAG = "VideoRecorder";
     // parameters for the encoder
     private static final String MIME_TYPE = "video/avc";    // H.264 Advanced Video Coding
-    private static final int IFRAME_INTERVAL = 1;
+    public static final int DEFAULT_IFRAME_INTERVAL = 1;
+    // max time to wait for the encoder to finish the stream
+    private static final int END_OF_STREAM_TIMEOUT = 5000;
 
     private CameraGLTextureProducer cameraGLTextureProducer;
 
@@ -190,9 +63,7 @@ public class VideoRecorder {
     private MediaCodec encoder;
     private Surface encoderInputSurface;
     private int orientationHintDegrees = 0;
-    private MediaMuxer muxer;
-    private boolean muxerStarted = false;
-    private int trackIndex;
+    private EncoderDrain encoderDrain;
     private Looper looper = null;
     private Handler handler = null;
 
@@ -203,53 +74,79 @@ public class VideoRecorder {
 
     private float recordingFrameRate = 30f;
     private int recordedFrames = 0;
+    // camera frames that arrived since the last frame has been handled, guarded by lock
+    private int pendingFrames = 0;
 
-    // allocate one of these up front so we don't need to do it every time
-    private MediaCodec.BufferInfo bufferInfo;
+    final private EncoderStatistics statistics = new EncoderStatistics();
 
     public VideoRecorder() {
         reset();
     }
 
+    private Runnable newFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int frames;
+            synchronized (lock) {
+                frames = pendingFrames;
+                pendingFrames = 0;
+            }
+            handleNewFrame(frames);
+        }
+    };
+
     private CameraGLTextureProducer.IListener frameListener = new CameraGLTextureProducer.IListener() {
         @Override
         public void onNewFrame() {
             synchronized (lock) {
-                if (handler != null) {
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            handleNewFrame();
-                        }
-                    });
-                }
+                if (handler == null)
+                    return;
+                // Only the latest camera image can be rendered, thus frames that arrive while the last one is still
+                // pending are merged into a single update.
+                pendingFrames++;
+                if (pendingFrames == 1)
+                    handler.post(newFrameRunnable);
             }
         }
     };
 
-    private void handleNewFrame() {
+    /**
+     * @param frames number of camera frames since the last call
+     */
+    private void handleNewFrame(int frames) {
         if (isRecording) {
             if (stopRecording) {
-                // send end-of-stream to encoder, and drain remaining output
-                drainEncoder(true);
+                // send end-of-stream to encoder, and wait till the remaining output is drained
+                finishEncoding();
                 // stop recording
                 cleanUpRecording();
+                Log.i(TAG, "recording statistics: " + statistics);
 
                 stopRecording = false;
                 isRecording = false;
                 return;
             }
-            // Feed any pending encoder output into the muxer.
-            drainEncoder(false);
+            if (frames == 0)
+                return;
 
-            int nthFrameToRecord = (int)(30f / recordingFrameRate);
-            if ((recordedFrames % nthFrameToRecord) == 0)
+            // record every nth camera frame; count the frames that should have been recorded among the new frames
+            int nthFrameToRecord = Math.max(1, (int)(30f / recordingFrameRate));
+            int firstFrame = recordedFrames;
+            recordedFrames += frames;
+            int framesToRecord = ceilDiv(recordedFrames, nthFrameToRecord) - ceilDiv(firstFrame, nthFrameToRecord);
+            for (int i = 0; i < frames; i++)
+                statistics.onFrameReceived();
+            if (framesToRecord > 1)
+                statistics.onFramesDropped(framesToRecord - 1);
+            if (framesToRecord > 0)
                 sendFrameToEncoder();
-
-            recordedFrames++;
         }
     }
 
+    static private int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
     private void sendFrameToEncoder() {
         if (codecInputSurface == null)
             return;
@@ -260,12 +157,11 @@ public class VideoRecorder {
 
         // Set the presentation time stamp from the SurfaceTexture's time stamp.  This
         // will be used by MediaMuxer to set the PTS in the video.
-        codecInputSurface.setPresentationTime(cameraGLTextureProducer.getSurfaceTexture().getTimestamp());
-        // Submit it to the encoder.  The eglSwapBuffers call will block if the input
-        // is full, which would be bad if it stayed full until we dequeued an output
-        // buffer (which we can't do, since we're stuck here).  So long as we fully drain
-        // the encoder before supplying additional input, the system guarantees that we
-        // can supply another frame without blocking.
+        long timestamp = cameraGLTextureProducer.getSurfaceTexture().getTimestamp();
+        codecInputSurface.setPresentationTime(timestamp);
+        // Submit it to the encoder.  The eglSwapBuffers call blocks if the input is full.  Since the output is
+        // drained on its own thread, the encoder is able to make progress in the meantime.
+        statistics.onFrameSubmitted(timestamp / 1000, System.nanoTime());
         codecInputSurface.swapBuffers();
     }
 
@@ -274,6 +170,7 @@ public class VideoRecorder {
             release();
 
             recordedFrames = 0;
+            pendingFrames = 0;
 
             // start recording thread
             new Thread(new Runnable() {
@@ -314,9 +211,7 @@ public class VideoRecorder {
         }
     }
 
-    private void prepareEncoder(int width, int height, int videoBitRate) {
-        bufferInfo = new MediaCodec.BufferInfo();
-
+    private void prepareEncoder(int width, int height, int videoBitRate, int iFrameInterval, MediaMuxer muxer) {
         MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
 
         // Set some properties.  Failing to specify some of these can cause the MediaCodec
@@ -325,7 +220,7 @@ public class VideoRecorder {
                 MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
         format.setInteger(MediaFormat.KEY_BIT_RATE, videoBitRate);
         format.setInteger(MediaFormat.KEY_FRAME_RATE, 30);
-        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, IFRAME_INTERVAL);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, iFrameInterval);
 
         // Create a MediaCodec encoder, and configure it with our format.  Get a Surface
         // we can use for input and wrap it with a class that handles the EGL work.
@@ -339,26 +234,42 @@ public class VideoRecorder {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        encoderDrain = new EncoderDrain(encoder, muxer, statistics);
+        // the callback has to be set before the encoder is configured
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+            encoderDrain.setCallback();
         encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
         encoderInputSurface = encoder.createInputSurface();
         encoder.start();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+            encoderDrain.startPolling();
+    }
+
+    /**
+     * Signals the end of the stream to the encoder and waits till all samples have been written to the muxer.
+     */
+    private void finishEncoding() {
+        if (encoder == null || encoderDrain == null)
+            return;
+        encoder.signalEndOfInputStream();
+        if (!encoderDrain.awaitEndOfStream(END_OF_STREAM_TIMEOUT))
+            Log.w(TAG, "encoder did not finish the stream in time");
     }
 
     private void cleanUpRecording() {
         // clean up
+        if (encoderDrain != null)
+            encoderDrain.quit();
+
         if (encoder != null) {
             encoder.stop();
             encoder.release();
             encoder = null;
         }
 
-        if (muxer != null) {
-            if (muxerStarted) {
-                muxer.stop();
-                muxerStarted = false;
-            }
-            muxer.release();
-            muxer = null;
+        if (encoderDrain != null) {
+            encoderDrain.releaseMuxer();
+            encoderDrain = null;
         }
 
         if (codecInputSurface != null) {
@@ -369,12 +280,27 @@ public class VideoRecorder {
     }
 
     public void startRecording(int width, int height, int videoBitRate, String outputPath) {
+        startRecording(width, height, videoBitRate, DEFAULT_IFRAME_INTERVAL, outputPath);
+    }
+
+    /**
+     * Starts recording.
+     *
+     * @param width width of the video
+     * @param height height of the video
+     * @param videoBitRate bit rate of the video
+     * @param iFrameInterval interval between two I-frames in seconds; short intervals make seeking in the video fast,
+     *                       long intervals need a lower bit rate for the same quality
+     * @param outputPath path of the mp4 file
+     */
+    public void startRecording(int width, int height, int videoBitRate, int iFrameInterval, String outputPath) {
         synchronized (lock) {
             try {
                 recordedFrames = 0;
-                prepareEncoder(width, height, videoBitRate);
-                muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+                statistics.reset();
+                MediaMuxer muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
                 muxer.setOrientationHint(orientationHintDegrees);
+                prepareEncoder(width, height, videoBitRate, iFrameInterval, muxer);
 
                 handler.post(new Runnable() {
                     @Override
@@ -391,8 +317,6 @@ public class VideoRecorder {
                 throw new RuntimeException("MediaMuxer creation failed", ioe);
             }
 
-            trackIndex = -1;
-
             isRecording = true;
         }
     }
@@ -410,7 +334,7 @@ public class VideoRecorder {
                     synchronized (stoppingSem) {
                         // make sure that the stopRecording event is received (we are blocking the looper that receives
                         // onNewFrameAvailable events)
-                        handleNewFrame();
+                        handleNewFrame(0);
 
                         stoppingSem.notifyAll();
                     }
@@ -435,90 +359,216 @@ public class VideoRecorder {
     }
 
     /**
-     * Extracts all pending data from the encoder and forwards it to the muxer.
-     * <p>
-     * If endOfStream is not set, this returns when there is no more data to drain.  If it
-     * is set, we send EOS to the encoder, and then iterate until we see EOS on the output.
-     * Calling this with endOfStream set should be done once, right before stopping the muxer.
-     * <p>
-     * We're just using the muxer to get a .mp4 file (instead of a raw H.264 stream).  We're
-     * not recording audio.
+     * Gets the counters of the current or the last recording.
+     *
+     * @return the encoder statistics
      */
-    private void drainEncoder(boolean endOfStream) {
-        final int TIMEOUT_USEC = 10000;
-
-        if (endOfStream)
-            encoder.signalEndOfInputStream();
-
-        ByteBuffer[] encoderOutputBuffers = encoder.getOutputBuffers();
-        while (true) {
-            int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
-            if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                // no output available yet
-                if (!endOfStream) {
-                    break;      // out of while
-                }
-            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
-                // not expected for an encoder
-                encoderOutputBuffers = encoder.getOutputBuffers();
-            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                // should happen before receiving buffers, and should only happen once
-                if (muxerStarted) {
-                    throw new RuntimeException("format changed twice");
-                }
-                MediaFormat newFormat = encoder.getOutputFormat();
-                Log.d("drainEncoder", "encoder output format changed: " + newFormat);
-
-                // now that we have the Magic Goodies, start the muxer
-                trackIndex = muxer.addTrack(newFormat);
-                muxer.start();
-                muxerStarted = true;
-            } else if (encoderStatus < 0) {
-                Log.w("drainEncoder", "unexpected result from encoder.dequeueOutputBuffer: " +
-                        encoderStatus);
-                // let's ignore it
-            } else {
-                ByteBuffer encodedData = encoderOutputBuffers[encoderStatus];
-                if (encodedData == null) {
-                    throw new RuntimeException("encoderOutputBuffer " + encoderStatus +
-                            " was null");
-                }
+    public EncoderStatistics getStatistics() {
+        return statistics;
+    }
 
-                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
-                    // The codec config data was pulled out and fed to the muxer when we got
-                    // the INFO_OUTPUT_FORMAT_CHANGED status.  Ignore it.
-                    bufferInfo.size = 0;
-                }
+    public void setRotation(int orientationHintDegrees) {
+        this.orientationHintDegrees = orientationHintDegrees;
+    }
 
-                if (bufferInfo.size != 0) {
-                    if (!muxerStarted) {
-                        throw new RuntimeException("muxer hasn't started");
-                    }
+    public void setRecordingFrameRate(float recordingFrameRate) {
+        this.recordingFrameRate = recordingFrameRate;
+    }
+}
 
-                    // adjust the ByteBuffer values to match BufferInfo (not needed?)
-                    encodedData.position(bufferInfo.offset);
-                    encodedData.limit(bufferInfo.offset + bufferInfo.size);
 
-                    muxer.writeSampleData(trackIndex, encodedData, bufferInfo);
-                }
+/**
+ * Extracts the data from the encoder and forwards it to the muxer on a dedicated thread.
+ * <p>
+ * On Android M and newer the encoder notifies the drain thread through the asynchronous callback API. On older
+ * devices the drain thread polls the encoder.
+ * <p>
+ * We're just using the muxer to get a .mp4 file (instead of a raw H.264 stream).  We're
+ * not recording audio.
+ */
+class EncoderDrain {
+    private static final String TAG = "EncoderDrain";
+    private static final int TIMEOUT_USEC = 10000;
 
-                encoder.releaseOutputBuffer(encoderStatus, false);
+    final private MediaCodec encoder;
+    final private MediaMuxer muxer;
+    final private EncoderStatistics statistics;
+    final private HandlerThread thread;
+    final private Handler handler;
 
-                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                    if (!endOfStream) {
-                        Log.w("drainEncoder", "reached end of stream unexpectedly");
-                    }
-                    break;      // out of while
+    // only accessed from the drain thread until the thread quit
+    private boolean muxerStarted = false;
+    private int trackIndex = -1;
+
+    // guarded by this
+    private boolean endOfStream = false;
+
+    public EncoderDrain(MediaCodec encoder, MediaMuxer muxer, EncoderStatistics statistics) {
+        this.encoder = encoder;
+        this.muxer = muxer;
+        this.statistics = statistics;
+
+        thread = new HandlerThread("VideoRecorderDrain");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Lets the encoder push its output to the drain thread. Must be called before the encoder is configured.
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    public void setCallback() {
+        encoder.setCallback(new MediaCodec.Callback() {
+            @Override
+            public void onInputBufferAvailable(MediaCodec codec, int index) {
+                // input comes from the input surface
+            }
+
+            @Override
+            public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
+                handleOutputBuffer(codec.getOutputBuffer(index), index, info);
+            }
+
+            @Override
+            public void onError(MediaCodec codec, MediaCodec.CodecException e) {
+                Log.e(TAG, "encoder error: " + e.getMessage());
+                setEndOfStream();
+            }
+
+            @Override
+            public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
+                startMuxer(format);
+            }
+        }, handler);
+    }
+
+    /**
+     * Polls the encoder on the drain thread. Must be called after the encoder has been started.
+     */
+    public void startPolling() {
+        handler.post(new Runnable() {
+            final private MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+            private ByteBuffer[] encoderOutputBuffers = encoder.getOutputBuffers();
+
+            @Override
+            public void run() {
+                if (isEndOfStream())
+                    return;
+                int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
+                if (encoderStatus == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    // not expected for an encoder
+                    encoderOutputBuffers = encoder.getOutputBuffers();
+                } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    startMuxer(encoder.getOutputFormat());
+                } else if (encoderStatus >= 0) {
+                    handleOutputBuffer(encoderOutputBuffers[encoderStatus], encoderStatus, bufferInfo);
+                } else if (encoderStatus != MediaCodec.INFO_TRY_AGAIN_LATER) {
+                    Log.w(TAG, "unexpected result from encoder.dequeueOutputBuffer: " + encoderStatus);
+                    // let's ignore it
                 }
+                // give other messages, e.g., quit, a chance
+                handler.post(this);
             }
+        });
+    }
+
+    private void startMuxer(MediaFormat format) {
+        // should happen before receiving buffers, and should only happen once
+        if (muxerStarted) {
+            throw new RuntimeException("format changed twice");
         }
+        Log.d(TAG, "encoder output format changed: " + format);
+
+        // now that we have the Magic Goodies, start the muxer
+        trackIndex = muxer.addTrack(format);
+        muxer.start();
+        muxerStarted = true;
     }
 
-    public void setRotation(int orientationHintDegrees) {
-        this.orientationHintDegrees = orientationHintDegrees;
+    private void handleOutputBuffer(ByteBuffer encodedData, int index, MediaCodec.BufferInfo bufferInfo) {
+        if (encodedData == null) {
+            throw new RuntimeException("encoderOutputBuffer " + index + " was null");
+        }
+
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+            // The codec config data was pulled out and fed to the muxer when we got
+            // the INFO_OUTPUT_FORMAT_CHANGED status.  Ignore it.
+            bufferInfo.size = 0;
+        }
+
+        if (bufferInfo.size != 0) {
+            if (!muxerStarted) {
+                throw new RuntimeException("muxer hasn't started");
+            }
+            statistics.onFrameEncoded(bufferInfo.presentationTimeUs, System.nanoTime());
+
+            // adjust the ByteBuffer values to match BufferInfo (not needed?)
+            encodedData.position(bufferInfo.offset);
+            encodedData.limit(bufferInfo.offset + bufferInfo.size);
+
+            long writeStart = System.nanoTime();
+            muxer.writeSampleData(trackIndex, encodedData, bufferInfo);
+            statistics.onSampleWritten(bufferInfo.size, System.nanoTime() - writeStart);
+        }
+
+        encoder.releaseOutputBuffer(index, false);
+
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0)
+            setEndOfStream();
     }
 
-    public void setRecordingFrameRate(float recordingFrameRate) {
-        this.recordingFrameRate = recordingFrameRate;
+    synchronized private void setEndOfStream() {
+        endOfStream = true;
+        notifyAll();
+    }
+
+    synchronized private boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * Waits till the encoder signaled the end of the stream.
+     *
+     * @param timeout in milli seconds
+     * @return false if the timeout elapsed
+     */
+    synchronized public boolean awaitEndOfStream(long timeout) {
+        long end = SystemClock.elapsedRealtime() + timeout;
+        while (!endOfStream) {
+            long remaining = end - SystemClock.elapsedRealtime();
+            if (remaining <= 0)
+                return false;
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the drain thread and waits till it is finished.
+     */
+    public void quit() {
+        setEndOfStream();
+        thread.quit();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finishes the mp4 file. Must be called after {@link #quit()}.
+     */
+    public void releaseMuxer() {
+        if (muxerStarted) {
+            muxer.stop();
+            muxerStarted = false;
+        }
+        muxer.release();
     }
 }
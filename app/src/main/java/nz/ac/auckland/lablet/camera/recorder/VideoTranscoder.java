@@ -0,0 +1,311 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.camera.recorder;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.media.MediaMuxer;
+import android.opengl.EGL14;
+import android.util.Log;
+import nz.ac.auckland.lablet.camera.decoder.CodecOutputSurface;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Re-encodes a video into a copy in which every frame is a key frame.
+ * <p>
+ * The source is decoded into a {@link CodecOutputSurface} and every kept frame is drawn onto a
+ * {@link CodecInputSurface} of the encoder, i.e., the same surfaces that are used to extract and to record frames. The
+ * presentation times and the rotation of the source are kept.
+ * </p>
+ * <p>
+ * If a frame rate is given, only the frames a seek to the times k * 1000 / frameRate ms would show are kept, see
+ * {@link FrameSelector}. Otherwise all frames are kept.
+ * </p>
+ * <p>
+ * Must not be called from a thread with a Looper, see {@link CodecOutputSurface}.
+ * </p>
+ */
+public class VideoTranscoder {
+    final static private String TAG = "VideoTranscoder";
+    final static private String MIME_TYPE = "video/avc";
+    final static private int TIMEOUT_USEC = 10000;
+    // all-intra streams need a lot more bits than normal recordings
+    final static private float BITS_PER_PIXEL = 0.3f;
+    // used if the encoder does not support all-intra streams
+    final static private int FALLBACK_IFRAME_INTERVAL = 1;
+
+    public interface IListener {
+        /**
+         * @param progress from 0 to 1
+         */
+        void onProgress(float progress);
+    }
+
+    final private File source;
+    final private File target;
+    final private float frameRate;
+    private IListener listener = null;
+    private volatile boolean canceled = false;
+
+    private MediaExtractor extractor;
+    private MediaCodec decoder;
+    private MediaCodec encoder;
+    private MediaMuxer muxer;
+    private CodecOutputSurface outputSurface;
+    private CodecInputSurface inputSurface;
+    private int trackIndex = -1;
+    private boolean muxerStarted = false;
+
+    /**
+     * @param source the video to transcode
+     * @param target the file to write
+     * @param frameRate rate of the kept frames or 0 to keep all frames
+     */
+    public VideoTranscoder(File source, File target, float frameRate) {
+        this.source = source;
+        this.target = target;
+        this.frameRate = frameRate;
+    }
+
+    public void setListener(IListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stops a running transcoding; {@link #transcode()} returns false in this case.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Transcodes the video. Blocks till the transcoding is done.
+     *
+     * @return false if the transcoding has been canceled
+     * @throws IOException if the video can't be read or written
+     */
+    public boolean transcode() throws IOException {
+        try {
+            MediaFormat inputFormat = openSource();
+            int width = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+            int height = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+            long duration = inputFormat.containsKey(MediaFormat.KEY_DURATION)
+                    ? inputFormat.getLong(MediaFormat.KEY_DURATION) : 0;
+
+            muxer = new MediaMuxer(target.getPath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(readRotation());
+
+            // The decoder output surface owns the first EGL context; the encoder input surface shares it to be able
+            // to draw the decoded texture.
+            outputSurface = new CodecOutputSurface(width, height);
+            prepareEncoder(width, height);
+            inputSurface = new CodecInputSurface(encoder.createInputSurface(), EGL14.eglGetCurrentContext());
+            encoder.start();
+
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, outputSurface.getSurface(), null, 0);
+            decoder.start();
+
+            return transcodeFrames(duration);
+        } finally {
+            release();
+        }
+    }
+
+    private MediaFormat openSource() throws IOException {
+        extractor = new MediaExtractor();
+        extractor.setDataSource(source.getPath());
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            if (format.getString(MediaFormat.KEY_MIME).startsWith("video/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IOException("no video track in " + source.getPath());
+    }
+
+    private int readRotation() {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(source.getPath());
+            String rotation = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
+            return rotation != null ? Integer.parseInt(rotation) : 0;
+        } catch (RuntimeException e) {
+            return 0;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private void prepareEncoder(int width, int height) throws IOException {
+        int encoderFrameRate = frameRate > 0 ? Math.max(1, Math.round(frameRate)) : 30;
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, (int)(width * height * encoderFrameRate * BITS_PER_PIXEL));
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, encoderFrameRate);
+        // 0 requests a stream of key frames only
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 0);
+
+        encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+        try {
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "all-intra encoding not supported, use a short GOP");
+            encoder.release();
+            encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, FALLBACK_IFRAME_INTERVAL);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        }
+    }
+
+    private boolean transcodeFrames(long duration) {
+        ByteBuffer[] decoderInputBuffers = decoder.getInputBuffers();
+        MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+        FrameSelector frameSelector = new FrameSelector(frameRate);
+        boolean inputDone = false;
+        boolean decoderDone = false;
+        while (!decoderDone) {
+            if (canceled)
+                return false;
+
+            if (!inputDone) {
+                int inIndex = decoder.dequeueInputBuffer(TIMEOUT_USEC);
+                if (inIndex >= 0) {
+                    int sampleSize = extractor.readSampleData(decoderInputBuffers[inIndex], 0);
+                    if (sampleSize < 0) {
+                        decoder.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        decoder.queueInputBuffer(inIndex, 0, sampleSize, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            drainEncoder(false);
+
+            int outIndex = decoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
+            if (outIndex < 0)
+                continue;
+
+            long time = bufferInfo.presentationTimeUs;
+            boolean keep = bufferInfo.size != 0 && frameSelector.select(time);
+            decoder.releaseOutputBuffer(outIndex, keep);
+            if (keep) {
+                outputSurface.makeCurrent();
+                outputSurface.awaitNewImage();
+                inputSurface.makeCurrent();
+                outputSurface.drawImage(false);
+                inputSurface.setPresentationTime(time * 1000);
+                inputSurface.swapBuffers();
+
+                if (listener != null && duration > 0)
+                    listener.onProgress(Math.min(1f, (float)time / duration));
+            }
+            if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0)
+                decoderDone = true;
+        }
+
+        encoder.signalEndOfInputStream();
+        drainEncoder(true);
+        return true;
+    }
+
+    /**
+     * Moves the encoded samples to the muxer.
+     *
+     * @param endOfStream if set, waits till the encoder signals the end of the stream
+     */
+    private void drainEncoder(boolean endOfStream) {
+        ByteBuffer[] encoderOutputBuffers = encoder.getOutputBuffers();
+        MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+        while (true) {
+            int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
+            if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream || canceled)
+                    return;
+            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                encoderOutputBuffers = encoder.getOutputBuffers();
+            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                if (muxerStarted)
+                    throw new RuntimeException("format changed twice");
+                trackIndex = muxer.addTrack(encoder.getOutputFormat());
+                muxer.start();
+                muxerStarted = true;
+            } else if (encoderStatus >= 0) {
+                ByteBuffer encodedData = encoderOutputBuffers[encoderStatus];
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0)
+                    bufferInfo.size = 0;
+                if (bufferInfo.size != 0) {
+                    if (!muxerStarted)
+                        throw new RuntimeException("muxer hasn't started");
+                    encodedData.position(bufferInfo.offset);
+                    encodedData.limit(bufferInfo.offset + bufferInfo.size);
+                    muxer.writeSampleData(trackIndex, encodedData, bufferInfo);
+                }
+                encoder.releaseOutputBuffer(encoderStatus, false);
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0)
+                    return;
+            }
+        }
+    }
+
+    private void release() {
+        if (decoder != null) {
+            try {
+                decoder.stop();
+            } catch (IllegalStateException e) {
+                // not started
+            }
+            decoder.release();
+            decoder = null;
+        }
+        if (encoder != null) {
+            try {
+                encoder.stop();
+            } catch (IllegalStateException e) {
+                // not started
+            }
+            encoder.release();
+            encoder = null;
+        }
+        // the output surface owns the shared context, release it first
+        if (outputSurface != null) {
+            outputSurface.release();
+            outputSurface = null;
+        }
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (muxer != null) {
+            if (muxerStarted) {
+                try {
+                    muxer.stop();
+                } catch (IllegalStateException e) {
+                    Log.w(TAG, "muxer failed to stop: " + e.getMessage());
+                }
+                muxerStarted = false;
+            }
+            muxer.release();
+            muxer = null;
+        }
+        if (extractor != null) {
+            extractor.release();
+            extractor = null;
+        }
+    }
+}
@@ -7,6 +7,8 @@
  */
 package nz.ac.auckland.lablet.experiment;
 
+import android.os.AsyncTask;
+
 import java.io.File;
 import java.io.IOException;
 
@@ -16,15 +18,29 @@ import java.io.IOException;
  */
 public abstract class AbstractFileImportPlugin implements IImportPlugin {
     @Override
-    public void importData(File importFile, File storageDir, IListener listener) {
-        boolean result = importInternal(importFile, storageDir);
+    public void importData(final File importFile, final File storageDir, final IListener listener) {
+        // copying the file and waiting for the saved data may take a while, do it off the UI thread
+        new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... voids) {
+                return importInternal(importFile, storageDir);
+            }
 
-        if (listener != null)
-            listener.onImportFinished(result);
+            @Override
+            protected void onPostExecute(Boolean result) {
+                if (listener != null)
+                    listener.onImportFinished(result);
+            }
+        }.execute();
     }
 
     abstract protected String createUid(String fileName);
 
+    /**
+     * Imports the file. Runs on a background thread.
+     *
+     * @return false if the import failed
+     */
     abstract protected boolean importFile(File importFile, File dataStorageDir);
 
     private boolean importInternal(final File importFile, File storageBaseDir) {
@@ -44,6 +60,15 @@ public abstract class AbstractFileImportPlugin implements IImportPlugin {
         }
 
         File dataStorageDir = experimentRun.getStorageDir();
-        return importFile(importFile, dataStorageDir);
+        if (!importFile(importFile, dataStorageDir))
+            return false;
+        // the sensor data is written in the background
+        try {
+            experiment.waitForSavedData(mainDir);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
     }
 }
@@ -8,10 +8,9 @@
 package nz.ac.auckland.lablet.experiment;
 
 import android.os.Bundle;
-import nz.ac.auckland.lablet.misc.PersistentBundle;
+import nz.ac.auckland.lablet.misc.BackgroundSaver;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 
 
@@ -54,6 +53,15 @@ abstract public class AbstractSensorData implements ISensorData {
         return true;
     }
 
+    /**
+     * Saves the experiment data.
+     * <p>
+     * The data is collected on the calling thread and the experiment file is written by the {@link BackgroundSaver},
+     * i.e., the file may not be written when this method returns. Readers can wait for it with
+     * {@link BackgroundSaver#waitFor(File, long)}. Write errors are reported by
+     * {@link BackgroundSaver#waitForDir(File)}, e.g., when the experiment is finished.
+     * </p>
+     */
     @Override
     public void saveExperimentData(File storageDir) throws IOException {
         this.storageDir = storageDir;
@@ -70,10 +78,7 @@ abstract public class AbstractSensorData implements ISensorData {
 
         // save the bundle
         File projectFile = new File(storageDir, EXPERIMENT_DATA_FILE_NAME);
-        FileWriter fileWriter = new FileWriter(projectFile);
-        PersistentBundle persistentBundle = new PersistentBundle();
-        persistentBundle.flattenBundle(bundle, fileWriter);
-        fileWriter.close();
+        BackgroundSaver.get().save(projectFile, bundle, 0);
     }
 
     /**
@@ -8,6 +8,7 @@
 package nz.ac.auckland.lablet.experiment;
 
 import android.os.Bundle;
+import nz.ac.auckland.lablet.misc.BackgroundSaver;
 import nz.ac.auckland.lablet.misc.WeakListenable;
 
 import java.io.File;
@@ -187,14 +188,15 @@ public class Experiment extends WeakListenable<Experiment.IListener> {
     /**
      * Finishes the experiment and all its runs.
      *
-     * This means either the taken data (if any) is saved of discarded.
+     * This means either the taken data (if any) is saved of discarded. The sensor data is written in the
+     * background; use {@link #waitForSavedData(File)} to wait till it is written.
      *
      * @param saveData indicates if taken data should be saved or discarded
      * @param storageDir the directory where to save the experiment data
-     * @throws IOException
+     * @throws IOException if the data could not be saved
      */
     public void finishExperiment(boolean saveData, File storageDir) throws IOException {
-        storageDir = new File(storageDir, "data");
+        storageDir = getDataDir(storageDir);
         int i = 0;
         for (ExperimentRun experimentRun : experimentRuns) {
             experimentRun.finishExperiment(saveData, new File(storageDir, "run" + Integer.toString(i)));
@@ -202,6 +204,27 @@ public class Experiment extends WeakListenable<Experiment.IListener> {
         }
     }
 
+    /**
+     * Waits till the data saved by {@link #finishExperiment(boolean, File)} has been written.
+     *
+     * Blocks till all background saves are finished, i.e., must not be called from the UI thread.
+     *
+     * @param storageDir the directory passed to finishExperiment
+     * @throws IOException if the data could not be saved
+     */
+    public void waitForSavedData(File storageDir) throws IOException {
+        BackgroundSaver saver = BackgroundSaver.get();
+        try {
+            saver.waitForDir(getDataDir(storageDir));
+        } finally {
+            saver.logStatistics();
+        }
+    }
+
+    private File getDataDir(File storageDir) {
+        return new File(storageDir, "data");
+    }
+
     /**
      * Indicates if at least one run has recorded some data.
      *
@@ -73,12 +73,30 @@ public class ExperimentAnalysis {
 
     /**
      * Maintains the list of analyses for a run.
+     * <p>
+     * The analyses, and thus the sensor data of the run, are only loaded when the list is accessed the first time.
+     * </p>
      */
-    public static class AnalysisRunEntry {
-        final public List<AnalysisEntry> analysisList = new ArrayList<>();
+    public class AnalysisRunEntry {
+        final private int run;
+        private List<AnalysisEntry> analysisList = null;
+
+        AnalysisRunEntry(int run) {
+            this.run = run;
+        }
+
+        synchronized public List<AnalysisEntry> getAnalysisList() {
+            if (analysisList == null)
+                analysisList = loadAnalyses(run);
+            return analysisList;
+        }
+
+        synchronized public boolean isLoaded() {
+            return analysisList != null;
+        }
 
         public AnalysisEntry getAnalysisEntry(String analysisUid) {
-            for (AnalysisEntry analysisEntry : analysisList) {
+            for (AnalysisEntry analysisEntry : getAnalysisList()) {
                 if (analysisEntry.analysisUid.equals(analysisUid))
                     return analysisEntry;
             }
@@ -132,61 +150,57 @@ public class ExperimentAnalysis {
     }
 
     /**
-     * Set the experiment data and load a sensor analysis for all data.
+     * Set the experiment data.
      *
-     * For now it is assumed that each data entry only has one analysis.
+     * For now it is assumed that each data entry only has one analysis. The analyses of a run are loaded on first
+     * access, see {@link AnalysisRunEntry}, i.e., no run is selected and no run is loaded here.
      *
      * @param experimentData the experiment data
      */
     public void setExperimentData(ExperimentData experimentData) {
         this.experimentData = experimentData;
 
-        List<ExperimentData.RunData> runDataList = experimentData.getRunDataList();
-        for (ExperimentData.RunData runData : runDataList) {
-            AnalysisRunEntry analysisRunEntry = new AnalysisRunEntry();
-            analysisRuns.add(analysisRunEntry);
-
-            File analysisRunDir = getAnalysisRunStorage(experimentData, runDataList.indexOf(runData));
-            String[] analysisDirs = analysisRunDir.list();
-            if (analysisDirs != null && analysisDirs.length > 0) {
-                for (String analysisDir : analysisDirs) {
-                    File storage = new File(analysisRunDir, analysisDir);
-                    // try to load exiting analyses
-                    AnalysisEntry analysisEntry = ExperimentHelper.loadSensorAnalysis(storage, runData.sensorDataList);
-                    if (analysisEntry == null)
-                        continue;
-
-                    analysisRunEntry.analysisList.add(analysisEntry);
-                }
-            } else {
-                // assign analyses to the data
-                for (ISensorData sensorData : runData.sensorDataList) {
-
-                    ExperimentPluginFactory factory = ExperimentPluginFactory.getFactory();
-                    List<IAnalysisPlugin> pluginList = factory.analysisPluginsFor(sensorData);
-                    if (pluginList.size() == 0)
-                        continue;
-                    IAnalysisPlugin plugin = pluginList.get(0);
-
-                    IDataAnalysis dataAnalysis = plugin.createDataAnalysis(sensorData);
-                    if (dataAnalysis == null)
-                        continue;
-
-                    File storageDir = getAnalysisStorageFor(experimentData, runDataList.indexOf(runData), dataAnalysis);
-
-                    analysisRunEntry.analysisList.add(new AnalysisEntry(dataAnalysis, generateNewUid(dataAnalysis),
-                            plugin, storageDir));
-                }
+        for (int i = 0; i < experimentData.getRunDataList().size(); i++)
+            analysisRuns.add(new AnalysisRunEntry(i));
+    }
+
+    private List<AnalysisEntry> loadAnalyses(int run) {
+        List<AnalysisEntry> analysisList = new ArrayList<>();
+        List<ISensorData> sensorDataList = experimentData.getRunDataList().get(run).getSensorDataList();
+
+        File analysisRunDir = getAnalysisRunStorage(experimentData, run);
+        String[] analysisDirs = analysisRunDir.list();
+        if (analysisDirs != null && analysisDirs.length > 0) {
+            for (String analysisDir : analysisDirs) {
+                File storage = new File(analysisRunDir, analysisDir);
+                // try to load exiting analyses
+                AnalysisEntry analysisEntry = ExperimentHelper.loadSensorAnalysis(storage, sensorDataList);
+                if (analysisEntry == null)
+                    continue;
+
+                analysisList.add(analysisEntry);
             }
-        }
+        } else {
+            // assign analyses to the data
+            for (ISensorData sensorData : sensorDataList) {
 
-        if (getNumberOfRuns() == 0 || getAnalysisRunAt(0).analysisList.size() == 0)
-            return;
+                ExperimentPluginFactory factory = ExperimentPluginFactory.getFactory();
+                List<IAnalysisPlugin> pluginList = factory.analysisPluginsFor(sensorData);
+                if (pluginList.size() == 0)
+                    continue;
+                IAnalysisPlugin plugin = pluginList.get(0);
 
-        setCurrentAnalysisRun(0);
-        setCurrentAnalysis(0);
-    }
+                IDataAnalysis dataAnalysis = plugin.createDataAnalysis(sensorData);
+                if (dataAnalysis == null)
+                    continue;
+
+                File storageDir = getAnalysisStorageFor(experimentData, run, dataAnalysis);
 
+                analysisList.add(new AnalysisEntry(dataAnalysis, generateNewUid(dataAnalysis), plugin, storageDir));
+            }
+        }
+        return analysisList;
+    }
 
     public ExperimentData getExperimentData() {
         return experimentData;
@@ -209,21 +223,39 @@ public class ExperimentAnalysis {
         return analysisRuns.indexOf(currentAnalysisRun);
     }
 
+    /**
+     * Selects a run and loads its analyses if they are not loaded yet.
+     *
+     * @param index the run index
+     * @return false if there is no such run or the run has no analysis, e.g., because its sensor data could not be
+     * loaded (see {@link ExperimentData.RunData#getLoadError})
+     */
     public boolean setCurrentAnalysisRun(int index) {
-        if (index >= analysisRuns.size())
+        if (index < 0 || index >= analysisRuns.size())
+            return false;
+        AnalysisRunEntry analysisRun = analysisRuns.get(index);
+        if (analysisRun.getAnalysisList().size() == 0)
             return false;
-        currentAnalysisRun = analysisRuns.get(index);
+        currentAnalysisRun = analysisRun;
         setCurrentAnalysis(0);
+
+        // the user is likely to switch to a neighbour run next
+        List<ExperimentData.RunData> runDataList = experimentData.getRunDataList();
+        if (index > 0)
+            runDataList.get(index - 1).prefetch();
+        if (index + 1 < runDataList.size())
+            runDataList.get(index + 1).prefetch();
         return true;
     }
 
     public void setCurrentAnalysis(int analysis) {
-        currentAnalysis = currentAnalysisRun.analysisList.get(analysis).analysis;
+        currentAnalysis = currentAnalysisRun.getAnalysisList().get(analysis).analysis;
     }
 
     public boolean setCurrentAnalysis(String analysisId) {
-        for (int i = 0; i < currentAnalysisRun.analysisList.size(); i++) {
-            AnalysisEntry analysisEntry = currentAnalysisRun.analysisList.get(i);
+        List<AnalysisEntry> analysisList = currentAnalysisRun.getAnalysisList();
+        for (int i = 0; i < analysisList.size(); i++) {
+            AnalysisEntry analysisEntry = analysisList.get(i);
             if (analysisEntry.analysisUid.equals(analysisId)) {
                 setCurrentAnalysis(i);
                 return true;
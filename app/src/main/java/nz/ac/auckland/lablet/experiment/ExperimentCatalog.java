@@ -0,0 +1,348 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.experiment;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Persistent index of the experiments in an experiment base directory.
+ * <p>
+ * Listing the experiments and reading their run and sensor data files is slow if there are many experiments. The
+ * catalog stores a summary of every experiment and is kept in a file, i.e., the experiment list can be shown
+ * immediately. {@link #update()} only rescans experiments whose directory changed since the last scan or that have
+ * been invalidated, e.g., because they have been analysed.
+ * </p>
+ * <p>
+ * If there is no catalog file yet, {@link #load()} only lists the experiment directories; the entries are filled in
+ * by the next {@link #update()}.
+ * </p>
+ */
+public class ExperimentCatalog {
+    final static private String TAG = "ExperimentCatalog";
+    final static private int FILE_VERSION = 1;
+    final static private String DATA_DIR_NAME = "data";
+
+    /**
+     * Summary of an experiment.
+     */
+    static public class Entry {
+        final private String id;
+        // modification times of the experiment and its data directory when the experiment has been scanned
+        private long lastModified;
+        private long dataLastModified;
+        private long size;
+        private int runCount;
+        private List<String> sensorTypes = new ArrayList<>();
+        private String description = "";
+        private boolean scanned = false;
+
+        Entry(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return false if the experiment has only been listed and the other values are not known yet
+         */
+        public boolean isScanned() {
+            return scanned;
+        }
+
+        /**
+         * @return the name of the experiment directory
+         */
+        public String getId() {
+            return id;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the size of all experiment files in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public int getRunCount() {
+            return runCount;
+        }
+
+        /**
+         * @return the data types of the sensors used in the experiment
+         */
+        public List<String> getSensorTypes() {
+            return sensorTypes;
+        }
+
+        /**
+         * @return the first non empty run description
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        private boolean isUpToDate(File experimentDir) {
+            return lastModified == experimentDir.lastModified()
+                    && dataLastModified == new File(experimentDir, DATA_DIR_NAME).lastModified();
+        }
+    }
+
+    final private File experimentBaseDir;
+    final private File catalogFile;
+    final private Map<String, Entry> entries = new HashMap<>();
+    final private Set<String> invalidated = new HashSet<>();
+    private boolean loaded = false;
+
+    /**
+     * @param experimentBaseDir directory containing the experiment directories
+     * @param catalogFile file the catalog is stored in
+     */
+    public ExperimentCatalog(File experimentBaseDir, File catalogFile) {
+        this.experimentBaseDir = experimentBaseDir;
+        this.catalogFile = catalogFile;
+    }
+
+    /**
+     * @return the catalog entries as of the last {@link #load()} or {@link #update()}
+     */
+    synchronized public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Marks an experiment for rescanning, e.g., when an experiment directory changed or has been removed.
+     *
+     * @param id name of the experiment directory
+     */
+    synchronized public void invalidate(String id) {
+        invalidated.add(id);
+    }
+
+    /**
+     * Reads the catalog file or lists the experiment directories if there is no catalog file. Does nothing if the
+     * catalog is loaded already.
+     */
+    synchronized public void load() {
+        if (loaded)
+            return;
+        loaded = true;
+        if (!catalogFile.exists()) {
+            String[] ids = experimentBaseDir.list();
+            if (ids == null)
+                return;
+            // lastModified is 0, so the entries are scanned by the next update
+            for (String id : ids)
+                entries.put(id, new Entry(id));
+            return;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(catalogFile)));
+            if (input.readInt() != FILE_VERSION)
+                return;
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(input.readUTF());
+                entry.lastModified = input.readLong();
+                entry.dataLastModified = input.readLong();
+                entry.size = input.readLong();
+                entry.runCount = input.readInt();
+                int typeCount = input.readInt();
+                for (int t = 0; t < typeCount; t++)
+                    entry.sensorTypes.add(input.readUTF());
+                entry.description = input.readUTF();
+                entry.scanned = true;
+                entries.put(entry.getId(), entry);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "failed to read the experiment catalog: " + e.getMessage());
+            entries.clear();
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings the catalog up to date and saves it if something changed.
+     * <p>
+     * Only rescans experiments that are new, changed or invalidated. Should not be called from the UI thread.
+     * </p>
+     *
+     * @return true if the catalog changed
+     */
+    public boolean update() {
+        load();
+
+        File[] experimentDirs = experimentBaseDir.listFiles();
+        if (experimentDirs == null)
+            experimentDirs = new File[0];
+
+        Set<String> invalidatedIds;
+        Map<String, Entry> oldEntries;
+        synchronized (this) {
+            invalidatedIds = new HashSet<>(invalidated);
+            invalidated.clear();
+            oldEntries = new HashMap<>(entries);
+        }
+
+        Map<String, Entry> newEntries = new HashMap<>();
+        boolean changed = false;
+        for (File experimentDir : experimentDirs) {
+            String id = experimentDir.getName();
+            Entry entry = oldEntries.get(id);
+            if (entry != null && !invalidatedIds.contains(id) && entry.isUpToDate(experimentDir)) {
+                newEntries.put(id, entry);
+                continue;
+            }
+            newEntries.put(id, scan(experimentDir));
+            changed = true;
+        }
+        if (newEntries.size() != oldEntries.size())
+            changed = true;
+        if (!changed)
+            return false;
+
+        synchronized (this) {
+            entries.clear();
+            entries.putAll(newEntries);
+        }
+        save();
+        return true;
+    }
+
+    private Entry scan(File experimentDir) {
+        Entry entry = new Entry(experimentDir.getName());
+        entry.scanned = true;
+        // take the times first, changes during the scan are picked up by the next update
+        entry.lastModified = experimentDir.lastModified();
+        File dataDir = new File(experimentDir, DATA_DIR_NAME);
+        entry.dataLastModified = dataDir.lastModified();
+        entry.size = getSize(experimentDir);
+
+        File[] runDirs = dataDir.listFiles();
+        if (runDirs == null)
+            return entry;
+        for (File runDir : runDirs) {
+            if (!runDir.isDirectory())
+                continue;
+            entry.runCount++;
+
+            if (entry.description.isEmpty()) {
+                ExperimentRunInfo runInfo = new ExperimentRunInfo();
+                try {
+                    runInfo.loadFromFile(new File(runDir, ExperimentRun.EXPERIMENT_RUN_FILE_NAME));
+                    entry.description = runInfo.getDescription();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            File[] sensorDirs = runDir.listFiles();
+            if (sensorDirs == null)
+                continue;
+            for (File sensorDir : sensorDirs) {
+                if (!sensorDir.isDirectory())
+                    continue;
+                String dataType = readDataType(sensorDir);
+                if (dataType != null && !entry.sensorTypes.contains(dataType))
+                    entry.sensorTypes.add(dataType);
+            }
+        }
+        Collections.sort(entry.sensorTypes);
+        return entry;
+    }
+
+    private String readDataType(File sensorDir) {
+        File file = new File(sensorDir, ISensorData.EXPERIMENT_DATA_FILE_NAME);
+        if (!file.exists())
+            return null;
+        Bundle bundle = ExperimentHelper.loadBundleFromFile(file);
+        if (bundle == null)
+            return null;
+        Bundle dataBundle = bundle.getBundle(AbstractSensorData.DATA_KEY);
+        if (dataBundle == null)
+            return null;
+        return dataBundle.getString(AbstractSensorData.DATA_TYPE_KEY);
+    }
+
+    static private long getSize(File file) {
+        if (!file.isDirectory())
+            return file.length();
+        File[] children = file.listFiles();
+        if (children == null)
+            return 0;
+        long size = 0;
+        for (File child : children)
+            size += getSize(child);
+        return size;
+    }
+
+    private void save() {
+        List<Entry> entryList = getEntries();
+        File tempFile = new File(catalogFile.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(FILE_VERSION);
+            output.writeInt(entryList.size());
+            for (Entry entry : entryList) {
+                output.writeUTF(entry.getId());
+                output.writeLong(entry.lastModified);
+                output.writeLong(entry.dataLastModified);
+                output.writeLong(entry.size);
+                output.writeInt(entry.runCount);
+                output.writeInt(entry.sensorTypes.size());
+                for (String type : entry.sensorTypes)
+                    output.writeUTF(type);
+                output.writeUTF(entry.description);
+            }
+            output.close();
+            output = null;
+            if (!tempFile.renameTo(catalogFile))
+                Log.w(TAG, "failed to write the experiment catalog");
+        } catch (IOException e) {
+            Log.w(TAG, "failed to write the experiment catalog: " + e.getMessage());
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            tempFile.delete();
+        }
+    }
+}
@@ -12,7 +12,13 @@ import android.os.Bundle;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 
 /**
@@ -21,16 +27,90 @@ import java.util.List;
  * Holds the run data.
  */
 public class ExperimentData {
+    final static private ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+
     /**
      * Contains the run information and the run sensor data.
+     * <p>
+     * Only the run information and the sensor data directories are read when the experiment is loaded. The sensor data
+     * is loaded on first access or in the background if the run is prefetched. Sensor data that has been prefetched but
+     * not been used can be evicted again.
+     * </p>
      */
-    public static class RunData {
+    public class RunData {
         public ExperimentRunInfo experimentRunInfo;
-        public List<ISensorData> sensorDataList = new ArrayList<>();
+        final private List<File> sensorDirs = new ArrayList<>();
+        private FutureTask<List<ISensorData>> loadTask = null;
+        private boolean used = false;
+        private volatile String loadError = "";
+
+        /**
+         * Starts loading the sensor data in the background if it is not loaded yet.
+         *
+         * @return future of the sensor data list
+         */
+        synchronized public Future<List<ISensorData>> prefetch() {
+            if (loadTask == null) {
+                loadTask = new FutureTask<>(() -> loadSensorData(sensorDirs));
+                loadExecutor.execute(loadTask);
+            }
+            return loadTask;
+        }
+
+        /**
+         * Gets the sensor data and waits till it is loaded.
+         *
+         * @return the sensor data or an empty list if the data could not be loaded (see {@link RunData#getLoadError})
+         */
+        public List<ISensorData> getSensorDataList() {
+            FutureTask<List<ISensorData>> task;
+            synchronized (this) {
+                used = true;
+                prefetch();
+                task = loadTask;
+            }
+            // load it on this thread if the task is still queued; does nothing if the task is running already
+            task.run();
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                loadError = e.getCause().getMessage();
+                return Collections.emptyList();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                loadError = "loading the sensor data has been interrupted";
+                return Collections.emptyList();
+            }
+        }
+
+        /**
+         * @return the error of loading the sensor data or an empty string if there was none
+         */
+        public String getLoadError() {
+            return loadError;
+        }
+
+        synchronized public boolean isLoaded() {
+            return loadTask != null && loadTask.isDone();
+        }
+
+        /**
+         * Drops the sensor data if it has only been prefetched.
+         *
+         * @return true if the data has been dropped
+         */
+        synchronized boolean evict() {
+            if (used || loadTask == null)
+                return false;
+            loadTask.cancel(false);
+            loadTask = null;
+            return true;
+        }
     }
 
     private File storageDir;
-    private String loadError = "";
+    private volatile String loadError = "";
     private List<RunData> runDataList = new ArrayList<>();
 
     /**
@@ -50,14 +130,31 @@ public class ExperimentData {
     }
 
     /**
-     * @return the last load error
+     * @return the last load error of the run information, sensor data errors are reported by the run
      */
     public String getLoadError() {
         return loadError;
     }
 
+    /**
+     * Drops the sensor data of runs that have been prefetched but not used, e.g., on memory pressure.
+     *
+     * @return number of evicted runs
+     */
+    public int evictUnusedRuns() {
+        int evicted = 0;
+        for (RunData runData : runDataList) {
+            if (runData.evict())
+                evicted++;
+        }
+        return evicted;
+    }
+
     /**
      * Load the experiment data from a storage directory.
+     * <p>
+     * Only reads the run information, the sensor data is loaded lazily, see {@link RunData}.
+     * </p>
      *
      * @param storageDir
      * @return false if there was an error (see {@link #getLoadError})
@@ -71,8 +168,10 @@ public class ExperimentData {
                 continue;
 
             RunData runData = loadRunData(groupDir);
-            if (runData == null)
+            if (runData == null) {
+                loadError = "can't read run information";
                 return false;
+            }
             runDataList.add(runData);
         }
 
@@ -80,31 +179,25 @@ public class ExperimentData {
         return true;
     }
 
-    private ISensorData loadExperimentData(File sensorDirectory) {
+    private ISensorData loadExperimentData(File sensorDirectory) throws IOException {
         Bundle bundle;
 
         File file = new File(sensorDirectory, ISensorData.EXPERIMENT_DATA_FILE_NAME);
         bundle = ExperimentHelper.loadBundleFromFile(file);
 
-        if (bundle == null) {
-            loadError = "can't read experiment file";
-            return null;
-        }
+        if (bundle == null)
+            throw new IOException("can't read experiment file");
 
         Bundle dataBundle = bundle.getBundle(AbstractSensorData.DATA_KEY);
-        if (dataBundle == null) {
-            loadError = "failed to load sensor data";
-            return null;
-        }
-        if (!dataBundle.containsKey(AbstractSensorData.DATA_TYPE_KEY)) {
-            loadError = "data type information is missing";
-            return null;
-        }
+        if (dataBundle == null)
+            throw new IOException("failed to load sensor data");
+        if (!dataBundle.containsKey(AbstractSensorData.DATA_TYPE_KEY))
+            throw new IOException("data type information is missing");
 
         String dataType = dataBundle.getString(AbstractSensorData.DATA_TYPE_KEY);
         ISensorData sensorData = getSensorDataForType(dataType, dataBundle, sensorDirectory);
         if (sensorData == null)
-            loadError = "unknown data type";
+            throw new IOException("unknown data type");
         return sensorData;
     }
 
@@ -139,11 +232,15 @@ public class ExperimentData {
         for (File runDirectory : runDataDir.listFiles()) {
             if (!runDirectory.isDirectory())
                 continue;
-            ISensorData sensorData = loadExperimentData(runDirectory);
-            if (sensorData == null)
-                return null;
-            runData.sensorDataList.add(sensorData);
+            runData.sensorDirs.add(runDirectory);
         }
         return runData;
     }
+
+    private List<ISensorData> loadSensorData(List<File> sensorDirs) throws IOException {
+        List<ISensorData> sensorDataList = new ArrayList<>();
+        for (File sensorDir : sensorDirs)
+            sensorDataList.add(loadExperimentData(sensorDir));
+        return sensorDataList;
+    }
 }
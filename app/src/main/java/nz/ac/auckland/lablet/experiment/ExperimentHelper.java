@@ -10,6 +10,7 @@ package nz.ac.auckland.lablet.experiment;
 import android.content.Intent;
 import android.os.Bundle;
 import nz.ac.auckland.lablet.ExperimentActivity;
+import nz.ac.auckland.lablet.misc.BackgroundSaver;
 import nz.ac.auckland.lablet.misc.PersistentBundle;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -21,6 +22,9 @@ import java.util.List;
  * Abstract base class for experiment plugins.
  */
 public class ExperimentHelper {
+    // max time to wait for files that are saved in the background
+    final static public long SAVE_TIMEOUT = 5000;
+
     static public ExperimentData loadExperimentData(String experimentMainDir) {
         ExperimentData experimentData = new ExperimentData();
         if (!experimentData.load(new File(experimentMainDir, "data")))
@@ -29,6 +33,11 @@ public class ExperimentHelper {
     }
 
     static public Bundle loadBundleFromFile(File file) {
+        // the file may still be saved in the background; don't wait for the save, use the bundle that is being saved
+        Bundle pendingBundle = BackgroundSaver.get().getPendingBundle(file);
+        if (pendingBundle != null)
+            return pendingBundle;
+
         Bundle bundle;
         InputStream inStream;
         try {
@@ -89,6 +98,28 @@ public class ExperimentHelper {
 
     static public void saveAnalysisData(ExperimentAnalysis.AnalysisEntry analysisEntry, IDataAnalysis sensorAnalysis,
                                         File storageDir, List<ISensorData> allSensorData) throws IOException {
+        Bundle bundle = analysisDataToBundle(analysisEntry, sensorAnalysis, storageDir, allSensorData);
+        PersistentBundle persistentBundle = new PersistentBundle();
+        persistentBundle.flattenBundle(bundle, new File(storageDir, IDataAnalysis.EXPERIMENT_ANALYSIS_FILE_NAME));
+    }
+
+    /**
+     * Same as {@link #saveAnalysisData} but the analysis file is written by the {@link BackgroundSaver}.
+     * <p>
+     * The analysis data is collected on the calling thread. Repeated saves are coalesced; call
+     * {@link BackgroundSaver#flush()} to write them immediately.
+     * </p>
+     */
+    static public void saveAnalysisDataInBackground(ExperimentAnalysis.AnalysisEntry analysisEntry,
+                                                    IDataAnalysis sensorAnalysis, File storageDir,
+                                                    List<ISensorData> allSensorData) throws IOException {
+        Bundle bundle = analysisDataToBundle(analysisEntry, sensorAnalysis, storageDir, allSensorData);
+        BackgroundSaver.get().save(new File(storageDir, IDataAnalysis.EXPERIMENT_ANALYSIS_FILE_NAME), bundle);
+    }
+
+    static private Bundle analysisDataToBundle(ExperimentAnalysis.AnalysisEntry analysisEntry,
+                                               IDataAnalysis sensorAnalysis, File storageDir,
+                                               List<ISensorData> allSensorData) throws IOException {
         Bundle bundle = new Bundle();
         // save plugin
         bundle.putString(PLUGIN_ID_KEY, analysisEntry.plugin.getIdentifier());
@@ -104,12 +135,7 @@ public class ExperimentHelper {
         // save experiment data
         Bundle experimentData = sensorAnalysis.exportAnalysisData(storageDir);
         bundle.putBundle(USED_DATA_KEY, experimentData);
-
-        // save the bundle
-        File projectFile = new File(storageDir, IDataAnalysis.EXPERIMENT_ANALYSIS_FILE_NAME);
-        FileWriter fileWriter = new FileWriter(projectFile);
-        PersistentBundle persistentBundle = new PersistentBundle();
-        persistentBundle.flattenBundle(bundle, fileWriter);
+        return bundle;
     }
 
     static public void packStartExperimentIntent(Intent intent, List<ISensorPlugin> plugins, Bundle options) {
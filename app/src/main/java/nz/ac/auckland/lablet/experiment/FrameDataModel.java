@@ -47,12 +47,11 @@ public class FrameDataModel extends WeakListenable<FrameDataModel.IListener>{
     }
 
     private void notifyFrameChanged(int currentFrame) {
-        for (IListener listener : getListeners())
-            listener.onFrameChanged(currentFrame);
+        // called for every frame, pass the frame to a non-capturing lambda so that no visitor is allocated
+        forEachListener(currentFrame, (listener, frame) -> listener.onFrameChanged(frame));
     }
 
     private void notifyNumberOfFramesChanged() {
-        for (IListener listener : getListeners())
-            listener.onNumberOfFramesChanged();
+        forEachListener(listener -> listener.onNumberOfFramesChanged());
     }
 }
\ No newline at end of file
@@ -173,14 +173,22 @@ public class FrequencyAnalysis implements IDataAnalysis {
         MarkerDataTableAdapter hTableAdapter = new MarkerDataTableAdapter(hCursorMarkerModel);
         hTableAdapter.addColumn(new HCursorColumn());
         hTableAdapter.addColumn(new HCursorDiffToPrevColumn());
-        CSVWriter.writeTable(hTableAdapter, writer, ',');
+        try {
+            CSVWriter.writeTable(hTableAdapter, writer, ',');
+        } finally {
+            hTableAdapter.release();
+        }
 
         writer.write("\n");
 
         MarkerDataTableAdapter vTableAdapter = new MarkerDataTableAdapter(vCursorMarkerModel);
         vTableAdapter.addColumn(new VCursorColumn());
         vTableAdapter.addColumn(new VCursorDiffToPrevColumn());
-        CSVWriter.writeTable(vTableAdapter, writer, ',');
+        try {
+            CSVWriter.writeTable(vTableAdapter, writer, ',');
+        } finally {
+            vTableAdapter.release();
+        }
     }
 
     public MarkerDataModel getHCursorMarkerModel() {
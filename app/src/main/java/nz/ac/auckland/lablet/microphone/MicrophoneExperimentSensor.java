@@ -197,7 +197,7 @@ public class MicrophoneExperimentSensor extends AbstractExperimentSensor {
                 return false;
         File target = new File(storageDir, audioFileName);
         try {
-            return StorageLib.moveFile(audioFile, target);
+            return StorageLib.moveFile(audioFile, target, true);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -205,12 +205,15 @@ public class MicrophoneExperimentSensor extends AbstractExperimentSensor {
     }
 
     private class AudioRecordingTask {
+        final static private long HEADER_UPDATE_INTERVAL = 2000;
+
         private AtomicBoolean running = new AtomicBoolean();
 
         final private int samplingRate;
         final private int sampleSize;
 
-        private OutputStream dataOutput = null;
+        // only accessed from the recording thread
+        private AudioWavOutputStream dataOutput = null;
         final private File outputFile;
         private AudioRecord audioRecord = null;
 
@@ -236,6 +239,13 @@ public class MicrophoneExperimentSensor extends AbstractExperimentSensor {
                     if (!readData(buffer, bytesToRead))
                         break;
 
+                    if (dataOutput != null) {
+                        try {
+                            dataOutput.write(buffer, 0, bytesToRead);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
                     publishData(buffer, bytesToRead);
                 }
 
@@ -268,14 +278,6 @@ public class MicrophoneExperimentSensor extends AbstractExperimentSensor {
             uiHandler.post(new Runnable() {
                 @Override
                 public void run() {
-                    if (dataOutput != null) {
-                        try {
-                            dataOutput.write(buffer, 0, dataSize);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-
                     final float frame[] = AudioWavInputStream.toAmplitudeData(buffer, dataSize);
                     notifyNewAudioData(frame);
                 }
@@ -297,8 +299,11 @@ public class MicrophoneExperimentSensor extends AbstractExperimentSensor {
         }
 
         private void startAudioRecording(File outputFile) throws IOException {
-            if (outputFile != null)
+            if (outputFile != null) {
                 dataOutput = new AudioWavOutputStream(outputFile, 1, samplingRate);
+                // keep the recording readable if the app gets killed
+                dataOutput.setHeaderUpdateInterval(HEADER_UPDATE_INTERVAL);
+            }
 
             final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
             final int FORMAT = AudioFormat.ENCODING_PCM_16BIT;
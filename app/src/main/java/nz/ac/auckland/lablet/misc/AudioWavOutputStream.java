@@ -8,94 +8,186 @@
 package nz.ac.auckland.lablet.misc;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 
+/**
+ * Writes 16 bit PCM wav files.
+ * <p>
+ * The audio data is collected in a large direct buffer and appended to the file channel when the buffer is full. The
+ * RIFF header sizes are only written on {@link #flush()} and {@link #close()}. To keep a recording readable if the app
+ * crashes the header can also be updated periodically, see {@link #setHeaderUpdateInterval(long)}.
+ * </p>
+ */
 public class AudioWavOutputStream extends OutputStream implements Closeable {
-    private RandomAccessFile outFile;
+    final static private int HEADER_SIZE = 44;
+    final static private int BUFFER_SIZE = 256 * 1024;
+    final static private int PCM_FORMAT = 1;
+    final static private int PCM_SUB_CHUNK_SIZE = 16;
+    final static private int BITS_PER_SAMPLE = 16;
+
+    final private RandomAccessFile outFile;
+    final private FileChannel channel;
+    final private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    final private ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
     private long audioDataLength = 0;
     private long sampleRate = 0;
-    final private int PCM_FORMAT = 1;
-    final private int PCM_SUB_CHUNK_SIZE = 16;
-    final private int BITS_PER_SAMPLE = 16;
     protected int channelCount;
+    private long headerUpdateInterval = 0;
+    private long lastHeaderUpdate = 0;
 
     public AudioWavOutputStream(File file, int channelCount, int sampleRate) throws IOException {
         this.outFile = new RandomAccessFile(file, "rw");
+        this.channel = outFile.getChannel();
 
         this.channelCount = channelCount;
         this.sampleRate = sampleRate;
 
+        // an empty but valid file
+        writeHeader();
+        channel.truncate(HEADER_SIZE);
         // set position just after the header
-        outFile.seek(44);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Sets how often the header is updated while writing. The header is updated when the buffer is written to the
+     * file, i.e., if the app crashes at most the buffered audio data and the data since the last update is lost.
+     *
+     * @param interval minimal time between two header updates in ms, 0 to only update the header on flush and close
+     */
+    public void setHeaderUpdateInterval(long interval) {
+        this.headerUpdateInterval = interval;
     }
 
     @Override
     public void write(int i) throws IOException {
-        outFile.write(i);
+        if (!buffer.hasRemaining())
+            drainBuffer();
+        buffer.put((byte)i);
         audioDataLength++;
     }
 
     @Override
-    public void write(byte[] buffer) throws java.io.IOException {
-        outFile.write(buffer);
-        audioDataLength += buffer.length;
+    public void write(byte[] data) throws java.io.IOException {
+        write(data, 0, data.length);
     }
 
     @Override
-    public void write(byte[] buffer, int offset, int count) throws java.io.IOException {
-        outFile.write(buffer, offset, count);
+    public void write(byte[] data, int offset, int count) throws java.io.IOException {
+        int end = offset + count;
+        while (offset < end) {
+            if (!buffer.hasRemaining())
+                drainBuffer();
+            int length = Math.min(end - offset, buffer.remaining());
+            buffer.put(data, offset, length);
+            offset += length;
+        }
         audioDataLength += count;
     }
 
+    /**
+     * Writes 16 bit samples.
+     *
+     * @param samples the samples, interleaved if there is more than one channel
+     * @param offset index of the first sample
+     * @param count number of samples
+     */
+    public void writeSamples(short[] samples, int offset, int count) throws IOException {
+        int end = offset + count;
+        while (offset < end) {
+            if (buffer.remaining() < 2)
+                drainBuffer();
+            int length = Math.min(end - offset, buffer.remaining() / 2);
+            buffer.asShortBuffer().put(samples, offset, length);
+            buffer.position(buffer.position() + length * 2);
+            offset += length;
+        }
+        audioDataLength += count * 2;
+    }
+
+    /**
+     * Writes amplitudes as 16 bit samples.
+     *
+     * @param amplitudes the amplitudes in the 16 bit range as returned by
+     *                   {@link AudioWavInputStream#toAmplitudeData(byte[], int)}; values out of range are clipped
+     * @param offset index of the first sample
+     * @param count number of samples
+     */
+    public void writeSamples(float[] amplitudes, int offset, int count) throws IOException {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            if (buffer.remaining() < 2)
+                drainBuffer();
+            float amplitude = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, amplitudes[i]));
+            buffer.putShort((short)Math.round(amplitude));
+        }
+        audioDataLength += count * 2;
+    }
+
+    /**
+     * Writes the buffered data and the header sizes to the file.
+     */
     @Override
-    public void close() throws IOException {
+    public void flush() throws IOException {
+        drainBuffer();
         writeHeader();
-        outFile.close();
     }
 
-    private void writeAsBigEndian(long value) throws IOException {
-        outFile.writeByte((int)(value & 0xff));
-        outFile.writeByte((int)((value >> 8) & 0xff));
-        outFile.writeByte((int)((value >> 16) & 0xff));
-        outFile.writeByte((int)((value >> 24) & 0xff));
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            // a previous file could have been longer
+            channel.truncate(channel.position());
+        } finally {
+            outFile.close();
+        }
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+
+        if (headerUpdateInterval <= 0)
+            return;
+        long now = System.currentTimeMillis();
+        if (now - lastHeaderUpdate < headerUpdateInterval)
+            return;
+        lastHeaderUpdate = now;
+        writeHeader();
     }
 
     private void writeHeader() throws IOException {
-        long dataLength = audioDataLength + 36;
-
-        outFile.seek(0);
-        outFile.write('R');
-        outFile.write('I');
-        outFile.write('F');
-        outFile.write('F');
-        writeAsBigEndian(dataLength + 36);
-        outFile.write('W');
-        outFile.write('A');
-        outFile.write('V');
-        outFile.write('E');
-        outFile.write('f');
-        outFile.write('m');
-        outFile.write('t');
-        outFile.write(' ');
-        outFile.writeByte(PCM_SUB_CHUNK_SIZE);
-        outFile.writeByte(0);
-        outFile.writeByte(0);
-        outFile.writeByte(0);
-        outFile.writeByte(PCM_FORMAT);
-        outFile.writeByte(0);
-        outFile.writeByte(channelCount);
-        outFile.writeByte(0);
-        writeAsBigEndian(sampleRate);
+        // the data written to the file so far
+        long dataLength = audioDataLength - buffer.position();
+        if (dataLength > 0xFFFFFFFFL - 36)
+            throw new IOException("wav file too large");
+
+        header.clear();
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt((int)(36 + dataLength));
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '});
+        header.putInt(PCM_SUB_CHUNK_SIZE);
+        header.putShort((short)PCM_FORMAT);
+        header.putShort((short)channelCount);
+        header.putInt((int)sampleRate);
         long byteRate = sampleRate * 2 * channelCount;
-        writeAsBigEndian(byteRate);
-        outFile.writeByte(BITS_PER_SAMPLE / 2 * channelCount);
-        outFile.writeByte(0);
-        outFile.writeByte(BITS_PER_SAMPLE);
-        outFile.writeByte(0);
-        outFile.write('d');
-        outFile.write('a');
-        outFile.write('t');
-        outFile.write('a');
-        writeAsBigEndian(audioDataLength);
+        header.putInt((int)byteRate);
+        header.putShort((short)(BITS_PER_SAMPLE / 8 * channelCount));
+        header.putShort((short)BITS_PER_SAMPLE);
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt((int)dataLength);
+        header.flip();
+
+        // positional write, the channel position stays at the end of the audio data
+        long position = 0;
+        while (header.hasRemaining())
+            position += channel.write(header, position);
     }
 }
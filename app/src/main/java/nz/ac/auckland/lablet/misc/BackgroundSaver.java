@@ -0,0 +1,501 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.misc;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Writes files on a background thread.
+ * <p>
+ * Saves are throttled: a save is written after a delay and a new save of the same file before it is written replaces
+ * the content of the pending one, i.e., only the latest content is written. A new save does not postpone a pending
+ * save, it can only make it due earlier (a shorter delay). Thus a file is written at the latest {@link #MAX_DELAY} ms
+ * after the first pending save. Call {@link #flush()}, e.g., in onPause, to start all pending saves immediately.
+ * Code that reads a bundle file that may still be saved gets the pending bundle with {@link #getPendingBundle(File)}
+ * instead of waiting; other files can be waited for with {@link #waitFor(File, long)}. Code that
+ * needs to know if the files have been written, e.g., when finishing an experiment, uses
+ * {@link #waitForDir(File)} off the UI thread, which also reports failed saves.
+ * </p>
+ * <p>
+ * Files are written to a temporary file that is renamed to the target file, i.e., a file is never left half written.
+ * If the content is the same as the content of the last save of the file, the file is not replaced.
+ * </p>
+ * <p>
+ * All files are written by a single thread; parallel writes to the same storage would only slow each other down.
+ * </p>
+ */
+public class BackgroundSaver {
+    final static private String TAG = "BackgroundSaver";
+    final static public long DEFAULT_DELAY = 500;
+    final static public long MAX_DELAY = 3000;
+    // writes that take longer are logged
+    final static private long SLOW_WRITE_TIME = 250;
+
+    /**
+     * Content of a file. Is written on the background thread, i.e., must not access data that is modified in the
+     * meantime.
+     */
+    public interface IContent {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    static private class Job {
+        final File file;
+        final long firstRequestTime;
+        IContent content;
+        // the saved bundle if the content is a bundle
+        Bundle bundle;
+        long dueTime;
+        ScheduledFuture<?> scheduled;
+        FutureTask<Void> completion;
+
+        Job(File file, long firstRequestTime) {
+            this.file = file;
+            this.firstRequestTime = firstRequestTime;
+        }
+    }
+
+    static private class FileState {
+        final String hash;
+        final long lastModified;
+        final long length;
+
+        FileState(String hash, File file) {
+            this.hash = hash;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        boolean isUpToDate(File file) {
+            return lastModified == file.lastModified() && length == file.length();
+        }
+    }
+
+    static private BackgroundSaver saver = null;
+
+    static public BackgroundSaver get() {
+        synchronized (BackgroundSaver.class) {
+            if (saver == null)
+                saver = new BackgroundSaver();
+            return saver;
+        }
+    }
+
+    final private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // saves that have not been started yet
+    final private Map<File, Job> pendingJobs = new HashMap<>();
+    // the latest save of a file till it is finished
+    final private Map<File, Job> unfinishedJobs = new HashMap<>();
+    // the error of the last save of a file if it failed
+    final private Map<File, IOException> failures = new HashMap<>();
+    // content hashes of the files as last written; only accessed from the saver thread
+    final private Map<File, FileState> fileStates = new HashMap<>();
+
+    // statistics
+    private int maxQueueDepth = 0;
+    private int writeCount = 0;
+    private int skipCount = 0;
+    private long totalWriteTime = 0;
+    private long maxWriteTime = 0;
+
+    /**
+     * Saves a bundle using the default delay.
+     *
+     * @param file the target file
+     * @param bundle the bundle, must not be modified afterwards
+     * @return future that is done when the file has been saved
+     */
+    public Future<Void> save(File file, final Bundle bundle) {
+        return save(file, bundle, DEFAULT_DELAY);
+    }
+
+    /**
+     * Saves a bundle.
+     *
+     * @param file the target file
+     * @param bundle the bundle, must not be modified afterwards
+     * @param delay delay in ms
+     * @return future that is done when the file has been saved
+     */
+    public Future<Void> save(File file, final Bundle bundle, long delay) {
+        return save(file, new IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                new PersistentBundle().flattenBundle(bundle, outputStream);
+            }
+        }, bundle, delay);
+    }
+
+    /**
+     * Saves a string (UTF-8 encoded) using the default delay.
+     */
+    public Future<Void> save(File file, final String text) {
+        return save(file, new IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                outputStream.write(text.getBytes("UTF-8"));
+            }
+        }, DEFAULT_DELAY);
+    }
+
+    /**
+     * Schedules a save and replaces a pending save of the same file.
+     *
+     * @param file the target file
+     * @param content the file content
+     * @param delay delay in ms
+     * @return future that is done when the file has been saved, i.e., when the content or the content of a later save
+     * has been written; fails with the IOException of the write
+     */
+    public Future<Void> save(File file, IContent content, long delay) {
+        return save(file, content, null, delay);
+    }
+
+    synchronized private Future<Void> save(File file, IContent content, Bundle bundle, long delay) {
+        long now = System.currentTimeMillis();
+        Job job = pendingJobs.get(file);
+        if (job == null) {
+            job = createJob(file, now);
+            pendingJobs.put(file, job);
+            unfinishedJobs.put(file, job);
+            maxQueueDepth = Math.max(maxQueueDepth, unfinishedJobs.size());
+        }
+        job.content = content;
+        job.bundle = bundle;
+        long dueTime = Math.min(now + delay, job.firstRequestTime + MAX_DELAY);
+        if (job.scheduled == null || dueTime < job.dueTime)
+            schedule(job, dueTime, now);
+        return job.completion;
+    }
+
+    /**
+     * Starts all pending saves without waiting for them to finish.
+     */
+    synchronized public void flush() {
+        long now = System.currentTimeMillis();
+        for (Job job : pendingJobs.values())
+            schedule(job, now, now);
+    }
+
+    /**
+     * Gets the bundle of a save that has not been finished yet, i.e., the content the file will have once it is
+     * written. Doesn't block, e.g., a bundle that has just been saved in onPause can be reloaded on the UI thread.
+     *
+     * @param file the file
+     * @return the bundle of the latest unfinished save of the file or null if the file is not being saved or the
+     * latest save is not a bundle; must not be modified
+     */
+    synchronized public Bundle getPendingBundle(File file) {
+        Job job = unfinishedJobs.get(file);
+        if (job == null)
+            return null;
+        return job.bundle;
+    }
+
+    /**
+     * Starts a pending save of the file and waits till it is written. Returns immediately if the file is not being
+     * saved.
+     *
+     * @param file the file
+     * @param timeout in ms
+     * @return false if the file could not be saved in time
+     */
+    public boolean waitFor(File file, long timeout) {
+        Future<Void> completion;
+        synchronized (this) {
+            Job job = unfinishedJobs.get(file);
+            if (job == null)
+                return true;
+            if (pendingJobs.get(file) == job)
+                schedule(job, 0, 0);
+            completion = job.completion;
+        }
+        return waitFor(completion, timeout);
+    }
+
+    /**
+     * Starts the pending saves of all files in a directory and its sub directories and waits till they are written.
+     * <p>
+     * Waits without a time limit, i.e., must not be called from the UI thread.
+     * </p>
+     *
+     * @param dir the directory
+     * @throws IOException if the last save of a file in the directory failed
+     */
+    public void waitForDir(File dir) throws IOException {
+        waitForDir(dir, -1);
+    }
+
+    /**
+     * Starts the pending saves of all files in a directory and its sub directories and waits till they are written.
+     *
+     * @param dir the directory
+     * @param timeout in ms, a negative timeout waits without a time limit
+     * @throws IOException if the last save of a file in the directory failed or the saves did not finish in time
+     */
+    public void waitForDir(File dir, long timeout) throws IOException {
+        String dirPath = dir.getPath() + File.separator;
+        List<Future<Void>> completions = new ArrayList<>();
+        synchronized (this) {
+            for (Job job : unfinishedJobs.values()) {
+                if (!job.file.getPath().startsWith(dirPath))
+                    continue;
+                if (pendingJobs.get(job.file) == job)
+                    schedule(job, 0, 0);
+                completions.add(job.completion);
+            }
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        for (Future<Void> completion : completions) {
+            try {
+                if (timeout < 0)
+                    completion.get();
+                else
+                    completion.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                // reported below
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (TimeoutException e) {
+                throw new IOException("saving " + dir.getPath() + " timed out");
+            }
+        }
+        synchronized (this) {
+            for (Map.Entry<File, IOException> entry : failures.entrySet()) {
+                if (entry.getKey().getPath().startsWith(dirPath))
+                    throw new IOException("failed to save " + entry.getKey().getPath(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Starts all pending saves and waits till they are written.
+     *
+     * @param timeout in ms
+     * @return false if the saves did not finish in time
+     */
+    public boolean flushAndWait(long timeout) {
+        flush();
+        // the saver thread runs the jobs in order, i.e., this job runs after the flushed jobs
+        ScheduledFuture<?> marker = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        return waitFor(marker, timeout);
+    }
+
+    /**
+     * @return number of files that are waiting to be saved or are being saved
+     */
+    synchronized public int getQueueDepth() {
+        return unfinishedJobs.size();
+    }
+
+    synchronized public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return number of written files, skipped saves of unchanged files are not included
+     */
+    synchronized public int getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return number of saves that have been skipped because the file content did not change
+     */
+    synchronized public int getSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * @return average time to write a file in ms
+     */
+    synchronized public float getAverageWriteTime() {
+        if (writeCount == 0)
+            return 0;
+        return (float)totalWriteTime / writeCount;
+    }
+
+    synchronized public long getMaxWriteTime() {
+        return maxWriteTime;
+    }
+
+    /**
+     * Logs a summary of the statistics, e.g., after the data of an experiment has been saved.
+     */
+    synchronized public void logStatistics() {
+        Log.d(TAG, "queue depth: " + getQueueDepth() + " (max " + maxQueueDepth + "), written: " + writeCount
+                + ", skipped: " + skipCount + ", write time: " + String.format("%.1f", getAverageWriteTime())
+                + "ms (max " + maxWriteTime + "ms)");
+    }
+
+    static private boolean waitFor(Future<?> future, long timeout) {
+        try {
+            future.get(timeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private Job createJob(File file, long now) {
+        final Job job = new Job(file, now);
+        job.completion = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                run(job);
+                return null;
+            }
+        });
+        return job;
+    }
+
+    private void schedule(final Job job, long dueTime, long now) {
+        if (job.scheduled != null)
+            job.scheduled.cancel(false);
+        job.dueTime = dueTime;
+        // the completion task runs only once, even if an outdated schedule is not canceled in time
+        job.scheduled = executor.schedule(job.completion, Math.max(0, dueTime - now), TimeUnit.MILLISECONDS);
+    }
+
+    private void run(Job job) throws IOException {
+        IContent content;
+        synchronized (this) {
+            pendingJobs.remove(job.file);
+            content = job.content;
+        }
+        long startTime = System.currentTimeMillis();
+        Boolean written = null;
+        IOException failure = null;
+        try {
+            written = write(job.file, content);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        } catch (RuntimeException e) {
+            failure = new IOException(e);
+            throw e;
+        } finally {
+            long writeTime = System.currentTimeMillis() - startTime;
+            synchronized (this) {
+                if (unfinishedJobs.get(job.file) == job)
+                    unfinishedJobs.remove(job.file);
+                if (written != null)
+                    failures.remove(job.file);
+                else if (failure != null)
+                    failures.put(job.file, failure);
+                if (written == Boolean.TRUE) {
+                    writeCount++;
+                    totalWriteTime += writeTime;
+                    maxWriteTime = Math.max(maxWriteTime, writeTime);
+                } else if (written == Boolean.FALSE)
+                    skipCount++;
+            }
+            if (writeTime > SLOW_WRITE_TIME)
+                Log.w(TAG, "slow save of " + job.file.getName() + ": " + writeTime + "ms, "
+                        + getQueueDepth() + " files queued");
+        }
+    }
+
+    /**
+     * @return false if the file content did not change
+     */
+    private boolean write(File file, IContent content) throws IOException {
+        // only the hash of the last write is compared, the file is not read back; a file that has been changed by
+        // someone else is always written
+        FileState state = fileStates.remove(file);
+        String skipHash = null;
+        if (state != null && file.exists() && state.isUpToDate(file))
+            skipHash = state.hash;
+        try {
+            String hash = writeAtomically(file, content, skipHash);
+            if (hash == null) {
+                fileStates.put(file, state);
+                return false;
+            }
+            fileStates.put(file, new FileState(hash, file));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Streams the content to a temporary file and renames it to the target file.
+     */
+    static public void writeAtomically(File file, IContent content) throws IOException {
+        writeAtomically(file, content, null);
+    }
+
+    /**
+     * Streams the content to a temporary file and renames it to the target file. The content is hashed while it is
+     * written, i.e., it is only serialized once.
+     *
+     * @param skipHash hash of the current file content or null; if the content has the same hash the file is not
+     *                 replaced
+     * @return the hash of the written content or null if the file has not been replaced
+     */
+    static private String writeAtomically(File file, IContent content, String skipHash) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        boolean written = false;
+        try {
+            String hash;
+            FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+            try {
+                OutputStream outputStream = new BufferedOutputStream(new DigestOutputStream(fileOutputStream,
+                        digest), StreamHelper.BUFFER_SIZE);
+                content.write(outputStream);
+                outputStream.flush();
+                hash = Hash.bytesToHex(digest.digest());
+                if (hash.equals(skipHash))
+                    return null;
+                // make sure the data is on disk before the old file is replaced
+                fileOutputStream.getFD().sync();
+            } finally {
+                fileOutputStream.close();
+            }
+            if (!tempFile.renameTo(file))
+                throw new IOException("failed to rename " + tempFile.getPath());
+            written = true;
+            return hash;
+        } finally {
+            if (!written)
+                tempFile.delete();
+        }
+    }
+}
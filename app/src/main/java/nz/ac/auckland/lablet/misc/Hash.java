@@ -1,6 +1,12 @@
 package nz.ac.auckland.lablet.misc;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * Helper class to create sha1 hash hex strings.
@@ -18,17 +24,50 @@ public class Hash {
         return new String(hexChars);
     }
 
+    /**
+     * @param data the string, hashed as UTF-8
+     * @return the sha1 hex string of the string
+     */
     public static String sha1Hex(String data) {
-        String sha1 = "";
-        try
-        {
+        return sha1Hex(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param data the data
+     * @return the sha1 hex string of the data
+     */
+    public static String sha1Hex(byte[] data) {
+        try {
             MessageDigest crypt = MessageDigest.getInstance("SHA-1");
-            crypt.reset();
-            crypt.update(data.getBytes("UTF-8"));
-            sha1 = bytesToHex(crypt.digest());
-        } catch(Exception e) {
-            e.printStackTrace();
+            return bytesToHex(crypt.digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param file the file
+     * @return the sha1 hex string of the file content
+     */
+    public static String sha1Hex(File file) throws IOException {
+        MessageDigest crypt;
+        try {
+            crypt = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[StreamHelper.BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(buffer)) > 0)
+                crypt.update(buffer, 0, length);
+        } finally {
+            inputStream.close();
         }
-        return sha1;
+        return bytesToHex(crypt.digest());
     }
 }
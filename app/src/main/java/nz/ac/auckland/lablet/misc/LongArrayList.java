@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.misc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+ * List of Numbers that stores its values in a primitive long array.
+ * <p>
+ * Values are only boxed when accessed through the {@link java.util.List} interface. Bulk users should use
+ * {@link #getLong(int)}, {@link #addLong(long)} and {@link #getArray()} instead.
+ * </p>
+ */
+public class LongArrayList extends AbstractList<Number> implements RandomAccess {
+    private long[] values;
+    private int size = 0;
+
+    public LongArrayList() {
+        this(16);
+    }
+
+    public LongArrayList(int capacity) {
+        values = new long[Math.max(1, capacity)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Number get(int index) {
+        return getLong(index);
+    }
+
+    public long getLong(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return values[index];
+    }
+
+    @Override
+    public Number set(int index, Number value) {
+        long old = getLong(index);
+        values[index] = value.longValue();
+        return old;
+    }
+
+    public void addLong(long value) {
+        ensureCapacity(size + 1);
+        values[size] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void add(int index, Number value) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        ensureCapacity(size + 1);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value.longValue();
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Number remove(int index) {
+        long old = getLong(index);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Replaces the content of the list. The array is used directly and must not be modified afterwards.
+     *
+     * @param array the new values
+     * @param length number of valid values in the array
+     */
+    public void setArray(long[] array, int length) {
+        values = array.length > 0 ? array : new long[1];
+        size = length;
+        modCount++;
+    }
+
+    /**
+     * Gets the backing array. Only the first {@link #size()} values are valid.
+     *
+     * @return the backing array
+     */
+    public long[] getArray() {
+        return values;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (values.length >= capacity)
+            return;
+        values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.misc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Reads CSV files that only contain numbers.
+ * <p>
+ * The input is scanned directly from a large byte buffer and numbers are parsed in place, i.e., no Strings or String
+ * arrays are created per line. Only unusual fields, e.g., NaN or numbers with more than 18 significant digits, fall
+ * back to {@link Double#parseDouble(String)}. Rows containing a field that is not a number are skipped.
+ * </p>
+ */
+public class NumericCSVReader {
+    public interface IRowProcessor {
+        /**
+         * Called for each valid row.
+         *
+         * @param values the parsed fields, only the first count values are valid
+         * @param count number of fields in the row
+         */
+        void onRow(double[] values, int count);
+    }
+
+    final static public int BUFFER_SIZE = 64 * 1024;
+
+    final static private double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    final static private int MAX_MANTISSA_DIGITS = 18;
+
+    final private byte separator;
+    final private byte[] buffer = new byte[BUFFER_SIZE];
+
+    private double[] values = new double[8];
+    private int fieldCount;
+    private boolean rowValid;
+    private boolean lineEmpty;
+
+    // state of the current field
+    private long mantissa;
+    private int mantissaDigits;
+    private int decimalExponent;
+    private int exponent;
+    private boolean negative;
+    private boolean exponentNegative;
+    private boolean inFraction;
+    private boolean inExponent;
+    private boolean hasDigits;
+    private boolean slowPath;
+    // raw field content for the slow path
+    private char[] fieldChars = new char[32];
+    private int fieldLength;
+
+    public NumericCSVReader(char separator) {
+        this.separator = (byte)separator;
+    }
+
+    /**
+     * Reads all rows from the input stream. The stream is not closed.
+     *
+     * @param inputStream the input
+     * @param skipLines number of leading lines to skip, e.g., 1 to skip the header
+     * @param processor receives the parsed rows
+     * @return number of valid rows
+     * @throws IOException
+     */
+    public int read(InputStream inputStream, int skipLines, IRowProcessor processor) throws IOException {
+        int rowCount = 0;
+        int linesToSkip = skipLines;
+        startRow();
+        int length;
+        while ((length = inputStream.read(buffer)) >= 0) {
+            for (int i = 0; i < length; i++) {
+                byte c = buffer[i];
+                if (linesToSkip > 0) {
+                    if (c == '\n')
+                        linesToSkip--;
+                    continue;
+                }
+                if (c == '\n') {
+                    if (endRow(processor))
+                        rowCount++;
+                    startRow();
+                } else if (c == separator) {
+                    endField();
+                    startField();
+                } else
+                    parse(c);
+            }
+        }
+        if (linesToSkip == 0 && endRow(processor))
+            rowCount++;
+        return rowCount;
+    }
+
+    private void startRow() {
+        fieldCount = 0;
+        rowValid = true;
+        lineEmpty = true;
+        startField();
+    }
+
+    private void startField() {
+        mantissa = 0;
+        mantissaDigits = 0;
+        decimalExponent = 0;
+        exponent = 0;
+        negative = false;
+        exponentNegative = false;
+        inFraction = false;
+        inExponent = false;
+        hasDigits = false;
+        slowPath = false;
+        fieldLength = 0;
+    }
+
+    private void parse(byte c) {
+        if (c == ' ' || c == '\t' || c == '\r' || c == '"')
+            return;
+        lineEmpty = false;
+        appendFieldChar((char)c);
+
+        if (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (inExponent) {
+                // avoid overflows, such an exponent is out of range anyway
+                if (exponent < 10000)
+                    exponent = exponent * 10 + digit;
+                return;
+            }
+            hasDigits = true;
+            if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                if (mantissa != 0 || digit != 0)
+                    mantissaDigits++;
+                mantissa = mantissa * 10 + digit;
+                if (inFraction)
+                    decimalExponent--;
+            } else
+                slowPath = true;
+            return;
+        }
+        switch (c) {
+            case '-':
+                if (inExponent && exponent == 0)
+                    exponentNegative = true;
+                else if (!hasDigits && !inFraction && fieldLength == 1)
+                    negative = true;
+                else
+                    slowPath = true;
+                break;
+            case '+':
+                break;
+            case '.':
+                if (inFraction || inExponent)
+                    slowPath = true;
+                inFraction = true;
+                break;
+            case 'e':
+            case 'E':
+                if (inExponent || !hasDigits)
+                    slowPath = true;
+                inExponent = true;
+                break;
+            default:
+                slowPath = true;
+        }
+    }
+
+    private void endField() {
+        if (fieldCount == values.length) {
+            double[] newValues = new double[values.length * 2];
+            System.arraycopy(values, 0, newValues, 0, values.length);
+            values = newValues;
+        }
+        if (fieldLength == 0) {
+            rowValid = false;
+            fieldCount++;
+            return;
+        }
+        if (slowPath || !hasDigits) {
+            try {
+                values[fieldCount] = Double.parseDouble(new String(fieldChars, 0, fieldLength));
+            } catch (NumberFormatException e) {
+                rowValid = false;
+            }
+            fieldCount++;
+            return;
+        }
+
+        int totalExponent = decimalExponent + (exponentNegative ? -exponent : exponent);
+        double value = mantissa;
+        if (totalExponent < 0 && -totalExponent < POWERS_OF_TEN.length)
+            value /= POWERS_OF_TEN[-totalExponent];
+        else if (totalExponent > 0 && totalExponent < POWERS_OF_TEN.length)
+            value *= POWERS_OF_TEN[totalExponent];
+        else if (totalExponent != 0)
+            value = Double.parseDouble(new String(fieldChars, 0, fieldLength));
+        values[fieldCount] = negative ? -value : value;
+        fieldCount++;
+    }
+
+    private boolean endRow(IRowProcessor processor) {
+        if (lineEmpty)
+            return false;
+        endField();
+        if (!rowValid)
+            return false;
+        processor.onRow(values, fieldCount);
+        return true;
+    }
+
+    private void appendFieldChar(char c) {
+        if (fieldLength == fieldChars.length) {
+            char[] newChars = new char[fieldChars.length * 2];
+            System.arraycopy(fieldChars, 0, newChars, 0, fieldLength);
+            fieldChars = newChars;
+        }
+        fieldChars[fieldLength] = c;
+        fieldLength++;
+    }
+}
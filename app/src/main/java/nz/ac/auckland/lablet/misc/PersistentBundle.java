@@ -59,17 +59,50 @@ public class PersistentBundle {
         XmlSerializer serializer = Xml.newSerializer();
         try {
             serializer.setOutput(output);
-            serializer.startDocument("UTF-8", true);
-
-            flattenBundle(bundle, serializer);
+            flattenDocument(bundle, serializer);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new NotSerializableException();
+        }
+    }
 
-            serializer.endDocument();
+    /**
+     * Streams the bundle as UTF-8 encoded xml. The output stream is flushed but not closed.
+     */
+    public void flattenBundle(Bundle bundle, OutputStream output) throws NotSerializableException {
+        XmlSerializer serializer = Xml.newSerializer();
+        try {
+            serializer.setOutput(output, "UTF-8");
+            flattenDocument(bundle, serializer);
         } catch (Exception e) {
             e.printStackTrace();
             throw new NotSerializableException();
         }
     }
 
+    /**
+     * Writes the bundle to a temporary file that is then renamed to the target file, i.e., an existing file is
+     * either replaced completely or not at all.
+     *
+     * @param bundle the bundle
+     * @param file the target file
+     */
+    public void flattenBundle(final Bundle bundle, File file) throws IOException {
+        BackgroundSaver.writeAtomically(file, new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                flattenBundle(bundle, outputStream);
+            }
+        });
+    }
+
+    private void flattenDocument(Bundle bundle, XmlSerializer serializer) throws IOException {
+        serializer.startDocument("UTF-8", true);
+        flattenBundle(bundle, serializer);
+        serializer.endDocument();
+        serializer.flush();
+    }
+
     private void unflattenBundle(XmlPullParser parser, Bundle bundle) throws XmlPullParserException, IOException {
         int tag = parser.getEventType();
         int endTagCount = 0;
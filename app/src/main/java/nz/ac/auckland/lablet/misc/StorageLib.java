@@ -21,6 +21,8 @@ import java.nio.channels.FileChannel;
  * TODO: add listener interfaces to monitor copy, move, delete... progress
  */
 public class StorageLib {
+    final static private long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     /**
      * I file is a directory it deletes it recursively. If it is just a file it just deletes this file.
      * @param file
@@ -44,13 +46,28 @@ public class StorageLib {
      * @return false on failure
      */
     static public boolean moveFile(File source, File destination) throws IOException {
+        return moveFile(source, destination, false);
+    }
+
+    /**
+     * Move one single file.
+     *
+     * The file is renamed if possible. Otherwise, e.g., if the destination is on a different storage, the file is copied
+     * and the source is only deleted if the copy is complete.
+     *
+     * @param source
+     * @param destination
+     * @param verify if true the checksum of the copy is compared to the source before the source is deleted
+     * @return false on failure
+     */
+    static public boolean moveFile(File source, File destination, boolean verify) throws IOException {
         if (source.isDirectory())
             return false;
         // first try to just rename the file
         if (source.renameTo(destination))
             return true;
         // this could have failed because the file is on different storage cards so to a hard copy and then delete it
-        copyFile(source, destination);
+        copyFile(source, destination, null, 0, verify);
 
         return source.delete();
     }
@@ -61,19 +78,70 @@ public class StorageLib {
      * @param destination
      */
     static public void copyFile(File source, File destination) throws IOException {
-        FileInputStream inStream = new FileInputStream(source);
-        FileOutputStream outStream = new FileOutputStream(destination);
-        FileChannel inChannel = inStream.getChannel();
-        inChannel.transferTo(0, inChannel.size(), outStream.getChannel());
-        inStream.close();
-        outStream.close();
+        copyFile(source, destination, null, 0, false);
     }
 
     static public void copyFile(File source, File destination, StreamHelper.IProgressListener listener,
                                 int reportingStep) throws IOException {
+        copyFile(source, destination, listener, reportingStep, false);
+    }
+
+    /**
+     * Copies a file (not a directory) from source to destination.
+     *
+     * The data is transferred between the file channels, i.e., the kernel can copy the data without going through a
+     * user space buffer. An incomplete destination file is deleted on failure.
+     *
+     * @param source
+     * @param destination
+     * @param listener is notified about the number of copied bytes, can be null
+     * @param reportingStep minimal number of bytes between progress notifications
+     * @param verify if true the checksum of the copy is compared to the source
+     * @throws IOException if the copy failed or if the checksums don't match
+     */
+    static public void copyFile(File source, File destination, StreamHelper.IProgressListener listener,
+                                int reportingStep, boolean verify) throws IOException {
+        boolean completed = false;
         FileInputStream inStream = new FileInputStream(source);
-        FileOutputStream outStream = new FileOutputStream(destination);
-        StreamHelper.copy(inStream, outStream, listener, reportingStep);
+        try {
+            FileOutputStream outStream = new FileOutputStream(destination);
+            try {
+                transfer(inStream.getChannel(), outStream.getChannel(), listener, reportingStep);
+            } finally {
+                outStream.close();
+            }
+            completed = true;
+        } finally {
+            inStream.close();
+            if (!completed)
+                destination.delete();
+        }
+
+        if (verify && !Hash.sha1Hex(source).equals(Hash.sha1Hex(destination))) {
+            destination.delete();
+            throw new IOException("Checksum mismatch when copying " + source.getPath());
+        }
+    }
+
+    static private void transfer(FileChannel inChannel, FileChannel outChannel, StreamHelper.IProgressListener listener,
+                                 int reportingStep) throws IOException {
+        final long size = inChannel.size();
+        // transferTo may transfer less than requested, e.g., at most 2GB on Linux; transfer in large chunks that don't
+        // depend on the reporting step, a small step would otherwise cost one transferTo call per step
+        long position = 0;
+        while (position < size) {
+            long transferred = inChannel.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position),
+                    outChannel);
+            if (transferred <= 0)
+                throw new IOException("Failed to copy file, " + position + " of " + size + " bytes copied");
+            long lastPosition = position;
+            position += transferred;
+
+            // report when the chunk crossed a step boundary; the end is always reported
+            if (listener != null && (reportingStep <= 0 || position == size
+                    || position / reportingStep > lastPosition / reportingStep))
+                listener.onNewProgress(position);
+        }
     }
 
     static public String removeExtension(String fileName) {
@@ -19,8 +19,7 @@ public class Unit extends WeakListenable<Unit.IListener> {
     }
 
     private void notifyBaseExponentChanged() {
-        for (IListener listener : getListeners())
-            listener.onBaseExponentChanged();
+        forEachListener(listener -> listener.onBaseExponentChanged());
     }
 
     static public class Prefix {
@@ -9,72 +9,233 @@ package nz.ac.auckland.lablet.misc;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
-
+import java.util.Arrays;
 import java.util.List;
 
 
+/**
+ * Holds weak references to listeners.
+ * <p>
+ * The listeners are kept in a copy-on-write array, i.e., adding or removing a listener copies the array but notifying
+ * the listeners doesn't copy the listener list. The forEachListener overloads pass the notification arguments on to
+ * the visitor so that hot paths can use non-capturing lambdas, which are not allocated per notification. References of
+ * garbage collected listeners are removed when they are encountered.
+ * </p>
+ */
 public class WeakListenable<Listener> {
-    final private List<WeakReference<Listener>> listeners = new ArrayList<>();
+    /**
+     * Is called for every listener. Capturing lambdas allocate a visitor on every notification; non-capturing lambdas
+     * and visitor instances that are kept around don't. To avoid capturing, pass the arguments of the notification to
+     * one of the typed overloads of forEachListener.
+     */
+    public interface IVisitor<Listener> {
+        void visit(Listener listener);
+    }
 
-    public void addListener(int index, Listener listener) {
-        if (hasListener(listener))
-            return;
-        listeners.add(index, new WeakReference<>(listener));
+    public interface IIntVisitor<Listener> {
+        void visit(Listener listener, int value);
+    }
+
+    public interface IArgVisitor<Listener, A> {
+        void visit(Listener listener, A arg);
+    }
+
+    public interface IArgIntVisitor<Listener, A> {
+        void visit(Listener listener, A arg, int value);
+    }
+
+    public interface IArgIntIntVisitor<Listener, A> {
+        void visit(Listener listener, A arg, int value1, int value2);
+    }
+
+    public interface IArgIntArgVisitor<Listener, A, B> {
+        void visit(Listener listener, A arg1, int value, B arg2);
+    }
+
+    public interface ILongArgVisitor<Listener, A> {
+        void visit(Listener listener, long value, A arg);
     }
 
-    public void addListener(Listener listener) {
+    final static private WeakReference<?>[] NO_LISTENERS = new WeakReference<?>[0];
+
+    private volatile WeakReference<Listener>[] listeners = newArray(0);
+
+    synchronized public void addListener(int index, Listener listener) {
         if (hasListener(listener))
             return;
-        listeners.add(new WeakReference<>(listener));
+        WeakReference<Listener>[] current = listeners;
+        index = Math.min(index, current.length);
+        WeakReference<Listener>[] newListeners = newArray(current.length + 1);
+        System.arraycopy(current, 0, newListeners, 0, index);
+        newListeners[index] = new WeakReference<>(listener);
+        System.arraycopy(current, index, newListeners, index + 1, current.length - index);
+        listeners = newListeners;
     }
 
-    public boolean hasListener(Listener listener) {
-        Iterator<WeakReference<Listener>> it = listeners.iterator();
-        while (it.hasNext()) {
-            WeakReference<Listener> listenerWeak = it.next();
-            Listener listenerStrong = listenerWeak.get();
-            if (listenerStrong == null) {
-                it.remove();
-                continue;
-            }
-            if (listenerWeak.get() == listener)
-                return true;
+    synchronized public void addListener(Listener listener) {
+        addListener(Integer.MAX_VALUE, listener);
+    }
+
+    synchronized public boolean hasListener(Listener listener) {
+        removeStaleListeners();
+        return indexOf(listener) >= 0;
+    }
+
+    synchronized public boolean removeListener(Listener listener) {
+        removeStaleListeners();
+        int index = indexOf(listener);
+        if (index < 0)
+            return false;
+        WeakReference<Listener>[] current = listeners;
+        WeakReference<Listener>[] newListeners = newArray(current.length - 1);
+        System.arraycopy(current, 0, newListeners, 0, index);
+        System.arraycopy(current, index + 1, newListeners, index, current.length - index - 1);
+        listeners = newListeners;
+        return true;
+    }
+
+    /**
+     * Calls the visitor for every listener. Listeners that are added or removed by the visitor are not taken into
+     * account till the next call.
+     *
+     * @param visitor the visitor
+     */
+    public void forEachListener(IVisitor<Listener> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener);
         }
-        return false;
+        onNotified(current);
     }
 
-    public boolean removeListener(Listener listener) {
-        Iterator<WeakReference<Listener>> it = listeners.iterator();
-        while (it.hasNext()) {
-            WeakReference<Listener> listenerWeak = it.next();
-            Listener listenerStrong = listenerWeak.get();
-            if (listenerStrong == null) {
-                it.remove();
-                continue;
-            }
-            if (listenerStrong == listener) {
-                it.remove();
-                return true;
-            }
+    public void forEachListener(int value, IIntVisitor<Listener> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener, value);
         }
-        return false;
+        onNotified(current);
     }
 
-    public List<Listener> getListeners() {
-        List<Listener> outList = new ArrayList<>();
-
-        Iterator<WeakReference<Listener>> it = listeners.iterator();
-        while (it.hasNext()) {
-            WeakReference<Listener> listenerWeak = it.next();
-            Listener listenerStrong = listenerWeak.get();
-            if (listenerStrong == null) {
-                it.remove();
-                continue;
+    public <A> void forEachListener(A arg, IArgVisitor<Listener, A> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener, arg);
+        }
+        onNotified(current);
+    }
+
+    public <A> void forEachListener(A arg, int value, IArgIntVisitor<Listener, A> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener, arg, value);
+        }
+        onNotified(current);
+    }
+
+    public <A> void forEachListener(A arg, int value1, int value2, IArgIntIntVisitor<Listener, A> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener, arg, value1, value2);
+        }
+        onNotified(current);
+    }
+
+    public <A, B> void forEachListener(A arg1, int value, B arg2, IArgIntArgVisitor<Listener, A, B> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener, arg1, value, arg2);
+        }
+        onNotified(current);
+    }
+
+    public <A> void forEachListener(long value, A arg, ILongArgVisitor<Listener, A> visitor) {
+        WeakReference<Listener>[] current = listeners;
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                visitor.visit(listener, value, arg);
+        }
+        onNotified(current);
+    }
+
+    /**
+     * Removes the references of garbage collected listeners after a notification.
+     *
+     * @param notified the listener array that has been notified
+     */
+    private void onNotified(WeakReference<Listener>[] notified) {
+        for (WeakReference<Listener> reference : notified) {
+            if (reference.get() == null) {
+                synchronized (this) {
+                    removeStaleListeners();
+                }
+                return;
             }
-            outList.add(listenerStrong);
         }
+    }
 
+    /**
+     * @return a new list containing the listeners
+     */
+    public List<Listener> getListeners() {
+        WeakReference<Listener>[] current = listeners;
+        List<Listener> outList = new ArrayList<>(current.length);
+        for (WeakReference<Listener> reference : current) {
+            Listener listener = reference.get();
+            if (listener != null)
+                outList.add(listener);
+        }
+        onNotified(current);
         return outList;
     }
+
+    private int indexOf(Listener listener) {
+        WeakReference<Listener>[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].get() == listener)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void removeStaleListeners() {
+        WeakReference<Listener>[] current = listeners;
+        int count = 0;
+        for (WeakReference<Listener> reference : current) {
+            if (reference.get() != null)
+                count++;
+        }
+        if (count == current.length)
+            return;
+        WeakReference<Listener>[] newListeners = newArray(count);
+        int index = 0;
+        for (WeakReference<Listener> reference : current) {
+            // a listener can be collected between the two loops
+            if (reference.get() != null && index < count)
+                newListeners[index++] = reference;
+        }
+        listeners = index == count ? newListeners : Arrays.copyOf(newListeners, index);
+    }
+
+    static private <Listener> WeakReference<Listener>[] newArray(int length) {
+        @SuppressWarnings("unchecked")
+        WeakReference<Listener>[] array = (WeakReference<Listener>[])(length == 0 ? NO_LISTENERS
+                : new WeakReference<?>[length]);
+        return array;
+    }
 }
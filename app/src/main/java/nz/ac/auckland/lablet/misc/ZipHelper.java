@@ -8,32 +8,145 @@
 package nz.ac.auckland.lablet.misc;
 
 import java.io.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 
+/**
+ * Writes zip files.
+ * <p>
+ * Already compressed media files (videos, images, ...) are stored uncompressed. All other files are split into blocks
+ * that are deflated in parallel into memory and written in order; the blocks are sync flushed, i.e., together they form
+ * a single deflate stream. The progress passed to the listeners is the total number of bytes read from the added
+ * files.
+ * </p>
+ * <p>
+ * Files and archives larger than 4 GB are written using the zip64 extensions.
+ * </p>
+ */
 public class ZipHelper {
-    private ZipOutputStream outputStream;
-    private boolean canceled = false;
+    final static private int BLOCK_SIZE = 256 * 1024;
+    final static private long MAX_ZIP32_SIZE = 0xFFFFFFFFL;
+    final static private int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    final static private int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    final static private int END_SIGNATURE = 0x06054b50;
+    final static private int ZIP64_END_SIGNATURE = 0x06064b50;
+    final static private int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    final static private int ZIP64_EXTRA_ID = 0x0001;
+    final static private int ZIP_VERSION = 20;
+    final static private int ZIP64_VERSION = 45;
+    // names are UTF-8 encoded
+    final static private int FLAG_UTF8 = 0x0800;
+    final static private int METHOD_STORED = 0;
+    final static private int METHOD_DEFLATED = 8;
+    final static private Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "mp4", "3gp", "m4v", "mkv", "webm", "m4a", "aac", "mp3", "ogg", "jpg", "jpeg", "png", "gif", "webp",
+            "zip", "gz"));
 
-    public ZipHelper(String outputPath) throws IOException {
-        init(new File(outputPath));
+    static private class Entry {
+        final byte[] name;
+        final int method;
+        final int dosTime;
+        // the local header has a zip64 extra field
+        final boolean zip64;
+        long crc;
+        long compressedSize;
+        long size;
+        long headerOffset;
+
+        Entry(String name, int method, long lastModified, boolean zip64) {
+            this.name = name.getBytes(Charset.forName("UTF-8"));
+            this.method = method;
+            this.dosTime = toDosTime(lastModified);
+            this.zip64 = zip64;
+        }
+
+        boolean needsZip64() {
+            return size >= MAX_ZIP32_SIZE || compressedSize >= MAX_ZIP32_SIZE || headerOffset >= MAX_ZIP32_SIZE;
+        }
     }
 
-    public ZipHelper(File outputFile) throws IOException {
-        init(outputFile);
+    static private class Block {
+        final byte[] data;
+        final int length;
+        final byte[] deflated;
+        final int deflatedLength;
+
+        Block(byte[] data, int length, byte[] deflated, int deflatedLength) {
+            this.data = data;
+            this.length = length;
+            this.deflated = deflated;
+            this.deflatedLength = deflatedLength;
+        }
     }
 
-    private void init(File outputFile) throws IOException {
+    final private RandomAccessFile file;
+    final private FileChannel channel;
+    final private List<Entry> entries = new ArrayList<>();
+    final private ExecutorService executor;
+    final private int maxPendingBlocks;
+    // files that are not accepted are skipped by addDir, null to add all files
+    private FileFilter fileFilter = null;
+    private volatile boolean canceled = false;
+    private boolean closed = false;
+    private long progress = 0;
+    private long lastReportedProgress = 0;
+
+    public ZipHelper(String outputPath) throws IOException {
+        this(new File(outputPath));
+    }
+
+    public ZipHelper(File outputFile) throws IOException {
         if (outputFile.exists())
             outputFile.delete();
 
-        outputFile.createNewFile();
-        outputStream = new ZipOutputStream(new FileOutputStream(outputFile));
+        file = new RandomAccessFile(outputFile, "rw");
+        channel = file.getChannel();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        executor = Executors.newFixedThreadPool(threads);
+        // bounds the memory used by deflated blocks that wait to be written
+        maxPendingBlocks = 2 * threads;
     }
 
+    /**
+     * Finishes the zip file. If the export has been canceled or failed the file is incomplete. Must also be called
+     * when adding files failed.
+     */
     public void close() throws IOException {
-        outputStream.close();
+        if (closed)
+            return;
+        closed = true;
+        executor.shutdownNow();
+        try {
+            if (!canceled)
+                writeCentralDirectory();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @param fileFilter files and directories that are not accepted are skipped by addDir, null to add all files
+     */
+    public void setFileFilter(FileFilter fileFilter) {
+        this.fileFilter = fileFilter;
     }
 
     public void addDir(File dir, StreamHelper.IProgressListener listener) throws IOException {
@@ -51,6 +164,8 @@ public class ZipHelper {
                 return;
 
             File file = files[i];
+            if (fileFilter != null && !fileFilter.accept(file))
+                continue;
             String subSubFile = subDir + File.separator + file.getName();
 
             if (file.isDirectory()) {
@@ -61,21 +176,323 @@ public class ZipHelper {
         }
     }
 
-    public void cancel() throws IOException {
+    /**
+     * Stops the export after the current block. Can be called from any thread; {@link #close()} still has to be
+     * called.
+     */
+    public void cancel() {
         canceled = true;
-        close();
     }
 
-    public void addFile(File rootDir, String file,  StreamHelper.IProgressListener listener) throws IOException {
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * @return the total number of bytes read from the added files
+     */
+    public long getProgress() {
+        return progress;
+    }
+
+    public void addFile(File rootDir, String file, StreamHelper.IProgressListener listener) throws IOException {
+        if (canceled)
+            return;
         File absoluteFile = new File(rootDir, file);
+        boolean store = isCompressed(absoluteFile.getName());
+        long length = absoluteFile.length();
+        // deflated data can be slightly larger than the input
+        boolean zip64 = length + length / 100 + BLOCK_SIZE >= MAX_ZIP32_SIZE;
+        Entry entry = new Entry(file, store ? METHOD_STORED : METHOD_DEFLATED, absoluteFile.lastModified(), zip64);
+        entry.headerOffset = channel.position();
+        writeLocalHeader(entry);
 
-        FileInputStream in = new FileInputStream(absoluteFile.getAbsolutePath());
+        FileInputStream in = new FileInputStream(absoluteFile);
         try {
-            outputStream.putNextEntry(new ZipEntry(file));
-            StreamHelper.copy(in, outputStream, listener);
-            outputStream.closeEntry();
+            if (store)
+                writeStored(in.getChannel(), entry, listener);
+            else
+                writeDeflated(in.getChannel(), entry, listener);
         } finally {
             in.close();
         }
+        if (canceled)
+            return;
+        if (listener != null && progress != lastReportedProgress) {
+            lastReportedProgress = progress;
+            listener.onNewProgress(progress);
+        }
+
+        if (!entry.zip64 && (entry.size >= MAX_ZIP32_SIZE || entry.compressedSize >= MAX_ZIP32_SIZE))
+            throw new IOException("file changed while zipping: " + absoluteFile.getPath());
+        patchLocalHeader(entry);
+        entries.add(entry);
+    }
+
+    static private boolean isCompressed(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0)
+            return false;
+        return COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.US));
+    }
+
+    private void writeStored(FileChannel in, Entry entry, StreamHelper.IProgressListener listener)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        while (!canceled) {
+            buffer.clear();
+            int read = in.read(buffer);
+            if (read < 0)
+                break;
+            buffer.flip();
+            crc.update(buffer.array(), 0, read);
+            writeFully(buffer);
+            entry.size += read;
+            onBytesRead(read, listener);
+        }
+        entry.compressedSize = entry.size;
+        entry.crc = crc.getValue();
+    }
+
+    private void writeDeflated(final FileChannel in, Entry entry, StreamHelper.IProgressListener listener)
+            throws IOException {
+        final long size = in.size();
+        final int blockCount = (int)Math.max(1, (size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        CRC32 crc = new CRC32();
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (int written = 0; written < blockCount && !canceled; written++) {
+                while (submitted < blockCount && pending.size() < maxPendingBlocks) {
+                    final long position = (long)submitted * BLOCK_SIZE;
+                    final boolean last = submitted == blockCount - 1;
+                    pending.add(executor.submit(new Callable<Block>() {
+                        @Override
+                        public Block call() throws IOException {
+                            return deflateBlock(in, position, (int)Math.min(BLOCK_SIZE, size - position), last);
+                        }
+                    }));
+                    submitted++;
+                }
+
+                Block block = getBlock(pending.poll());
+                crc.update(block.data, 0, block.length);
+                writeFully(ByteBuffer.wrap(block.deflated, 0, block.deflatedLength));
+                entry.size += block.length;
+                entry.compressedSize += block.deflatedLength;
+                onBytesRead(block.length, listener);
+            }
+        } finally {
+            for (Future<Block> future : pending)
+                future.cancel(true);
+        }
+        entry.crc = crc.getValue();
+    }
+
+    static private Block getBlock(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Deflates a block of a file. All but the last block are sync flushed, so that the blocks can be concatenated.
+     */
+    static private Block deflateBlock(FileChannel in, long position, int length, boolean last) throws IOException {
+        byte[] data = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("file changed while zipping");
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data, 0, length);
+            if (last)
+                deflater.finish();
+            // deflate output can be slightly larger than the input
+            byte[] deflated = new byte[length + length / 1000 + 64];
+            int deflatedLength = 0;
+            while (true) {
+                if (deflatedLength == deflated.length)
+                    deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                int space = deflated.length - deflatedLength;
+                int count = deflater.deflate(deflated, deflatedLength, space,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                deflatedLength += count;
+                // a sync flush is complete when the output buffer has not been filled
+                if (last ? deflater.finished() : count < space)
+                    break;
+            }
+            return new Block(data, length, deflated, deflatedLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void onBytesRead(int count, StreamHelper.IProgressListener listener) {
+        progress += count;
+        if (listener != null && progress - lastReportedProgress >= BLOCK_SIZE) {
+            lastReportedProgress = progress;
+            listener.onNewProgress(progress);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        int extraLength = entry.zip64 ? 20 : 0;
+        ByteBuffer header = ByteBuffer.allocate(30 + entry.name.length + extraLength)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short)(entry.zip64 ? ZIP64_VERSION : ZIP_VERSION));
+        header.putShort((short)FLAG_UTF8);
+        header.putShort((short)entry.method);
+        header.putInt(entry.dosTime);
+        // crc and sizes are patched when the data is written; zip64 sizes are in the extra field
+        header.putInt(0);
+        header.putInt(entry.zip64 ? (int)MAX_ZIP32_SIZE : 0);
+        header.putInt(entry.zip64 ? (int)MAX_ZIP32_SIZE : 0);
+        header.putShort((short)entry.name.length);
+        header.putShort((short)extraLength);
+        header.put(entry.name);
+        if (entry.zip64) {
+            header.putShort((short)ZIP64_EXTRA_ID);
+            header.putShort((short)16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        header.flip();
+        writeFully(header);
+    }
+
+    private void patchLocalHeader(Entry entry) throws IOException {
+        ByteBuffer patch = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        patch.putInt((int)entry.crc);
+        if (!entry.zip64) {
+            patch.putInt((int)entry.compressedSize);
+            patch.putInt((int)entry.size);
+        }
+        patch.flip();
+        writeFully(patch, entry.headerOffset + 14);
+
+        if (entry.zip64) {
+            ByteBuffer sizes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            sizes.putLong(entry.size);
+            sizes.putLong(entry.compressedSize);
+            sizes.flip();
+            writeFully(sizes, entry.headerOffset + 30 + entry.name.length + 4);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long centralOffset = channel.position();
+        for (Entry entry : entries) {
+            // if one value does not fit all three are stored in the zip64 extra field
+            boolean zip64 = entry.needsZip64();
+            int extraLength = zip64 ? 28 : 0;
+            ByteBuffer header = ByteBuffer.allocate(46 + entry.name.length + extraLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(CENTRAL_HEADER_SIGNATURE);
+            header.putShort((short)(zip64 ? ZIP64_VERSION : ZIP_VERSION));
+            header.putShort((short)(zip64 ? ZIP64_VERSION : ZIP_VERSION));
+            header.putShort((short)FLAG_UTF8);
+            header.putShort((short)entry.method);
+            header.putInt(entry.dosTime);
+            header.putInt((int)entry.crc);
+            header.putInt(zip64 ? (int)MAX_ZIP32_SIZE : (int)entry.compressedSize);
+            header.putInt(zip64 ? (int)MAX_ZIP32_SIZE : (int)entry.size);
+            header.putShort((short)entry.name.length);
+            header.putShort((short)extraLength);
+            // comment, disk number, internal and external attributes
+            header.putShort((short)0);
+            header.putShort((short)0);
+            header.putShort((short)0);
+            header.putInt(0);
+            header.putInt(zip64 ? (int)MAX_ZIP32_SIZE : (int)entry.headerOffset);
+            header.put(entry.name);
+            if (zip64) {
+                header.putShort((short)ZIP64_EXTRA_ID);
+                header.putShort((short)24);
+                header.putLong(entry.size);
+                header.putLong(entry.compressedSize);
+                header.putLong(entry.headerOffset);
+            }
+            header.flip();
+            writeFully(header);
+        }
+        long centralSize = channel.position() - centralOffset;
+        boolean zip64 = entries.size() >= 0xFFFF || centralOffset >= MAX_ZIP32_SIZE
+                || centralSize >= MAX_ZIP32_SIZE;
+        if (zip64)
+            writeZip64End(centralOffset, centralSize);
+
+        ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short)0);
+        end.putShort((short)0);
+        end.putShort((short)(zip64 ? 0xFFFF : entries.size()));
+        end.putShort((short)(zip64 ? 0xFFFF : entries.size()));
+        end.putInt(zip64 ? (int)MAX_ZIP32_SIZE : (int)centralSize);
+        end.putInt(zip64 ? (int)MAX_ZIP32_SIZE : (int)centralOffset);
+        end.putShort((short)0);
+        end.flip();
+        writeFully(end);
+        channel.truncate(channel.position());
+    }
+
+    private void writeZip64End(long centralOffset, long centralSize) throws IOException {
+        long endOffset = channel.position();
+        ByteBuffer end = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(ZIP64_END_SIGNATURE);
+        // size of the remaining record
+        end.putLong(44);
+        end.putShort((short)ZIP64_VERSION);
+        end.putShort((short)ZIP64_VERSION);
+        // disk numbers
+        end.putInt(0);
+        end.putInt(0);
+        end.putLong(entries.size());
+        end.putLong(entries.size());
+        end.putLong(centralSize);
+        end.putLong(centralOffset);
+
+        end.putInt(ZIP64_LOCATOR_SIGNATURE);
+        end.putInt(0);
+        end.putLong(endOffset);
+        // total number of disks
+        end.putInt(1);
+        end.flip();
+        writeFully(end);
+    }
+
+    static private int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980)
+            return (1 << 21) | (1 << 16);
+        return (year - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
     }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.script;
+
+import nz.ac.auckland.lablet.misc.Hash;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.compiler.DumpState;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * Cache for compiled Lua scripts and their meta data.
+ * <p>
+ * Entries are keyed by the script path and validated by the script size and the SHA-1 of the script content. The
+ * modification time is used to skip hashing unchanged files. The compiled prototypes are stored as Lua byte code in the
+ * cache directory and the meta data in an index file, i.e., the cache survives app restarts. Call {@link #save()} to
+ * write the index.
+ * </p>
+ * <p>
+ * The index header contains the app version code and the LuaJ version. If either differs the index and the byte code
+ * are dropped, i.e., byte code of another LuaJ version and loading errors of another app version are never used.
+ * </p>
+ */
+public class LuaScriptCache {
+    final static private int INDEX_VERSION = 2;
+    final static private String INDEX_FILE_NAME = "index";
+    final static private String BYTE_CODE_SUFFIX = ".luac";
+
+    static private class Entry {
+        long size;
+        long lastModified;
+        String sha1;
+        Prototype prototype;
+        boolean hasByteCode;
+
+        boolean hasMetaData;
+        float interfaceVersion;
+        String title;
+        String loadingError;
+    }
+
+    final private File cacheDir;
+    final private int appVersionCode;
+    final private String luajVersion;
+    final private Map<String, Entry> entries = new HashMap<>();
+    private Globals compilerGlobals = null;
+    private boolean indexLoaded = false;
+    private boolean indexChanged = false;
+
+    /**
+     * @param cacheDir directory for the byte code and the index, is created if needed
+     * @param appVersionCode version code of the app
+     * @param luajVersion version of the LuaJ library
+     */
+    public LuaScriptCache(File cacheDir, int appVersionCode, String luajVersion) {
+        this.cacheDir = cacheDir;
+        this.appVersionCode = appVersionCode;
+        this.luajVersion = luajVersion;
+    }
+
+    /**
+     * Gets the compiled script, compiles the script if it is not cached or has changed.
+     *
+     * @param scriptFile the script
+     * @return the compiled script
+     * @throws LuaError if the script can't be read or compiled
+     */
+    synchronized public Prototype getPrototype(File scriptFile) {
+        byte[] content = null;
+        Entry entry = getValidEntry(scriptFile);
+        if (entry == null) {
+            content = readScript(scriptFile);
+            entry = getValidEntry(scriptFile, content);
+        }
+        if (entry.prototype != null)
+            return entry.prototype;
+
+        String chunkName = "@" + scriptFile.getPath();
+        if (entry.hasByteCode) {
+            entry.prototype = readByteCode(getByteCodeFile(scriptFile), chunkName);
+            if (entry.prototype != null)
+                return entry.prototype;
+            entry.hasByteCode = false;
+        }
+
+        if (content == null)
+            content = readScript(scriptFile);
+        try {
+            entry.prototype = getCompilerGlobals().compilePrototype(new ByteArrayInputStream(content), chunkName);
+        } catch (IOException e) {
+            throw new LuaError("load " + scriptFile.getPath() + ": " + e);
+        }
+        entry.hasByteCode = writeByteCode(entry.prototype, getByteCodeFile(scriptFile));
+        indexChanged = true;
+        return entry.prototype;
+    }
+
+    /**
+     * @param scriptFile the script
+     * @return the cached meta data or null if there is none for the current script content
+     */
+    synchronized public ScriptMetaData getMetaData(File scriptFile) {
+        Entry entry = getValidEntry(scriptFile);
+        if (entry == null) {
+            byte[] content;
+            try {
+                content = readScript(scriptFile);
+            } catch (LuaError e) {
+                return null;
+            }
+            entry = getValidEntry(scriptFile, content);
+        }
+        if (!entry.hasMetaData)
+            return null;
+
+        ScriptMetaData metaData = new ScriptMetaData(scriptFile);
+        metaData.setInterfaceVersion(entry.interfaceVersion);
+        metaData.setTitle(entry.title);
+        metaData.setLoadingError(entry.loadingError);
+        return metaData;
+    }
+
+    /**
+     * Stores the meta data of a script. Must be called after the script has been loaded through
+     * {@link #getPrototype(File)}, i.e., when the cache knows the script content.
+     *
+     * @param metaData the meta data
+     */
+    synchronized public void putMetaData(ScriptMetaData metaData) {
+        Entry entry = entries.get(getKey(metaData.file));
+        if (entry == null)
+            return;
+        entry.hasMetaData = true;
+        entry.interfaceVersion = metaData.getInterfaceVersion();
+        // the title falls back to the file name, don't store that
+        entry.title = metaData.getTitle().equals(metaData.getScriptFileName()) ? "" : metaData.getTitle();
+        entry.loadingError = metaData.getLoadingError() != null ? metaData.getLoadingError() : "";
+        indexChanged = true;
+    }
+
+    /**
+     * Writes the index if it changed.
+     */
+    synchronized public void save() {
+        if (!indexChanged)
+            return;
+        if (!cacheDir.exists() && !cacheDir.mkdirs())
+            return;
+
+        // forget removed scripts
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next().getKey();
+            if (new File(key).exists())
+                continue;
+            getByteCodeFile(new File(key)).delete();
+            iterator.remove();
+        }
+
+        File indexFile = new File(cacheDir, INDEX_FILE_NAME);
+        File tempFile = new File(cacheDir, INDEX_FILE_NAME + ".tmp");
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                output.writeInt(INDEX_VERSION);
+                output.writeInt(appVersionCode);
+                output.writeUTF(luajVersion);
+                output.writeInt(entries.size());
+                for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                    Entry entry = mapEntry.getValue();
+                    output.writeUTF(mapEntry.getKey());
+                    output.writeLong(entry.size);
+                    output.writeLong(entry.lastModified);
+                    output.writeUTF(entry.sha1);
+                    output.writeBoolean(entry.hasByteCode);
+                    output.writeBoolean(entry.hasMetaData);
+                    if (entry.hasMetaData) {
+                        output.writeFloat(entry.interfaceVersion);
+                        output.writeUTF(entry.title);
+                        output.writeUTF(entry.loadingError);
+                    }
+                }
+            } finally {
+                output.close();
+            }
+            if (tempFile.renameTo(indexFile))
+                indexChanged = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private void loadIndex() {
+        if (indexLoaded)
+            return;
+        indexLoaded = true;
+
+        File indexFile = new File(cacheDir, INDEX_FILE_NAME);
+        if (!indexFile.exists())
+            return;
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (input.readInt() != INDEX_VERSION || input.readInt() != appVersionCode
+                        || !input.readUTF().equals(luajVersion)) {
+                    // written by another app or LuaJ version
+                    deleteByteCode();
+                    indexChanged = true;
+                    return;
+                }
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = input.readUTF();
+                    Entry entry = new Entry();
+                    entry.size = input.readLong();
+                    entry.lastModified = input.readLong();
+                    entry.sha1 = input.readUTF();
+                    entry.hasByteCode = input.readBoolean();
+                    entry.hasMetaData = input.readBoolean();
+                    if (entry.hasMetaData) {
+                        entry.interfaceVersion = input.readFloat();
+                        entry.title = input.readUTF();
+                        entry.loadingError = input.readUTF();
+                    }
+                    entries.put(key, entry);
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Deletes the byte code of all scripts, e.g., when it has been written by another LuaJ version.
+     */
+    private void deleteByteCode() {
+        File[] files = cacheDir.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (file.getName().endsWith(BYTE_CODE_SUFFIX))
+                file.delete();
+        }
+    }
+
+    private String getKey(File scriptFile) {
+        return scriptFile.getAbsolutePath();
+    }
+
+    /**
+     * @return the entry if the script size and modification time didn't change, null otherwise
+     */
+    private Entry getValidEntry(File scriptFile) {
+        loadIndex();
+        Entry entry = entries.get(getKey(scriptFile));
+        if (entry == null || entry.size != scriptFile.length() || entry.lastModified != scriptFile.lastModified())
+            return null;
+        return entry;
+    }
+
+    /**
+     * Gets the entry for the script content; resets the entry if the content changed.
+     */
+    private Entry getValidEntry(File scriptFile, byte[] content) {
+        String sha1 = Hash.sha1Hex(content);
+        String key = getKey(scriptFile);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.size != content.length || !entry.sha1.equals(sha1)) {
+            if (entry != null)
+                getByteCodeFile(scriptFile).delete();
+            entry = new Entry();
+            entry.size = content.length;
+            entry.sha1 = sha1;
+            entries.put(key, entry);
+        }
+        // the content is the same, only the file has been touched
+        entry.lastModified = scriptFile.lastModified();
+        indexChanged = true;
+        return entry;
+    }
+
+    private File getByteCodeFile(File scriptFile) {
+        return new File(cacheDir, Hash.sha1Hex(getKey(scriptFile)) + BYTE_CODE_SUFFIX);
+    }
+
+    private Globals getCompilerGlobals() {
+        if (compilerGlobals == null)
+            compilerGlobals = JsePlatform.standardGlobals();
+        return compilerGlobals;
+    }
+
+    static private byte[] readScript(File scriptFile) {
+        try {
+            InputStream inputStream = new FileInputStream(scriptFile);
+            try {
+                byte[] content = new byte[(int)scriptFile.length()];
+                int read = 0;
+                while (read < content.length) {
+                    int n = inputStream.read(content, read, content.length - read);
+                    if (n < 0)
+                        throw new IOException("unexpected end of file");
+                    read += n;
+                }
+                return content;
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new LuaError("load " + scriptFile.getPath() + ": " + e);
+        }
+    }
+
+    private Prototype readByteCode(File file, String chunkName) {
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                return getCompilerGlobals().loadPrototype(inputStream, chunkName, "b");
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException | LuaError e) {
+            return null;
+        }
+    }
+
+    private boolean writeByteCode(Prototype prototype, File file) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs())
+            return false;
+        try {
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                DumpState.dump(prototype, outputStream, false);
+            } finally {
+                outputStream.close();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            file.delete();
+            return false;
+        }
+    }
+}
@@ -8,6 +8,7 @@
 package nz.ac.auckland.lablet.script;
 
 import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
 import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.lib.jse.CoerceJavaToLua;
@@ -74,6 +75,8 @@ public class LuaScriptLoader {
         }
     }
 
+    static private LuaScriptCache scriptCache = null;
+
     private String lastError = "";
     private ScriptBuilder builder;
 
@@ -81,6 +84,26 @@ public class LuaScriptLoader {
         builder = new ScriptBuilder(factory);
     }
 
+    /**
+     * Sets the cache for compiled scripts and script meta data.
+     *
+     * @param cache the cache or null to always compile the scripts
+     */
+    static public void setScriptCache(LuaScriptCache cache) {
+        scriptCache = cache;
+    }
+
+    static public LuaScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    static private LuaValue loadChunk(Globals globals, File scriptFile) {
+        LuaScriptCache cache = scriptCache;
+        if (cache == null)
+            return loadfile(globals, scriptFile.getPath());
+        return new LuaClosure(cache.getPrototype(scriptFile), globals);
+    }
+
     // this is basically a copy from the luaj code but it uses a BufferedInputStream
     static private LuaValue loadfile(Globals globals, String filename) {
         try {
@@ -105,8 +128,7 @@ public class LuaScriptLoader {
 
         try {
             Globals globals = JsePlatform.standardGlobals();
-            //LuaValue chunk = globals.loadfile(scriptFile.getPath());
-            LuaValue chunk = loadfile(globals, scriptFile.getPath());
+            LuaValue chunk = loadChunk(globals, scriptFile);
             chunk.call();
 
             LuaValue labletNamespace = globals.get(NAMESPACE);
@@ -124,6 +146,9 @@ public class LuaScriptLoader {
             return null;
         }
 
+        if (scriptCache != null)
+            scriptCache.save();
+
         Script script = builder.getScript();
         if (!script.initCheck()) {
             lastError = script.getLastError();
@@ -137,11 +162,17 @@ public class LuaScriptLoader {
             return null;
         }
 
+        LuaScriptCache cache = scriptCache;
+        if (cache != null) {
+            ScriptMetaData cachedMetaData = cache.getMetaData(scriptFile);
+            if (cachedMetaData != null)
+                return cachedMetaData;
+        }
+
         ScriptMetaData scriptMetaData = new ScriptMetaData(scriptFile);
         try {
             Globals globals = JsePlatform.standardGlobals();
-            //LuaValue chunk = globals.loadfile(scriptFile.getPath());
-            LuaValue chunk = loadfile(globals, scriptFile.getPath());
+            LuaValue chunk = loadChunk(globals, scriptFile);
             chunk.call();
 
             LuaValue labletNamespace = globals.get(NAMESPACE);
@@ -154,6 +185,8 @@ public class LuaScriptLoader {
         } catch (LuaError e) {
             scriptMetaData.setLoadingError(e.getMessage());
         }
+        if (cache != null)
+            cache.putMetaData(scriptMetaData);
         return scriptMetaData;
     }
 
@@ -34,7 +34,7 @@ public class CalculateYSpeedFragment extends CalculateSpeedFragment {
 
     @Override
     float getSpeed(int index) {
-        return speedDataTableColumn.getValue(index).floatValue();
+        return speedDataTableColumn.getFloatValue(index);
     }
 
     @Override
@@ -21,6 +21,7 @@ import android.widget.MediaController;
 import android.widget.TextView;
 import android.widget.VideoView;
 import java.io.File;
+import java.util.List;
 import nz.ac.auckland.lablet.R;
 import nz.ac.auckland.lablet.camera.CameraSensorPlugin;
 import nz.ac.auckland.lablet.camera.VideoData;
@@ -39,6 +40,7 @@ public class CameraExperiment extends SingleExperimentBase {
     private int requestedVideoWidth = -1;
     private int requestedVideoHeight = -1;
     private float recordingFrameRate = -1;
+    private int iFrameInterval = -1;
 
     public CameraExperiment(Script script) {
         super(script);
@@ -70,6 +72,19 @@ public class CameraExperiment extends SingleExperimentBase {
     public void setRecordingFrameRate(float frameRate) {
         recordingFrameRate = frameRate;
     }
+
+    public int getIFrameInterval() {
+        return iFrameInterval;
+    }
+
+    /**
+     * Sets the interval between two I-frames of low frame rate recordings.
+     *
+     * @param seconds interval in seconds; short intervals make seeking fast, long intervals give a better quality
+     */
+    public void setIFrameInterval(int seconds) {
+        iFrameInterval = seconds;
+    }
 }
 
 /**
@@ -149,6 +164,10 @@ class ScriptComponentCameraExperimentView extends ScriptComponentSingleExperimen
         if (recordingFrameRate > 0)
             options.putFloat("recording_frame_rate", recordingFrameRate);
 
+        int iFrameInterval = cameraComponent.getIFrameInterval();
+        if (iFrameInterval > 0)
+            options.putInt("i_frame_interval", iFrameInterval);
+
         return options;
     }
 
@@ -165,8 +184,14 @@ class ScriptComponentCameraExperimentView extends ScriptComponentSingleExperimen
                     return null;
 
                 // TODO fix if there are more than one runs or sensors
-                ISensorData sensorData = experimentData.getRunDataList().get(0).sensorDataList.get(0);
-                VideoData videoData = (VideoData)sensorData;
+                // the sensor data is loaded lazily, i.e. load errors show up here
+                ExperimentData.RunData runData = experimentData.getRunDataList().get(0);
+                List<ISensorData> sensorDataList = runData.getSensorDataList();
+                if (sensorDataList.size() == 0) {
+                    Log.e(CameraExperiment.TAG, "Failed to load the experiment: " + runData.getLoadError());
+                    return null;
+                }
+                VideoData videoData = (VideoData)sensorDataList.get(0);
                 return new File(videoData.getStorageDir(), videoData.getVideoFileName());
             }
 
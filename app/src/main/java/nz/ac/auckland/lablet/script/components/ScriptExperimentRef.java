@@ -51,7 +51,7 @@ public class ScriptExperimentRef extends WeakListenable<ScriptExperimentRef.ILis
             return null;
 
         ExperimentAnalysis.AnalysisRunEntry experimentRun = experimentAnalysis.getAnalysisRunAt(run);
-            for (ExperimentAnalysis.AnalysisEntry analysisEntry : experimentRun.analysisList) {
+            for (ExperimentAnalysis.AnalysisEntry analysisEntry : experimentRun.getAnalysisList()) {
                 if (analysisEntry.analysis.getIdentifier().equals(analysisIdentifier))
                     return (T)(analysisEntry.analysis);
             }
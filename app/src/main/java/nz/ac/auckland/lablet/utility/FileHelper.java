@@ -10,7 +10,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.Future;
+import nz.ac.auckland.lablet.misc.StreamHelper;
+import nz.ac.auckland.lablet.views.table.CSVStreamWriter;
+import nz.ac.auckland.lablet.views.table.CSVWriter;
+import nz.ac.auckland.lablet.views.table.ColumnDataTableAdapter;
+import nz.ac.auckland.lablet.views.table.DataTableColumn;
 import org.jetbrains.annotations.Contract;
 import org.opencv.core.Point;
 
@@ -162,28 +167,58 @@ public final class FileHelper {
     }
 
     /**
-     * Writes a list of points to a CSV file.
+     * Writes a list of points to a CSV file on a background thread, see
+     * {@link CSVWriter#writeTableInBackground(ColumnDataTableAdapter, Writer, char, StreamHelper.IProgressListener,
+     * CSVWriter.ICompletionListener)}.
      *
-     * @param points points to put in the file
-     * @param writer {@link FileWriter} to use when writing the file
-     * @return false if writing fails
+     * @param points points to put in the file, must not be modified till the returned future is done
+     * @param writer the target, e.g., from {@link #experimentFileWriter(File, String)}, is closed when the points are
+     *               written
+     * @param listener gets the number of written points, is called from the background thread, can be null
+     * @param completionListener is notified from the background thread when the file is written or the write failed,
+     *                           can be null
+     * @return future that is true if the file has been written successfully
      */
-    @Contract("_, null -> false")
-    static public boolean writePlotDataToCSV(List<Point> points, Writer writer) {
-        if (writer == null)
-            return false;
-        try {
-            writer.write("x,y\n");
-            for (Point point : points) {
-                writer.write(String.format(Locale.UK, "%f,%f\n", point.x, point.y));
-            }
-            writer.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Could not write CSV file");
-            return false;
+    static public Future<Boolean> writePlotDataToCSVInBackground(List<Point> points, Writer writer,
+                                                                 StreamHelper.IProgressListener listener,
+                                                                 CSVWriter.ICompletionListener completionListener) {
+        ColumnDataTableAdapter table = new ColumnDataTableAdapter();
+        table.addColumn(new PointColumn(points, "x", true));
+        table.addColumn(new PointColumn(points, "y", false));
+        return CSVWriter.writeTableInBackground(table, writer, ',', listener, completionListener);
+    }
+
+    static private class PointColumn extends DataTableColumn {
+        final private List<Point> points;
+        final private String header;
+        final private boolean x;
+
+        public PointColumn(List<Point> points, String header, boolean x) {
+            this.points = points;
+            this.header = header;
+            this.x = x;
+        }
+
+        @Override
+        public int size() {
+            return points.size();
+        }
+
+        @Override
+        public Number getValue(int index) {
+            Point point = points.get(index);
+            return x ? point.x : point.y;
+        }
+
+        @Override
+        public void appendValue(CSVStreamWriter writer, int index) {
+            writer.append(getValue(index).doubleValue(), 6);
+        }
+
+        @Override
+        public String getHeader() {
+            return header;
         }
-        Log.i(TAG, "CSV file written successfully");
-        return true;
     }
 
     /**
@@ -57,6 +57,11 @@ public class CheckBoxAdapter extends ArrayAdapter<CheckBoxListEntry> {
         assert textView != null;
         checkBox.setChecked(entry.getSelected());
         textView.setText(entry.getName());
+        TextView summaryView = (TextView)convertView.findViewById(android.R.id.text2);
+        if (summaryView != null) {
+            summaryView.setText(entry.getSummary());
+            summaryView.setVisibility(entry.getSummary().isEmpty() ? View.GONE : View.VISIBLE);
+        }
         return convertView;
     }
 }
\ No newline at end of file
@@ -8,11 +8,12 @@
 package nz.ac.auckland.lablet.views;
 
 /**
- * Entry for a list item that has a check box and a title.
+ * Entry for a list item that has a check box, a title and an optional summary line.
  */
 public class CheckBoxListEntry {
     private boolean selected = false;
     private String name;
+    private String summary = "";
     private OnCheckBoxListEntryListener listener = null;
 
     public interface OnCheckBoxListEntryListener {
@@ -32,6 +33,17 @@ public class CheckBoxListEntry {
         return name;
     }
 
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * @return the summary line or an empty string if there is none
+     */
+    public String getSummary() {
+        return summary;
+    }
+
     public void setSelected(boolean selected) {
         this.selected = selected;
         if (listener != null)
@@ -20,21 +20,33 @@ import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import nz.ac.auckland.lablet.R;
+import nz.ac.auckland.lablet.camera.AnalysisProxy;
 import nz.ac.auckland.lablet.misc.LabletDataProvider;
 import nz.ac.auckland.lablet.misc.StreamHelper;
 import nz.ac.auckland.lablet.misc.ZipHelper;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 
 public class ExportDirDialog extends AlertDialog {
+    // analysis proxies are only a cache of the video, don't export them
+    final static private FileFilter EXPORT_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return !AnalysisProxy.isProxyFile(file);
+        }
+    };
+
     private Activity activity;
     private File[] directories;
     private List<String> outputFiles = new ArrayList<>();
-    private boolean canceled = false;
+    private volatile boolean canceled = false;
+    // the running export, is canceled together with the dialog
+    private volatile ZipHelper zipHelper = null;
 
     private String packageName = null;
     private String className = null;
@@ -86,7 +98,7 @@ public class ExportDirDialog extends AlertDialog {
         cancelButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                canceled = true;
+                cancelExport();
                 dismiss();
             }
         });
@@ -94,7 +106,7 @@ public class ExportDirDialog extends AlertDialog {
         setOnCancelListener(new OnCancelListener() {
             @Override
             public void onCancel(DialogInterface dialogInterface) {
-                canceled = true;
+                cancelExport();
                 dismiss();
             }
         });
@@ -116,8 +128,14 @@ public class ExportDirDialog extends AlertDialog {
 
                     File tempDir = LabletDataProvider.getProviderDir(getContext());
                     File outFile = new File(tempDir, dir.getName() + ".zip");
+                    ZipHelper helper = null;
+                    boolean zipped = false;
                     try {
-                        ZipHelper helper = new ZipHelper(outFile);
+                        helper = new ZipHelper(outFile);
+                        zipHelper = helper;
+                        helper.setFileFilter(EXPORT_FILTER);
+                        if (canceled)
+                            helper.cancel();
                         helper.addDir(dir, new StreamHelper.IProgressListener() {
                             @Override
                             public void onNewProgress(long totalProgress) {
@@ -127,12 +145,25 @@ public class ExportDirDialog extends AlertDialog {
                             }
                         });
                         helper.close();
-                        outputFiles.add(outFile.getName());
+                        zipped = !helper.isCanceled();
                     } catch (IOException e) {
                         e.printStackTrace();
-                        return false;
+                    } finally {
+                        zipHelper = null;
+                        // releases the file and the deflate threads if zipping failed
+                        if (helper != null) {
+                            try {
+                                helper.close();
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                        if (!zipped)
+                            outFile.delete();
                     }
-
+                    if (!zipped)
+                        return false;
+                    outputFiles.add(outFile.getName());
                 }
                 return true;
             }
@@ -144,6 +175,8 @@ public class ExportDirDialog extends AlertDialog {
 
             @Override
             protected void onPostExecute(Boolean result) {
+                if (canceled)
+                    return;
                 if (!result)
                     statusView.setText("Something went wrong!");
                 else {
@@ -157,6 +190,13 @@ public class ExportDirDialog extends AlertDialog {
         zipTask.execute(directories);
     }
 
+    private void cancelExport() {
+        canceled = true;
+        ZipHelper helper = zipHelper;
+        if (helper != null)
+            helper.cancel();
+    }
+
     static class DirSizeCalculator {
         static public long getSize(File dir) {
             List<File> dirs = new ArrayList<>();
@@ -171,7 +211,7 @@ public class ExportDirDialog extends AlertDialog {
                 if (!dir.isDirectory())
                     continue;
 
-                for (File file : dir.listFiles()) {
+                for (File file : dir.listFiles(EXPORT_FILTER)) {
                     if (file.isDirectory()) {
                         dirs.add(file);
                         continue;
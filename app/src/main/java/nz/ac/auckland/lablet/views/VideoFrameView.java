@@ -9,12 +9,13 @@ package nz.ac.auckland.lablet.views;
 
 import android.content.Context;
 import android.graphics.SurfaceTexture;
-import android.media.MediaExtractor;
-import android.media.MediaFormat;
 import android.opengl.GLSurfaceView;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.Log;
 import nz.ac.auckland.lablet.camera.decoder.FrameRenderer;
 import nz.ac.auckland.lablet.camera.decoder.SeekToFrameExtractor;
+import nz.ac.auckland.lablet.camera.decoder.VideoMetadata;
 
 import java.io.File;
 import java.io.IOException;
@@ -28,12 +29,30 @@ import java.io.IOException;
  * </p>
  */
 public class VideoFrameView extends RatioGLSurfaceView {
+    final static private String TAG = "VideoFrameView";
+
+    /**
+     * Hook to measure the time till the first frame is shown, e.g., to profile the opening of an experiment.
+     */
+    public interface IStartupListener {
+        /**
+         * Is called from the thread that delivers the decoded frame.
+         *
+         * @param timeToFirstFrame time between setting the video file and the first decoded frame in milli seconds
+         */
+        void onFirstFrame(long timeToFirstFrame);
+    }
+
     protected long targetSeekPosition = -1;
     protected SeekToFrameExtractor seekToFrameExtractor;
     protected FrameRenderer frameRenderer;
 
     protected String videoFilePath = "";
 
+    private IStartupListener startupListener = null;
+    private long startupTime;
+    private volatile boolean firstFrameReceived = false;
+
     public VideoFrameView(Context context, AttributeSet attrs) {
         super(context, attrs);
     }
@@ -79,6 +98,8 @@ public class VideoFrameView extends RatioGLSurfaceView {
                     new SurfaceTexture.OnFrameAvailableListener() {
                 @Override
                 public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+                    if (!firstFrameReceived)
+                        onFirstFrame();
                     requestRender();
                 }
             });
@@ -89,36 +110,38 @@ public class VideoFrameView extends RatioGLSurfaceView {
         }
     }
 
+    public void setStartupListener(IStartupListener listener) {
+        this.startupListener = listener;
+    }
+
+    private void onFirstFrame() {
+        firstFrameReceived = true;
+        long timeToFirstFrame = SystemClock.elapsedRealtime() - startupTime;
+        Log.d(TAG, "time to first frame: " + timeToFirstFrame + "ms");
+        IStartupListener listener = startupListener;
+        if (listener != null)
+            listener.onFirstFrame(timeToFirstFrame);
+    }
+
     public void setVideoFilePath(String path, int videoRotation) {
+        startupTime = SystemClock.elapsedRealtime();
+        firstFrameReceived = false;
         videoFilePath = path;
 
         int videoWidth = 1;
         int videoHeight = 1;
 
-        MediaExtractor extractor = new MediaExtractor();
         try {
-            extractor.setDataSource(videoFilePath);
+            VideoMetadata metadata = VideoMetadata.get(new File(videoFilePath));
+            videoWidth = metadata.getWidth();
+            videoHeight = metadata.getHeight();
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        for (int i = 0; i < extractor.getTrackCount(); i++) {
-            MediaFormat format = extractor.getTrackFormat(i);
-            String mime = format.getString(MediaFormat.KEY_MIME);
-
-            if (mime.startsWith("video/")) {
-                extractor.selectTrack(i);
-
-                videoWidth = format.getInteger(MediaFormat.KEY_WIDTH);
-                videoHeight = format.getInteger(MediaFormat.KEY_HEIGHT);
-
-                if (videoRotation == 90 || videoRotation == 270) {
-                    int temp = videoWidth;
-                    videoWidth = videoHeight;
-                    videoHeight = temp;
-                }
-                break;
-            }
+        if (videoRotation == 90 || videoRotation == 270) {
+            int temp = videoWidth;
+            videoWidth = videoHeight;
+            videoHeight = temp;
         }
 
         setRatio(((float)(videoWidth) / videoHeight));
@@ -131,6 +154,28 @@ public class VideoFrameView extends RatioGLSurfaceView {
         init(videoRotation);
     }
 
+    /**
+     * Shows another file of the same video, e.g., a proxy with less frames. The rotation and the seek position are
+     * kept.
+     *
+     * @param path path of the new video file
+     */
+    public void changeVideoFile(String path) {
+        if (path.equals(videoFilePath))
+            return;
+        videoFilePath = path;
+        // if the extractor is not running yet it is started with the new file
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                if (seekToFrameExtractor == null)
+                    return;
+                pauseStartSeekToFrameExtractor();
+                startSeekToFrameExtractor();
+            }
+        });
+    }
+
     public void seekToFrame(long positionMicroSeconds) {
         targetSeekPosition = positionMicroSeconds;
         if (seekToFrameExtractor == null)
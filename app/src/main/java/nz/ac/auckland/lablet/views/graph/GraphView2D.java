@@ -38,6 +38,7 @@ import nz.ac.auckland.lablet.views.plotview.Region1D;
 import nz.ac.auckland.lablet.views.plotview.StrategyPainter;
 import nz.ac.auckland.lablet.views.plotview.XYConcurrentPainter;
 import nz.ac.auckland.lablet.views.plotview.XYDataAdapter;
+import nz.ac.auckland.lablet.views.table.CSVWriter;
 import org.opencv.core.Point;
 
 
@@ -240,15 +241,28 @@ public class GraphView2D extends PlotView {
             }
         }
 
-        if (csvFile != null) {
-            // save data points to CSV file
-            List<Point> dataPoints = new ArrayList<>();
-            for (int i = 0; i < adapter.getSize(); i++) {
-                dataPoints.add(new Point(adapter.getX(i).floatValue(), adapter.getY(i).floatValue()));
-            }
-            FileHelper.writePlotDataToCSV(dataPoints, csvFile);
+        if (csvFile == null) {
+            Toast.makeText(getContext(), "Graph data could not be saved", Toast.LENGTH_LONG).show();
+            return;
         }
-        Toast.makeText(getContext(), "Graph data saved", Toast.LENGTH_LONG).show();
+        // save a snapshot of the data points to a CSV file in the background
+        final List<Point> dataPoints = new ArrayList<>();
+        for (int i = 0; i < adapter.getSize(); i++) {
+            dataPoints.add(new Point(adapter.getX(i).floatValue(), adapter.getY(i).floatValue()));
+        }
+        FileHelper.writePlotDataToCSVInBackground(dataPoints, csvFile, null,
+                new CSVWriter.ICompletionListener() {
+                    @Override
+                    public void onCompleted(final boolean written) {
+                        post(new Runnable() {
+                            @Override
+                            public void run() {
+                                String message = written ? "Graph data saved" : "Graph data could not be saved";
+                                Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+                            }
+                        });
+                    }
+                });
     }
 
     public void release() {
@@ -79,7 +79,8 @@ public class MarkerGraphAdapter extends AbstractGraphAdapter implements MarkerDa
 
     @Override
     public void onDataRemoved(MarkerDataModel model, int index, MarkerData data) {
-        notifyDataRemoved(index, 1);
+        // see onDataChanged, also recomputes the data limits of the graph
+        notifyAllDataChanged();
     }
 
     @Override
@@ -11,11 +11,11 @@ import android.graphics.PointF;
 import nz.ac.auckland.lablet.misc.WeakListenable;
 
 
-public abstract class AbstractPointDataModel<T> extends WeakListenable<AbstractPointDataModel.IListener> {
+public abstract class AbstractPointDataModel<T> extends WeakListenable<AbstractPointDataModel.IListener<?, T>> {
     /**
      * Listener interface for the marker data model.
      */
-    public interface IListener<List extends AbstractPointDataModel, T> {
+    public interface IListener<List extends AbstractPointDataModel<?>, T> {
         void onDataAdded(List model, int index);
         void onDataRemoved(List model, int index, T data);
         void onDataChanged(List model, int index, int number);
@@ -72,28 +72,33 @@ public abstract class AbstractPointDataModel<T> extends WeakListenable<AbstractP
         notifyAllDataChanged();
     }
 
+    /**
+     * A listener is registered at a subclass of this model, i.e., it accepts this model.
+     */
+    @SuppressWarnings("unchecked")
+    static private <T> IListener<AbstractPointDataModel<T>, T> accepting(IListener<?, T> listener) {
+        return (IListener<AbstractPointDataModel<T>, T>)listener;
+    }
+
+    // the listener and the arguments are passed to non-capturing lambdas so that the notifications don't allocate
     public void notifyDataAdded(int index) {
-        for (IListener listener : getListeners())
-            listener.onDataAdded(this, index);
+        forEachListener(this, index, (listener, model, i) -> accepting(listener).onDataAdded(model, i));
     }
 
     public void notifyDataRemoved(int index, T data) {
-        for (IListener listener : getListeners())
-            listener.onDataRemoved(this, index, data);
+        forEachListener(this, index, data, (listener, model, i, d) -> accepting(listener).onDataRemoved(model, i, d));
     }
 
     public void notifyDataChanged(int index, int number) {
-        for (IListener listener : getListeners())
-            listener.onDataChanged(this, index, number);
+        forEachListener(this, index, number,
+                (listener, model, i, n) -> accepting(listener).onDataChanged(model, i, n));
     }
 
     public void notifyAllDataChanged() {
-        for (IListener listener : getListeners())
-            listener.onAllDataChanged(this);
+        forEachListener(this, (listener, model) -> accepting(listener).onAllDataChanged(model));
     }
 
     public void notifyDataSelected(int index) {
-        for (IListener listener : getListeners())
-            listener.onDataSelected(this, index);
+        forEachListener(this, index, (listener, model, i) -> accepting(listener).onDataSelected(model, i));
     }
 }
@@ -7,7 +7,6 @@
  */
 package nz.ac.auckland.lablet.views.plotview;
 
-
 import nz.ac.auckland.lablet.misc.WeakListenable;
 
 public abstract class AbstractPlotDataAdapter extends WeakListenable<AbstractPlotDataAdapter.IListener> {
@@ -23,23 +22,20 @@ public abstract class AbstractPlotDataAdapter extends WeakListenable<AbstractPlo
 
     abstract public DataStatistics createDataStatistics();
 
+    // the listener and the arguments are passed to non-capturing lambdas so that the notifications don't allocate
     public void notifyDataAdded(int index, int number) {
-        for (IListener listener : getListeners())
-            listener.onDataAdded(this, index, number);
+        forEachListener(this, index, number, (listener, plot, i, n) -> listener.onDataAdded(plot, i, n));
     }
 
     public void notifyDataRemoved(int index, int number) {
-        for (IListener listener : getListeners())
-            listener.onDataRemoved(this, index, number);
+        forEachListener(this, index, number, (listener, plot, i, n) -> listener.onDataRemoved(plot, i, n));
     }
 
     public void notifyDataChanged(int index, int number) {
-        for (IListener listener : getListeners())
-            listener.onDataChanged(this, index, number);
+        forEachListener(this, index, number, (listener, plot, i, n) -> listener.onDataChanged(plot, i, n));
     }
 
     public void notifyAllDataChanged() {
-        for (IListener listener : getListeners())
-            listener.onAllDataChanged(this);
+        forEachListener(this, (listener, plot) -> listener.onAllDataChanged(plot));
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.views.plotview;
+
+import java.util.Arrays;
+
+
+/**
+ * Least squares line fit that is updated incrementally.
+ * <p>
+ * The running sums of x, y, x^2 and xy are kept in double precision and are updated with the deltas of added, removed
+ * or changed points. To be able to subtract old points a copy of the fitted points is kept. A full recompute is only
+ * done for bulk changes or when the accumulated rounding error could have become significant.
+ * </p>
+ */
+class LinearFitAccumulator {
+    // changes that touch more than this fraction of the points are recomputed from scratch
+    final static private float BULK_CHANGE_FRACTION = 0.5f;
+    // relative error of the fit denominator that triggers a full recompute
+    final static private double DRIFT_TOLERANCE = 1e-6;
+    final static private double ROUNDING_ERROR = Math.ulp(1.0);
+
+    private double[] xValues = new double[16];
+    private double[] yValues = new double[16];
+    private int size = 0;
+
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    // magnitude of all terms that went through the sums since the last full recompute
+    private double processedMagnitude;
+
+    private double b = 0;
+    private double m = 0;
+
+    public double getB() {
+        return b;
+    }
+
+    public double getM() {
+        return m;
+    }
+
+    /**
+     * Recomputes the fit from scratch.
+     *
+     * @param data the data to fit
+     */
+    public void fit(AbstractXYDataAdapter data) {
+        size = 0;
+        sumX = 0;
+        sumY = 0;
+        sumXX = 0;
+        sumXY = 0;
+        processedMagnitude = 0;
+
+        int n = data.getSize();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            double x = data.getX(i).doubleValue();
+            double y = data.getY(i).doubleValue();
+            xValues[i] = x;
+            yValues[i] = y;
+            include(x, y, 1);
+        }
+        size = n;
+        updateParameters();
+    }
+
+    public void add(AbstractXYDataAdapter data, int index, int number) {
+        if (index < 0 || index > size || isBulkChange(number)) {
+            fit(data);
+            return;
+        }
+        ensureCapacity(size + number);
+        System.arraycopy(xValues, index, xValues, index + number, size - index);
+        System.arraycopy(yValues, index, yValues, index + number, size - index);
+        size += number;
+        for (int i = index; i < index + number; i++) {
+            double x = data.getX(i).doubleValue();
+            double y = data.getY(i).doubleValue();
+            xValues[i] = x;
+            yValues[i] = y;
+            include(x, y, 1);
+        }
+        finishUpdate(data);
+    }
+
+    public void remove(AbstractXYDataAdapter data, int index, int number) {
+        if (index < 0 || index + number > size || isBulkChange(number)) {
+            fit(data);
+            return;
+        }
+        for (int i = index; i < index + number; i++)
+            include(xValues[i], yValues[i], -1);
+        System.arraycopy(xValues, index + number, xValues, index, size - index - number);
+        System.arraycopy(yValues, index + number, yValues, index, size - index - number);
+        size -= number;
+        finishUpdate(data);
+    }
+
+    public void update(AbstractXYDataAdapter data, int index, int number) {
+        if (index < 0 || index + number > size || isBulkChange(number)) {
+            fit(data);
+            return;
+        }
+        for (int i = index; i < index + number; i++) {
+            include(xValues[i], yValues[i], -1);
+            double x = data.getX(i).doubleValue();
+            double y = data.getY(i).doubleValue();
+            xValues[i] = x;
+            yValues[i] = y;
+            include(x, y, 1);
+        }
+        finishUpdate(data);
+    }
+
+    private boolean isBulkChange(int number) {
+        return number > size * BULK_CHANGE_FRACTION;
+    }
+
+    private void include(double x, double y, int sign) {
+        sumX += sign * x;
+        sumY += sign * y;
+        sumXX += sign * x * x;
+        sumXY += sign * x * y;
+        processedMagnitude += x * x + Math.abs(x * y);
+    }
+
+    /**
+     * The error of the running sums grows with the magnitude of all terms that have been added or subtracted. Once
+     * this error becomes significant compared to the fit denominator the fit is recomputed.
+     */
+    private boolean hasDrifted() {
+        double denominator = size * sumXX - sumX * sumX;
+        if (Double.isNaN(denominator) || Double.isInfinite(denominator))
+            return true;
+        return size * processedMagnitude * ROUNDING_ERROR > DRIFT_TOLERANCE * Math.abs(denominator);
+    }
+
+    private void finishUpdate(AbstractXYDataAdapter data) {
+        if (size != data.getSize() || hasDrifted()) {
+            fit(data);
+            return;
+        }
+        updateParameters();
+    }
+
+    private void updateParameters() {
+        int n = size;
+        m = (n * sumXY - sumX * sumY) / (n * sumXX - (sumX * sumX));
+        b = (sumY - m * sumX) / n;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (xValues.length >= capacity)
+            return;
+        int newCapacity = Math.max(capacity, xValues.length * 2);
+        xValues = Arrays.copyOf(xValues, newCapacity);
+        yValues = Arrays.copyOf(yValues, newCapacity);
+    }
+}
@@ -18,45 +18,7 @@ import android.graphics.RectF;
  * Draws a linear fit of {@link AbstractXYDataAdapter} data.
  */
 public class LinearFitPainter extends AbstractPlotDataPainter {
-    class Fit {
-        private double b = 0;
-        private double m = 0;
-
-        public void fit(AbstractXYDataAdapter data) {
-            double sumX = 0;
-            double sumY = 0;
-            double sumXX = 0;
-            double sumXY = 0;
-            int n = data.getSize();
-
-            for (int i = 0; i < n; i++) {
-                double x = data.getX(i).doubleValue();
-                double y = data.getY(i).doubleValue();
-
-                sumX += x;
-                sumY += y;
-                sumXX += x * x;
-                sumXY += x * y;
-            }
-
-            m = (n * sumXY - sumX * sumY) / (n * sumXX - (sumX * sumX));
-            b = (sumY - m * sumX) / n;
-        }
-
-        public double getB() {
-            return b;
-        }
-
-        public double getM() {
-            return m;
-        }
-
-        public String getLabel() {
-            return "Linear Fit: b = " + String.format("%.4f", b) + ", m = " + String.format("%.4f", m);
-        }
-    }
-
-    private Fit fit = new Fit();
+    private LinearFitAccumulator fit = new LinearFitAccumulator();
     private Paint fitPaint = new Paint();
     private PointF lineStart = new PointF();
     private PointF lineEnd = new PointF();
@@ -78,8 +40,11 @@ public class LinearFitPainter extends AbstractPlotDataPainter {
 
     @Override
     public void onDraw(Canvas canvas) {
+        // not enough distinct points
+        if (Double.isNaN(fit.getM()) || Double.isInfinite(fit.getM()))
+            return;
         float labelMargin = 5;
-        String label = fit.getLabel();
+        String label = getLabel();
         float labelHeight = labelPaint.descent() - labelPaint.ascent();
         canvas.drawRect(labelMargin, labelMargin, labelMargin + labelPaint.measureText(label),
                 labelMargin + labelHeight, labelBackgroundPaint);
@@ -100,8 +65,16 @@ public class LinearFitPainter extends AbstractPlotDataPainter {
         }
     }
 
+    private String getLabel() {
+        return "Linear Fit: b = " + String.format("%.4f", fit.getB()) + ", m = " + String.format("%.4f", fit.getM());
+    }
+
+    private AbstractXYDataAdapter getXYDataAdapter() {
+        return (AbstractXYDataAdapter)dataAdapter;
+    }
+
     private void fit() {
-        fit.fit((AbstractXYDataAdapter)dataAdapter);
+        fit.fit(getXYDataAdapter());
         invalidate();
     }
 
@@ -122,17 +95,20 @@ public class LinearFitPainter extends AbstractPlotDataPainter {
         return new AbstractPlotDataAdapter.IListener() {
             @Override
             public void onDataAdded(AbstractPlotDataAdapter plot, int index, int number) {
-                fit();
+                fit.add(getXYDataAdapter(), index, number);
+                invalidate();
             }
 
             @Override
             public void onDataRemoved(AbstractPlotDataAdapter plot, int index, int number) {
-                fit();
+                fit.remove(getXYDataAdapter(), index, number);
+                invalidate();
             }
 
             @Override
             public void onDataChanged(AbstractPlotDataAdapter plot, int index, int number) {
-                fit();
+                fit.update(getXYDataAdapter(), index, number);
+                invalidate();
             }
 
             @Override
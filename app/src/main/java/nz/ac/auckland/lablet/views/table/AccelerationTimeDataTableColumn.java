@@ -26,7 +26,12 @@ public class AccelerationTimeDataTableColumn extends TimeDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected int getMarkerSpan() {
+        return 2;
+    }
+
+    @Override
+    protected float computeValue(int index) {
         float t0 = timeData.getTimeAt(index);
         float t2 = timeData.getTimeAt(index + 2);
         return t0 + (t2 - t0) / 2.f;
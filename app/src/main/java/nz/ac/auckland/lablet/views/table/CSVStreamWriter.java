@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.views.table;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+
+/**
+ * Writes CSV rows without creating intermediate Strings.
+ * <p>
+ * Numbers are formatted directly into a reusable row buffer that is handed to a large {@link BufferedWriter} once the
+ * row is complete. Fractional numbers are formatted like {@code String.format(Locale.US, "%.nf", value)}.
+ * </p>
+ */
+public class CSVStreamWriter {
+    final static public int BUFFER_SIZE = 64 * 1024;
+
+    final static private long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L};
+    // above this value the scaled fixed point representation could overflow a long
+    final static private double MAX_FAST_VALUE = 1e9;
+
+    final private Writer writer;
+    final private char separator;
+    private char[] row = new char[256];
+    private int length = 0;
+    private boolean newRow = true;
+    private int rowCount = 0;
+
+    public CSVStreamWriter(Writer writer, char separator) {
+        if (writer instanceof BufferedWriter)
+            this.writer = writer;
+        else
+            this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+        this.separator = separator;
+    }
+
+    /**
+     * Gets the number of completed rows.
+     *
+     * @return the number of rows ended with {@link #endRow()}
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public CSVStreamWriter append(String value) {
+        startField();
+        return appendRaw(value);
+    }
+
+    public CSVStreamWriter append(long value) {
+        startField();
+        // Long.MIN_VALUE can't be negated
+        if (value == Long.MIN_VALUE)
+            return appendRaw(Long.toString(value));
+        if (value < 0) {
+            appendChar('-');
+            value = -value;
+        }
+        appendDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * Appends a fractional number with a fixed number of decimals.
+     *
+     * @param value the value to append
+     * @param decimals number of decimals, at most 9
+     * @return this writer
+     */
+    public CSVStreamWriter append(double value, int decimals) {
+        startField();
+        if (Double.isNaN(value))
+            return appendRaw("NaN");
+        if (Double.isInfinite(value))
+            return appendRaw(value > 0 ? "Infinity" : "-Infinity");
+        if (decimals >= POWERS_OF_TEN.length || Math.abs(value) >= MAX_FAST_VALUE)
+            return appendRaw(String.format(Locale.US, "%." + decimals + "f", value));
+
+        // the sign is also printed for negative values that round to zero, e.g., -0.000000
+        if (Double.doubleToRawLongBits(value) < 0) {
+            appendChar('-');
+            value = -value;
+        }
+        long factor = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(value * factor);
+        appendDigits(scaled / factor, 1);
+        if (decimals > 0) {
+            appendChar('.');
+            appendDigits(scaled % factor, decimals);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the current row and starts a new one.
+     *
+     * @throws IOException
+     */
+    public void endRow() throws IOException {
+        ensureCapacity(1);
+        row[length] = '\n';
+        length++;
+        writer.write(row, 0, length);
+        length = 0;
+        newRow = true;
+        rowCount++;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void startField() {
+        if (newRow) {
+            newRow = false;
+            return;
+        }
+        appendChar(separator);
+    }
+
+    private CSVStreamWriter appendRaw(String value) {
+        int valueLength = value.length();
+        ensureCapacity(valueLength);
+        value.getChars(0, valueLength, row, length);
+        length += valueLength;
+        return this;
+    }
+
+    private void appendChar(char c) {
+        ensureCapacity(1);
+        row[length] = c;
+        length++;
+    }
+
+    /**
+     * Appends a non-negative number, padded with leading zeros to minDigits.
+     */
+    private void appendDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+        digits = Math.max(digits, minDigits);
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            row[i] = (char)('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional <= row.length)
+            return;
+        char[] newRow = new char[Math.max(row.length * 2, length + additional)];
+        System.arraycopy(row, 0, newRow, 0, length);
+        row = newRow;
+    }
+}
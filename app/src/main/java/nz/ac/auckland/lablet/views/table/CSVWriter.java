@@ -7,40 +7,118 @@
  */
 package nz.ac.auckland.lablet.views.table;
 
+import nz.ac.auckland.lablet.misc.StreamHelper;
+
 import java.io.IOException;
 import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 
 public class CSVWriter {
-    static public void writeTable(ColumnDataTableAdapter data, Writer writer, char separator) {
-        if (data.getColumnCount() == 0)
-            return;
+    // number of rows between two progress reports
+    final static private int PROGRESS_STEP = 1000;
+    final static private ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    static public void writeTable(ColumnDataTableAdapter data, Writer writer, char separator) throws IOException {
+        writeTable(data, writer, separator, null);
+    }
 
-        try {
-            String header = "";
-            for (int i = 0; i < data.getColumnCount(); i++) {
-                DataTableColumn column = data.getColumn(i);
-                header += column.getHeader();
-                if (i < data.getColumnCount() - 1)
-                    header += separator;
+    /**
+     * Is notified when a table has been written in the background. Is called from the background thread.
+     */
+    public interface ICompletionListener {
+        /**
+         * @param written false if the file could not be written
+         */
+        void onCompleted(boolean written);
+    }
+
+    /**
+     * Writes the table on a background thread.
+     * <p>
+     * The table must not be modified till the returned future is done. The listeners are called from the background
+     * thread.
+     * </p>
+     *
+     * @param data the table
+     * @param writer the target, e.g., from {@link nz.ac.auckland.lablet.utility.FileHelper#experimentFileWriter}, is
+     *               closed when the table is written
+     * @param separator column separator
+     * @param listener gets the number of written rows, can be null
+     * @param completionListener is notified when the future is done, also if the write failed, can be null
+     * @return future that is true if the file has been written successfully
+     */
+    static public Future<Boolean> writeTableInBackground(final ColumnDataTableAdapter data, final Writer writer,
+                                                         final char separator,
+                                                         final StreamHelper.IProgressListener listener,
+                                                         final ICompletionListener completionListener) {
+        FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    writeTable(data, writer, separator, listener);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                } finally {
+                    writer.close();
+                }
+                return true;
             }
-            writer.write(header);
-            writer.write('\n');
-
-            int rowCount = data.getColumn(0).size();
-            for (int rowId = 0; rowId < rowCount; rowId++) {
-                String row = "";
-                for (int i = 0; i < data.getColumnCount(); i++) {
-                    DataTableColumn column = data.getColumn(i);
-                    row += column.getStringValue(rowId);
-                    if (i < data.getColumnCount() - 1)
-                        row += separator;
+        }) {
+            @Override
+            protected void done() {
+                if (completionListener == null)
+                    return;
+                boolean written = false;
+                try {
+                    written = !isCancelled() && get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
                 }
-                writer.write(row);
-                writer.write('\n');
+                completionListener.onCompleted(written);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        };
+        writeExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Streams the table to the writer.
+     *
+     * @param data the table
+     * @param writer the target, is flushed but not closed
+     * @param separator column separator
+     * @param listener gets the number of written rows, can be null
+     * @throws IOException if the table could not be written
+     */
+    static public void writeTable(ColumnDataTableAdapter data, Writer writer, char separator,
+                                  StreamHelper.IProgressListener listener) throws IOException {
+        int columnCount = data.getColumnCount();
+        if (columnCount == 0)
+            return;
+
+        CSVStreamWriter csvWriter = new CSVStreamWriter(writer, separator);
+        for (int i = 0; i < columnCount; i++)
+            csvWriter.append(data.getColumn(i).getHeader());
+        csvWriter.endRow();
+
+        int rowCount = data.getColumn(0).size();
+        for (int rowId = 0; rowId < rowCount; rowId++) {
+            for (int i = 0; i < columnCount; i++)
+                data.getColumn(i).appendValue(csvWriter, rowId);
+            csvWriter.endRow();
+
+            if (listener != null && (rowId + 1) % PROGRESS_STEP == 0)
+                listener.onNewProgress(rowId + 1);
         }
+        csvWriter.flush();
+        if (listener != null)
+            listener.onNewProgress(rowCount);
     }
 }
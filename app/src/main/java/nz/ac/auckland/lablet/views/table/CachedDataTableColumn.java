@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013-2014.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      Clemens Zeidler <czei002@aucklanduni.ac.nz>
+ */
+package nz.ac.auckland.lablet.views.table;
+
+import nz.ac.auckland.lablet.views.marker.MarkerDataModel;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+
+/**
+ * Base class for derived columns that materialize their values into a primitive array.
+ * <p>
+ * Values and their formatted strings are computed lazily on first access and kept until the owning adapter reports a
+ * change of the underlying markers. A row depends on the marker with the same index and the following
+ * {@link #getMarkerSpan()} markers, thus only the rows touching a changed marker are invalidated.
+ * </p>
+ */
+public abstract class CachedDataTableColumn extends UnitDataTableColumn {
+    private float[] values = new float[0];
+    private boolean[] valid = new boolean[0];
+    private String[] strings = new String[0];
+    // number of rows the cache is tracking, -1 forces a reset on the next access
+    private int count = -1;
+
+    /**
+     * Computes the value of a row without using the cache.
+     *
+     * @param index of the row
+     * @return the value of the row
+     */
+    abstract protected float computeValue(int index);
+
+    /**
+     * Formats a value for display.
+     *
+     * @param value the value of a row
+     * @return the formatted value
+     */
+    protected String formatValue(float value) {
+        return String.format(Locale.US, "%f", value);
+    }
+
+    /**
+     * Number of subsequent markers a row depends on, e.g., 1 for a speed and 2 for an acceleration column.
+     *
+     * @return the marker span of a single row
+     */
+    protected int getMarkerSpan() {
+        return 0;
+    }
+
+    @Override
+    public Number getValue(int index) {
+        return getFloatValue(index);
+    }
+
+    public float getFloatValue(int index) {
+        sync();
+        if (index < 0 || index >= count)
+            return computeValue(index);
+        if (!valid[index]) {
+            values[index] = computeValue(index);
+            valid[index] = true;
+        }
+        return values[index];
+    }
+
+    @Override
+    public String getStringValue(int index) {
+        float value = getFloatValue(index);
+        if (index < 0 || index >= count)
+            return formatValue(value);
+        String string = strings[index];
+        if (string == null) {
+            string = formatValue(value);
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    @Override
+    public void appendValue(CSVStreamWriter writer, int index) {
+        writer.append(getFloatValue(index), 6);
+    }
+
+    @Override
+    public void setDataModel(MarkerDataModel dataModel) {
+        super.setDataModel(dataModel);
+        invalidateAll();
+    }
+
+    @Override
+    public void onDataAdded(int index) {
+        if (count < 0)
+            return;
+        int row = Math.min(index, count);
+        ensureCapacity(count + 1);
+        System.arraycopy(values, row, values, row + 1, count - row);
+        System.arraycopy(valid, row, valid, row + 1, count - row);
+        System.arraycopy(strings, row, strings, row + 1, count - row);
+        count++;
+        invalidate(index - getMarkerSpan(), index);
+    }
+
+    @Override
+    public void onDataRemoved(int index) {
+        if (count <= 0) {
+            invalidateAll();
+            return;
+        }
+        int row = Math.min(index, count - 1);
+        System.arraycopy(values, row + 1, values, row, count - row - 1);
+        System.arraycopy(valid, row + 1, valid, row, count - row - 1);
+        System.arraycopy(strings, row + 1, strings, row, count - row - 1);
+        count--;
+        strings[count] = null;
+        invalidate(index - getMarkerSpan(), index - 1);
+    }
+
+    @Override
+    public void onDataChanged(int index, int number) {
+        invalidate(index - getMarkerSpan(), index + number - 1);
+    }
+
+    @Override
+    public void onAllDataChanged() {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        count = -1;
+    }
+
+    private void invalidate(int first, int last) {
+        if (count < 0)
+            return;
+        first = Math.max(0, first);
+        last = Math.min(count - 1, last);
+        if (first > last)
+            return;
+        Arrays.fill(valid, first, last + 1, false);
+        Arrays.fill(strings, first, last + 1, null);
+    }
+
+    private void sync() {
+        int size = Math.max(0, size());
+        if (size == count)
+            return;
+        // the row layout got out of sync with the markers, start from scratch
+        ensureCapacity(size);
+        Arrays.fill(valid, 0, size, false);
+        Arrays.fill(strings, null);
+        count = size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (values.length >= capacity)
+            return;
+        int newCapacity = Math.max(capacity, values.length * 2);
+        values = Arrays.copyOf(values, newCapacity);
+        valid = Arrays.copyOf(valid, newCapacity);
+        strings = Arrays.copyOf(strings, newCapacity);
+    }
+}
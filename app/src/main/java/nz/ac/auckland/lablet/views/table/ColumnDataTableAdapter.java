@@ -9,6 +9,7 @@ package nz.ac.auckland.lablet.views.table;
 
 import android.content.Context;
 import android.graphics.*;
+import android.text.TextUtils;
 import android.view.View;
 import android.widget.TextView;
 import nz.ac.auckland.lablet.misc.WeakListenable;
@@ -23,13 +24,37 @@ import java.util.List;
 public class ColumnDataTableAdapter extends WeakListenable<ITableAdapter.IListener> implements ITableAdapter {
 
     private List<DataTableColumn> columns = new ArrayList<>();
+    // cached row count, -1 if it has to be recalculated
+    private int rowCount = -1;
 
     public void addColumn(DataTableColumn column) {
         columns.add(column);
+        invalidateRowCount();
+    }
+
+    /**
+     * Releases all columns. The adapter must not be used afterwards.
+     */
+    public void release() {
+        for (DataTableColumn column : columns)
+            column.release();
+    }
+
+    /**
+     * Must be called by subclasses when the size of the columns changed.
+     */
+    protected void invalidateRowCount() {
+        rowCount = -1;
     }
 
     @Override
     public int getRowCount() {
+        if (rowCount < 0)
+            rowCount = calculateRowCount();
+        return rowCount;
+    }
+
+    private int calculateRowCount() {
         if (columns.size() == 0)
             return 0;
 
@@ -66,7 +91,9 @@ public class ColumnDataTableAdapter extends WeakListenable<ITableAdapter.IListen
 
         // getStringValue does not include the header so -1
         String text = column.getStringValue(index - 1);
-        textView.setText(text);
+        // avoid a relayout if the recycled view already shows the text
+        if (!TextUtils.equals(textView.getText(), text))
+            textView.setText(text);
     }
 
     private void populateHeaderView(TextView textView, int columnNumber) {
@@ -90,20 +117,23 @@ public class ColumnDataTableAdapter extends WeakListenable<ITableAdapter.IListen
     @Override
     public View getView(Context context, View recycleView, int row, int column) throws IndexOutOfBoundsException {
         TextView textView;
-        if (recycleView == null)
+        if (recycleView == null) {
             textView = new TextView(context);
-        else
+            // header and data rows are never recycled into each other
+            if (row == 0)
+                textView.setTextColor(Color.WHITE);
+            else {
+                textView.setTextColor(Color.BLACK);
+                textView.setBackgroundColor(Color.WHITE);
+            }
+        } else
             textView = (TextView)recycleView;
 
         if (row == 0) {
-            textView.setTextColor(Color.WHITE);
             populateHeaderView(textView, column);
             return textView;
         }
 
-        textView.setTextColor(Color.BLACK);
-        textView.setBackgroundColor(Color.WHITE);
-
         populateTextView(textView, row, column);
 
         return textView;
@@ -24,9 +24,44 @@ public abstract class DataTableColumn {
         Number number = getValue(index);
         return String.format(Locale.US, "%f", number.floatValue());
     }
+
+    /**
+     * Appends the value to a CSV row. Subclasses that override {@link #getStringValue(int)} should override this
+     * method as well.
+     */
+    public void appendValue(CSVStreamWriter writer, int index) {
+        writer.append(getValue(index).floatValue(), 6);
+    }
     abstract public String getHeader();
 
     public void setDataModel(MarkerDataModel dataModel) {
         this.dataModel = dataModel;
     }
+
+    /**
+     * Hooks that are called by the adapter before it forwards a change of the marker data. Columns that cache values
+     * use them to invalidate the affected rows.
+     */
+    public void onDataAdded(int index) {
+
+    }
+
+    public void onDataRemoved(int index) {
+
+    }
+
+    public void onDataChanged(int index, int number) {
+
+    }
+
+    public void onAllDataChanged() {
+
+    }
+
+    /**
+     * Detaches the column from everything it listens to. Called by the adapter when it is released.
+     */
+    public void release() {
+
+    }
 }
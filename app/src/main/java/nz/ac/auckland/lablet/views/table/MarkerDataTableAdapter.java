@@ -23,8 +23,10 @@ public class MarkerDataTableAdapter extends ColumnDataTableAdapter {
         model.addListener(markerListener);
     }
 
+    @Override
     public void release() {
         model.removeListener(markerListener);
+        super.release();
     }
 
     @Override
@@ -33,11 +35,6 @@ public class MarkerDataTableAdapter extends ColumnDataTableAdapter {
         super.addColumn(column);
     }
 
-    @Override
-    protected void finalize() {
-        model.removeListener(markerListener);
-    }
-
     @Override
     public int getColumnWeight(int column) {
         return 1;
@@ -56,21 +53,32 @@ public class MarkerDataTableAdapter extends ColumnDataTableAdapter {
     private MarkerDataModel.IListener markerListener = new MarkerDataModel.IListener() {
         @Override
         public void onDataAdded (MarkerDataModel model,int index){
+            for (int i = 0; i < getColumnCount(); i++)
+                getColumn(i).onDataAdded(index);
+            invalidateRowCount();
             notifyRowAdded(index + 1);
         }
 
         @Override
         public void onDataRemoved (MarkerDataModel model,int index, MarkerData data){
+            for (int i = 0; i < getColumnCount(); i++)
+                getColumn(i).onDataRemoved(index);
+            invalidateRowCount();
             notifyRowRemoved(index + 1);
         }
 
         @Override
         public void onDataChanged (MarkerDataModel model,int index, int number){
+            for (int i = 0; i < getColumnCount(); i++)
+                getColumn(i).onDataChanged(index, number);
             notifyRowChanged(index + 1, number);
         }
 
         @Override
         public void onAllDataChanged (MarkerDataModel model){
+            for (int i = 0; i < getColumnCount(); i++)
+                getColumn(i).onAllDataChanged();
+            invalidateRowCount();
             notifyAllRowsChanged();
         }
 
@@ -80,29 +88,25 @@ public class MarkerDataTableAdapter extends ColumnDataTableAdapter {
         }
     };
 
+    // the listener and the arguments are passed to non-capturing lambdas so that the notifications don't allocate
     private void notifyRowAdded(int row) {
-        for (IListener listener : getListeners())
-            listener.onRowAdded(this, row);
+        forEachListener(this, row, (listener, table, r) -> listener.onRowAdded(table, r));
     }
 
     private void notifyRowRemoved(int row) {
-        for (IListener listener : getListeners())
-            listener.onRowRemoved(this, row);
+        forEachListener(this, row, (listener, table, r) -> listener.onRowRemoved(table, r));
     }
 
     private void notifyRowChanged(int row, int number) {
-        for (IListener listener : getListeners())
-            listener.onRowUpdated(this, row, number);
+        forEachListener(this, row, number, (listener, table, r, n) -> listener.onRowUpdated(table, r, n));
     }
 
     private void notifyAllRowsChanged() {
-        for (IListener listener : getListeners())
-            listener.onAllRowsUpdated(this);
+        forEachListener(this, (listener, table) -> listener.onAllRowsUpdated(table));
     }
 
     private void notifyRowSelected(int row) {
-        for (IListener listener : getListeners())
-            listener.onRowSelected(this, row);
+        forEachListener(this, row, (listener, table, r) -> listener.onRowSelected(table, r));
     }
 }
 
@@ -111,11 +115,10 @@ abstract class UnitDataTableColumn extends DataTableColumn implements Unit.IList
     private List<Unit> units = new ArrayList<>();
 
     @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-
+    public void release() {
         for (Unit unit : units)
             unit.removeListener(this);
+        units.clear();
     }
 
     protected void listenTo(Unit unit) {
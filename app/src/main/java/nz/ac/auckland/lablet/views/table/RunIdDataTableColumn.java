@@ -32,6 +32,11 @@ public class RunIdDataTableColumn extends DataTableColumn {
         return text;
     }
 
+    @Override
+    public void appendValue(CSVStreamWriter writer, int index) {
+        writer.append(dataModel.getMarkerDataAt(index).getId());
+    }
+
     public String getHeader() {
         return header;
     }
@@ -27,7 +27,12 @@ public class SpeedTimeDataTableColumn extends TimeDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected int getMarkerSpan() {
+        return 1;
+    }
+
+    @Override
+    protected float computeValue(int index) {
         float t0 = timeData.getTimeAt(index);
         float t1 = timeData.getTimeAt(index + 1);
         return t0 + (t1 - t0) / 2.f;
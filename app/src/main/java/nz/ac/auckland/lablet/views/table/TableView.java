@@ -195,6 +195,17 @@ public class TableView extends ListView {
             return i;
         }
 
+        @Override
+        public int getViewTypeCount() {
+            // header and data rows
+            return 2;
+        }
+
+        @Override
+        public int getItemViewType(int row) {
+            return row == 0 ? 0 : 1;
+        }
+
         @Override
         public View getView(int row, View view, ViewGroup viewGroup) {
             RowView rowView;
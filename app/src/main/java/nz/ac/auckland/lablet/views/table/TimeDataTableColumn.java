@@ -15,7 +15,7 @@ import nz.ac.auckland.lablet.misc.Unit;
  * Table column for the marker data table adapter. Provides a time column for the use in combination with an
  * position columns.
  */
-public class TimeDataTableColumn extends UnitDataTableColumn {
+public class TimeDataTableColumn extends CachedDataTableColumn {
     final private Unit tUnit;
     final protected ITimeData timeData;
 
@@ -32,15 +32,19 @@ public class TimeDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected float computeValue(int index) {
         int runId = dataModel.getMarkerDataAt(index).getId();
         return timeData.getTimeAt(runId);
     }
 
     @Override
-    public String getStringValue(int index) {
-        Number number = getValue(index);
-        return String.format("%.1f", number.floatValue());
+    protected String formatValue(float value) {
+        return String.format("%.1f", value);
+    }
+
+    @Override
+    public void appendValue(CSVStreamWriter writer, int index) {
+        writer.append(getFloatValue(index), 1);
     }
 
     @Override
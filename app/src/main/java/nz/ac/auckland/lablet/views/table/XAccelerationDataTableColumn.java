@@ -14,7 +14,7 @@ import nz.ac.auckland.lablet.misc.Unit;
 /**
  * Table column for the marker data table adapter. Provides the x-acceleration.
  */
-public class XAccelerationDataTableColumn extends UnitDataTableColumn {
+public class XAccelerationDataTableColumn extends CachedDataTableColumn {
     final private Unit xUnit;
     final private Unit tUnit;
     final private ITimeData timeData;
@@ -34,7 +34,12 @@ public class XAccelerationDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected int getMarkerSpan() {
+        return 2;
+    }
+
+    @Override
+    protected float computeValue(int index) {
         float speed0 = XSpeedDataTableColumn.getSpeed(index, dataModel, timeData, tUnit).floatValue();
         float speed1 = XSpeedDataTableColumn.getSpeed(index + 1, dataModel, timeData, tUnit).floatValue();
         float delta = speed1 - speed0;
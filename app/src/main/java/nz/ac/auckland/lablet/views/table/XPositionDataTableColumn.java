@@ -13,7 +13,7 @@ import nz.ac.auckland.lablet.misc.Unit;
 /**
  * Table column for the marker data table adapter. Provides the x-position.
  */
-public class XPositionDataTableColumn extends UnitDataTableColumn {
+public class XPositionDataTableColumn extends CachedDataTableColumn {
     final private Unit xUnit;
 
     public XPositionDataTableColumn(Unit xUnit) {
@@ -28,7 +28,7 @@ public class XPositionDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected float computeValue(int index) {
         return dataModel.getRealMarkerPositionAt(index).x;
     }
 
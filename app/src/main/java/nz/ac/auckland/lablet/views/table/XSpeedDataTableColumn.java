@@ -15,7 +15,7 @@ import nz.ac.auckland.lablet.misc.Unit;
 /**
  * Table column for the marker data table adapter. Provides the x-speed.
  */
-public class XSpeedDataTableColumn extends UnitDataTableColumn {
+public class XSpeedDataTableColumn extends CachedDataTableColumn {
     final private Unit xUnit;
     final private Unit tUnit;
     final private ITimeData timeData;
@@ -35,8 +35,13 @@ public class XSpeedDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
-        return getSpeed(index, dataModel, timeData, tUnit);
+    protected int getMarkerSpan() {
+        return 1;
+    }
+
+    @Override
+    protected float computeValue(int index) {
+        return getSpeed(index, dataModel, timeData, tUnit).floatValue();
     }
 
     @Override
@@ -14,7 +14,7 @@ import nz.ac.auckland.lablet.misc.Unit;
 /**
  * Table column for the marker data table adapter. Provides the y-acceleration.
  */
-public class YAccelerationDataTableColumn extends UnitDataTableColumn {
+public class YAccelerationDataTableColumn extends CachedDataTableColumn {
     final private Unit yUnit;
     final private Unit tUnit;
     final private ITimeData timeData;
@@ -34,7 +34,12 @@ public class YAccelerationDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected int getMarkerSpan() {
+        return 2;
+    }
+
+    @Override
+    protected float computeValue(int index) {
         float speed0 = YSpeedDataTableColumn.getSpeed(index, dataModel, timeData, tUnit).floatValue();
         float speed1 = YSpeedDataTableColumn.getSpeed(index + 1, dataModel, timeData, tUnit).floatValue();
         float delta = speed1 - speed0;
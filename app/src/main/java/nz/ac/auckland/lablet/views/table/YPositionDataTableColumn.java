@@ -13,7 +13,7 @@ import nz.ac.auckland.lablet.misc.Unit;
 /**
  * Table column for the marker data table adapter. Provides the y-position.
  */
-public class YPositionDataTableColumn extends UnitDataTableColumn {
+public class YPositionDataTableColumn extends CachedDataTableColumn {
     final private Unit yUnit;
 
     public YPositionDataTableColumn(Unit yUnit) {
@@ -28,7 +28,7 @@ public class YPositionDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
+    protected float computeValue(int index) {
         return dataModel.getRealMarkerPositionAt(index).y;
     }
 
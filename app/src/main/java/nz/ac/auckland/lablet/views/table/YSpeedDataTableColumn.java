@@ -15,7 +15,7 @@ import nz.ac.auckland.lablet.misc.Unit;
 /**
  * Table column for the marker data table adapter. Provides the y-speed.
  */
-public class YSpeedDataTableColumn extends UnitDataTableColumn {
+public class YSpeedDataTableColumn extends CachedDataTableColumn {
     final private Unit yUnit;
     final private Unit tUnit;
     final private ITimeData timeData;
@@ -35,8 +35,13 @@ public class YSpeedDataTableColumn extends UnitDataTableColumn {
     }
 
     @Override
-    public Number getValue(int index) {
-        return getSpeed(index, dataModel, timeData, tUnit);
+    protected int getMarkerSpan() {
+        return 1;
+    }
+
+    @Override
+    protected float computeValue(int index) {
+        return getSpeed(index, dataModel, timeData, tUnit).floatValue();
     }
 
     @Override
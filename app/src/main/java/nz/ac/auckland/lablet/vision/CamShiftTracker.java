@@ -9,27 +9,15 @@ package nz.ac.auckland.lablet.vision;
 
 import android.graphics.Bitmap;
 import android.util.Log;
-import android.util.Pair;
 
 import org.opencv.android.OpenCVLoader;
 import org.opencv.android.Utils;
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfFloat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.Point;
 import org.opencv.core.Rect;
-import org.opencv.core.RotatedRect;
 import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.core.TermCriteria;
-import org.opencv.imgproc.Imgproc;
-import org.opencv.video.Video;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
 
 
 /**
@@ -46,17 +34,30 @@ public class CamShiftTracker {
         }
     }
 
-    private TermCriteria termCriteria = new TermCriteria(TermCriteria.EPS | TermCriteria.COUNT, 10, 1);
-    private MatOfInt histSize = new MatOfInt(16);
-    private MatOfFloat ranges = new MatOfFloat(0, 180);
-    private Rect trackWindow;
-    private Scalar hsvMin;
-    private Scalar hsvMax;
     private int colourRange = 9;
+    // the region of interest is subsampled to at most this size for the k-means clustering
     public static final int KMEANS_IMG_SIZE = 100;
+    final private ColourRangeEstimator colourRangeEstimator = new ColourRangeEstimator(KMEANS_IMG_SIZE, colourRange);
 
-    Mat hsv, hue, mask, hist, backproj, bgr;
-    Size size;
+    private CamShiftTrackingSession session;
+    private int downscale = CamShiftTrackingSession.DEFAULT_DOWNSCALE;
+    private float searchMargin = CamShiftTrackingSession.DEFAULT_SEARCH_MARGIN;
+    private float minConfidence = CamShiftTrackingSession.DEFAULT_MIN_CONFIDENCE;
+
+    /**
+     * Configures the tracking pyramid, see {@link CamShiftTrackingSession#setPyramid(int, float, float)}.
+     *
+     * @param downscale     The resolution reduction of the search window.
+     * @param searchMargin  The margin around the previous location, negative to always search the whole frame.
+     * @param minConfidence The confidence below which the whole frame is searched.
+     */
+    public void setTrackingPyramid(int downscale, float searchMargin, float minConfidence) {
+        this.downscale = downscale;
+        this.searchMargin = searchMargin;
+        this.minConfidence = minConfidence;
+        if (session != null)
+            session.setPyramid(downscale, searchMargin, minConfidence);
+    }
 
     /**
      * Gets the location of an object in a frame. Assumes you have called setRegionOfInterest,
@@ -67,31 +68,35 @@ public class CamShiftTracker {
      */
 
     public Rect getObjectLocation(Bitmap frame) {
-        Mat image = new Mat();
-        Utils.bitmapToMat(frame, image);
-
-        mask = getMask(image, hsvMin, hsvMax);
+        if (session == null)
+            return null;
+        Utils.bitmapToMat(frame, getSession(frame.getWidth(), frame.getHeight()).getFrame());
+        return track();
+    }
 
-        ArrayList<Mat> hsvs = new ArrayList<>();
-        hsvs.add(hsv);
+    /**
+     * Gets the location of an object in a raw frame, e.g., as read back from the video decoder.
+     *
+     * @param rgba   The RGBA pixels of the frame, top row first.
+     * @param width  The width of the frame.
+     * @param height The height of the frame.
+     * @return The location and bounds of the object, represented by a Rect.
+     */
 
-        Imgproc.calcBackProject(hsvs, new MatOfInt(0), hist, backproj, ranges, 1);
-        Core.bitwise_and(backproj, mask, backproj);
+    public Rect getObjectLocation(byte[] rgba, int width, int height) {
+        if (session == null)
+            return null;
+        getSession(width, height).setFrame(rgba);
+        return track();
+    }
 
+    private Rect track() {
         try {
-            Rect tempTrackWindow = trackWindow.clone();
-            RotatedRect result = Video.CamShift(backproj, trackWindow, termCriteria);
-
-            if (result.size.equals(new Size(0, 0)) && result.angle == 0 && result.center.equals(new Point(0, 0))) {
-                trackWindow = tempTrackWindow;
-                return null;
-            }
+            return session.track();
         } catch (Exception e) {
             Log.e(TAG, "Something bad happened with OpenCV: ", e);
             return null;
         }
-
-        return trackWindow.clone();
     }
 
     /**
@@ -106,6 +111,31 @@ public class CamShiftTracker {
      */
 
     public void setRegionOfInterest(Bitmap frame, int x, int y, int width, int height) {
+        CamShiftTrackingSession session = getSession(frame.getWidth(), frame.getHeight());
+        Utils.bitmapToMat(frame, session.getFrame());
+        setRegionOfInterest(session, x, y, width, height);
+    }
+
+    /**
+     * Internally sets the region of interest (ROI) to track in a raw frame.
+     *
+     * @param rgba        The RGBA pixels of the frame, top row first.
+     * @param frameWidth  The width of the frame.
+     * @param frameHeight The height of the frame.
+     * @param x           The x coordinate of the ROI (top left).
+     * @param y           The y coordinate of the ROI (top left).
+     * @param width       The width of the ROI.
+     * @param height      The height of the ROI.
+     */
+
+    public void setRegionOfInterest(byte[] rgba, int frameWidth, int frameHeight, int x, int y, int width,
+                                    int height) {
+        CamShiftTrackingSession session = getSession(frameWidth, frameHeight);
+        session.setFrame(rgba);
+        setRegionOfInterest(session, x, y, width, height);
+    }
+
+    private void setRegionOfInterest(CamShiftTrackingSession session, int x, int y, int width, int height) {
         // validate/ fix input values
         if (x < 0)
             x = 0;
@@ -116,182 +146,48 @@ public class CamShiftTracker {
         if (height <= 0)
             height = 1;
 
-        size = new Size(frame.getWidth(), frame.getHeight());
-        hsv = new Mat(size, CvType.CV_8UC3);
-        hue = new Mat(size, CvType.CV_8UC3);
-        mask = new Mat(size, CvType.CV_8UC3);
-        hist = new Mat(size, CvType.CV_8UC3);
-        bgr = new Mat();
-        backproj = new Mat();
-
-        Mat image = new Mat();
-        Utils.bitmapToMat(frame, image);
-
-        trackWindow = new Rect(x, y, width, height);
+        Rect trackWindow = new Rect(x, y, width, height);
 
-        Mat bgrRoi = image.submat(trackWindow);
+        Mat bgrRoi = session.getFrame().submat(trackWindow);
+        Scalar[] minMaxHsv = colourRangeEstimator.getMinMaxHsv(bgrRoi, 2);
+        bgrRoi.release();
 
-        Pair<Scalar, Scalar> minMaxHsv = getMinMaxHsv(bgrRoi, 2);
-        hsvMin = minMaxHsv.first;
-        hsvMax = minMaxHsv.second;
-
-        mask = getMask(image, hsvMin, hsvMax);
-
-        Mat hsvRoi = hsv.submat(trackWindow);
-        Mat maskRoi = mask.submat(trackWindow);
-
-        ArrayList<Mat> hsvRois = new ArrayList<>();
-        hsvRois.add(hsvRoi);
-        Imgproc.calcHist(hsvRois, new MatOfInt(0), maskRoi, hist, histSize, ranges);
-        Core.normalize(hist, hist, 0, 255, Core.NORM_MINMAX);
+        session.setRegionOfInterest(trackWindow, minMaxHsv[0], minMaxHsv[1]);
     }
 
     /**
-     * Finds the dominant colour in an image, and returns two values in HSV colour space to represent similar colours,
-     * e.g. so you can keep all colours similar to the dominant colour.
-     * <p/>
-     * How the algorithm works:
-     * <p/>
-     * 1. Scale the frame down so that algorithm doesn't take too long.
-     * 2. Segment the frame into different colours (number of colours determined by k)
-     * 3. Find dominant cluster (largest area) and get its central colour point.
-     * 4. Get range (min max) to represent similar colours.
+     * Gets the number of Mats the tracking session has allocated so far.
      *
-     * @param bgr The input frame, in BGR colour space.
-     * @param k   The number of segments to use (2 works well).
-     * @return The min and max HSV colour values, which represent the colours similar to the dominant colour.
+     * @return the number of native allocations or 0 if there is no session
      */
-
-    private Pair<Scalar, Scalar> getMinMaxHsv(Mat bgr, int k) {
-        //Convert to HSV
-        Mat input = new Mat();
-        Imgproc.cvtColor(bgr, input, Imgproc.COLOR_BGR2BGRA, 3);
-
-        //Scale image
-        Size bgrSize = bgr.size();
-        Size newSize = new Size();
-
-        if (bgrSize.width > CamShiftTracker.KMEANS_IMG_SIZE || bgrSize.height > CamShiftTracker.KMEANS_IMG_SIZE) {
-
-            if (bgrSize.width > bgrSize.height) {
-                newSize.width = CamShiftTracker.KMEANS_IMG_SIZE;
-                newSize.height = CamShiftTracker.KMEANS_IMG_SIZE / bgrSize.width * bgrSize.height;
-            } else {
-                newSize.width = CamShiftTracker.KMEANS_IMG_SIZE / bgrSize.height * bgrSize.width;
-                newSize.height = CamShiftTracker.KMEANS_IMG_SIZE;
-            }
-
-            Imgproc.resize(input, input, newSize);
-        }
-
-        //Image quantization using k-means, see here for details of k-means algorithm: http://bit.ly/1JIvrlB
-        Mat clusterData = new Mat();
-
-        Mat reshaped = input.reshape(1, input.rows() * input.cols());
-        reshaped.convertTo(clusterData, CvType.CV_32F, 1.0 / 255.0);
-        Mat labels = new Mat();
-        Mat centres = new Mat();
-        TermCriteria criteria = new TermCriteria(TermCriteria.COUNT, 50, 1);
-        Core.kmeans(clusterData, k, labels, criteria, 1, Core.KMEANS_PP_CENTERS, centres);
-
-        double[] averageDists = getAverageDistToCentre(input.cols(), input.rows(), k, labels);
-        int centreLabelIndex = -1;
-        double maxDist = 10000000;
-
-        for (int i = 0; i < averageDists.length; i++) {
-            if (averageDists[i] < maxDist) {
-                maxDist = averageDists[i];
-                centreLabelIndex = i;
-            }
-        }
-
-        //Get cluster centre point hsv
-        int r = (int) (centres.get(centreLabelIndex, 2)[0] * 255.0);
-        int g = (int) (centres.get(centreLabelIndex, 1)[0] * 255.0);
-        int b = (int) (centres.get(centreLabelIndex, 0)[0] * 255.0);
-        int sum = (r + g + b) / 3;
-
-        //Get colour range
-        Scalar min;
-        Scalar max;
-
-        int rg = Math.abs(r - g);
-        int gb = Math.abs(g - b);
-        int rb = Math.abs(r - b);
-        int maxDiff = Math.max(Math.max(rg, gb), rb);
-
-        if (maxDiff < 35 && sum > 120) { //white
-            min = new Scalar(0, 0, 0);
-            max = new Scalar(180, 40, 255);
-        } else if (sum < 50 && maxDiff < 35) { //black
-            min = new Scalar(0, 0, 0);
-            max = new Scalar(180, 255, 40);
-        } else {
-            Mat bgrColour = new Mat(1, 1, CvType.CV_8UC3, new Scalar(r, g, b));
-            Mat hsvColour = new Mat();
-
-            Imgproc.cvtColor(bgrColour, hsvColour, Imgproc.COLOR_BGR2HSV, 3);
-            double[] hsv = hsvColour.get(0, 0);
-
-            int addition = 0;
-            int minHue = (int) hsv[0] - colourRange;
-            if (minHue < 0) {
-                addition = Math.abs(minHue);
-            }
-
-            int maxHue = (int) hsv[0] + colourRange;
-
-            min = new Scalar(Math.max(minHue, 0), 60, 35);//Math.max(35, hsv[2] - 50));
-            max = new Scalar(Math.min(maxHue + addition, 180), 255, 255);
-        }
-
-        return new Pair<>(min, max);
+    public int getNativeAllocationCount() {
+        if (session == null)
+            return 0;
+        return session.getNativeAllocationCount();
     }
 
     /**
-     * Calculates the average distances between the points in each k-means cluster
-     * and the centre of the region of interest.
-     *
-     * @param roiWidth
-     * @param roiHeight
-     * @param labels:   kmeans labels
+     * Frees the native memory of the tracking session. Should be called when a tracking run has finished.
+     * <p/>
+     * A new session is created when the next region of interest is set.
      */
-
-    private double[] getAverageDistToCentre(int roiWidth, int roiHeight, int k, Mat labels) {
-
-        double[] dists = new double[k];
-        int[] counts = new int[k];
-        Point roiCentre = new Point(roiWidth / 2, roiHeight / 2);
-
-        for (int y = 0; y < roiHeight; y++) {
-            for (int x = 0; x < roiWidth; x++) {
-                int index = x + roiWidth * y;
-
-                int label = (int) labels.get(index, 0)[0];
-                dists[label] += Math.sqrt(Math.pow(roiCentre.x - x, 2) + Math.pow(roiCentre.y - y, 2));
-                counts[label] += 1;
-            }
-        }
-
-        for (int i = 0; i < dists.length; i++) {
-            dists[i] = dists[i] / counts[i];
-        }
-
-        return dists;
+    public void release() {
+        if (session == null)
+            return;
+        session.release();
+        session = null;
     }
 
-    private Mat getMask(Mat bgr, Scalar hsvMin, Scalar hsvMax) {
-        Mat mask = new Mat(size, CvType.CV_8UC3);
-        Imgproc.cvtColor(bgr, hsv, Imgproc.COLOR_BGR2HSV, 3);
-        Core.inRange(hsv, hsvMin, hsvMax, mask);
-        return mask;
-
-        //Enable to save masked image
-//        Mat output = new Mat();
-//        Imgproc.cvtColor(mask, output, Imgproc.COLOR_GRAY2BGR, 0);
-//        Imgproc.cvtColor(output, output, Imgproc.COLOR_BGR2RGBA, 0);
-//        this.saveFrame(output, "frame " + frameNum);
-//        frameNum++;
+    /**
+     * Gets the tracking session for the frame size. A new session is started if the frame size changed.
+     */
+    private CamShiftTrackingSession getSession(int width, int height) {
+        if (session != null && session.getWidth() == width && session.getHeight() == height)
+            return session;
+        release();
+        session = new CamShiftTrackingSession(width, height);
+        session.setPyramid(downscale, searchMargin, minConfidence);
+        return session;
     }
 
     /**
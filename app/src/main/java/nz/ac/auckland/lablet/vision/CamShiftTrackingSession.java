@@ -0,0 +1,488 @@
+/*
+ * Copyright 2015.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      James Diprose <jamie.diprose@gmail.com>
+ */
+package nz.ac.auckland.lablet.vision;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Rect;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Working state of the cam shift tracker for a fixed frame size.
+ * <p>
+ * All working Mats are allocated once when the session is created and are reused for every frame, i.e., tracking a
+ * frame does not allocate native memory. The Mats are freed by {@link #release()}; the session must not be used
+ * afterwards.
+ * </p>
+ * <p>
+ * Tracking uses a two level pyramid. First, only a search window around the previous location is processed, at a
+ * reduced resolution. If the object is lost or the confidence of the result drops below a threshold, the whole frame
+ * is searched at full resolution.
+ * </p>
+ */
+public class CamShiftTrackingSession {
+    // the default resolution reduction of the search window
+    public static final int DEFAULT_DOWNSCALE = 2;
+    // the default margin around the previous location, relative to the size of the tracked object
+    public static final float DEFAULT_SEARCH_MARGIN = 1f;
+    // the default confidence below which a full frame search is done
+    public static final float DEFAULT_MIN_CONFIDENCE = 0.5f;
+    // objects smaller than this (in pixels of the reduced resolution) are searched at full resolution
+    private static final int MIN_SCALED_WINDOW_SIZE = 8;
+
+    final private int width;
+    final private int height;
+
+    final private TermCriteria termCriteria = new TermCriteria(TermCriteria.EPS | TermCriteria.COUNT, 10, 1);
+    final private MatOfInt histSize;
+    final private MatOfFloat ranges;
+    final private MatOfInt channels;
+    final private Mat hist;
+
+    // RGBA input frame
+    final private Mat frame;
+    final private MatView frameView;
+    final private Level fullLevel;
+    private Level scaledLevel;
+
+    private int downscale = DEFAULT_DOWNSCALE;
+    private float searchMargin = DEFAULT_SEARCH_MARGIN;
+    private float minConfidence = DEFAULT_MIN_CONFIDENCE;
+
+    private Scalar hsvMin;
+    private Scalar hsvMax;
+    private Rect trackWindow;
+    // mean back projection of the object when the region of interest was set
+    private double referenceBackProjection;
+    private float lastConfidence;
+    private int fullFrameSearches = 0;
+
+    private int nativeAllocations = 0;
+    private boolean released = false;
+
+    /**
+     * Mats for one resolution level. Processing is done on views into the Mats that cover the current search window.
+     */
+    private class Level {
+        final int scale;
+        final Mat scaledFrame;
+        final Mat hsv;
+        final Mat mask;
+        final Mat backproj;
+        final MatView scaledFrameView;
+        final MatView hsvView;
+        final MatView maskView;
+        final MatView backprojView;
+        final MatView windowView;
+        final List<Mat> hsvs = new ArrayList<>();
+        // the current search window in level coordinates
+        final Rect search = new Rect();
+
+        Level(int scale) {
+            this.scale = scale;
+            int levelWidth = getLevelWidth();
+            int levelHeight = getLevelHeight();
+            if (scale == 1) {
+                scaledFrame = null;
+                scaledFrameView = null;
+            } else {
+                scaledFrame = countAllocation(new Mat(levelHeight, levelWidth, CvType.CV_8UC4));
+                scaledFrameView = new MatView(scaledFrame);
+            }
+            hsv = countAllocation(new Mat(levelHeight, levelWidth, CvType.CV_8UC3));
+            mask = countAllocation(new Mat(levelHeight, levelWidth, CvType.CV_8UC1));
+            backproj = countAllocation(new Mat(levelHeight, levelWidth, CvType.CV_8UC1));
+            hsvView = new MatView(hsv);
+            maskView = new MatView(mask);
+            backprojView = new MatView(backproj);
+            windowView = new MatView(backproj);
+            hsvs.add(hsvView.mat);
+        }
+
+        int getLevelWidth() {
+            return width / scale;
+        }
+
+        int getLevelHeight() {
+            return height / scale;
+        }
+
+        /**
+         * Computes the back projection for the current search window.
+         */
+        void backProject() {
+            frameView.set(search.x * scale, search.y * scale, search.width * scale, search.height * scale);
+            hsvView.set(search);
+            maskView.set(search);
+            backprojView.set(search);
+
+            Mat source = frameView.mat;
+            if (scaledFrameView != null) {
+                scaledFrameView.set(search);
+                Imgproc.resize(frameView.mat, scaledFrameView.mat, scaledFrameView.mat.size(), 0, 0,
+                        Imgproc.INTER_AREA);
+                source = scaledFrameView.mat;
+            }
+            Imgproc.cvtColor(source, hsvView.mat, Imgproc.COLOR_BGR2HSV, 3);
+            Core.inRange(hsvView.mat, hsvMin, hsvMax, maskView.mat);
+            Imgproc.calcBackProject(hsvs, channels, hist, backprojView.mat, ranges, 1);
+            Core.bitwise_and(backprojView.mat, maskView.mat, backprojView.mat);
+        }
+
+        /**
+         * Gets the mean back projection in a window.
+         *
+         * @param window in level coordinates
+         */
+        double getMeanBackProjection(Rect window) {
+            windowView.set(window);
+            return Core.mean(windowView.mat).val[0];
+        }
+
+        void release() {
+            if (scaledFrame != null)
+                scaledFrame.release();
+            for (Mat mat : new Mat[]{hsv, mask, backproj})
+                mat.release();
+            for (MatView view : new MatView[]{scaledFrameView, hsvView, maskView, backprojView, windowView}) {
+                if (view != null)
+                    view.mat.release();
+            }
+        }
+    }
+
+    /**
+     * A view into a parent Mat whose position is moved in place, i.e., without allocating a new Mat header.
+     */
+    private class MatView {
+        final Mat mat;
+        final Rect rect;
+        final int parentWidth;
+        final int parentHeight;
+
+        MatView(Mat parent) {
+            parentWidth = parent.cols();
+            parentHeight = parent.rows();
+            rect = new Rect(0, 0, parentWidth, parentHeight);
+            mat = countAllocation(parent.submat(rect));
+        }
+
+        void set(Rect target) {
+            set(target.x, target.y, target.width, target.height);
+        }
+
+        /**
+         * Moves the view to the given region, clamped to the parent matrix.
+         *
+         * <p>
+         * adjustROI clamps the region to the parent as well; the stored rect is the clamped region so that it always
+         * matches the sub-matrix.
+         * </p>
+         */
+        void set(int x, int y, int width, int height) {
+            int right = Math.min(Math.max(x + width, 0), parentWidth);
+            int bottom = Math.min(Math.max(y + height, 0), parentHeight);
+            x = Math.min(Math.max(x, 0), right);
+            y = Math.min(Math.max(y, 0), bottom);
+            width = right - x;
+            height = bottom - y;
+            if (rect.x == x && rect.y == y && rect.width == width && rect.height == height)
+                return;
+            mat.adjustROI(rect.y - y, y + height - rect.y - rect.height, rect.x - x, x + width - rect.x - rect.width);
+            rect.x = x;
+            rect.y = y;
+            rect.width = width;
+            rect.height = height;
+        }
+    }
+
+    public CamShiftTrackingSession(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        histSize = countAllocation(new MatOfInt(16));
+        ranges = countAllocation(new MatOfFloat(0, 180));
+        channels = countAllocation(new MatOfInt(0));
+        hist = countAllocation(new Mat());
+
+        frame = countAllocation(new Mat(height, width, CvType.CV_8UC4));
+        frameView = new MatView(frame);
+        fullLevel = new Level(1);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Configures the tracking pyramid.
+     *
+     * @param downscale    the resolution reduction of the search window, 1 to search at full resolution
+     * @param searchMargin the margin around the previous location, relative to the size of the object. A negative value
+     *                     disables the search window, i.e., always searches the whole frame at full resolution.
+     * @param minConfidence the confidence, relative to the region of interest, below which the whole frame is searched
+     */
+    public void setPyramid(int downscale, float searchMargin, float minConfidence) {
+        if (downscale < 1)
+            throw new IllegalArgumentException("Invalid downscale: " + downscale);
+        this.downscale = downscale;
+        this.searchMargin = searchMargin;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Gets the number of Mats the session has allocated so far.
+     * <p>
+     * The count stays constant while frames are tracked, it only grows when the tracking pyramid is set up.
+     * </p>
+     *
+     * @return the number of native allocations
+     */
+    public int getNativeAllocationCount() {
+        return nativeAllocations;
+    }
+
+    /**
+     * Gets the number of frames that needed a full frame search since the region of interest was set.
+     *
+     * @return the number of full frame searches
+     */
+    public int getFullFrameSearchCount() {
+        return fullFrameSearches;
+    }
+
+    /**
+     * Gets the confidence of the last tracking result, relative to the region of interest.
+     *
+     * @return the confidence, roughly 1 if the object looks like in the region of interest
+     */
+    public float getLastConfidence() {
+        return lastConfidence;
+    }
+
+    /**
+     * Gets the RGBA frame Mat. The caller can fill it directly, e.g., using Utils.bitmapToMat.
+     *
+     * @return the frame Mat of the session
+     */
+    public Mat getFrame() {
+        return frame;
+    }
+
+    /**
+     * Copies raw RGBA pixels into the frame Mat.
+     *
+     * @param rgba width * height * 4 bytes, top row first
+     */
+    public void setFrame(byte[] rgba) {
+        if (rgba.length < width * height * 4)
+            throw new IllegalArgumentException("Frame buffer too small");
+        frame.put(0, 0, rgba);
+    }
+
+    /**
+     * Sets the region of interest in the current frame and the colour range of the tracked object.
+     *
+     * @param roi the region of interest, must lie within the frame
+     * @param hsvMin the lower bound of the object colour
+     * @param hsvMax the upper bound of the object colour
+     */
+    public void setRegionOfInterest(Rect roi, Scalar hsvMin, Scalar hsvMax) {
+        this.hsvMin = hsvMin;
+        this.hsvMax = hsvMax;
+        this.trackWindow = roi.clone();
+        fullFrameSearches = 0;
+
+        fullLevel.search.x = roi.x;
+        fullLevel.search.y = roi.y;
+        fullLevel.search.width = roi.width;
+        fullLevel.search.height = roi.height;
+        frameView.set(roi);
+        fullLevel.hsvView.set(roi);
+        fullLevel.maskView.set(roi);
+
+        Imgproc.cvtColor(frameView.mat, fullLevel.hsvView.mat, Imgproc.COLOR_BGR2HSV, 3);
+        Core.inRange(fullLevel.hsvView.mat, hsvMin, hsvMax, fullLevel.maskView.mat);
+        Imgproc.calcHist(fullLevel.hsvs, channels, fullLevel.maskView.mat, hist, histSize, ranges);
+        Core.normalize(hist, hist, 0, 255, Core.NORM_MINMAX);
+
+        fullLevel.backProject();
+        referenceBackProjection = fullLevel.getMeanBackProjection(roi);
+        lastConfidence = 1;
+    }
+
+    public boolean hasRegionOfInterest() {
+        return trackWindow != null;
+    }
+
+    /**
+     * Tracks the object in the current frame.
+     *
+     * @return the new location of the object or null if the object has been lost
+     */
+    public Rect track() {
+        if (trackWindow == null)
+            return null;
+
+        if (searchMargin >= 0) {
+            int scale = downscale;
+            if (trackWindow.width / scale < MIN_SCALED_WINDOW_SIZE
+                    || trackWindow.height / scale < MIN_SCALED_WINDOW_SIZE)
+                scale = 1;
+            Level level = getLevel(scale);
+            if (setSearchWindow(level)) {
+                level.backProject();
+                Rect result = camShift(level, trackWindow);
+                if (result != null && lastConfidence >= minConfidence)
+                    return setTrackWindow(result);
+            }
+        }
+
+        fullFrameSearches++;
+        Rect search = fullLevel.search;
+        search.x = 0;
+        search.y = 0;
+        search.width = width;
+        search.height = height;
+        fullLevel.backProject();
+        Rect result = camShift(fullLevel, trackWindow);
+        if (searchMargin >= 0 && (result == null || lastConfidence < minConfidence)) {
+            // the object moved too far to be found from its previous location, start from the whole frame
+            Rect wholeFrameResult = camShift(fullLevel, search);
+            if (wholeFrameResult != null)
+                result = wholeFrameResult;
+        }
+        if (result == null)
+            return null;
+        return setTrackWindow(result);
+    }
+
+    /**
+     * Frees all native memory of the session.
+     */
+    public void release() {
+        if (released)
+            return;
+        released = true;
+        for (Mat mat : new Mat[]{histSize, ranges, channels, hist, frame, frameView.mat})
+            mat.release();
+        fullLevel.release();
+        if (scaledLevel != null)
+            scaledLevel.release();
+    }
+
+    private Level getLevel(int scale) {
+        if (scale == 1)
+            return fullLevel;
+        if (scaledLevel == null || scaledLevel.scale != scale) {
+            if (scaledLevel != null)
+                scaledLevel.release();
+            scaledLevel = new Level(scale);
+        }
+        return scaledLevel;
+    }
+
+    /**
+     * Sets the search window of a level to the area around the previous location.
+     *
+     * @return false if the search window is empty
+     */
+    private boolean setSearchWindow(Level level) {
+        int scale = level.scale;
+        int marginX = (int)(trackWindow.width * searchMargin);
+        int marginY = (int)(trackWindow.height * searchMargin);
+        int left = Math.max(0, floorDiv(trackWindow.x - marginX, scale));
+        int top = Math.max(0, floorDiv(trackWindow.y - marginY, scale));
+        int right = Math.min(level.getLevelWidth(), ceilDiv(trackWindow.x + trackWindow.width + marginX, scale));
+        int bottom = Math.min(level.getLevelHeight(), ceilDiv(trackWindow.y + trackWindow.height + marginY, scale));
+        if (right - left < 1 || bottom - top < 1)
+            return false;
+        Rect search = level.search;
+        search.x = left;
+        search.y = top;
+        search.width = right - left;
+        search.height = bottom - top;
+        return true;
+    }
+
+    /**
+     * Runs cam shift on the back projection of the current search window of a level.
+     *
+     * @param start the start window in frame coordinates
+     * @return the found window in frame coordinates or null if nothing has been found
+     */
+    private Rect camShift(Level level, Rect start) {
+        int scale = level.scale;
+        Rect search = level.search;
+        // the window relative to the search window, in level coordinates
+        int windowX = clamp(Math.round((float)start.x / scale) - search.x, 0, search.width - 1);
+        int windowY = clamp(Math.round((float)start.y / scale) - search.y, 0, search.height - 1);
+        Rect window = new Rect(windowX, windowY,
+                clamp(Math.round((float)start.width / scale), 1, search.width - windowX),
+                clamp(Math.round((float)start.height / scale), 1, search.height - windowY));
+
+        RotatedRect result = Video.CamShift(level.backprojView.mat, window, termCriteria);
+        if (result.size.width == 0 && result.size.height == 0 && result.angle == 0 && result.center.x == 0
+                && result.center.y == 0)
+            return null;
+        if (window.width <= 0 || window.height <= 0)
+            return null;
+
+        lastConfidence = getConfidence(level, window);
+        return new Rect((search.x + window.x) * scale, (search.y + window.y) * scale, window.width * scale,
+                window.height * scale);
+    }
+
+    private Rect setTrackWindow(Rect window) {
+        trackWindow = window;
+        return window.clone();
+    }
+
+    private float getConfidence(Level level, Rect window) {
+        if (referenceBackProjection <= 0)
+            return 1;
+        window.x += level.search.x;
+        window.y += level.search.y;
+        double mean = level.getMeanBackProjection(window);
+        window.x -= level.search.x;
+        window.y -= level.search.y;
+        return (float)(mean / referenceBackProjection);
+    }
+
+    static private int floorDiv(int value, int divisor) {
+        return (int)Math.floor((double)value / divisor);
+    }
+
+    static private int ceilDiv(int value, int divisor) {
+        return (int)Math.ceil((double)value / divisor);
+    }
+
+    static private int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private <T extends Mat> T countAllocation(T mat) {
+        nativeAllocations++;
+        return mat;
+    }
+}
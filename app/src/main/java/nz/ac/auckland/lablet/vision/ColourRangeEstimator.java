@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015.
+ * Distributed under the terms of the GPLv3 License.
+ *
+ * Authors:
+ *      James Diprose <jamie.diprose@gmail.com>
+ */
+package nz.ac.auckland.lablet.vision;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+
+
+/**
+ * Finds the dominant colour in a region of interest and returns a range of similar colours in HSV colour space.
+ * <p/>
+ * How the algorithm works:
+ * <p/>
+ * 1. Subsample the region so that the algorithm doesn't take too long.
+ * 2. Segment the samples into different colours (number of colours determined by k)
+ * 3. Find the cluster closest to the centre of the region and get its central colour point.
+ * 4. Get range (min max) to represent similar colours.
+ * <p/>
+ * Pixel data, labels and cluster centres are moved between OpenCV and Java with a single bulk get per Mat and all
+ * temporary Mats are released right away.
+ */
+public class ColourRangeEstimator {
+    final private int maxSampleSize;
+    final private int colourRange;
+    final private TermCriteria criteria = new TermCriteria(TermCriteria.COUNT, 50, 1);
+
+    /**
+     * @param maxSampleSize the region is subsampled to at most maxSampleSize x maxSampleSize pixels
+     * @param colourRange   the hue range around the dominant colour
+     */
+    public ColourRangeEstimator(int maxSampleSize, int colourRange) {
+        this.maxSampleSize = maxSampleSize;
+        this.colourRange = colourRange;
+    }
+
+    /**
+     * Gets the min and max HSV values of the colours similar to the dominant colour.
+     *
+     * @param roi The region of interest, e.g., a submat of the frame.
+     * @param k   The number of segments to use (2 works well).
+     * @return The min and max HSV colour values.
+     */
+    public Scalar[] getMinMaxHsv(Mat roi, int k) {
+        Mat sample = subsample(roi);
+        int sampleWidth = sample.cols();
+        int sampleHeight = sample.rows();
+        int sampleCount = sampleWidth * sampleHeight;
+
+        //Image quantization using k-means, see here for details of k-means algorithm: http://bit.ly/1JIvrlB
+        Mat reshaped = sample.reshape(1, sampleCount);
+        Mat clusterData = new Mat();
+        reshaped.convertTo(clusterData, CvType.CV_32F, 1.0 / 255.0);
+        Mat labels = new Mat();
+        Mat centres = new Mat();
+        Core.kmeans(clusterData, k, labels, criteria, 1, Core.KMEANS_PP_CENTERS, centres);
+
+        int[] labelArray = new int[sampleCount];
+        labels.get(0, 0, labelArray);
+        int channels = centres.cols();
+        float[] centreArray = new float[k * channels];
+        centres.get(0, 0, centreArray);
+
+        for (Mat mat : new Mat[]{sample, reshaped, clusterData, labels, centres})
+            mat.release();
+
+        double[] averageDists = getAverageDistToCentre(sampleWidth, sampleHeight, k, labelArray);
+        int centreLabelIndex = -1;
+        double maxDist = 10000000;
+
+        for (int i = 0; i < averageDists.length; i++) {
+            if (averageDists[i] < maxDist) {
+                maxDist = averageDists[i];
+                centreLabelIndex = i;
+            }
+        }
+
+        // Convert all cluster centres in one go. Like in the former CamShiftTracker implementation the first three
+        // channels of a centre are packed in reverse order before the BGR to HSV conversion.
+        byte[] colours = new byte[k * 3];
+        for (int i = 0; i < k; i++) {
+            for (int c = 0; c < 3; c++)
+                colours[i * 3 + c] = (byte)(int)(centreArray[i * channels + 2 - c] * 255.0);
+        }
+        Mat bgrColours = new Mat(1, k, CvType.CV_8UC3);
+        bgrColours.put(0, 0, colours);
+        Mat hsvColours = new Mat();
+        Imgproc.cvtColor(bgrColours, hsvColours, Imgproc.COLOR_BGR2HSV, 3);
+        byte[] hsvs = new byte[k * 3];
+        hsvColours.get(0, 0, hsvs);
+        bgrColours.release();
+        hsvColours.release();
+
+        //Get cluster centre point hsv
+        int r = colours[centreLabelIndex * 3] & 0xFF;
+        int g = colours[centreLabelIndex * 3 + 1] & 0xFF;
+        int b = colours[centreLabelIndex * 3 + 2] & 0xFF;
+        int sum = (r + g + b) / 3;
+
+        //Get colour range
+        int rg = Math.abs(r - g);
+        int gb = Math.abs(g - b);
+        int rb = Math.abs(r - b);
+        int maxDiff = Math.max(Math.max(rg, gb), rb);
+
+        if (maxDiff < 35 && sum > 120) { //white
+            return new Scalar[]{new Scalar(0, 0, 0), new Scalar(180, 40, 255)};
+        } else if (sum < 50 && maxDiff < 35) { //black
+            return new Scalar[]{new Scalar(0, 0, 0), new Scalar(180, 255, 40)};
+        }
+
+        int hue = hsvs[centreLabelIndex * 3] & 0xFF;
+        int addition = 0;
+        int minHue = hue - colourRange;
+        if (minHue < 0) {
+            addition = Math.abs(minHue);
+        }
+
+        int maxHue = hue + colourRange;
+
+        return new Scalar[]{new Scalar(Math.max(minHue, 0), 60, 35),
+                new Scalar(Math.min(maxHue + addition, 180), 255, 255)};
+    }
+
+    /**
+     * Subsamples the region to at most maxSampleSize pixels in each direction. The result is continuous.
+     */
+    private Mat subsample(Mat roi) {
+        Size roiSize = roi.size();
+        Mat sample = new Mat();
+        if (roiSize.width <= maxSampleSize && roiSize.height <= maxSampleSize) {
+            roi.copyTo(sample);
+            return sample;
+        }
+
+        Size newSize = new Size();
+        if (roiSize.width > roiSize.height) {
+            newSize.width = maxSampleSize;
+            newSize.height = maxSampleSize / roiSize.width * roiSize.height;
+        } else {
+            newSize.width = maxSampleSize / roiSize.height * roiSize.width;
+            newSize.height = maxSampleSize;
+        }
+        Imgproc.resize(roi, sample, newSize);
+        return sample;
+    }
+
+    /**
+     * Calculates the average distances between the points in each k-means cluster
+     * and the centre of the region of interest.
+     *
+     * @param roiWidth
+     * @param roiHeight
+     * @param labels:   kmeans labels, one per pixel
+     */
+
+    static private double[] getAverageDistToCentre(int roiWidth, int roiHeight, int k, int[] labels) {
+        double[] dists = new double[k];
+        int[] counts = new int[k];
+        double centreX = roiWidth / 2;
+        double centreY = roiHeight / 2;
+
+        for (int y = 0; y < roiHeight; y++) {
+            double dy = centreY - y;
+            for (int x = 0; x < roiWidth; x++) {
+                double dx = centreX - x;
+                int label = labels[x + roiWidth * y];
+                dists[label] += Math.sqrt(dx * dx + dy * dy);
+                counts[label] += 1;
+            }
+        }
+
+        for (int i = 0; i < dists.length; i++) {
+            dists[i] = dists[i] / counts[i];
+        }
+
+        return dists;
+    }
+}
@@ -8,7 +8,6 @@
  */
 package nz.ac.auckland.lablet.vision;
 
-import android.graphics.Bitmap;
 import android.graphics.PointF;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -28,6 +27,7 @@ import nz.ac.auckland.lablet.vision.data.*;
 import org.opencv.core.Rect;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 
 public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.IListener> {
@@ -122,12 +122,7 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
     }
 
     public RoiData getRoiForFrame(int frameId) {
-        for (int i = 0; i < roiDataList.size(); i++) {
-            RoiData roiData = roiDataList.getAt(i);
-            if (roiData.getFrameId() == frameId)
-                return roiData;
-        }
-        return null;
+        return roiDataList.getDataByFrameId(frameId);
     }
 
     /**
@@ -261,6 +256,12 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
 
         private CodecOutputSurface outputSurface;
         private SeekToFrameExtractor extractor;
+        // frames whose readback has been started, in order
+        final private int[] queuedFrames = new int[2];
+        private int queuedFrameCount = 0;
+        // raw RGBA pixels, recycled for all frames
+        private byte[] framePixels;
+        private ByteBuffer frameBuffer;
 
         public BackgroundTask(int startFrame, int endFrame, VideoData videodata, RoiDataList roiDataList) {
             this.startFrame = startFrame;
@@ -286,8 +287,11 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
 
             outputSurface = new CodecOutputSurface(videodata.getVideoWidth(), videodata.getVideoHeight());
             try {
-                extractor = new SeekToFrameExtractor(videodata.getVideoFile(), outputSurface.getSurface());
+                extractor = new SeekToFrameExtractor(
+                        videodata.getAnalysisVideoFile(motionAnalysis.getCalibrationVideoTimeData()),
+                        outputSurface.getSurface());
             } catch (IOException e) {
+                outputSurface.release();
                 return results;
             }
 
@@ -307,10 +311,9 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
 
                     if (currentRoi.getFrameId() == i) {
 
-                        long frameTimeMicroseconds = (long) motionAnalysis.getTimeData().getTimeAt(i) * 1000;
-                        Bitmap roiBmp = getFrame(frameTimeMicroseconds);
+                        byte[] roiFrame = getFrame(i);
 
-                        if (roiBmp != null) {
+                        if (roiFrame != null) {
                             PointF topLeft = videodata.toVideoPoint(currentRoi.getTopLeft());
                             PointF btmRight = videodata.toVideoPoint(currentRoi.getBtmRight());
 
@@ -318,7 +321,8 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
                             int y = (int) topLeft.y;
                             int width = (int) (btmRight.x - topLeft.x);
                             int height = (int) (btmRight.y - topLeft.y);
-                            tracker.setRegionOfInterest(roiBmp, x, y, width, height);
+                            tracker.setRegionOfInterest(roiFrame, videodata.getVideoWidth(),
+                                    videodata.getVideoHeight(), x, y, width, height);
                         } else {
                             Log.d(TAG, "Region of interest BMP is null");
                             break;
@@ -326,11 +330,11 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
                     }
 
                     if (currentRoi.getFrameId() != i) {
-                        long frameTimeMicroseconds = (long) motionAnalysis.getTimeData().getTimeAt(i) * 1000;
-                        Bitmap curFrameBmp = getFrame(frameTimeMicroseconds);
+                        byte[] curFrame = getFrame(i);
 
-                        if (curFrameBmp != null) {
-                            Rect result = tracker.getObjectLocation(curFrameBmp);
+                        if (curFrame != null) {
+                            Rect result = tracker.getObjectLocation(curFrame, videodata.getVideoWidth(),
+                                    videodata.getVideoHeight());
 
                             if (result != null)
                                 results.put(i, result);
@@ -351,27 +355,71 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
             }
 
             extractor.release();
+            outputSurface.release();
+            Log.d(TAG, "Native allocations of the tracking session: " + tracker.getNativeAllocationCount());
+            tracker.release();
             return results;
         }
 
 
         /**
-         * Gets Bitmap of video frame
+         * Gets the raw RGBA pixels of a video frame.
+         * <p>
+         * Before the frame is handed out the readback of the following frame is started, i.e., the next frame is
+         * decoded and transferred while the tracker processes the current one.
+         * </p>
          *
-         * @param time: time in microseconds.
-         * @return The Bitmap of the video frame.
+         * @param frame the frame id
+         * @return The pixels of the video frame. The array is reused for the next frame.
          */
-        private Bitmap getFrame(long time) {
-            extractor.seekToFrame(time);
+        private byte[] getFrame(int frame) {
+            if (queuedFrameCount > 0 && queuedFrames[0] != frame) {
+                outputSurface.discardReadbacks();
+                queuedFrameCount = 0;
+            }
+            if (queuedFrameCount == 0 && !queueFrame(frame))
+                return null;
+            if (frame + 1 <= endFrame && outputSurface.canStartReadback())
+                queueFrame(frame + 1);
 
+            if (framePixels == null) {
+                framePixels = new byte[videodata.getVideoWidth() * videodata.getVideoHeight() * 4];
+                frameBuffer = ByteBuffer.wrap(framePixels);
+            }
+            queuedFrameCount--;
+            queuedFrames[0] = queuedFrames[1];
+            frameBuffer.clear();
             try {
-                outputSurface.awaitNewImage();
+                outputSurface.finishReadback(frameBuffer);
             } catch (RuntimeException e) {
+                Log.e(TAG, "Frame readback failed: ", e);
                 return null;
             }
+            return framePixels;
+        }
+
+
+        /**
+         * Decodes a frame and starts its readback.
+         *
+         * @param frame the frame id
+         * @return false if the frame could not be decoded
+         */
+        private boolean queueFrame(int frame) {
+            long frameTimeMicroseconds = (long)(motionAnalysis.getTimeData().getTimeAt(frame) * 1000);
+            extractor.seekToFrame(frameTimeMicroseconds);
+
+            try {
+                outputSurface.awaitNewImage();
+            } catch (RuntimeException e) {
+                return false;
+            }
 
             outputSurface.drawImage(true);
-            return outputSurface.getBitmap();
+            outputSurface.startReadback();
+            queuedFrames[queuedFrameCount] = frame;
+            queuedFrameCount++;
+            return true;
         }
 
 
@@ -383,18 +431,10 @@ public class ObjectTrackerAnalysis extends WeakListenable<ObjectTrackerAnalysis.
          * @return
          */
         private RoiData getClosestRoi(RoiDataList roiDataList, int currentFrame) {
-            RoiData data = null;
-
-            for (int i = currentFrame; i >= 0; i--) {
-                int roiIndex = roiDataList.getIndexByFrameId(i);
-
-                if (roiIndex != -1) {
-                    data = roiDataList.getAt(roiIndex);
-                    break;
-                }
-            }
-
-            return data;
+            int roiIndex = roiDataList.getPrecedingIndexByFrameId(currentFrame);
+            if (roiIndex < 0)
+                return null;
+            return roiDataList.getAt(roiIndex);
         }
 
 
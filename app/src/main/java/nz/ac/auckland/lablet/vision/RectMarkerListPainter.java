@@ -127,15 +127,14 @@ public class RectMarkerListPainter extends AbstractMarkerPainter<RectData> {
 
         int selectedFrame = frameDataModel.getCurrentFrame();
 
-        for (int i = 0; i < markerData.size(); i++) {
-            RectData data = markerData.getAt(i);
-
-            if (data != null && data.getFrameId() <= selectedFrame) {
-                int frameId = data.getFrameId();
-                nz.ac.auckland.lablet.views.marker.IMarker marker = markerList.get(i);
-                float priority = getPriority(selectedFrame, frameId, MAX_DISPLAYED_MARKERS);
-                marker.onDraw(canvas, priority);
-            }
+        // only the rectangles of the last MAX_DISPLAYED_MARKERS frames are visible
+        RectDataList rectDataList = (RectDataList)markerData;
+        for (int frameId = Math.max(0, selectedFrame - MAX_DISPLAYED_MARKERS); frameId <= selectedFrame; frameId++) {
+            int index = rectDataList.getIndexByFrameId(frameId);
+            if (index < 0 || index >= markerList.size())
+                continue;
+            float priority = getPriority(selectedFrame, frameId, MAX_DISPLAYED_MARKERS);
+            markerList.get(index).onDraw(canvas, priority);
         }
     }
 
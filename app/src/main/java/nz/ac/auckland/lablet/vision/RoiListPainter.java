@@ -7,19 +7,24 @@
  */
 package nz.ac.auckland.lablet.vision;
 
+import android.graphics.Canvas;
+
 import nz.ac.auckland.lablet.experiment.FrameDataModel;
 import nz.ac.auckland.lablet.views.marker.AbstractPointDataModel;
 import nz.ac.auckland.lablet.views.marker.MarkerDataModel;
 import nz.ac.auckland.lablet.views.marker.MarkerGroupTreePainter;
-import nz.ac.auckland.lablet.views.plotview.IPlotPainter;
 import nz.ac.auckland.lablet.vision.data.RoiData;
 import nz.ac.auckland.lablet.vision.data.RoiDataList;
 
+import java.util.HashMap;
+import java.util.Map;
+
 
 public class RoiListPainter extends MarkerGroupTreePainter {
     final private RoiDataList dataList;
     final private MarkerDataModel markerDataModel;
     final private FrameDataModel frameDataModel;
+    final private Map<RoiData, RoiPainter> painters = new HashMap<>();
 
     final private RoiDataList.IListener<RoiDataList, RoiData> listener
             = new AbstractPointDataModel.IListener<RoiDataList, RoiData>() {
@@ -30,13 +35,9 @@ public class RoiListPainter extends MarkerGroupTreePainter {
 
         @Override
         public void onDataRemoved(RoiDataList model, int index, RoiData data) {
-            for (IPlotPainter child : childList) {
-                RoiPainter roiPainter = (RoiPainter)child;
-                if (roiPainter.getRoiData().getFrameId() == data.getFrameId()) {
-                    removeChild(roiPainter);
-                    break;
-                }
-            }
+            RoiPainter roiPainter = painters.remove(data);
+            if (roiPainter != null)
+                removeChild(roiPainter);
         }
 
         @Override
@@ -46,7 +47,12 @@ public class RoiListPainter extends MarkerGroupTreePainter {
 
         @Override
         public void onAllDataChanged(RoiDataList dataList) {
-
+            if (dataList.size() > 0)
+                return;
+            // the list has been cleared
+            for (RoiPainter roiPainter : painters.values())
+                removeChild(roiPainter);
+            painters.clear();
         }
 
         @Override
@@ -68,7 +74,24 @@ public class RoiListPainter extends MarkerGroupTreePainter {
     }
 
     private void addRoiPainter(RoiData data) {
-        addChild(new RoiPainter(new RoiModel(data), markerDataModel, frameDataModel));
+        RoiPainter roiPainter = new RoiPainter(new RoiModel(data), markerDataModel, frameDataModel);
+        painters.put(data, roiPainter);
+        addChild(roiPainter);
+    }
+
+    @Override
+    public void onDraw(Canvas canvas) {
+        // only the ROIs of the last MAX_DISPLAYED_MARKERS frames are visible
+        int currentFrame = frameDataModel.getCurrentFrame();
+        int first = dataList.lowerBound(currentFrame - RoiPainter.MAX_DISPLAYED_MARKERS);
+        for (int i = first; i < dataList.size(); i++) {
+            RoiData data = dataList.getAt(i);
+            if (data.getFrameId() > currentFrame)
+                break;
+            RoiPainter roiPainter = painters.get(data);
+            if (roiPainter != null)
+                roiPainter.onDraw(canvas);
+        }
     }
 }
 
@@ -135,7 +135,7 @@ class RoiMarker extends SimpleMarker<PointF> {
 }
 
 public class RoiPainter extends AbstractMarkerPainter<PointF> {
-    final public int MAX_DISPLAYED_MARKERS = 10;
+    final static public int MAX_DISPLAYED_MARKERS = 10;
 
     // device independent sizes:
     private final float LINE_WIDTH_DP = 2f;
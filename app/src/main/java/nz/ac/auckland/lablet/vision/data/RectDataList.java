@@ -13,9 +13,21 @@ import android.os.Bundle;
 
 import nz.ac.auckland.lablet.views.marker.AbstractPointDataList;
 
+import java.util.Arrays;
+import java.util.List;
 
+
+/**
+ * List of tracking result rectangles.
+ * <p>
+ * The list keeps an index from frame id to list index, i.e., the rectangle of a frame is found without searching. If
+ * there are multiple rectangles for a frame the index points to the last one.
+ * </p>
+ */
 public class RectDataList extends AbstractPointDataList<RectData> {
     private boolean visibility;
+    // list index for each frame id, -1 if there is no rectangle for a frame
+    private int[] frameIndex = new int[0];
 
     public Bundle toBundle() {
         Bundle bundle = new Bundle();
@@ -75,6 +87,70 @@ public class RectDataList extends AbstractPointDataList<RectData> {
         getAt(index).setCentre(point);
     }
 
+    @Override
+    protected int addDataNoNotify(RectData data) {
+        int index = super.addDataNoNotify(data);
+        setFrameIndex(data.getFrameId(), index);
+        return index;
+    }
+
+    @Override
+    protected RectData removeDataNoNotify(int index) {
+        RectData data = super.removeDataNoNotify(index);
+        rebuildFrameIndex();
+        return data;
+    }
+
+    @Override
+    protected void clearNoNotify() {
+        super.clearNoNotify();
+        Arrays.fill(frameIndex, -1);
+    }
+
+    @Override
+    public void setMarkerDataList(List<RectData> dataList) {
+        list.clear();
+        list.addAll(dataList);
+        rebuildFrameIndex();
+        notifyAllDataChanged();
+    }
+
+    /**
+     * Gets the index of the rectangle of a frame.
+     *
+     * @param frameId the frame id
+     * @return the index of the rectangle or -1 if there is no rectangle for the frame
+     */
+    public int getIndexByFrameId(int frameId) {
+        if (frameId < 0 || frameId >= frameIndex.length)
+            return -1;
+        return frameIndex[frameId];
+    }
+
+    public RectData getDataByFrameId(int frameId) {
+        int index = getIndexByFrameId(frameId);
+        if (index < 0)
+            return null;
+        return getAt(index);
+    }
+
+    private void setFrameIndex(int frameId, int index) {
+        if (frameId < 0)
+            return;
+        if (frameId >= frameIndex.length) {
+            int oldLength = frameIndex.length;
+            frameIndex = Arrays.copyOf(frameIndex, Math.max(frameId + 1, oldLength * 2));
+            Arrays.fill(frameIndex, oldLength, frameIndex.length, -1);
+        }
+        frameIndex[frameId] = index;
+    }
+
+    private void rebuildFrameIndex() {
+        Arrays.fill(frameIndex, -1);
+        for (int i = 0; i < list.size(); i++)
+            setFrameIndex(list.get(i).getFrameId(), i);
+    }
+
     public void setVisibility(boolean visibility) {
         this.visibility = visibility;
         notifyAllDataChanged();
@@ -17,8 +17,15 @@ import nz.ac.auckland.lablet.views.marker.MarkerDataModel;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 
+/**
+ * List of regions of interest, sorted by frame id.
+ * <p>
+ * Lookups by frame id use a binary search.
+ * </p>
+ */
 public class RoiDataList extends AbstractPointDataList<RoiData> {
     private MarkerDataModel markerDataModel;
     private MarkerDataModel.IListener listener = new MarkerDataModel.IListener() {
@@ -142,17 +149,31 @@ public class RoiDataList extends AbstractPointDataList<RoiData> {
 
     @Override
     public int addData(RoiData data) {
-        super.addDataNoNotify(data);
+        int index = addDataNoNotify(data);
+        notifyDataAdded(index);
+        notifyAllDataChanged();
+        return index;
+    }
+
+    @Override
+    protected int addDataNoNotify(RoiData data) {
+        // insert behind ROIs with the same frame id
+        int index = lowerBound(data.getFrameId() + 1);
+        list.add(index, data);
+        return index;
+    }
+
+    @Override
+    public void setMarkerDataList(List<RoiData> dataList) {
+        list.clear();
+        list.addAll(dataList);
         Collections.sort(list, new Comparator<RoiData>() {
             @Override
             public int compare(RoiData roiData, RoiData t1) {
-                return new Integer(roiData.getFrameId()).compareTo(t1.getFrameId());
+                return Integer.compare(roiData.getFrameId(), t1.getFrameId());
             }
         });
-        int index = indexOf(data);
-        notifyDataAdded(index);
         notifyAllDataChanged();
-        return index;
     }
 
     @Override
@@ -166,14 +187,44 @@ public class RoiDataList extends AbstractPointDataList<RoiData> {
     }
 
     public int getIndexByFrameId(int frameId) {
-        for (int i = 0; i < size(); i++) {
-            RoiData data = getAt(i);
-            if (data.getFrameId() == frameId)
-                return i;
-        }
+        int index = lowerBound(frameId);
+        if (index < size() && getAt(index).getFrameId() == frameId)
+            return index;
         return -1;
     }
 
+    /**
+     * Gets the ROI of a frame or, if there is none, the closest ROI of a previous frame.
+     *
+     * @param frameId the frame id
+     * @return the index of the ROI or -1 if there is no ROI at or before the frame
+     */
+    public int getPrecedingIndexByFrameId(int frameId) {
+        int index = lowerBound(frameId);
+        if (index < size() && getAt(index).getFrameId() == frameId)
+            return index;
+        return index - 1;
+    }
+
+    /**
+     * Gets the index of the first ROI that has a frame id equal or larger than frameId.
+     *
+     * @param frameId the frame id
+     * @return the index of the first ROI at or after the frame, size() if there is none
+     */
+    public int lowerBound(int frameId) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getAt(middle).getFrameId() < frameId)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
     public RoiData getDataByFrameId(int frameId) {
         int index = getIndexByFrameId(frameId);
         if (index < 0)
@@ -0,0 +1,114 @@
+package nz.ac.auckland.lablet.accelerometer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import nz.ac.auckland.lablet.misc.FloatArrayList;
+import nz.ac.auckland.lablet.misc.LongArrayList;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases
+ */
+public class AccelerometerDataCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        AccelerometerDataCache.setCacheDir(null);
+    }
+
+    private File writeCsv(File dir) throws IOException {
+        File csvFile = new File(dir, "data.csv");
+        FileOutputStream outputStream = new FileOutputStream(csvFile);
+        outputStream.write("time\n1, 0.1, 0.2, 0.3\n2, 1.1, 1.2, 1.3\n".getBytes("UTF-8"));
+        outputStream.close();
+        return csvFile;
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File experimentDir = folder.newFolder("experiment");
+        File cacheDir = new File(folder.getRoot(), "cache");
+        AccelerometerDataCache.setCacheDir(cacheDir);
+        File csvFile = writeCsv(experimentDir);
+
+        LongArrayList time = new LongArrayList();
+        FloatArrayList x = new FloatArrayList();
+        FloatArrayList y = new FloatArrayList();
+        FloatArrayList z = new FloatArrayList();
+        for (int i = 1; i <= 2; i++) {
+            time.addLong(i);
+            x.addFloat(i - 1 + 0.1f);
+            y.addFloat(i - 1 + 0.2f);
+            z.addFloat(i - 1 + 0.3f);
+        }
+        AccelerometerDataCache.save(csvFile, time, x, y, z);
+        assertEquals("test failed: cache not in the experiment", 1, experimentDir.list().length);
+        assertEquals("test failed: cache file", 1, cacheDir.list().length);
+
+        LongArrayList loadedTime = new LongArrayList();
+        FloatArrayList loadedX = new FloatArrayList();
+        FloatArrayList loadedY = new FloatArrayList();
+        FloatArrayList loadedZ = new FloatArrayList();
+        assertTrue("test failed: load", AccelerometerDataCache.load(csvFile, loadedTime, loadedX, loadedY, loadedZ));
+        assertEquals("test failed: time", time, loadedTime);
+        assertEquals("test failed: z", z, loadedZ);
+
+        // the cache is invalid as soon as the csv file changes
+        assertTrue("test failed: touch", csvFile.setLastModified(csvFile.lastModified() + 2000));
+        assertFalse("test failed: changed csv", AccelerometerDataCache.load(csvFile, loadedTime, loadedX, loadedY,
+                loadedZ));
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        File experimentDir = folder.newFolder("experiment");
+        File csvFile = writeCsv(experimentDir);
+        LongArrayList time = new LongArrayList();
+        FloatArrayList x = new FloatArrayList();
+        AccelerometerDataCache.save(csvFile, time, x, x, x);
+        assertEquals("test failed: no cache file", 1, experimentDir.list().length);
+        assertFalse("test failed: load", AccelerometerDataCache.load(csvFile, time, x, x, x));
+    }
+
+    @Test
+    public void testFailedCsvSave() throws Exception {
+        File experimentDir = folder.newFolder("experiment");
+        File cacheDir = new File(folder.getRoot(), "cache");
+        AccelerometerDataCache.setCacheDir(cacheDir);
+        File csvFile = writeCsv(experimentDir);
+
+        FutureTask<Void> csvSave = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                throw new IOException("test");
+            }
+        });
+        csvSave.run();
+        LongArrayList time = new LongArrayList();
+        FloatArrayList x = new FloatArrayList();
+        Future<Void> cacheSave = AccelerometerDataCache.saveInBackground(csvFile, csvSave, time, x, x, x);
+        try {
+            cacheSave.get(5, TimeUnit.SECONDS);
+            fail("test failed: exception expected");
+        } catch (ExecutionException e) {
+            assertTrue("test failed: cause", e.getCause() instanceof IOException);
+        }
+        assertEquals("test failed: no cache file", 0, cacheDir.list().length);
+    }
+}
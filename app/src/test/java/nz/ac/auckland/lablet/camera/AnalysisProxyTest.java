@@ -0,0 +1,53 @@
+package nz.ac.auckland.lablet.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class AnalysisProxyTest {
+
+    @Test
+    public void testProxyFrameRate() {
+        assertEquals("test failed: 30 fps video", 10, AnalysisProxy.chooseProxyFrameRate(30));
+        assertEquals("test failed: 120 fps video", 10, AnalysisProxy.chooseProxyFrameRate(120));
+        assertEquals("test failed: 5 fps video", 0, AnalysisProxy.chooseProxyFrameRate(5));
+
+        File video = new File("experiment", "video.mp4");
+        File proxy = AnalysisProxy.getProxyFile(video, AnalysisProxy.chooseProxyFrameRate(30));
+        assertEquals("test failed: name", "video_analysis_10fps.mp4", proxy.getName());
+        assertEquals("test failed: parse frame rate", 10, AnalysisProxy.getProxyFrameRate(proxy));
+    }
+
+    @Test
+    public void testUsable() {
+        File proxy = AnalysisProxy.getProxyFile(new File("video.mp4"), 10);
+        CalibrationVideoTimeData timeData = new CalibrationVideoTimeData(10000);
+        timeData.setAnalysisFrameRate(10);
+        timeData.setAnalysisVideoStart(200);
+        assertTrue("test failed: default analysis frame rate", AnalysisProxy.isUsable(proxy, timeData));
+        timeData.setAnalysisFrameRate(5);
+        assertTrue("test failed: lower frame rate", AnalysisProxy.isUsable(proxy, timeData));
+        timeData.setAnalysisVideoStart(250);
+        assertFalse("test failed: start not on the grid", AnalysisProxy.isUsable(proxy, timeData));
+        timeData.setAnalysisVideoStart(200);
+        timeData.setAnalysisFrameRate(30);
+        assertFalse("test failed: higher frame rate", AnalysisProxy.isUsable(proxy, timeData));
+    }
+
+    @Test
+    public void testIsProxyFile() {
+        File video = new File("experiment", "video.mp4");
+        File proxy = AnalysisProxy.getProxyFile(video, 10);
+        assertTrue("test failed: proxy", AnalysisProxy.isProxyFile(proxy));
+        assertTrue("test failed: all frames proxy", AnalysisProxy.isProxyFile(AnalysisProxy.getProxyFile(video, 0)));
+        assertTrue("test failed: temporary proxy", AnalysisProxy.isProxyFile(new File(proxy.getPath() + ".part")));
+        assertFalse("test failed: video", AnalysisProxy.isProxyFile(video));
+        assertFalse("test failed: other file", AnalysisProxy.isProxyFile(new File("experiment", "data.csv")));
+    }
+}
@@ -0,0 +1,62 @@
+package nz.ac.auckland.lablet.camera;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class CalibrationVideoTimeDataTest {
+
+    private float calculateTime(float start, float frameRate, int frame) {
+        return start + (float)1000 / frameRate * frame;
+    }
+
+    @Test
+    public void testFrameTimes() {
+        CalibrationVideoTimeData timeData = new CalibrationVideoTimeData(10000);
+        timeData.setAnalysisFrameRate(30);
+        timeData.setAnalysisVideoStart(500);
+        timeData.setAnalysisVideoEnd(2500);
+
+        assertEquals("test failed: number of frames", 61, timeData.getSize());
+        for (int i = -2; i < timeData.getSize() + 2; i++)
+            assertEquals("test failed: time at " + i, calculateTime(500, 30, i), timeData.getTimeAt(i), 0f);
+    }
+
+    @Test
+    public void testSettingsChange() {
+        CalibrationVideoTimeData timeData = new CalibrationVideoTimeData(10000);
+        timeData.setAnalysisFrameRate(10);
+        timeData.getTimeAt(5);
+
+        timeData.setAnalysisVideoStart(1000);
+        assertEquals("test failed: start change", calculateTime(1000, 10, 5), timeData.getTimeAt(5), 0f);
+        timeData.setAnalysisFrameRate(5);
+        assertEquals("test failed: frame rate change", calculateTime(1000, 5, 5), timeData.getTimeAt(5), 0f);
+        timeData.setAnalysisVideoEnd(2000);
+        assertEquals("test failed: number of frames", 6, timeData.getSize());
+        timeData.setAnalysisVideoEnd(0);
+        assertEquals("test failed: number of frames", 46, timeData.getSize());
+        assertEquals("test failed: end change", calculateTime(1000, 5, 40), timeData.getTimeAt(40), 0f);
+    }
+
+    @Test
+    public void testBulkTimes() {
+        CalibrationVideoTimeData timeData = new CalibrationVideoTimeData(1000);
+        timeData.setAnalysisFrameRate(10);
+
+        float[] times = new float[16];
+        // range overlapping both ends of the table
+        timeData.getTimes(-2, 15, times, 1);
+        assertEquals("test failed: untouched", 0f, times[0], 0f);
+        for (int i = 0; i < 15; i++)
+            assertEquals("test failed: bulk time " + i, timeData.getTimeAt(i - 2), times[i + 1], 0f);
+
+        // range outside of the table
+        timeData.getTimes(20, 3, times, 0);
+        for (int i = 0; i < 3; i++)
+            assertEquals("test failed: bulk time " + i, calculateTime(0, 10, 20 + i), times[i], 0f);
+    }
+}
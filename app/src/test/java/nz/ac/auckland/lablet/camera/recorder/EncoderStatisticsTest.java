@@ -0,0 +1,56 @@
+package nz.ac.auckland.lablet.camera.recorder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class EncoderStatisticsTest {
+
+    @Test
+    public void testLatency() {
+        EncoderStatistics statistics = new EncoderStatistics();
+        // submitted at 0, 10, 20 and 30 ms, frame 2 is skipped by the encoder
+        for (int i = 0; i < 4; i++)
+            statistics.onFrameSubmitted(i * 33000, i * 10000000L);
+        statistics.onFrameEncoded(0, 5000000L);
+        statistics.onFrameEncoded(33000, 25000000L);
+        statistics.onFrameEncoded(99000, 36000000L);
+
+        assertEquals("test failed: submitted frames", 4, statistics.getSubmittedFrames());
+        assertEquals("test failed: encoded frames", 3, statistics.getEncodedFrames());
+        assertEquals("test failed: average latency", (5 + 15 + 6) / 3f, statistics.getAverageLatency(), 0.0001f);
+        assertEquals("test failed: max latency", 15f, statistics.getMaxLatency(), 0.0001f);
+    }
+
+    @Test
+    public void testUnmatchedSample() {
+        EncoderStatistics statistics = new EncoderStatistics();
+        statistics.onFrameSubmitted(1000, 0);
+        // a sample without submitted frame, e.g., because too many frames were pending, has no latency
+        statistics.onFrameEncoded(500, 1000000L);
+        statistics.onFrameEncoded(1000, 2000000L);
+
+        assertEquals("test failed: encoded frames", 2, statistics.getEncodedFrames());
+        assertEquals("test failed: average latency", 2f, statistics.getAverageLatency(), 0.0001f);
+    }
+
+    @Test
+    public void testMuxer() {
+        EncoderStatistics statistics = new EncoderStatistics();
+        statistics.onSampleWritten(100, 1000000L);
+        statistics.onSampleWritten(300, 3000000L);
+        statistics.onFramesDropped(2);
+
+        assertEquals("test failed: muxer writes", 2, statistics.getMuxerWrites());
+        assertEquals("test failed: muxer bytes", 400, statistics.getMuxerBytes());
+        assertEquals("test failed: average muxer time", 2f, statistics.getAverageMuxerTime(), 0.0001f);
+        assertEquals("test failed: max muxer time", 3f, statistics.getMaxMuxerTime(), 0.0001f);
+        assertEquals("test failed: dropped frames", 2, statistics.getDroppedFrames());
+
+        statistics.reset();
+        assertEquals("test failed: reset", 0, statistics.getMuxerWrites());
+    }
+}
@@ -0,0 +1,40 @@
+package nz.ac.auckland.lablet.camera.recorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class FrameSelectorTest {
+
+    private List<Integer> select(FrameSelector selector, float videoFrameRate, int frameCount) {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < frameCount; i++) {
+            if (selector.select((long)(i * 1000000 / videoFrameRate)))
+                selected.add(i);
+        }
+        return selected;
+    }
+
+    @Test
+    public void testDropFrames() {
+        // 30 fps video, 10 fps proxy
+        assertEquals("test failed: 10 of 30 fps", Arrays.asList(0, 3, 6, 9, 12),
+                select(new FrameSelector(10), 30, 15));
+        // a frame rate that is not a divisor of the video frame rate, the next frame after each time is kept
+        assertEquals("test failed: 12 of 30 fps", Arrays.asList(0, 3, 5, 8, 10, 13),
+                select(new FrameSelector(12), 30, 15));
+    }
+
+    @Test
+    public void testAllFrames() {
+        assertEquals("test failed: all frames", Arrays.asList(0, 1, 2, 3, 4), select(new FrameSelector(0), 30, 5));
+        assertEquals("test failed: higher frame rate", Arrays.asList(0, 1, 2, 3, 4),
+                select(new FrameSelector(60), 30, 5));
+    }
+}
@@ -0,0 +1,140 @@
+package nz.ac.auckland.lablet.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases
+ */
+public class ExperimentCatalogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File createExperiment(File baseDir, String id, int runCount, int fileSize) throws IOException {
+        File experimentDir = new File(baseDir, id);
+        for (int i = 0; i < runCount; i++) {
+            File runDir = new File(experimentDir, "data/run" + i);
+            assertTrue("test failed: mkdirs", runDir.mkdirs());
+            FileOutputStream output = new FileOutputStream(new File(runDir, "values"));
+            output.write(new byte[fileSize]);
+            output.close();
+        }
+        if (runCount == 0)
+            assertTrue("test failed: mkdir", experimentDir.mkdir());
+        return experimentDir;
+    }
+
+    private static ExperimentCatalog.Entry getEntry(ExperimentCatalog catalog, String id) {
+        for (ExperimentCatalog.Entry entry : catalog.getEntries()) {
+            if (entry.getId().equals(id))
+                return entry;
+        }
+        return null;
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                deleteRecursive(child);
+        }
+        assertTrue("test failed: delete", file.delete());
+    }
+
+    @Test
+    public void testLoadWithoutCatalogFile() throws IOException {
+        File baseDir = folder.newFolder("experiments");
+        assertTrue("test failed: mkdir", new File(baseDir, "Experiment 1").mkdir());
+        assertTrue("test failed: mkdir", new File(baseDir, "Experiment 2").mkdir());
+
+        ExperimentCatalog catalog = new ExperimentCatalog(baseDir, new File(folder.getRoot(), "catalog"));
+        catalog.load();
+        List<String> ids = new ArrayList<>();
+        for (ExperimentCatalog.Entry entry : catalog.getEntries()) {
+            ids.add(entry.getId());
+            assertFalse("test failed: not scanned yet", entry.isScanned());
+        }
+        Collections.sort(ids);
+        assertEquals("test failed: listed experiments", Arrays.asList("Experiment 1", "Experiment 2"), ids);
+    }
+
+    @Test
+    public void testUpdateSaveLoad() throws IOException {
+        File baseDir = folder.newFolder("experiments");
+        File catalogFile = new File(folder.getRoot(), "catalog");
+        createExperiment(baseDir, "Experiment 1", 2, 10);
+        createExperiment(baseDir, "Experiment 2", 0, 0);
+
+        ExperimentCatalog catalog = new ExperimentCatalog(baseDir, catalogFile);
+        assertTrue("test failed: first update", catalog.update());
+        assertTrue("test failed: saved", catalogFile.exists());
+        assertFalse("test failed: nothing changed", catalog.update());
+
+        // a new catalog reads the scanned entries from the catalog file
+        ExperimentCatalog loaded = new ExperimentCatalog(baseDir, catalogFile);
+        loaded.load();
+        assertEquals("test failed: entry count", 2, loaded.getEntries().size());
+        for (String id : Arrays.asList("Experiment 1", "Experiment 2")) {
+            ExperimentCatalog.Entry entry = getEntry(catalog, id);
+            ExperimentCatalog.Entry loadedEntry = getEntry(loaded, id);
+            assertNotNull("test failed: loaded " + id, loadedEntry);
+            assertTrue("test failed: scanned", loadedEntry.isScanned());
+            assertEquals("test failed: last modified", entry.getLastModified(), loadedEntry.getLastModified());
+            assertEquals("test failed: size", entry.getSize(), loadedEntry.getSize());
+            assertEquals("test failed: run count", entry.getRunCount(), loadedEntry.getRunCount());
+            assertEquals("test failed: sensor types", entry.getSensorTypes(), loadedEntry.getSensorTypes());
+            assertEquals("test failed: description", entry.getDescription(), loadedEntry.getDescription());
+        }
+        ExperimentCatalog.Entry entry = getEntry(loaded, "Experiment 1");
+        assertEquals("test failed: scanned run count", 2, entry.getRunCount());
+        assertEquals("test failed: scanned size", 20, entry.getSize());
+        assertEquals("test failed: empty experiment", 0, getEntry(loaded, "Experiment 2").getRunCount());
+        assertFalse("test failed: loaded catalog up to date", loaded.update());
+
+        // changed and invalidated experiments are rescanned
+        File dataDir = new File(baseDir, "Experiment 1/data");
+        assertTrue("test failed: mkdir", new File(dataDir, "run2").mkdir());
+        assertTrue("test failed: set modified", dataDir.setLastModified(dataDir.lastModified() - 10000));
+        assertTrue("test failed: changed experiment", loaded.update());
+        assertEquals("test failed: rescanned run count", 3, getEntry(loaded, "Experiment 1").getRunCount());
+        loaded.invalidate("Experiment 2");
+        assertTrue("test failed: invalidated experiment", loaded.update());
+    }
+
+    @Test
+    public void testDeletedExperiment() throws IOException {
+        File baseDir = folder.newFolder("experiments");
+        File catalogFile = new File(folder.getRoot(), "catalog");
+        createExperiment(baseDir, "Experiment 1", 1, 10);
+        File deletedDir = createExperiment(baseDir, "Experiment 2", 1, 10);
+        assertTrue("test failed: first update", new ExperimentCatalog(baseDir, catalogFile).update());
+
+        deleteRecursive(deletedDir);
+        // the catalog file still contains the deleted experiment till the next update
+        ExperimentCatalog catalog = new ExperimentCatalog(baseDir, catalogFile);
+        catalog.load();
+        assertNotNull("test failed: stale entry", getEntry(catalog, "Experiment 2"));
+        assertTrue("test failed: update", catalog.update());
+        assertNull("test failed: stale entry removed", getEntry(catalog, "Experiment 2"));
+        assertNotNull("test failed: remaining entry", getEntry(catalog, "Experiment 1"));
+
+        ExperimentCatalog reloaded = new ExperimentCatalog(baseDir, catalogFile);
+        reloaded.load();
+        assertEquals("test failed: saved without stale entry", 1, reloaded.getEntries().size());
+        assertNotNull("test failed: saved entry", getEntry(reloaded, "Experiment 1"));
+    }
+}
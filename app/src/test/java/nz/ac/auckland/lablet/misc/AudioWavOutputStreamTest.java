@@ -0,0 +1,74 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases
+ */
+public class AudioWavOutputStreamTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private float[] readAmplitudes(AudioWavInputStream inputStream) throws IOException {
+        byte[] data = new byte[inputStream.getSize()];
+        new DataInputStream(inputStream).readFully(data);
+        return AudioWavInputStream.toAmplitudeData(data, data.length);
+    }
+
+    @Test
+    public void testWriteSamples() throws IOException {
+        File file = new File(folder.getRoot(), "audio.wav");
+        // more samples than fit into the write buffer
+        short[] samples = new short[200000];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short)(i % 65536 - 32768);
+
+        AudioWavOutputStream outputStream = new AudioWavOutputStream(file, 1, 44100);
+        outputStream.writeSamples(samples, 0, samples.length);
+        outputStream.writeSamples(new float[]{1.4f, -2.6f, 40000f}, 0, 3);
+        outputStream.write(new byte[]{5, 0});
+        outputStream.close();
+
+        assertEquals("test failed: file size", 44 + 2 * (samples.length + 4), file.length());
+        AudioWavInputStream inputStream = new AudioWavInputStream(file);
+        assertEquals("test failed: sample rate", 44100, inputStream.getSampleRate());
+        assertEquals("test failed: channels", 1, inputStream.getChannelCount());
+        assertEquals("test failed: byte rate", 88200, inputStream.getByteRate());
+        float[] amplitudes = readAmplitudes(inputStream);
+        inputStream.close();
+
+        assertEquals("test failed: sample count", samples.length + 4, amplitudes.length);
+        for (int i = 0; i < samples.length; i++)
+            assertEquals("test failed: sample " + i, samples[i], amplitudes[i], 0f);
+        assertEquals("test failed: rounded", 1f, amplitudes[samples.length], 0f);
+        assertEquals("test failed: negative rounded", -3f, amplitudes[samples.length + 1], 0f);
+        assertEquals("test failed: clipped", Short.MAX_VALUE, amplitudes[samples.length + 2], 0f);
+        assertEquals("test failed: bytes", 5f, amplitudes[samples.length + 3], 0f);
+    }
+
+    private int readSize(File file) throws IOException {
+        AudioWavInputStream inputStream = new AudioWavInputStream(file);
+        inputStream.close();
+        return inputStream.getSize();
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        File file = new File(folder.getRoot(), "audio.wav");
+        AudioWavOutputStream outputStream = new AudioWavOutputStream(file, 1, 8000);
+        assertEquals("test failed: empty file", 0, readSize(file));
+
+        outputStream.writeSamples(new short[]{1, 2, 3}, 0, 3);
+        outputStream.flush();
+        // the file is readable while recording
+        assertEquals("test failed: flushed size", 6, readSize(file));
+        outputStream.close();
+    }
+}
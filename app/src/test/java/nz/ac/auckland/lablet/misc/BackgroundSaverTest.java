@@ -0,0 +1,210 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.os.Bundle;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases
+ */
+public class BackgroundSaverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger writeCount = new AtomicInteger(0);
+
+    private BackgroundSaver.IContent createContent(final String text) {
+        return new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                writeCount.incrementAndGet();
+                outputStream.write(text.getBytes("UTF-8"));
+            }
+        };
+    }
+
+    private String readFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        byte[] content = new byte[(int)randomAccessFile.length()];
+        randomAccessFile.readFully(content);
+        randomAccessFile.close();
+        return new String(content, "UTF-8");
+    }
+
+    @Test
+    public void testCoalescing() throws IOException {
+        BackgroundSaver saver = new BackgroundSaver();
+        File file = new File(folder.getRoot(), "analysis.xml");
+        for (int i = 0; i < 10; i++)
+            saver.save(file, createContent("content " + i), 10000);
+        assertFalse("test failed: delayed", file.exists());
+
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+        assertEquals("test failed: content", "content 9", readFile(file));
+        // serialized once, the content is hashed while it is written
+        assertEquals("test failed: write count", 1, writeCount.get());
+        assertFalse("test failed: temp file", new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testSkipIdentical() throws IOException {
+        BackgroundSaver saver = new BackgroundSaver();
+        File file = new File(folder.getRoot(), "analysis.xml");
+        saver.save(file, createContent("content"), 0);
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+        long lastModified = file.lastModified();
+
+        // the content is serialized and hashed once but the file is not replaced
+        saver.save(file, createContent("content"), 0);
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+        assertEquals("test failed: write count", 1, saver.getWriteCount());
+        assertEquals("test failed: skip count", 1, saver.getSkipCount());
+        assertEquals("test failed: serialized", 2, writeCount.get());
+        assertEquals("test failed: untouched", lastModified, file.lastModified());
+        assertFalse("test failed: temp file", new File(file.getPath() + ".tmp").exists());
+
+        saver.save(file, createContent("changed"), 0);
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+        assertEquals("test failed: changed content", "changed", readFile(file));
+
+        // a file that has been changed by someone else is written again
+        assertTrue("test failed: modified", file.setLastModified(1000));
+        saver.save(file, createContent("changed"), 0);
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+        assertEquals("test failed: rewritten", 3, saver.getWriteCount());
+    }
+
+    @Test
+    public void testWaitFor() throws Exception {
+        BackgroundSaver saver = new BackgroundSaver();
+        File file = new File(folder.getRoot(), "experiment_data.xml");
+        Future<Void> first = saver.save(file, createContent("first"), 10000);
+        Future<Void> second = saver.save(file, createContent("second"), 10000);
+        assertSame("test failed: coalesced future", first, second);
+        assertEquals("test failed: queue depth", 1, saver.getQueueDepth());
+
+        // waiting starts the pending save
+        assertTrue("test failed: wait", saver.waitFor(file, 5000));
+        assertTrue("test failed: done", first.isDone());
+        first.get();
+        assertEquals("test failed: content", "second", readFile(file));
+        assertEquals("test failed: empty queue", 0, saver.getQueueDepth());
+        assertEquals("test failed: write count", 1, saver.getWriteCount());
+        assertEquals("test failed: max queue depth", 1, saver.getMaxQueueDepth());
+        assertTrue("test failed: nothing to wait for", saver.waitFor(new File(folder.getRoot(), "other"), 0));
+    }
+
+    @Test
+    public void testPendingBundle() throws Exception {
+        BackgroundSaver saver = new BackgroundSaver();
+        File file = new File(folder.getRoot(), "experiment_analysis.xml");
+        assertNull("test failed: nothing pending", saver.getPendingBundle(file));
+
+        Bundle bundle = new Bundle();
+        saver.save(file, bundle, 10000);
+        assertSame("test failed: pending bundle", bundle, saver.getPendingBundle(file));
+
+        // a later save replaces the pending bundle
+        saver.save(file, createContent("text"), 10000);
+        assertNull("test failed: replaced bundle", saver.getPendingBundle(file));
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+        assertEquals("test failed: content", "text", readFile(file));
+        assertNull("test failed: written", saver.getPendingBundle(file));
+    }
+
+    @Test
+    public void testFailedSave() throws Exception {
+        BackgroundSaver saver = new BackgroundSaver();
+        File file = new File(folder.getRoot(), "analysis.xml");
+        Future<Void> future = saver.save(file, new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                throw new IOException("test");
+            }
+        }, 0);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("test failed: exception expected");
+        } catch (ExecutionException e) {
+            assertTrue("test failed: cause", e.getCause() instanceof IOException);
+        }
+        assertFalse("test failed: no file", file.exists());
+    }
+
+    @Test
+    public void testFailedSaveKeepsFile() throws Exception {
+        BackgroundSaver saver = new BackgroundSaver();
+        File file = new File(folder.getRoot(), "data.csv");
+        saver.save(file, createContent("1, 2"), 0);
+        assertTrue("test failed: flush", saver.flushAndWait(5000));
+
+        // a write that fails half way must not replace the old file
+        saver.save(file, new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                outputStream.write("3,".getBytes("UTF-8"));
+                throw new IOException("test");
+            }
+        }, 0);
+        try {
+            saver.waitForDir(folder.getRoot());
+            fail("test failed: exception expected");
+        } catch (IOException e) {
+            assertTrue("test failed: cause", e.getCause() instanceof IOException);
+        }
+        assertEquals("test failed: old content", "1, 2", readFile(file));
+        assertFalse("test failed: temp file", new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testWaitForDir() throws Exception {
+        BackgroundSaver saver = new BackgroundSaver();
+        File runDir = folder.newFolder("run0");
+        File file = new File(runDir, "experiment_data.xml");
+        saver.save(file, createContent("data"), BackgroundSaver.MAX_DELAY);
+        // a failed save of a file in another directory is not reported
+        saver.save(new File(folder.newFolder("other"), "data.csv"), new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                throw new IOException("test");
+            }
+        }, 0);
+        saver.waitForDir(runDir, 5000);
+        assertEquals("test failed: content", "data", readFile(file));
+
+        File failedFile = new File(runDir, "data.csv");
+        saver.save(failedFile, new BackgroundSaver.IContent() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                throw new IOException("test");
+            }
+        }, BackgroundSaver.MAX_DELAY);
+        try {
+            saver.waitForDir(runDir, 5000);
+            fail("test failed: exception expected");
+        } catch (IOException e) {
+            assertTrue("test failed: cause", e.getCause() instanceof IOException);
+        }
+
+        // a successful save clears the failure
+        saver.save(failedFile, createContent("1, 2"), 0);
+        saver.waitForDir(runDir, 5000);
+        assertEquals("test failed: saved again", "1, 2", readFile(failedFile));
+    }
+}
@@ -0,0 +1,22 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Shared switch of the *Benchmark test classes.
+ * <p>
+ * Benchmarks are skipped unless the system property lablet.benchmark is true. app/build.gradle forwards all
+ * lablet.benchmark* properties to the test JVM, e.g., ./gradlew test -Dlablet.benchmark=true
+ * </p>
+ */
+public class Benchmarks {
+    static final public String ENABLED_PROPERTY = "lablet.benchmark";
+
+    /**
+     * Skips the calling benchmark if benchmarks are not enabled.
+     */
+    static public void assumeEnabled() {
+        assumeTrue("benchmarks are disabled, set -D" + ENABLED_PROPERTY + "=true",
+                Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+}
@@ -0,0 +1,64 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class NumericCSVReaderTest {
+
+    private List<double[]> read(String content, int skipLines) throws Exception {
+        final List<double[]> rows = new ArrayList<>();
+        NumericCSVReader reader = new NumericCSVReader(',');
+        reader.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII)), skipLines,
+                new NumericCSVReader.IRowProcessor() {
+                    @Override
+                    public void onRow(double[] values, int count) {
+                        double[] row = new double[count];
+                        System.arraycopy(values, 0, row, 0, count);
+                        rows.add(row);
+                    }
+                });
+        return rows;
+    }
+
+    @Test
+    public void testRows() throws Exception {
+        List<double[]> rows = read("time [ms],x\n12,-0.5\r\n\n13,1e3\n14,abc\n15,NaN\n-16,+2.25", 1);
+        assertEquals("test failed: row count", 4, rows.size());
+        assertEquals(12, rows.get(0)[0], 0);
+        assertEquals(-0.5, rows.get(0)[1], 0);
+        assertEquals(1000, rows.get(1)[1], 0);
+        assertEquals(Double.NaN, rows.get(2)[1], 0);
+        assertEquals(-16, rows.get(3)[0], 0);
+        assertEquals(2.25, rows.get(3)[1], 0);
+    }
+
+    @Test
+    public void testMatchesParseFloat() throws Exception {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            float value = (random.nextFloat() - 0.5f) * (float)Math.pow(10, random.nextInt(12) - 4);
+            String field = random.nextBoolean() ? String.format(Locale.US, "%f", value) : Float.toString(value);
+            fields.add(field);
+            builder.append(i).append(',').append(field).append('\n');
+        }
+
+        List<double[]> rows = read(builder.toString(), 0);
+        assertEquals(fields.size(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i, (long)rows.get(i)[0]);
+            assertEquals(fields.get(i), Float.parseFloat(fields.get(i)), (float)rows.get(i)[1], 0);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compares the throughput of the file copy with the former buffered stream copy.
+ * <p>
+ * The file size in MB can be set with lablet.benchmark.copySizeMB.
+ * </p>
+ */
+public class StorageLibBenchmark {
+    private static final int DEFAULT_SIZE_MB = 2048;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The copy as it was implemented before, i.e., through a user space buffer.
+     */
+    private static void copyFileLegacy(File source, File destination) throws IOException {
+        InputStream inStream = new FileInputStream(source);
+        OutputStream outStream = new FileOutputStream(destination);
+        StreamHelper.copy(inStream, outStream, null, 32 * 1024);
+        inStream.close();
+        outStream.close();
+    }
+
+    private static void createFile(File file, long sizeMB) throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        new Random(1).nextBytes(block);
+        OutputStream outStream = new FileOutputStream(file);
+        for (long i = 0; i < sizeMB; i++)
+            outStream.write(block);
+        outStream.close();
+    }
+
+    private static void report(String name, long sizeMB, long nanos) {
+        System.out.printf("%s: %.2f s, %.1f MB/s%n", name, nanos / 1e9, sizeMB / (nanos / 1e9));
+    }
+
+    @Test
+    public void benchmarkCopyFile() throws IOException {
+        Benchmarks.assumeEnabled();
+        long sizeMB = Long.getLong("lablet.benchmark.copySizeMB", DEFAULT_SIZE_MB);
+
+        File source = folder.newFile("source.bin");
+        createFile(source, sizeMB);
+        File destination = new File(folder.getRoot(), "destination.bin");
+
+        long start = System.nanoTime();
+        copyFileLegacy(source, destination);
+        report("legacy copy", sizeMB, System.nanoTime() - start);
+        assertEquals("test failed: legacy size", source.length(), destination.length());
+        destination.delete();
+
+        start = System.nanoTime();
+        StorageLib.copyFile(source, destination);
+        report("channel copy", sizeMB, System.nanoTime() - start);
+        assertEquals("test failed: size", source.length(), destination.length());
+        destination.delete();
+
+        start = System.nanoTime();
+        StorageLib.copyFile(source, destination, null, 0, true);
+        report("channel copy + sha1", sizeMB, System.nanoTime() - start);
+        destination.delete();
+
+        start = System.nanoTime();
+        StorageLib.moveFile(source, destination);
+        report("move (rename)", sizeMB, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,70 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases
+ */
+public class StorageLibTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] writeFile(File file, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        outputStream.write(content);
+        outputStream.close();
+        return content;
+    }
+
+    private byte[] readFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        byte[] content = new byte[(int)randomAccessFile.length()];
+        randomAccessFile.readFully(content);
+        randomAccessFile.close();
+        return content;
+    }
+
+    @Test
+    public void testCopyFile() throws IOException {
+        File source = folder.newFile("source.bin");
+        byte[] content = writeFile(source, 20 * 1024 * 1024 + 17);
+        File destination = new File(folder.getRoot(), "destination.bin");
+
+        final long[] lastProgress = {0};
+        StorageLib.copyFile(source, destination, new StreamHelper.IProgressListener() {
+            @Override
+            public void onNewProgress(long totalProgress) {
+                assertTrue("test failed: progress increases", totalProgress > lastProgress[0]);
+                lastProgress[0] = totalProgress;
+            }
+        }, 1024 * 1024, true);
+        assertArrayEquals("test failed: content", content, readFile(destination));
+        assertEquals("test failed: final progress", content.length, lastProgress[0]);
+        assertEquals("test failed: checksum", Hash.sha1Hex(source), Hash.sha1Hex(destination));
+    }
+
+    @Test
+    public void testMoveFile() throws IOException {
+        File source = folder.newFile("source.bin");
+        byte[] content = writeFile(source, 1000);
+        File destination = new File(folder.newFolder("target"), "destination.bin");
+
+        assertTrue("test failed: move", StorageLib.moveFile(source, destination, true));
+        assertFalse("test failed: source removed", source.exists());
+        assertArrayEquals("test failed: content", content, readFile(destination));
+    }
+}
@@ -0,0 +1,79 @@
+package nz.ac.auckland.lablet.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Compares the notification throughput of the listener array with the former list copy per notification.
+ */
+public class WeakListenableBenchmark {
+    private static final int[] LISTENER_COUNTS = {1, 2, 5, 10, 20, 50};
+    private static final int NOTIFICATIONS = 2000000;
+
+    interface IListener {
+        void onDataAdded(int index);
+    }
+
+    static class Listener implements IListener {
+        long sum = 0;
+
+        @Override
+        public void onDataAdded(int index) {
+            sum += index;
+        }
+    }
+
+    private static long runLegacy(WeakListenable<IListener> listenable) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            for (IListener listener : listenable.getListeners())
+                listener.onDataAdded(i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runForEach(WeakListenable<IListener> listenable) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            final int index = i;
+            listenable.forEachListener(listener -> listener.onDataAdded(index));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runTyped(WeakListenable<IListener> listenable) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NOTIFICATIONS; i++)
+            listenable.forEachListener(i, (listener, index) -> listener.onDataAdded(index));
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmarkNotify() {
+        Benchmarks.assumeEnabled();
+
+        for (int count : LISTENER_COUNTS) {
+            WeakListenable<IListener> listenable = new WeakListenable<>();
+            List<Listener> listeners = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Listener listener = new Listener();
+                listeners.add(listener);
+                listenable.addListener(listener);
+            }
+            // warm up
+            runLegacy(listenable);
+            runForEach(listenable);
+            runTyped(listenable);
+
+            long legacyNanos = runLegacy(listenable);
+            long forEachNanos = runForEach(listenable);
+            long typedNanos = runTyped(listenable);
+            System.out.printf("%d listeners: list copy %.1f M notifications/s, forEachListener %.1f M "
+                    + "notifications/s, typed forEachListener %.1f M notifications/s%n", count,
+                    NOTIFICATIONS / (legacyNanos / 1e3), NOTIFICATIONS / (forEachNanos / 1e3),
+                    NOTIFICATIONS / (typedNanos / 1e3));
+            listeners.clear();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class WeakListenableTest {
+    interface IListener {
+        void onEvent();
+    }
+
+    static class Listener implements IListener {
+        final String name;
+        final List<String> events;
+
+        Listener(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public void onEvent() {
+            events.add(name);
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        WeakListenable<IListener> listenable = new WeakListenable<>();
+        List<String> events = new ArrayList<>();
+        Listener a = new Listener("a", events);
+        Listener b = new Listener("b", events);
+        Listener c = new Listener("c", events);
+        listenable.addListener(a);
+        listenable.addListener(c);
+        listenable.addListener(1, b);
+        // no duplicates
+        listenable.addListener(a);
+
+        listenable.forEachListener(listener -> listener.onEvent());
+        assertEquals("test failed: order", Arrays.asList("a", "b", "c"), events);
+        assertEquals("test failed: list", Arrays.<IListener>asList(a, b, c), listenable.getListeners());
+
+        assertTrue("test failed: remove", listenable.removeListener(b));
+        assertFalse("test failed: remove twice", listenable.removeListener(b));
+        assertFalse("test failed: removed", listenable.hasListener(b));
+        assertEquals("test failed: list after remove", Arrays.<IListener>asList(a, c), listenable.getListeners());
+    }
+
+    @Test
+    public void testModifyWhileNotifying() {
+        final WeakListenable<IListener> listenable = new WeakListenable<>();
+        final List<String> events = new ArrayList<>();
+        final Listener b = new Listener("b", events);
+        IListener a = new IListener() {
+            @Override
+            public void onEvent() {
+                events.add("a");
+                listenable.removeListener(b);
+            }
+        };
+        listenable.addListener(a);
+        listenable.addListener(b);
+
+        // b has been removed during the notification but still gets the current event
+        listenable.forEachListener(listener -> listener.onEvent());
+        listenable.forEachListener(listener -> listener.onEvent());
+        assertEquals("test failed: events", Arrays.asList("a", "b", "a"), events);
+    }
+
+    @Test
+    public void testTypedVisitors() {
+        WeakListenable<IListener> listenable = new WeakListenable<>();
+        List<String> events = new ArrayList<>();
+        Listener a = new Listener("a", events);
+        Listener b = new Listener("b", events);
+        listenable.addListener(a);
+        listenable.addListener(b);
+
+        listenable.forEachListener(1, (listener, value) -> events.add(((Listener)listener).name + value));
+        listenable.forEachListener("x", (listener, arg) -> events.add(((Listener)listener).name + arg));
+        listenable.forEachListener("x", 2, (listener, arg, value) -> events.add(arg + value));
+        listenable.forEachListener("x", 3, 4, (listener, arg, value1, value2) -> events.add(arg + value1 + value2));
+        listenable.forEachListener("x", 5, "y", (listener, arg1, value, arg2) -> events.add(arg1 + value + arg2));
+        listenable.forEachListener(6L, "y", (listener, value, arg) -> events.add(value + arg));
+        assertEquals("test failed: events", Arrays.asList("a1", "b1", "ax", "bx", "x2", "x2", "x34", "x34", "x5y",
+                "x5y", "6y", "6y"), events);
+    }
+
+    @Test
+    public void testWeakReferences() throws InterruptedException {
+        WeakListenable<IListener> listenable = new WeakListenable<>();
+        List<String> events = new ArrayList<>();
+        Listener a = new Listener("a", events);
+        listenable.addListener(a);
+        listenable.addListener(new Listener("b", events));
+
+        for (int i = 0; i < 10 && listenable.getListeners().size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("test failed: collected listener", 1, listenable.getListeners().size());
+        listenable.forEachListener(listener -> listener.onEvent());
+        assertEquals("test failed: events", Arrays.asList("a"), events);
+    }
+}
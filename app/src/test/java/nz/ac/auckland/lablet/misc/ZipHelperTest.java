@@ -0,0 +1,136 @@
+package nz.ac.auckland.lablet.misc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases
+ */
+public class ZipHelperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] writeFile(File dir, String name, byte[] content) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(new File(dir, name));
+        outputStream.write(content);
+        outputStream.close();
+        return content;
+    }
+
+    private byte[] readEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+        InputStream inputStream = zipFile.getInputStream(entry);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        StreamHelper.copy(inputStream, outputStream);
+        inputStream.close();
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void testZipDir() throws IOException {
+        File experimentDir = folder.newFolder("experiment");
+        File dataDir = new File(experimentDir, "data");
+        assertTrue("test failed: mkdir", dataDir.mkdir());
+
+        Random random = new Random(1);
+        byte[] video = new byte[300 * 1024];
+        random.nextBytes(video);
+        // larger than one deflate block
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            builder.append(i % 97).append(", ").append(random.nextInt(100)).append('\n');
+
+        writeFile(dataDir, "video.mp4", video);
+        byte[] csv = writeFile(dataDir, "data.csv", builder.toString().getBytes("UTF-8"));
+        byte[] xml = writeFile(experimentDir, "experiment.xml", "<bundle/>".getBytes("UTF-8"));
+        byte[] empty = writeFile(experimentDir, "empty.txt", new byte[0]);
+
+        File zip = new File(folder.getRoot(), "experiment.zip");
+        final long[] lastProgress = {0};
+        ZipHelper zipHelper = new ZipHelper(zip);
+        zipHelper.addDir(experimentDir, new StreamHelper.IProgressListener() {
+            @Override
+            public void onNewProgress(long totalProgress) {
+                assertTrue("test failed: progress increases", totalProgress > lastProgress[0]);
+                lastProgress[0] = totalProgress;
+            }
+        });
+        zipHelper.close();
+        assertEquals("test failed: progress", video.length + csv.length + xml.length, zipHelper.getProgress());
+        assertEquals("test failed: last progress reported", zipHelper.getProgress(), lastProgress[0]);
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertEquals("test failed: entry count", 4, zipFile.size());
+            ZipEntry videoEntry = zipFile.getEntry("experiment/data/video.mp4");
+            assertNotNull("test failed: video entry", videoEntry);
+            assertEquals("test failed: video stored", ZipEntry.STORED, videoEntry.getMethod());
+            assertArrayEquals("test failed: video content", video, readEntry(zipFile, videoEntry));
+
+            ZipEntry csvEntry = zipFile.getEntry("experiment/data/data.csv");
+            assertEquals("test failed: csv deflated", ZipEntry.DEFLATED, csvEntry.getMethod());
+            assertTrue("test failed: csv compressed", csvEntry.getCompressedSize() < csv.length);
+            assertArrayEquals("test failed: csv content", csv, readEntry(zipFile, csvEntry));
+            assertArrayEquals("test failed: xml content", xml,
+                    readEntry(zipFile, zipFile.getEntry("experiment/experiment.xml")));
+            assertArrayEquals("test failed: empty content", empty,
+                    readEntry(zipFile, zipFile.getEntry("experiment/empty.txt")));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void testFileFilter() throws IOException {
+        File experimentDir = folder.newFolder("experiment");
+        byte[] csv = writeFile(experimentDir, "data.csv", new byte[1000]);
+        writeFile(experimentDir, "skipped.mp4", new byte[1000]);
+
+        File zip = new File(folder.getRoot(), "experiment.zip");
+        ZipHelper zipHelper = new ZipHelper(zip);
+        zipHelper.setFileFilter(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().startsWith("skipped");
+            }
+        });
+        zipHelper.addDir(experimentDir, null);
+        zipHelper.close();
+        assertEquals("test failed: skipped file not read", csv.length, zipHelper.getProgress());
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertEquals("test failed: entry count", 1, zipFile.size());
+            assertNotNull("test failed: csv entry", zipFile.getEntry("experiment/data.csv"));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void testCancel() throws IOException {
+        File experimentDir = folder.newFolder("experiment");
+        writeFile(experimentDir, "data.csv", new byte[1000]);
+
+        ZipHelper zipHelper = new ZipHelper(new File(folder.getRoot(), "experiment.zip"));
+        zipHelper.cancel();
+        zipHelper.addDir(experimentDir, null);
+        zipHelper.close();
+        assertTrue("test failed: canceled", zipHelper.isCanceled());
+        assertEquals("test failed: nothing read", 0, zipHelper.getProgress());
+    }
+}
@@ -0,0 +1,116 @@
+package nz.ac.auckland.lablet.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+/**
+ * Test cases
+ */
+public class LuaScriptCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeScript(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileWriter writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        return file;
+    }
+
+    private String runTitle(Prototype prototype) {
+        Globals globals = JsePlatform.standardGlobals();
+        new LuaClosure(prototype, globals).call();
+        return globals.get("Lablet").get("title").toString();
+    }
+
+    private ScriptMetaData createMetaData(File script, String title) {
+        ScriptMetaData metaData = new ScriptMetaData(script);
+        metaData.setInterfaceVersion(1f);
+        metaData.setTitle(title);
+        return metaData;
+    }
+
+    @Test
+    public void testPrototypeCache() throws IOException {
+        File script = writeScript("test.lua", "Lablet = { interface = 1.0, title = \"First\" }");
+        LuaScriptCache cache = new LuaScriptCache(folder.newFolder("cache"), 1, "test");
+
+        Prototype prototype = cache.getPrototype(script);
+        assertEquals("test failed: title", "First", runTitle(prototype));
+        assertSame("test failed: cached prototype", prototype, cache.getPrototype(script));
+
+        // a changed script has to be recompiled
+        writeScript("test.lua", "Lablet = { interface = 1.0, title = \"Second\" }");
+        assertEquals("test failed: changed title", "Second", runTitle(cache.getPrototype(script)));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        File script = writeScript("test.lua", "Lablet = { interface = 1.0, title = \"Persistent\" }");
+        File cacheDir = folder.newFolder("cache");
+
+        LuaScriptCache cache = new LuaScriptCache(cacheDir, 1, "test");
+        Prototype prototype = cache.getPrototype(script);
+        assertNull("test failed: no meta data yet", cache.getMetaData(script));
+        cache.putMetaData(createMetaData(script, "Persistent"));
+        cache.save();
+
+        // the byte code and the meta data are read from disk
+        LuaScriptCache restoredCache = new LuaScriptCache(cacheDir, 1, "test");
+        ScriptMetaData metaData = restoredCache.getMetaData(script);
+        assertNotNull("test failed: persisted meta data", metaData);
+        assertEquals("test failed: persisted title", "Persistent", metaData.getTitle());
+        assertEquals("test failed: persisted version", 1f, metaData.getInterfaceVersion(), 0f);
+        Prototype restored = restoredCache.getPrototype(script);
+        assertNotSame("test failed: restored prototype", prototype, restored);
+        assertEquals("test failed: restored title", "Persistent", runTitle(restored));
+    }
+
+    @Test
+    public void testChangedContent() throws IOException {
+        File script = writeScript("test.lua", "Lablet = { interface = 1.0 }");
+        File cacheDir = folder.newFolder("cache");
+        LuaScriptCache cache = new LuaScriptCache(cacheDir, 1, "test");
+        cache.getPrototype(script);
+        cache.putMetaData(createMetaData(script, ""));
+        cache.save();
+
+        // same size, different content
+        writeScript("test.lua", "Lablet = { interface = 2.0 }");
+        assertTrue("test failed: modified", script.setLastModified(script.lastModified() + 2000));
+        assertNull("test failed: stale meta data", new LuaScriptCache(cacheDir, 1, "test").getMetaData(script));
+    }
+
+    @Test
+    public void testChangedVersion() throws IOException {
+        File script = writeScript("test.lua", "Lablet = { interface = 1.0, title = \"Version\" }");
+        File cacheDir = folder.newFolder("cache");
+        LuaScriptCache cache = new LuaScriptCache(cacheDir, 1, "test");
+        cache.getPrototype(script);
+        cache.putMetaData(createMetaData(script, "Version"));
+        cache.save();
+        assertNotNull("test failed: same versions", new LuaScriptCache(cacheDir, 1, "test").getMetaData(script));
+
+        // an app or LuaJ update drops the index
+        assertNull("test failed: app update", new LuaScriptCache(cacheDir, 2, "test").getMetaData(script));
+        cache = new LuaScriptCache(cacheDir, 1, "other");
+        assertNull("test failed: LuaJ update", cache.getMetaData(script));
+        assertEquals("test failed: updated title", "Version", runTitle(cache.getPrototype(script)));
+    }
+}
@@ -1,15 +1,34 @@
 package nz.ac.auckland.lablet.utility;
 
 import static nz.ac.auckland.lablet.utility.FileHelper.isLuaFile;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import nz.ac.auckland.lablet.misc.StreamHelper;
+import nz.ac.auckland.lablet.views.table.CSVWriter;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencv.core.Point;
 
 /**
  * Test cases
  */
 public class FileHelperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     @Test
     public void testIsLuaFile() throws Exception {
@@ -23,4 +42,82 @@ public class FileHelperTest {
         assertFalse("test failed: bad file name", isLuaFile("test_file.tex"));
     }
 
+    @Test
+    public void testWritePlotDataToCSVInBackground() throws Exception {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 2500; i++)
+            points.add(new Point(i, 0.5 * i));
+        File file = new File(folder.getRoot(), "graph.csv");
+        final AtomicLong lastProgress = new AtomicLong(-1);
+        boolean written = FileHelper.writePlotDataToCSVInBackground(points, new FileWriter(file),
+                new StreamHelper.IProgressListener() {
+                    @Override
+                    public void onNewProgress(long totalProgress) {
+                        assertTrue("test failed: increasing progress", totalProgress > lastProgress.get());
+                        lastProgress.set(totalProgress);
+                    }
+                }, null).get(5, TimeUnit.SECONDS);
+        assertTrue("test failed: written", written);
+        assertEquals("test failed: last progress", points.size(), lastProgress.get());
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals("test failed: line count", points.size() + 1, lines.size());
+        assertEquals("test failed: header", "x,y", lines.get(0));
+        assertEquals("test failed: row", "3.000000,1.500000", lines.get(4));
+    }
+
+    /**
+     * Writes the points and returns the completion results.
+     */
+    private List<Boolean> writeAndWaitForCompletion(List<Point> points, Writer writer) throws Exception {
+        final List<Boolean> results = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        FileHelper.writePlotDataToCSVInBackground(points, writer, null, new CSVWriter.ICompletionListener() {
+            @Override
+            public void onCompleted(boolean written) {
+                synchronized (results) {
+                    results.add(written);
+                }
+                completed.countDown();
+            }
+        });
+        assertTrue("test failed: completed", completed.await(5, TimeUnit.SECONDS));
+        // give a second, wrong notification the chance to arrive
+        Thread.sleep(100);
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    @Test
+    public void testWritePlotDataCompletion() throws Exception {
+        List<Point> points = new ArrayList<>();
+        // a multiple of the progress step
+        for (int i = 0; i < 2000; i++)
+            points.add(new Point(i, i));
+
+        List<Boolean> results = writeAndWaitForCompletion(points,
+                new FileWriter(new File(folder.getRoot(), "graph.csv")));
+        assertEquals("test failed: one notification", 1, results.size());
+        assertTrue("test failed: written", results.get(0));
+
+        Writer failingWriter = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() throws IOException {
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        };
+        results = writeAndWaitForCompletion(points, failingWriter);
+        assertEquals("test failed: one failure notification", 1, results.size());
+        assertFalse("test failed: failure reported", results.get(0));
+    }
+
 }
@@ -0,0 +1,112 @@
+package nz.ac.auckland.lablet.views.plotview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class LinearFitAccumulatorTest {
+
+    /**
+     * Editable data that reports ranged changes like the plot adapters do.
+     */
+    private static class EditableDataAdapter extends AbstractXYDataAdapter {
+        final List<Number> xValues = new ArrayList<>();
+        final List<Number> yValues = new ArrayList<>();
+
+        @Override
+        public Number getX(int index) {
+            return xValues.get(index);
+        }
+
+        @Override
+        public Number getY(int index) {
+            return yValues.get(index);
+        }
+
+        @Override
+        public Range getRange(Number leftReal, Number rightReal) {
+            return null;
+        }
+
+        @Override
+        public int getSize() {
+            return xValues.size();
+        }
+
+        @Override
+        public CloneablePlotDataAdapter clone(Region1D region) {
+            return null;
+        }
+    }
+
+    private static void assertFitEquals(LinearFitAccumulator expected, LinearFitAccumulator actual) {
+        assertEquals("test failed: slope", expected.getM(), actual.getM(),
+                1e-9 * Math.max(1, Math.abs(expected.getM())));
+        assertEquals("test failed: offset", expected.getB(), actual.getB(),
+                1e-6 * Math.max(1, Math.abs(expected.getB())));
+    }
+
+    @Test
+    public void testRandomEdits() throws Exception {
+        Random random = new Random(42);
+        EditableDataAdapter data = new EditableDataAdapter();
+        LinearFitAccumulator incremental = new LinearFitAccumulator();
+        LinearFitAccumulator batch = new LinearFitAccumulator();
+
+        for (int i = 0; i < 100; i++) {
+            data.xValues.add(i * 0.1f);
+            data.yValues.add(2.f * i + random.nextFloat());
+        }
+        incremental.fit(data);
+
+        for (int edit = 0; edit < 20000; edit++) {
+            int size = data.getSize();
+            int operation = random.nextInt(3);
+            if (operation == 0 || size < 10) {
+                int index = random.nextInt(size + 1);
+                int number = 1 + random.nextInt(3);
+                for (int i = 0; i < number; i++) {
+                    data.xValues.add(index + i, random.nextFloat() * 100);
+                    data.yValues.add(index + i, random.nextFloat() * 1000 - 500);
+                }
+                incremental.add(data, index, number);
+            } else if (operation == 1) {
+                int number = 1 + random.nextInt(3);
+                int index = random.nextInt(size - number + 1);
+                for (int i = 0; i < number; i++) {
+                    data.xValues.remove(index);
+                    data.yValues.remove(index);
+                }
+                incremental.remove(data, index, number);
+            } else {
+                int index = random.nextInt(size);
+                data.xValues.set(index, random.nextFloat() * 100);
+                data.yValues.set(index, random.nextFloat() * 1000 - 500);
+                incremental.update(data, index, 1);
+            }
+
+            batch.fit(data);
+            assertFitEquals(batch, incremental);
+        }
+    }
+
+    @Test
+    public void testBulkChange() throws Exception {
+        EditableDataAdapter data = new EditableDataAdapter();
+        LinearFitAccumulator fit = new LinearFitAccumulator();
+        fit.fit(data);
+        for (int i = 0; i < 10; i++) {
+            data.xValues.add(i);
+            data.yValues.add(3 * i + 1);
+        }
+        fit.add(data, 0, 10);
+        assertEquals(3, fit.getM(), 1e-12);
+        assertEquals(1, fit.getB(), 1e-12);
+    }
+}
@@ -0,0 +1,57 @@
+package nz.ac.auckland.lablet.views.table;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class CSVStreamWriterTest {
+
+    private String formatRow(float value, long time) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        CSVStreamWriter writer = new CSVStreamWriter(stringWriter, ',');
+        writer.append(time).append(value, 6).append(value, 1).endRow();
+        writer.flush();
+        return stringWriter.toString();
+    }
+
+    private String expectedRow(float value, long time) {
+        return Long.toString(time) + "," + String.format(Locale.US, "%f", value) + ","
+                + String.format(Locale.US, "%.1f", value) + "\n";
+    }
+
+    @Test
+    public void testSpecialValues() throws Exception {
+        float[] values = {0.f, -0.f, 1.f, -1.f, 0.1f, -0.0000001f, 123456.78f, 9.81f, Float.NaN,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (float value : values)
+            assertEquals("test failed: " + value, expectedRow(value, -5), formatRow(value, -5));
+    }
+
+    @Test
+    public void testRandomValues() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            float value = (random.nextFloat() - 0.5f) * (float)Math.pow(10, random.nextInt(12) - 4);
+            long time = random.nextLong();
+            assertEquals("test failed: " + value, expectedRow(value, time), formatRow(value, time));
+        }
+    }
+
+    @Test
+    public void testHeaderAndSeparator() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        CSVStreamWriter writer = new CSVStreamWriter(stringWriter, ';');
+        writer.append("time [ms]").append("x").endRow();
+        writer.append(1).append(2.5, 2).endRow();
+        writer.flush();
+        assertEquals("time [ms];x\n1;2.50\n", stringWriter.toString());
+        assertEquals(2, writer.getRowCount());
+    }
+}
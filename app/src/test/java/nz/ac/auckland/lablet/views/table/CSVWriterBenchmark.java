@@ -0,0 +1,126 @@
+package nz.ac.auckland.lablet.views.table;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import nz.ac.auckland.lablet.misc.Benchmarks;
+import org.junit.Test;
+
+/**
+ * Compares the streaming CSV export with the former String concatenation based export.
+ */
+public class CSVWriterBenchmark {
+    private static final int ROW_COUNT = 1000000;
+    private static final int RUNS = 5;
+
+    private static class ArrayColumn extends DataTableColumn {
+        private final float[] data;
+
+        ArrayColumn(float[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int size() {
+            return data.length;
+        }
+
+        @Override
+        public Number getValue(int index) {
+            return data[index];
+        }
+
+        @Override
+        public String getHeader() {
+            return "column";
+        }
+    }
+
+    private static class NullWriter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String string) {
+            count += string.length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The export as it was implemented before the streaming writer.
+     */
+    private static void writeTableConcatenating(ColumnDataTableAdapter data, Writer writer, char separator)
+            throws IOException {
+        String header = "";
+        for (int i = 0; i < data.getColumnCount(); i++) {
+            header += data.getColumn(i).getHeader();
+            if (i < data.getColumnCount() - 1)
+                header += separator;
+        }
+        writer.write(header);
+        writer.write('\n');
+
+        int rowCount = data.getColumn(0).size();
+        for (int rowId = 0; rowId < rowCount; rowId++) {
+            String row = "";
+            for (int i = 0; i < data.getColumnCount(); i++) {
+                row += data.getColumn(i).getStringValue(rowId);
+                if (i < data.getColumnCount() - 1)
+                    row += separator;
+            }
+            writer.write(row);
+            writer.write('\n');
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static ColumnDataTableAdapter createTable() {
+        ColumnDataTableAdapter adapter = new ColumnDataTableAdapter();
+        for (int column = 0; column < 4; column++) {
+            float[] data = new float[ROW_COUNT];
+            for (int i = 0; i < ROW_COUNT; i++)
+                data[i] = (float)Math.sin(i * 0.001 + column) * 9.81f;
+            adapter.addColumn(new ArrayColumn(data));
+        }
+        return adapter;
+    }
+
+    private static void report(String name, long nanos, long bytes) {
+        System.out.printf("%s: %.1f rows/ms, %.1f bytes allocated/row%n", name,
+                ROW_COUNT / (nanos / 1e6), (double)bytes / ROW_COUNT);
+    }
+
+    @Test
+    public void benchmarkWriteTable() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        ColumnDataTableAdapter table = createTable();
+        for (int run = 0; run < RUNS; run++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            writeTableConcatenating(table, new NullWriter(), ',');
+            report("concatenating", System.nanoTime() - start, allocatedBytes() - bytes);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            CSVWriter.writeTable(table, new NullWriter(), ',');
+            report("streaming", System.nanoTime() - start, allocatedBytes() - bytes);
+        }
+    }
+}
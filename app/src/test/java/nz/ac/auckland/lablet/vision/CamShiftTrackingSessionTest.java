@@ -0,0 +1,228 @@
+package nz.ac.auckland.lablet.vision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+/**
+ * Test cases
+ * <p>
+ * Compares the tracking pyramid against the full resolution full frame search on synthetic videos of a moving blob.
+ * The tests need the desktop OpenCV natives, see {@link OpenCVNatives}.
+ * </p>
+ */
+public class CamShiftTrackingSessionTest {
+    final static private int WIDTH = 640;
+    final static private int HEIGHT = 480;
+    // the tracker treats RGBA frames as BGR, i.e., this is a blue hue of about 115 in OpenCV units
+    final static private byte[] BLOB_COLOUR = {(byte)220, 60, 30};
+    final static private byte[] DISTRACTOR_COLOUR = {40, (byte)200, 40};
+    final static private Scalar HSV_MIN = new Scalar(105, 60, 35);
+    final static private Scalar HSV_MAX = new Scalar(125, 255, 255);
+
+    @BeforeClass
+    static public void loadOpenCV() {
+        OpenCVNatives.load();
+    }
+
+    /**
+     * A synthetic video with a blob on a noisy background and a static distractor of another colour.
+     */
+    private static abstract class BlobVideo {
+        final private byte[] background = new byte[WIDTH * HEIGHT * 4];
+        final byte[] frame = new byte[WIDTH * HEIGHT * 4];
+        final int radius;
+
+        BlobVideo(int radius, long seed) {
+            this.radius = radius;
+            Random random = new Random(seed);
+            for (int i = 0; i < background.length; i += 4) {
+                byte grey = (byte)(60 + random.nextInt(60));
+                background[i] = grey;
+                background[i + 1] = grey;
+                background[i + 2] = grey;
+                background[i + 3] = (byte)255;
+            }
+            drawCircle(background, 500, 100, 30, DISTRACTOR_COLOUR);
+        }
+
+        abstract double getX(int frameIndex);
+
+        abstract double getY(int frameIndex);
+
+        byte[] render(int frameIndex) {
+            System.arraycopy(background, 0, frame, 0, frame.length);
+            drawCircle(frame, getX(frameIndex), getY(frameIndex), radius, BLOB_COLOUR);
+            return frame;
+        }
+
+        Rect getRoi(int frameIndex) {
+            return new Rect((int)(getX(frameIndex) - radius), (int)(getY(frameIndex) - radius), 2 * radius,
+                    2 * radius);
+        }
+
+        static private void drawCircle(byte[] pixels, double centreX, double centreY, int radius, byte[] colour) {
+            for (int y = (int)(centreY - radius); y <= centreY + radius; y++) {
+                for (int x = (int)(centreX - radius); x <= centreX + radius; x++) {
+                    if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT)
+                        continue;
+                    if ((x - centreX) * (x - centreX) + (y - centreY) * (y - centreY) > radius * radius)
+                        continue;
+                    int index = (y * WIDTH + x) * 4;
+                    pixels[index] = colour[0];
+                    pixels[index + 1] = colour[1];
+                    pixels[index + 2] = colour[2];
+                }
+            }
+        }
+    }
+
+    private static class WigglingBlobVideo extends BlobVideo {
+        WigglingBlobVideo(int radius) {
+            super(radius, 1);
+        }
+
+        @Override
+        double getX(int frameIndex) {
+            return 60 + 4.5 * frameIndex;
+        }
+
+        @Override
+        double getY(int frameIndex) {
+            return 300 + 80 * Math.sin(frameIndex * 0.1);
+        }
+    }
+
+    private static class JumpingBlobVideo extends WigglingBlobVideo {
+        final static int JUMP_FRAME = 50;
+
+        JumpingBlobVideo() {
+            super(20);
+        }
+
+        @Override
+        double getY(int frameIndex) {
+            if (frameIndex < JUMP_FRAME)
+                return super.getY(frameIndex);
+            // jump far out of the search window
+            return super.getY(frameIndex) - 200;
+        }
+    }
+
+    private static class Trajectory {
+        final double[] x;
+        final double[] y;
+        int fullFrameSearches;
+        int allocationsAfterFirstFrame;
+        int allocationsAtEnd;
+
+        Trajectory(int frames) {
+            x = new double[frames];
+            y = new double[frames];
+            Arrays.fill(x, Double.NaN);
+            Arrays.fill(y, Double.NaN);
+        }
+    }
+
+    private Trajectory track(BlobVideo video, int frames, boolean pyramid) {
+        CamShiftTrackingSession session = new CamShiftTrackingSession(WIDTH, HEIGHT);
+        try {
+            if (!pyramid)
+                session.setPyramid(1, -1, 0);
+            session.setFrame(video.render(0));
+            session.setRegionOfInterest(video.getRoi(0), HSV_MIN, HSV_MAX);
+
+            Trajectory trajectory = new Trajectory(frames);
+            for (int i = 1; i < frames; i++) {
+                session.setFrame(video.render(i));
+                Rect result = session.track();
+                if (i == 1)
+                    trajectory.allocationsAfterFirstFrame = session.getNativeAllocationCount();
+                if (result == null)
+                    continue;
+                trajectory.x[i] = result.x + result.width / 2.;
+                trajectory.y[i] = result.y + result.height / 2.;
+            }
+            trajectory.fullFrameSearches = session.getFullFrameSearchCount();
+            trajectory.allocationsAtEnd = session.getNativeAllocationCount();
+            return trajectory;
+        } finally {
+            session.release();
+        }
+    }
+
+    /**
+     * Gets the mean and the max distance between two trajectories, starting at a frame.
+     */
+    static private double[] compare(double[] x0, double[] y0, double[] x1, double[] y1, int start) {
+        double sum = 0;
+        double max = 0;
+        for (int i = start; i < x0.length; i++) {
+            double distance = Math.hypot(x0[i] - x1[i], y0[i] - y1[i]);
+            assertTrue("test failed: object lost at frame " + i, !Double.isNaN(distance));
+            sum += distance;
+            max = Math.max(max, distance);
+        }
+        return new double[]{sum / (x0.length - start), max};
+    }
+
+    private void testVideo(BlobVideo video, int frames, double maxMeanError, double maxError) {
+        Trajectory reference = track(video, frames, false);
+        Trajectory pyramid = track(video, frames, true);
+
+        double[] truthX = new double[frames];
+        double[] truthY = new double[frames];
+        for (int i = 0; i < frames; i++) {
+            truthX[i] = video.getX(i);
+            truthY[i] = video.getY(i);
+        }
+
+        double[] referenceError = compare(reference.x, reference.y, truthX, truthY, 1);
+        double[] pyramidError = compare(pyramid.x, pyramid.y, truthX, truthY, 1);
+        double[] difference = compare(pyramid.x, pyramid.y, reference.x, reference.y, 1);
+
+        assertTrue("test failed: reference mean error " + referenceError[0], referenceError[0] < maxMeanError);
+        assertTrue("test failed: pyramid mean error " + pyramidError[0], pyramidError[0] < maxMeanError);
+        assertTrue("test failed: pyramid max error " + pyramidError[1], pyramidError[1] < maxError);
+        assertTrue("test failed: difference to reference " + difference[0], difference[0] < maxMeanError);
+
+        assertEquals("test failed: native allocations while tracking", pyramid.allocationsAfterFirstFrame,
+                pyramid.allocationsAtEnd);
+    }
+
+    @Test
+    public void testMovingBlob() {
+        testVideo(new WigglingBlobVideo(20), 120, 2, 6);
+    }
+
+    @Test
+    public void testSmallBlob() {
+        // too small for the reduced resolution, searched in a full resolution window
+        testVideo(new WigglingBlobVideo(6), 120, 2, 6);
+    }
+
+    @Test
+    public void testFullFrameFallback() {
+        JumpingBlobVideo video = new JumpingBlobVideo();
+        int frames = 100;
+        Trajectory pyramid = track(video, frames, true);
+        assertNotNull(pyramid);
+
+        double[] truthX = new double[frames];
+        double[] truthY = new double[frames];
+        for (int i = 0; i < frames; i++) {
+            truthX[i] = video.getX(i);
+            truthY[i] = video.getY(i);
+        }
+        double[] error = compare(pyramid.x, pyramid.y, truthX, truthY, JumpingBlobVideo.JUMP_FRAME + 1);
+        assertTrue("test failed: no full frame search after the jump", pyramid.fullFrameSearches > 0);
+        assertTrue("test failed: object not recovered after the jump " + error[0], error[0] < 2);
+    }
+}
@@ -0,0 +1,120 @@
+package nz.ac.auckland.lablet.vision;
+
+import nz.ac.auckland.lablet.misc.Benchmarks;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Compares the latency of the region of interest colour clustering with the former implementation. Needs the desktop
+ * OpenCV natives.
+ */
+public class ColourRangeEstimatorBenchmark {
+    private static final int[] ROI_SIZES = {50, 100, 200, 500, 1000};
+    private static final int RUNS = 20;
+
+    /**
+     * The clustering as it was implemented before, i.e., with one JNI call per label and one pixel Mats.
+     */
+    private static Scalar[] getMinMaxHsvLegacy(Mat bgr, int k) {
+        Mat input = new Mat();
+        Imgproc.cvtColor(bgr, input, Imgproc.COLOR_BGR2BGRA, 3);
+
+        Size bgrSize = bgr.size();
+        Size newSize = new Size();
+        if (bgrSize.width > CamShiftTracker.KMEANS_IMG_SIZE || bgrSize.height > CamShiftTracker.KMEANS_IMG_SIZE) {
+            if (bgrSize.width > bgrSize.height) {
+                newSize.width = CamShiftTracker.KMEANS_IMG_SIZE;
+                newSize.height = CamShiftTracker.KMEANS_IMG_SIZE / bgrSize.width * bgrSize.height;
+            } else {
+                newSize.width = CamShiftTracker.KMEANS_IMG_SIZE / bgrSize.height * bgrSize.width;
+                newSize.height = CamShiftTracker.KMEANS_IMG_SIZE;
+            }
+            Imgproc.resize(input, input, newSize);
+        }
+
+        Mat clusterData = new Mat();
+        Mat reshaped = input.reshape(1, input.rows() * input.cols());
+        reshaped.convertTo(clusterData, CvType.CV_32F, 1.0 / 255.0);
+        Mat labels = new Mat();
+        Mat centres = new Mat();
+        TermCriteria criteria = new TermCriteria(TermCriteria.COUNT, 50, 1);
+        Core.kmeans(clusterData, k, labels, criteria, 1, Core.KMEANS_PP_CENTERS, centres);
+
+        int roiWidth = input.cols();
+        int roiHeight = input.rows();
+        double[] dists = new double[k];
+        int[] counts = new int[k];
+        Point roiCentre = new Point(roiWidth / 2, roiHeight / 2);
+        for (int y = 0; y < roiHeight; y++) {
+            for (int x = 0; x < roiWidth; x++) {
+                int label = (int) labels.get(x + roiWidth * y, 0)[0];
+                dists[label] += Math.sqrt(Math.pow(roiCentre.x - x, 2) + Math.pow(roiCentre.y - y, 2));
+                counts[label] += 1;
+            }
+        }
+        int centreLabelIndex = -1;
+        double maxDist = 10000000;
+        for (int i = 0; i < dists.length; i++) {
+            if (dists[i] / counts[i] < maxDist) {
+                maxDist = dists[i] / counts[i];
+                centreLabelIndex = i;
+            }
+        }
+
+        int r = (int) (centres.get(centreLabelIndex, 2)[0] * 255.0);
+        int g = (int) (centres.get(centreLabelIndex, 1)[0] * 255.0);
+        int b = (int) (centres.get(centreLabelIndex, 0)[0] * 255.0);
+        Mat bgrColour = new Mat(1, 1, CvType.CV_8UC3, new Scalar(r, g, b));
+        Mat hsvColour = new Mat();
+        Imgproc.cvtColor(bgrColour, hsvColour, Imgproc.COLOR_BGR2HSV, 3);
+        double[] hsv = hsvColour.get(0, 0);
+        return new Scalar[]{new Scalar(hsv[0] - 9, 60, 35), new Scalar(hsv[0] + 9, 255, 255)};
+    }
+
+    private static Mat createFrame() {
+        Mat frame = new Mat(1080, 1920, CvType.CV_8UC4, new Scalar(90, 90, 90, 255));
+        Core.randn(frame, 90, 20);
+        Imgproc.circle(frame, new Point(960, 540), 300, new Scalar(220, 60, 30, 255), -1);
+        return frame;
+    }
+
+    @Test
+    public void benchmarkGetMinMaxHsv() throws Exception {
+        Benchmarks.assumeEnabled();
+        OpenCVNatives.load();
+
+        Mat frame = createFrame();
+        ColourRangeEstimator estimator = new ColourRangeEstimator(CamShiftTracker.KMEANS_IMG_SIZE, 9);
+        for (int size : ROI_SIZES) {
+            Mat roi = frame.submat(new Rect(960 - size / 2, 540 - size / 2, size, size));
+            // warm up
+            getMinMaxHsvLegacy(roi, 2);
+            estimator.getMinMaxHsv(roi, 2);
+
+            long start = System.nanoTime();
+            Scalar[] legacy = null;
+            for (int run = 0; run < RUNS; run++)
+                legacy = getMinMaxHsvLegacy(roi, 2);
+            long legacyNanos = (System.nanoTime() - start) / RUNS;
+
+            start = System.nanoTime();
+            Scalar[] current = null;
+            for (int run = 0; run < RUNS; run++)
+                current = estimator.getMinMaxHsv(roi, 2);
+            long currentNanos = (System.nanoTime() - start) / RUNS;
+
+            System.out.printf("%dx%d: legacy %.2f ms (hue %.0f), current %.2f ms (hue %.0f)%n", size, size,
+                    legacyNanos / 1e6, legacy[0].val[0] + 9, currentNanos / 1e6, current[0].val[0] + 9);
+            roi.release();
+        }
+        frame.release();
+    }
+}
@@ -0,0 +1,63 @@
+package nz.ac.auckland.lablet.vision;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Test cases
+ * <p>
+ * The tests need the desktop OpenCV natives, see {@link OpenCVNatives}.
+ * </p>
+ */
+public class ColourRangeEstimatorTest {
+    @BeforeClass
+    static public void loadOpenCV() {
+        OpenCVNatives.load();
+    }
+
+    /**
+     * Gets the hue range of a centred disc on a grey background.
+     */
+    private Scalar[] getRange(int size, Scalar colour) {
+        Mat roi = new Mat(size, size, CvType.CV_8UC4, new Scalar(100, 100, 100, 255));
+        Imgproc.circle(roi, new Point(size / 2, size / 2), size / 3, colour, -1);
+        Scalar[] range = new ColourRangeEstimator(CamShiftTracker.KMEANS_IMG_SIZE, 9).getMinMaxHsv(roi, 2);
+        roi.release();
+        return range;
+    }
+
+    @Test
+    public void testColouredObject() {
+        // the channels of the cluster centre are reversed before the BGR to HSV conversion, like in the former
+        // implementation, i.e., this colour gets a hue of about 65 (and not 55)
+        for (int size : new int[]{50, 300, 1000}) {
+            Scalar[] range = getRange(size, new Scalar(30, 200, 60, 255));
+            assertEquals("test failed: hue of size " + size, 65, (range[0].val[0] + range[1].val[0]) / 2, 3);
+            assertEquals("test failed: hue range of size " + size, 18, range[1].val[0] - range[0].val[0], 0.1);
+        }
+    }
+
+    @Test
+    public void testLowHue() {
+        // the hue of the former implementation is about 5 (and not 115), the range is shifted to start at 0
+        for (int size : new int[]{50, 300, 1000}) {
+            Scalar[] range = getRange(size, new Scalar(220, 60, 30, 255));
+            assertEquals("test failed: min hue of size " + size, 0, range[0].val[0], 0.1);
+            assertEquals("test failed: max hue of size " + size, 18, range[1].val[0], 0.1);
+        }
+    }
+
+    @Test
+    public void testWhiteObject() {
+        Scalar[] range = getRange(200, new Scalar(250, 250, 250, 255));
+        assertEquals("test failed: white max saturation", 40, range[1].val[1], 0.1);
+        assertEquals("test failed: white max value", 255, range[1].val[2], 0.1);
+    }
+}
@@ -0,0 +1,29 @@
+package nz.ac.auckland.lablet.vision;
+
+/**
+ * Loads the desktop OpenCV natives for the OpenCV test classes.
+ * <p>
+ * The natives come with the org.openpnp:opencv test dependency, i.e., they are always expected and a test fails if
+ * they can't be loaded. app/build.gradle removes the OpenCV-Android classes from the test classpath so that the
+ * org.opencv classes match the natives.
+ * </p>
+ */
+public class OpenCVNatives {
+    static private boolean loaded = false;
+
+    /**
+     * Loads the natives once.
+     *
+     * @throws AssertionError if the natives can't be loaded
+     */
+    static synchronized public void load() {
+        if (loaded)
+            return;
+        try {
+            nu.pattern.OpenCV.loadLocally();
+        } catch (Throwable e) {
+            throw new AssertionError("test failed: can't load the desktop OpenCV natives", e);
+        }
+        loaded = true;
+    }
+}
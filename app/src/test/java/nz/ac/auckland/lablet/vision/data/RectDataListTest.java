@@ -0,0 +1,88 @@
+package nz.ac.auckland.lablet.vision.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class RectDataListTest {
+    private static RectData addRect(RectDataList list, int frameId) {
+        RectData data = new RectData(frameId);
+        list.addData(data);
+        return data;
+    }
+
+    @Test
+    public void testEmpty() {
+        RectDataList list = new RectDataList();
+        assertEquals("test failed: index", -1, list.getIndexByFrameId(0));
+        assertEquals("test failed: negative frame", -1, list.getIndexByFrameId(-1));
+        assertNull("test failed: data", list.getDataByFrameId(3));
+    }
+
+    @Test
+    public void testLookup() {
+        RectDataList list = new RectDataList();
+        RectData data2 = addRect(list, 2);
+        addRect(list, 5);
+        RectData duplicate5 = addRect(list, 5);
+        RectData data40 = addRect(list, 40);
+
+        assertSame("test failed: first", data2, list.getDataByFrameId(2));
+        assertSame("test failed: last", data40, list.getDataByFrameId(40));
+        // the index points to the last rectangle of a frame
+        assertEquals("test failed: duplicate index", 2, list.getIndexByFrameId(5));
+        assertSame("test failed: duplicate", duplicate5, list.getDataByFrameId(5));
+
+        assertEquals("test failed: before first", -1, list.getIndexByFrameId(1));
+        assertEquals("test failed: between", -1, list.getIndexByFrameId(3));
+        assertEquals("test failed: after last", -1, list.getIndexByFrameId(41));
+        assertEquals("test failed: far after last", -1, list.getIndexByFrameId(1000));
+    }
+
+    @Test
+    public void testRemove() {
+        RectDataList list = new RectDataList();
+        addRect(list, 2);
+        RectData first5 = addRect(list, 5);
+        addRect(list, 5);
+        addRect(list, 40);
+
+        // the indices behind the removed rectangle move down
+        list.removeData(0);
+        assertEquals("test failed: removed frame", -1, list.getIndexByFrameId(2));
+        assertEquals("test failed: shifted duplicate", 1, list.getIndexByFrameId(5));
+        assertEquals("test failed: shifted last", 2, list.getIndexByFrameId(40));
+
+        // after removing the last rectangle of a frame the index falls back to the previous one
+        list.removeData(1);
+        assertSame("test failed: remaining duplicate", first5, list.getDataByFrameId(5));
+        assertEquals("test failed: last after remove", 1, list.getIndexByFrameId(40));
+
+        RectData data1 = addRect(list, 1);
+        assertEquals("test failed: insert", 2, list.getIndexByFrameId(1));
+        assertSame("test failed: inserted data", data1, list.getDataByFrameId(1));
+
+        list.clear();
+        assertEquals("test failed: cleared", -1, list.getIndexByFrameId(5));
+        assertEquals("test failed: cleared last", -1, list.getIndexByFrameId(40));
+    }
+
+    @Test
+    public void testSetDataList() {
+        RectDataList list = new RectDataList();
+        addRect(list, 3);
+        RectData data7 = new RectData(7);
+        RectData data9 = new RectData(9);
+        list.setMarkerDataList(Arrays.asList(data9, data7));
+
+        assertEquals("test failed: replaced frame", -1, list.getIndexByFrameId(3));
+        assertEquals("test failed: first", 0, list.getIndexByFrameId(9));
+        assertEquals("test failed: second", 1, list.getIndexByFrameId(7));
+    }
+}
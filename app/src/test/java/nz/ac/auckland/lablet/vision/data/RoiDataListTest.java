@@ -0,0 +1,104 @@
+package nz.ac.auckland.lablet.vision.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import nz.ac.auckland.lablet.views.marker.MarkerData;
+import nz.ac.auckland.lablet.views.marker.MarkerDataModel;
+import org.junit.Test;
+
+/**
+ * Test cases
+ */
+public class RoiDataListTest {
+    private static RoiData addRoi(RoiDataList list, int frameId) {
+        RoiData data = new RoiData(new MarkerData(frameId));
+        list.addData(data);
+        return data;
+    }
+
+    private static void assertFrameIds(String message, RoiDataList list, int... frameIds) {
+        assertEquals(message + " size", frameIds.length, list.size());
+        for (int i = 0; i < frameIds.length; i++)
+            assertEquals(message + " frame id at " + i, frameIds[i], list.getAt(i).getFrameId());
+    }
+
+    @Test
+    public void testEmpty() {
+        RoiDataList list = new RoiDataList(new MarkerDataModel());
+        assertEquals("test failed: lower bound", 0, list.lowerBound(5));
+        assertEquals("test failed: preceding index", -1, list.getPrecedingIndexByFrameId(5));
+        assertEquals("test failed: index", -1, list.getIndexByFrameId(5));
+        assertNull("test failed: data", list.getDataByFrameId(5));
+    }
+
+    @Test
+    public void testLookup() {
+        RoiDataList list = new RoiDataList(new MarkerDataModel());
+        addRoi(list, 7);
+        RoiData first4 = addRoi(list, 4);
+        addRoi(list, 2);
+        RoiData second4 = addRoi(list, 4);
+        assertFrameIds("test failed: sorted", list, 2, 4, 4, 7);
+        // ROIs with the same frame id keep their insertion order
+        assertSame("test failed: first duplicate", first4, list.getAt(1));
+        assertSame("test failed: second duplicate", second4, list.getAt(2));
+
+        assertEquals("test failed: lower bound before first", 0, list.lowerBound(0));
+        assertEquals("test failed: lower bound of first", 0, list.lowerBound(2));
+        assertEquals("test failed: lower bound of duplicate", 1, list.lowerBound(4));
+        assertEquals("test failed: lower bound between", 3, list.lowerBound(5));
+        assertEquals("test failed: lower bound after last", 4, list.lowerBound(8));
+
+        assertEquals("test failed: preceding before first", -1, list.getPrecedingIndexByFrameId(1));
+        assertEquals("test failed: preceding of first", 0, list.getPrecedingIndexByFrameId(2));
+        assertEquals("test failed: preceding between", 0, list.getPrecedingIndexByFrameId(3));
+        assertEquals("test failed: preceding of duplicate", 1, list.getPrecedingIndexByFrameId(4));
+        assertEquals("test failed: preceding behind duplicate", 2, list.getPrecedingIndexByFrameId(6));
+        assertEquals("test failed: preceding after last", 3, list.getPrecedingIndexByFrameId(100));
+
+        assertEquals("test failed: index of missing frame", -1, list.getIndexByFrameId(3));
+        assertEquals("test failed: index after last", -1, list.getIndexByFrameId(8));
+        assertSame("test failed: data of duplicate", first4, list.getDataByFrameId(4));
+    }
+
+    @Test
+    public void testRemove() {
+        RoiDataList list = new RoiDataList(new MarkerDataModel());
+        RoiData data2 = addRoi(list, 2);
+        addRoi(list, 4);
+        addRoi(list, 7);
+
+        list.removeData(data2);
+        assertFrameIds("test failed: removed first", list, 4, 7);
+        assertEquals("test failed: lower bound", 0, list.lowerBound(4));
+        assertEquals("test failed: preceding of removed frame", -1, list.getPrecedingIndexByFrameId(2));
+        assertEquals("test failed: index of removed frame", -1, list.getIndexByFrameId(2));
+
+        list.removeData(1);
+        assertFrameIds("test failed: removed last", list, 4);
+        assertEquals("test failed: preceding after last", 0, list.getPrecedingIndexByFrameId(7));
+        assertEquals("test failed: lower bound after last", 1, list.lowerBound(7));
+
+        addRoi(list, 1);
+        assertFrameIds("test failed: insert before first", list, 1, 4);
+        assertEquals("test failed: index after insert", 1, list.getIndexByFrameId(4));
+    }
+
+    @Test
+    public void testRemoveMarker() {
+        MarkerDataModel markerModel = new MarkerDataModel();
+        RoiDataList list = new RoiDataList(markerModel);
+        for (int frameId : new int[]{2, 4, 7}) {
+            MarkerData markerData = new MarkerData(frameId);
+            markerModel.addMarkerData(markerData);
+            list.addData(new RoiData(markerData));
+        }
+
+        // the ROI of a removed marker is removed as well
+        markerModel.removeData(markerModel.findMarkerDataById(4));
+        assertFrameIds("test failed: removed marker", list, 2, 7);
+        assertEquals("test failed: preceding of removed frame", 0, list.getPrecedingIndexByFrameId(4));
+    }
+}